@@ -18,6 +18,8 @@ package org.apache.nifi.provenance;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -31,6 +33,19 @@ import org.apache.nifi.provenance.search.QueryResult;
 public class StandardQueryResult implements QueryResult {
 
     public static final int TTL = (int) TimeUnit.MILLISECONDS.convert(30, TimeUnit.MINUTES);
+
+    // newest events first; ties are broken by ID so that the order is stable
+    private static final Comparator<ProvenanceEventRecord> NEWEST_FIRST = new Comparator<ProvenanceEventRecord>() {
+        @Override
+        public int compare(final ProvenanceEventRecord o1, final ProvenanceEventRecord o2) {
+            final int timeComparison = Long.compare(o2.getEventTime(), o1.getEventTime());
+            if (timeComparison != 0) {
+                return timeComparison;
+            }
+
+            return Long.compare(o2.getEventId(), o1.getEventId());
+        }
+    };
     private final Query query;
     private final long creationNanos;
 
@@ -46,6 +61,9 @@ public class StandardQueryResult implements QueryResult {
     private Date expirationDate;
     private String error;
     private long queryTime;
+    private long indexSearchNanos;
+    private long recordRetrievalNanos;
+    private int skippedSteps;
 
     private volatile boolean canceled = false;
 
@@ -91,6 +109,68 @@ public class StandardQueryResult implements QueryResult {
         return queryTime;
     }
 
+    /**
+     * @param timeUnit
+     * @return the total time spent searching the indexes for matching events,
+     * summed across all of the indexes searched
+     */
+    public long getIndexSearchTime(final TimeUnit timeUnit) {
+        readLock.lock();
+        try {
+            return timeUnit.convert(indexSearchNanos, TimeUnit.NANOSECONDS);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @param timeUnit
+     * @return the total time spent reading the matching events from the
+     * repository, summed across all of the indexes searched
+     */
+    public long getRecordRetrievalTime(final TimeUnit timeUnit) {
+        readLock.lock();
+        try {
+            return timeUnit.convert(recordRetrievalNanos, TimeUnit.NANOSECONDS);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of steps that were not performed because they could
+     * not have contributed any events to the result
+     */
+    public int getSkippedStepCount() {
+        readLock.lock();
+        try {
+            return skippedSteps;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Once this result holds as many events as the query allows, any event
+     * older than the oldest of them cannot appear in the result, so there is
+     * no need to retrieve it
+     *
+     * @return the time of the oldest event in the result, if the result is
+     * full; otherwise <code>null</code>
+     */
+    public Long getOldestEventTime() {
+        readLock.lock();
+        try {
+            if (matchingRecords.size() < query.getMaxResults()) {
+                return null;
+            }
+
+            return matchingRecords.get(matchingRecords.size() - 1).getEventTime();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     @Override
     public Date getExpiration() {
         return expirationDate;
@@ -141,10 +221,47 @@ public class StandardQueryResult implements QueryResult {
         }
     }
 
+    /**
+     * Adds the time taken by one step of the query. Must be called before the
+     * step's results are added via {@link #update(Collection, long)}
+     *
+     * @param indexSearchNanos
+     * @param recordRetrievalNanos
+     */
+    public void addPhaseTimes(final long indexSearchNanos, final long recordRetrievalNanos) {
+        writeLock.lock();
+        try {
+            this.indexSearchNanos += indexSearchNanos;
+            this.recordRetrievalNanos += recordRetrievalNanos;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Completes a step without searching it, because it could not have
+     * contributed any events to the result
+     */
+    public void skip() {
+        writeLock.lock();
+        try {
+            skippedSteps++;
+        } finally {
+            writeLock.unlock();
+        }
+
+        update(Collections.<ProvenanceEventRecord>emptyList(), 0L);
+    }
+
     public void update(final Collection<ProvenanceEventRecord> matchingRecords, final long totalHits) {
         writeLock.lock();
         try {
+            // keep only the newest events that the query allows, so that steps may complete in any order
             this.matchingRecords.addAll(matchingRecords);
+            Collections.sort(this.matchingRecords, NEWEST_FIRST);
+            if (this.matchingRecords.size() > query.getMaxResults()) {
+                this.matchingRecords.subList(query.getMaxResults(), this.matchingRecords.size()).clear();
+            }
             this.totalHitCount += totalHits;
 
             numCompletedSteps++;
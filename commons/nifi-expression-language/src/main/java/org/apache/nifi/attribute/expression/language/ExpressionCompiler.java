@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.AND;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.APPEND;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.ATTRIBUTE_REFERENCE;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.ATTR_NAME;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.CONTAINS;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.DIVIDE;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.ENDS_WITH;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.EQUALS;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.EQUALS_IGNORE_CASE;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.EXPRESSION;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.FALSE;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.FIND;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.GREATER_THAN;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.GREATER_THAN_OR_EQUAL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.INDEX_OF;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.IS_NULL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.LAST_INDEX_OF;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.LENGTH;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.LESS_THAN;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.LESS_THAN_OR_EQUAL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.MATCHES;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.MINUS;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.MOD;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.MULTIPLY;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.MULTI_ATTRIBUTE_REFERENCE;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.NOT;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.NOT_NULL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.NUMBER;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.OR;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.PLUS;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.PREPEND;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.REPLACE;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.REPLACE_ALL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.REPLACE_NULL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.STARTS_WITH;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.STRING_LITERAL;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.SUBSTRING;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.SUBSTRING_AFTER;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.SUBSTRING_AFTER_LAST;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.SUBSTRING_BEFORE;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.SUBSTRING_BEFORE_LAST;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.TO_LOWER;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.TO_NUMBER;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.TO_STRING;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.TO_UPPER;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.TRIM;
+import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionParser.TRUE;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.nifi.attribute.expression.language.compile.BooleanFunctions;
+import org.apache.nifi.attribute.expression.language.compile.BooleanNode;
+import org.apache.nifi.attribute.expression.language.compile.CompiledNode;
+import org.apache.nifi.attribute.expression.language.compile.InterpretedDateNode;
+import org.apache.nifi.attribute.expression.language.compile.NumberFunctions;
+import org.apache.nifi.attribute.expression.language.compile.NumberNode;
+import org.apache.nifi.attribute.expression.language.compile.StringFunctions;
+import org.apache.nifi.attribute.expression.language.compile.StringNode;
+import org.apache.nifi.attribute.expression.language.evaluation.BooleanEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.DateEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.NumberEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.StringEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.cast.StringCastEvaluator;
+import org.apache.nifi.attribute.expression.language.exception.AttributeExpressionLanguageException;
+import org.apache.nifi.expression.AttributeExpression.ResultType;
+
+import org.antlr.runtime.tree.Tree;
+
+/**
+ * Compiles a parsed Expression into a graph of {@link CompiledNode}s. Compiled
+ * nodes do not wrap every intermediate value in a QueryResult, and Number and
+ * Boolean functions operate on primitives, so hot expressions avoid an
+ * allocation per function call. Functions that have no compiled form (dates,
+ * UUIDs, URL encoding, etc.) are evaluated by the interpreter's Evaluators,
+ * which are wrapped so that the rest of the expression can still be compiled.
+ */
+final class ExpressionCompiler {
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Compiles the given tree into a node that returns the String value of the
+     * Expression. The compiled node is shared by all threads, so the tree must
+     * not contain any Multi-Attribute reference, whose Evaluators are stateful;
+     * see {@link Query#buildReusableEvaluator(Tree)}.
+     *
+     * @param tree
+     * @return the compiled Expression, or <code>null</code> if the Expression
+     * must be evaluated by the interpreter
+     */
+    static StringNode compile(final Tree tree) {
+        try {
+            return toStringNode(compileNode(tree));
+        } catch (final AttributeExpressionLanguageException e) {
+            // the interpreter is the reference implementation; let it report (or handle) the problem
+            return null;
+        }
+    }
+
+    private static CompiledNode compileNode(final Tree tree) {
+        switch (tree.getType()) {
+            case EXPRESSION: {
+                if (tree.getChildCount() == 1) {
+                    return compileNode(tree.getChild(0));
+                }
+                return compileFunctionExpression(tree, 0);
+            }
+            case ATTRIBUTE_REFERENCE: {
+                final Tree childTree = tree.getChild(0);
+                if (childTree.getType() == MULTI_ATTRIBUTE_REFERENCE) {
+                    return interpret(Query.buildEvaluator(tree));
+                }
+
+                final StringNode nameNode = toStringNode(compileNode(childTree));
+                if (nameNode instanceof StringFunctions.Literal) {
+                    return new StringFunctions.NamedAttribute(((StringFunctions.Literal) nameNode).getValue());
+                }
+                return new StringFunctions.Attribute(nameNode);
+            }
+            case ATTR_NAME:
+                return compileStringLiteral(tree, tree.getChild(0).getText());
+            case STRING_LITERAL:
+                return compileStringLiteral(tree, tree.getText());
+            case NUMBER:
+                return new NumberFunctions.Literal(Long.parseLong(tree.getText()));
+            case TRUE:
+                return new BooleanFunctions.Literal(true);
+            case FALSE:
+                return new BooleanFunctions.Literal(false);
+            default:
+                return interpret(Query.buildEvaluator(tree));
+        }
+    }
+
+    private static CompiledNode compileStringLiteral(final Tree tree, final String literalValue) {
+        if (literalValue != null && !Query.extractExpressionRanges(literalValue).isEmpty()) {
+            // literal with embedded Expressions
+            return interpret(Query.buildEvaluator(tree));
+        }
+
+        return new StringFunctions.Literal(literalValue);
+    }
+
+    private static CompiledNode compileFunctionExpression(final Tree tree, final int offset) {
+        final int firstChildIndex = tree.getChildCount() - offset - 1;
+        if (firstChildIndex == 0) {
+            return compileNode(tree.getChild(0));
+        }
+
+        final Tree functionTree = tree.getChild(firstChildIndex);
+        final CompiledNode subject = compileFunctionExpression(tree, offset + 1);
+
+        final List<CompiledNode> args = new ArrayList<>();
+        for (int i = 1; i < functionTree.getChildCount(); i++) {
+            args.add(compileNode(functionTree.getChild(i)));
+        }
+
+        final CompiledNode compiled = compileFunction(functionTree.getChild(0), subject, args);
+        if (compiled == null) {
+            return interpret(Query.buildFunctionExpressionEvaluator(tree, offset));
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the compiled function, or <code>null</code> if the function has
+     * no compiled form
+     */
+    private static CompiledNode compileFunction(final Tree tree, final CompiledNode subject, final List<CompiledNode> args) {
+        final int numArgs = args.size();
+
+        switch (tree.getType()) {
+            case TRIM:
+                return numArgs == 0 ? new StringFunctions.Trim(toStringNode(subject)) : null;
+            case TO_STRING:
+                return numArgs == 0 ? toStringNode(subject) : null;
+            case TO_UPPER:
+                return numArgs == 0 ? new StringFunctions.ToUpper(toStringNode(subject)) : null;
+            case TO_LOWER:
+                return numArgs == 0 ? new StringFunctions.ToLower(toStringNode(subject)) : null;
+            case APPEND:
+                return numArgs == 1 ? new StringFunctions.Append(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case PREPEND:
+                return numArgs == 1 ? new StringFunctions.Prepend(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case SUBSTRING_BEFORE:
+                return numArgs == 1 ? new StringFunctions.SubstringBefore(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case SUBSTRING_BEFORE_LAST:
+                return numArgs == 1 ? new StringFunctions.SubstringBeforeLast(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case SUBSTRING_AFTER:
+                return numArgs == 1 ? new StringFunctions.SubstringAfter(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case SUBSTRING_AFTER_LAST:
+                return numArgs == 1 ? new StringFunctions.SubstringAfterLast(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case REPLACE:
+                return numArgs == 2 ? new StringFunctions.Replace(toStringNode(subject), toStringNode(args.get(0)), toStringNode(args.get(1))) : null;
+            case REPLACE_ALL:
+                return numArgs == 2 ? new StringFunctions.ReplaceAll(toStringNode(subject), toStringNode(args.get(0)), toStringNode(args.get(1))) : null;
+            case REPLACE_NULL:
+                return numArgs == 1 ? new StringFunctions.ReplaceNull(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case SUBSTRING:
+                if (numArgs == 1) {
+                    return new StringFunctions.Substring(toStringNode(subject), toNumberNode(args.get(0)), null);
+                } else if (numArgs == 2) {
+                    return new StringFunctions.Substring(toStringNode(subject), toNumberNode(args.get(0)), toNumberNode(args.get(1)));
+                }
+                return null;
+            case LENGTH:
+                return numArgs == 0 ? new NumberFunctions.Length(toStringNode(subject)) : null;
+            case TO_NUMBER:
+                return (numArgs == 0 && subject.getResultType() == ResultType.STRING) ? new NumberFunctions.ToNumber((StringNode) subject) : null;
+            case INDEX_OF:
+                return numArgs == 1 ? new NumberFunctions.IndexOf(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case LAST_INDEX_OF:
+                return numArgs == 1 ? new NumberFunctions.LastIndexOf(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case PLUS:
+                return numArgs == 1 ? new NumberFunctions.Plus(toNumberNode(subject), toNumberNode(args.get(0))) : null;
+            case MINUS:
+                return numArgs == 1 ? new NumberFunctions.Minus(toNumberNode(subject), toNumberNode(args.get(0))) : null;
+            case MULTIPLY:
+                return numArgs == 1 ? new NumberFunctions.Multiply(toNumberNode(subject), toNumberNode(args.get(0))) : null;
+            case DIVIDE:
+                return numArgs == 1 ? new NumberFunctions.Divide(toNumberNode(subject), toNumberNode(args.get(0))) : null;
+            case MOD:
+                return numArgs == 1 ? new NumberFunctions.Mod(toNumberNode(subject), toNumberNode(args.get(0))) : null;
+            case IS_NULL:
+                return numArgs == 0 ? new BooleanFunctions.IsNull(toStringNode(subject), false) : null;
+            case NOT_NULL:
+                return numArgs == 0 ? new BooleanFunctions.IsNull(toStringNode(subject), true) : null;
+            case STARTS_WITH:
+                return numArgs == 1 ? new BooleanFunctions.StartsWith(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case ENDS_WITH:
+                return numArgs == 1 ? new BooleanFunctions.EndsWith(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case CONTAINS:
+                return numArgs == 1 ? new BooleanFunctions.Contains(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case MATCHES:
+                return numArgs == 1 ? new BooleanFunctions.Matches(toStringNode(subject), toStringNode(args.get(0)), false) : null;
+            case FIND:
+                return numArgs == 1 ? new BooleanFunctions.Matches(toStringNode(subject), toStringNode(args.get(0)), true) : null;
+            case EQUALS:
+                return numArgs == 1 ? compileEquals(subject, args.get(0)) : null;
+            case EQUALS_IGNORE_CASE:
+                return numArgs == 1 ? new BooleanFunctions.EqualsIgnoreCase(toStringNode(subject), toStringNode(args.get(0))) : null;
+            case GREATER_THAN:
+                return numArgs == 1 ? new BooleanFunctions.GreaterThan(toNumberNode(subject), toNumberNode(args.get(0))) : null;
+            case GREATER_THAN_OR_EQUAL:
+                return numArgs == 1 ? new BooleanFunctions.GreaterThanOrEqual(toNumberNode(subject), toNumberNode(args.get(0))) : null;
+            case LESS_THAN:
+                return numArgs == 1 ? new BooleanFunctions.LessThan(toNumberNode(subject), toNumberNode(args.get(0))) : null;
+            case LESS_THAN_OR_EQUAL:
+                return numArgs == 1 ? new BooleanFunctions.LessThanOrEqual(toNumberNode(subject), toNumberNode(args.get(0))) : null;
+            case AND:
+                return numArgs == 1 ? new BooleanFunctions.And(toBooleanNode(subject), toBooleanNode(args.get(0))) : null;
+            case OR:
+                return numArgs == 1 ? new BooleanFunctions.Or(toBooleanNode(subject), toBooleanNode(args.get(0))) : null;
+            case NOT:
+                return numArgs == 0 ? new BooleanFunctions.Not(toBooleanNode(subject)) : null;
+            default:
+                return null;
+        }
+    }
+
+    private static CompiledNode compileEquals(final CompiledNode subject, final CompiledNode compareTo) {
+        final ResultType subjectType = subject.getResultType();
+        final ResultType compareToType = compareTo.getResultType();
+
+        // Dates are compared by their millisecond values; leave that to the interpreter
+        if (subjectType == ResultType.DATE || compareToType == ResultType.DATE) {
+            return null;
+        }
+
+        if (subjectType == compareToType) {
+            switch (subjectType) {
+                case NUMBER:
+                    return new BooleanFunctions.NumberEquals((NumberNode) subject, (NumberNode) compareTo);
+                case BOOLEAN:
+                    return new BooleanFunctions.BooleanEquals((BooleanNode) subject, (BooleanNode) compareTo);
+                default:
+                    break;
+            }
+        }
+
+        // values of different types are compared by their String representations
+        return new BooleanFunctions.StringEquals(toStringNode(subject), toStringNode(compareTo));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompiledNode interpret(final Evaluator<?> evaluator) {
+        switch (evaluator.getResultType()) {
+            case STRING:
+                return new StringFunctions.Interpreted((Evaluator<String>) evaluator);
+            case NUMBER:
+                return new NumberFunctions.Interpreted((Evaluator<Long>) evaluator);
+            case BOOLEAN:
+                return new BooleanFunctions.Interpreted((Evaluator<Boolean>) evaluator);
+            case DATE:
+            default:
+                return new InterpretedDateNode((DateEvaluator) evaluator);
+        }
+    }
+
+    private static StringNode toStringNode(final CompiledNode node) {
+        switch (node.getResultType()) {
+            case STRING:
+                return (StringNode) node;
+            case NUMBER:
+                return new StringFunctions.NumberToString((NumberNode) node);
+            case BOOLEAN:
+                return new StringFunctions.BooleanToString((BooleanNode) node);
+            case DATE:
+            default:
+                final StringEvaluator castEvaluator = new StringCastEvaluator(((InterpretedDateNode) node).getEvaluator());
+                return new StringFunctions.Interpreted(castEvaluator);
+        }
+    }
+
+    private static NumberNode toNumberNode(final CompiledNode node) {
+        switch (node.getResultType()) {
+            case NUMBER:
+                return (NumberNode) node;
+            case STRING:
+                return new NumberFunctions.StringToNumber((StringNode) node);
+            default:
+                final NumberEvaluator evaluator = Query.toNumberEvaluator(toEvaluator(node));
+                return new NumberFunctions.Interpreted(evaluator);
+        }
+    }
+
+    private static BooleanNode toBooleanNode(final CompiledNode node) {
+        switch (node.getResultType()) {
+            case BOOLEAN:
+                return (BooleanNode) node;
+            case STRING:
+                return new BooleanFunctions.StringToBoolean((StringNode) node);
+            default:
+                final BooleanEvaluator evaluator = Query.toBooleanEvaluator(toEvaluator(node));
+                return new BooleanFunctions.Interpreted(evaluator);
+        }
+    }
+
+    private static Evaluator<?> toEvaluator(final CompiledNode node) {
+        if (node instanceof InterpretedDateNode) {
+            return ((InterpretedDateNode) node).getEvaluator();
+        }
+
+        throw new AttributeExpressionLanguageException("Cannot convert compiled node of type " + node.getResultType() + " to an Evaluator");
+    }
+}
@@ -82,12 +82,9 @@ import static org.apache.nifi.attribute.expression.language.antlr.AttributeExpre
 
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.nifi.attribute.expression.language.antlr.AttributeExpressionLexer;
@@ -182,6 +179,12 @@ import org.antlr.runtime.tree.Tree;
  */
 public class Query {
 
+    /**
+     * System Property that determines whether {@link #prepare(String)}
+     * compiles Expressions rather than interpreting them
+     */
+    public static final String COMPILE_PROPERTY = "nifi.expression.language.compile";
+
     private final String query;
     private final Tree tree;
     private final Evaluator<?> evaluator;
@@ -340,12 +343,22 @@ public class Query {
 
     static String evaluateExpression(final Tree tree, final String queryText, final Map<String, String> expressionMap, final AttributeValueDecorator decorator) throws ProcessException {
         final Object evaluated = Query.fromTree(tree, queryText).evaluate(expressionMap).getValue();
+        return toDecoratedString(evaluated, decorator);
+    }
+
+    static String evaluateExpression(final Evaluator<?> evaluator, final Map<String, String> expressionMap, final AttributeValueDecorator decorator) throws ProcessException {
+        final Object evaluated = evaluator.evaluate(expressionMap).getValue();
+        return toDecoratedString(evaluated, decorator);
+    }
+
+    static String toDecoratedString(final Object evaluated, final AttributeValueDecorator decorator) {
         if (evaluated == null) {
             return null;
         }
 
+        // String.replace compiles a Pattern on every call, so avoid it in the common case
         final String value = evaluated.toString();
-        final String escaped = value.replace("$$", "$");
+        final String escaped = value.contains("$$") ? value.replace("$$", "$") : value;
         return (decorator == null) ? escaped : decorator.decorate(escaped);
     }
 
@@ -398,147 +411,56 @@ public class Query {
     }
 
     static Map<String, String> createExpressionMap(final FlowFile flowFile) {
-        final Map<String, String> attributeMap = flowFile == null ? new HashMap<String, String>() : flowFile.getAttributes();
-        final Map<String, String> envMap = System.getenv();
-        final Map<?, ?> sysProps = System.getProperties();
-
-        final Map<String, String> flowFileProps = new HashMap<>();
-        if (flowFile != null) {
-            flowFileProps.put("flowFileId", String.valueOf(flowFile.getId()));
-            flowFileProps.put("fileSize", String.valueOf(flowFile.getSize()));
-            flowFileProps.put("entryDate", String.valueOf(flowFile.getEntryDate()));
-            flowFileProps.put("lineageStartDate", String.valueOf(flowFile.getLineageStartDate()));
-        }
-
-        return wrap(attributeMap, flowFileProps, envMap, sysProps);
+        return new ValueLookup(flowFile);
     }
 
-    private static Map<String, String> wrap(final Map<String, String> attributes, final Map<String, String> flowFileProps,
-            final Map<String, String> env, final Map<?, ?> sysProps) {
-        @SuppressWarnings("rawtypes")
-        final Map[] maps = new Map[]{attributes, flowFileProps, env, sysProps};
-
-        return new Map<String, String>() {
-            @Override
-            public int size() {
-                int size = 0;
-                for (final Map<?, ?> map : maps) {
-                    size += map.size();
-                }
-                return size;
-            }
-
-            @Override
-            public boolean isEmpty() {
-                for (final Map<?, ?> map : maps) {
-                    if (!map.isEmpty()) {
-                        return false;
-                    }
-                }
-                return true;
-            }
-
-            @Override
-            public boolean containsKey(final Object key) {
-                if (key == null) {
-                    return false;
-                }
-                if (!(key instanceof String)) {
-                    return false;
-                }
-
-                for (final Map<?, ?> map : maps) {
-                    if (map.containsKey(key)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-
-            @Override
-            public boolean containsValue(final Object value) {
-                for (final Map<?, ?> map : maps) {
-                    if (map.containsValue(value)) {
-                        return true;
-                    }
-                }
-                return false;
-            }
-
-            @Override
-            @SuppressWarnings("rawtypes")
-            public String get(final Object key) {
-                if (key == null) {
-                    throw new IllegalArgumentException("Null Keys are not allowed");
-                }
-                if (!(key instanceof String)) {
-                    return null;
-                }
-
-                for (final Map map : maps) {
-                    final Object val = map.get(key);
-                    if (val != null) {
-                        return String.valueOf(val);
-                    }
-                }
-                return null;
-            }
-
-            @Override
-            public String put(String key, String value) {
-                throw new UnsupportedOperationException();
-            }
-
-            @Override
-            public String remove(final Object key) {
-                throw new UnsupportedOperationException();
-            }
+    public static Query fromTree(final Tree tree, final String text) {
+        return new Query(text, tree, buildEvaluator(tree));
+    }
 
-            @Override
-            public void putAll(final Map<? extends String, ? extends String> m) {
-                throw new UnsupportedOperationException();
-            }
+    /**
+     * Builds an Evaluator for the given tree that holds no per-evaluation state
+     * and therefore may be evaluated any number of times, concurrently, by any
+     * number of threads. Multi-Attribute references (anyAttribute,
+     * allMatchingAttributes, etc.) iterate over their values by keeping state
+     * in the Evaluator itself, so if the tree contains any such reference,
+     * <code>null</code> is returned and the tree must be re-built for each
+     * evaluation.
+     *
+     * @param tree
+     * @return
+     */
+    static Evaluator<?> buildReusableEvaluator(final Tree tree) {
+        if (containsMultiAttributeReference(tree)) {
+            return null;
+        }
 
-            @Override
-            public void clear() {
-                throw new UnsupportedOperationException();
-            }
+        return buildEvaluator(tree);
+    }
 
-            @Override
-            @SuppressWarnings({"unchecked", "rawtypes"})
-            public Set<String> keySet() {
-                final Set<String> keySet = new HashSet<>();
-                for (final Map map : maps) {
-                    keySet.addAll(map.keySet());
-                }
-                return keySet;
-            }
+    private static boolean containsMultiAttributeReference(final Tree tree) {
+        if (tree.getType() == MULTI_ATTRIBUTE_REFERENCE) {
+            return true;
+        }
 
-            @Override
-            @SuppressWarnings({"unchecked", "rawtypes"})
-            public Collection<String> values() {
-                final Set<String> values = new HashSet<>();
-                for (final Map map : maps) {
-                    values.addAll(map.values());
+        // String Literals may themselves contain embedded Expressions, which are compiled separately
+        if (tree.getType() == STRING_LITERAL) {
+            final String literalValue = tree.getText();
+            for (final Range range : extractExpressionRanges(literalValue)) {
+                final String treeText = literalValue.substring(range.getStart(), range.getEnd() + 1);
+                if (containsMultiAttributeReference(compileTree(treeText))) {
+                    return true;
                 }
-                return values;
             }
+        }
 
-            @Override
-            @SuppressWarnings({"unchecked", "rawtypes"})
-            public Set<java.util.Map.Entry<String, String>> entrySet() {
-                final Set<java.util.Map.Entry<String, String>> entrySet = new HashSet<>();
-                for (final Map map : maps) {
-                    entrySet.addAll(map.entrySet());
-                }
-                return entrySet;
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            if (containsMultiAttributeReference(tree.getChild(i))) {
+                return true;
             }
+        }
 
-        };
-    }
-
-    public static Query fromTree(final Tree tree, final String text) {
-        return new Query(text, tree, buildEvaluator(tree));
+        return false;
     }
 
     public static Tree compileTree(final String query) throws AttributeExpressionLanguageParsingException {
@@ -558,7 +480,30 @@ public class Query {
         }
     }
 
+    /**
+     * Prepares the given query, compiling its Expressions if the
+     * {@value #COMPILE_PROPERTY} System Property is set to <code>true</code>.
+     *
+     * @param query
+     * @return
+     * @throws AttributeExpressionLanguageParsingException
+     */
     public static PreparedQuery prepare(final String query) throws AttributeExpressionLanguageParsingException {
+        return prepare(query, Boolean.getBoolean(COMPILE_PROPERTY));
+    }
+
+    /**
+     * Prepares the given query. If <code>compile</code> is <code>true</code>,
+     * each Expression is compiled into a graph of type-specialized nodes that
+     * operate on primitive values; functions that cannot be compiled are
+     * evaluated by the interpreter, so the results are the same either way.
+     *
+     * @param query
+     * @param compile
+     * @return
+     * @throws AttributeExpressionLanguageParsingException
+     */
+    public static PreparedQuery prepare(final String query, final boolean compile) throws AttributeExpressionLanguageParsingException {
         if (query == null) {
             return new EmptyPreparedQuery(null);
         }
@@ -591,7 +536,7 @@ public class Query {
             substrings.add(treeText);
         }
 
-        return new StandardPreparedQuery(substrings, trees);
+        return new StandardPreparedQuery(substrings, trees, compile);
     }
 
     public static Query compile(final String query) throws AttributeExpressionLanguageParsingException {
@@ -710,7 +655,7 @@ public class Query {
         return lastEvaluator;
     }
 
-    private static Evaluator<?> buildEvaluator(final Tree tree) {
+    static Evaluator<?> buildEvaluator(final Tree tree) {
         switch (tree.getType()) {
             case EXPRESSION: {
                 return buildExpressionEvaluator(tree);
@@ -852,7 +797,7 @@ public class Query {
         }
     }
 
-    private static Evaluator<?> buildFunctionExpressionEvaluator(final Tree tree, final int offset) {
+    static Evaluator<?> buildFunctionExpressionEvaluator(final Tree tree, final int offset) {
         if (tree.getChildCount() == 0) {
             throw new AttributeExpressionLanguageParsingException("EXPRESSION tree node has no children");
         }
@@ -904,11 +849,11 @@ public class Query {
 
     }
 
-    private static BooleanEvaluator toBooleanEvaluator(final Evaluator<?> evaluator) {
+    static BooleanEvaluator toBooleanEvaluator(final Evaluator<?> evaluator) {
         return toBooleanEvaluator(evaluator, null);
     }
 
-    private static NumberEvaluator toNumberEvaluator(final Evaluator<?> evaluator) {
+    static NumberEvaluator toNumberEvaluator(final Evaluator<?> evaluator) {
         return toNumberEvaluator(evaluator, null);
     }
 
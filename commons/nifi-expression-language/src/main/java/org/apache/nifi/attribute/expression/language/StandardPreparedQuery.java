@@ -21,6 +21,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.nifi.attribute.expression.language.compile.EvaluationContext;
+import org.apache.nifi.attribute.expression.language.compile.StringNode;
+import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
 import org.apache.nifi.expression.AttributeValueDecorator;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.processor.exception.ProcessException;
@@ -31,10 +34,40 @@ public class StandardPreparedQuery implements PreparedQuery {
 
     private final List<String> queryStrings;
     private final Map<String, Tree> trees;
+    private final Map<String, Evaluator<?>> evaluators;
+    private final Map<String, StringNode> compiled;
 
     public StandardPreparedQuery(final List<String> queryStrings, final Map<String, Tree> trees) {
+        this(queryStrings, trees, false);
+    }
+
+    /**
+     * @param queryStrings
+     * @param trees
+     * @param compile if <code>true</code>, Expressions are compiled into
+     * type-specialized nodes where possible; otherwise, they are evaluated by
+     * the interpreter
+     */
+    public StandardPreparedQuery(final List<String> queryStrings, final Map<String, Tree> trees, final boolean compile) {
         this.queryStrings = new ArrayList<>(queryStrings);
         this.trees = new HashMap<>(trees);
+
+        // Build the Evaluators once so that they can be shared by every evaluation, rather than
+        // re-building the entire Evaluator graph for each FlowFile. Trees whose Evaluators are
+        // stateful are left out and are re-built on each evaluation.
+        this.evaluators = new HashMap<>();
+        this.compiled = new HashMap<>();
+        for (final Map.Entry<String, Tree> entry : trees.entrySet()) {
+            final Evaluator<?> evaluator = Query.buildReusableEvaluator(entry.getValue());
+            if (evaluator != null) {
+                evaluators.put(entry.getKey(), evaluator);
+
+                final StringNode node = compile ? ExpressionCompiler.compile(entry.getValue()) : null;
+                if (node != null) {
+                    compiled.put(entry.getKey(), node);
+                }
+            }
+        }
     }
 
     @Override
@@ -45,12 +78,26 @@ public class StandardPreparedQuery implements PreparedQuery {
     @Override
     public String evaluateExpressions(final Map<String, String> attributes, final AttributeValueDecorator decorator) throws ProcessException {
         final StringBuilder sb = new StringBuilder();
+        EvaluationContext context = null;
         for (final String val : queryStrings) {
             final Tree tree = trees.get(val);
             if (tree == null) {
                 sb.append(val);
             } else {
-                final String evaluated = Query.evaluateExpression(tree, val, attributes, decorator);
+                final StringNode node = compiled.get(val);
+                final Evaluator<?> evaluator = evaluators.get(val);
+                final String evaluated;
+                if (node != null) {
+                    if (context == null) {
+                        context = new EvaluationContext(attributes);
+                    }
+                    evaluated = Query.toDecoratedString(node.evaluate(context), decorator);
+                } else if (evaluator == null) {
+                    evaluated = Query.evaluateExpression(tree, val, attributes, decorator);
+                } else {
+                    evaluated = Query.evaluateExpression(evaluator, attributes, decorator);
+                }
+
                 if (evaluated != null) {
                     sb.append(evaluated);
                 }
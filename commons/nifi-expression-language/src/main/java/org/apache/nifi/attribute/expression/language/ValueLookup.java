@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.nifi.flowfile.FlowFile;
+
+/**
+ * A read-only view of the values that are available to an Expression: the
+ * FlowFile's attributes, followed by the FlowFile's core properties
+ * (flowFileId, fileSize, entryDate, lineageStartDate), followed by environment
+ * variables, followed by System Properties. The first non-null value wins.
+ *
+ * The view does not copy anything. The core FlowFile properties are converted
+ * to Strings only when they are asked for, the environment variables (which
+ * cannot change while the JVM is running) are obtained once, and System
+ * Properties are consulted only if no other source has a value for the key.
+ * Operations that must see every key, such as {@link #keySet()} and
+ * {@link #entrySet()}, build a new collection on each call; they are needed
+ * only by the Multi-Attribute Matching functions.
+ */
+class ValueLookup implements Map<String, String> {
+
+    private static final String FLOWFILE_ID = "flowFileId";
+    private static final String FILE_SIZE = "fileSize";
+    private static final String ENTRY_DATE = "entryDate";
+    private static final String LINEAGE_START_DATE = "lineageStartDate";
+
+    private static final Map<String, String> ENVIRONMENT = System.getenv();
+
+    private final FlowFile flowFile;
+    private Map<String, String> attributes;
+
+    ValueLookup(final FlowFile flowFile) {
+        this.flowFile = flowFile;
+    }
+
+    private Map<String, String> getAttributes() {
+        if (attributes == null) {
+            attributes = flowFile == null ? Collections.<String, String>emptyMap() : flowFile.getAttributes();
+        }
+        return attributes;
+    }
+
+    private String getFlowFileProperty(final String key) {
+        if (flowFile == null) {
+            return null;
+        }
+
+        switch (key) {
+            case FLOWFILE_ID:
+                return String.valueOf(flowFile.getId());
+            case FILE_SIZE:
+                return String.valueOf(flowFile.getSize());
+            case ENTRY_DATE:
+                return String.valueOf(flowFile.getEntryDate());
+            case LINEAGE_START_DATE:
+                return String.valueOf(flowFile.getLineageStartDate());
+            default:
+                return null;
+        }
+    }
+
+    private Map<String, String> getFlowFileProperties() {
+        if (flowFile == null) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, String> flowFileProps = new HashMap<>(8);
+        flowFileProps.put(FLOWFILE_ID, getFlowFileProperty(FLOWFILE_ID));
+        flowFileProps.put(FILE_SIZE, getFlowFileProperty(FILE_SIZE));
+        flowFileProps.put(ENTRY_DATE, getFlowFileProperty(ENTRY_DATE));
+        flowFileProps.put(LINEAGE_START_DATE, getFlowFileProperty(LINEAGE_START_DATE));
+        return flowFileProps;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Map[] getMaps() {
+        return new Map[]{getAttributes(), getFlowFileProperties(), ENVIRONMENT, System.getProperties()};
+    }
+
+    @Override
+    public String get(final Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null Keys are not allowed");
+        }
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        final String attributeValue = getAttributes().get(key);
+        if (attributeValue != null) {
+            return attributeValue;
+        }
+
+        final String flowFileValue = getFlowFileProperty((String) key);
+        if (flowFileValue != null) {
+            return flowFileValue;
+        }
+
+        final String envValue = ENVIRONMENT.get(key);
+        if (envValue != null) {
+            return envValue;
+        }
+
+        final Object sysPropValue = System.getProperties().get(key);
+        return sysPropValue == null ? null : String.valueOf(sysPropValue);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        if (key == null) {
+            return false;
+        }
+        if (!(key instanceof String)) {
+            return false;
+        }
+
+        return getAttributes().containsKey(key) || getFlowFileProperty((String) key) != null
+                || ENVIRONMENT.containsKey(key) || System.getProperties().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (final Map<?, ?> map : getMaps()) {
+            size += map.size();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (final Map<?, ?> map : getMaps()) {
+            if (!map.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        for (final Map<?, ?> map : getMaps()) {
+            if (map.containsValue(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String put(final String key, final String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String remove(final Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(final Map<? extends String, ? extends String> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Set<String> keySet() {
+        final Set<String> keySet = new HashSet<>();
+        for (final Map map : getMaps()) {
+            keySet.addAll(map.keySet());
+        }
+        return keySet;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Collection<String> values() {
+        final Set<String> values = new HashSet<>();
+        for (final Map map : getMaps()) {
+            values.addAll(map.values());
+        }
+        return values;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Set<Map.Entry<String, String>> entrySet() {
+        final Set<Map.Entry<String, String>> entrySet = new HashSet<>();
+        for (final Map map : getMaps()) {
+            entrySet.addAll(map.entrySet());
+        }
+        return entrySet;
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language.compile;
+
+import java.util.regex.Pattern;
+
+import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
+
+/**
+ * Compiled forms of the functions that return a Boolean. Each node has the
+ * same semantics as the corresponding Evaluator in the
+ * <code>evaluation.functions</code> and <code>evaluation.cast</code>
+ * packages, but returns a primitive <code>boolean</code> and reports
+ * <code>null</code> through {@link EvaluationContext#wasNull()}.
+ */
+public final class BooleanFunctions {
+
+    private BooleanFunctions() {
+    }
+
+    public static final class Literal extends BooleanNode {
+
+        private final boolean value;
+
+        public Literal(final boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            return context.booleanValue(value);
+        }
+    }
+
+    public static final class Interpreted extends BooleanNode {
+
+        private final Evaluator<Boolean> evaluator;
+
+        public Interpreted(final Evaluator<Boolean> evaluator) {
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final Boolean value = evaluator.evaluate(context.getAttributes()).getValue();
+            return value == null ? context.nullBoolean() : context.booleanValue(value);
+        }
+    }
+
+    /**
+     * Implicit conversion of a String to a Boolean
+     */
+    public static final class StringToBoolean extends BooleanNode {
+
+        private final StringNode subject;
+
+        public StringToBoolean(final StringNode subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return context.nullBoolean();
+            }
+            return context.booleanValue(Boolean.parseBoolean(subjectValue.trim()));
+        }
+    }
+
+    /**
+     * The equals() function for two Strings, or for two values of different
+     * types, which are compared by their String representations
+     */
+    public static final class StringEquals extends BooleanNode {
+
+        private final StringNode subject;
+        private final StringNode compareTo;
+
+        public StringEquals(final StringNode subject, final StringNode compareTo) {
+            this.subject = subject;
+            this.compareTo = compareTo;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return context.booleanValue(false);
+            }
+            final String compareToValue = compareTo.evaluate(context);
+            return context.booleanValue(compareToValue != null && subjectValue.equals(compareToValue));
+        }
+    }
+
+    public static final class NumberEquals extends BooleanNode {
+
+        private final NumberNode subject;
+        private final NumberNode compareTo;
+
+        public NumberEquals(final NumberNode subject, final NumberNode compareTo) {
+            this.subject = subject;
+            this.compareTo = compareTo;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final long subjectValue = subject.evaluate(context);
+            if (context.wasNull()) {
+                return context.booleanValue(false);
+            }
+            final long compareToValue = compareTo.evaluate(context);
+            if (context.wasNull()) {
+                return context.booleanValue(false);
+            }
+            return context.booleanValue(subjectValue == compareToValue);
+        }
+    }
+
+    public static final class BooleanEquals extends BooleanNode {
+
+        private final BooleanNode subject;
+        private final BooleanNode compareTo;
+
+        public BooleanEquals(final BooleanNode subject, final BooleanNode compareTo) {
+            this.subject = subject;
+            this.compareTo = compareTo;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final boolean subjectValue = subject.evaluate(context);
+            if (context.wasNull()) {
+                return context.booleanValue(false);
+            }
+            final boolean compareToValue = compareTo.evaluate(context);
+            if (context.wasNull()) {
+                return context.booleanValue(false);
+            }
+            return context.booleanValue(subjectValue == compareToValue);
+        }
+    }
+
+    public static final class EqualsIgnoreCase extends BooleanNode {
+
+        private final StringNode subject;
+        private final StringNode compareTo;
+
+        public EqualsIgnoreCase(final StringNode subject, final StringNode compareTo) {
+            this.subject = subject;
+            this.compareTo = compareTo;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return context.booleanValue(false);
+            }
+            final String compareToValue = compareTo.evaluate(context);
+            return context.booleanValue(compareToValue != null && subjectValue.equalsIgnoreCase(compareToValue));
+        }
+    }
+
+    /**
+     * Base class for the numeric comparison functions. If either operand is
+     * <code>null</code>, the result is <code>false</code>.
+     */
+    private abstract static class Comparison extends BooleanNode {
+
+        private final NumberNode subject;
+        private final NumberNode comparison;
+
+        Comparison(final NumberNode subject, final NumberNode comparison) {
+            this.subject = subject;
+            this.comparison = comparison;
+        }
+
+        protected abstract boolean compare(long subjectValue, long comparisonValue);
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final long subjectValue = subject.evaluate(context);
+            if (context.wasNull()) {
+                return context.booleanValue(false);
+            }
+
+            final long comparisonValue = comparison.evaluate(context);
+            if (context.wasNull()) {
+                return context.booleanValue(false);
+            }
+
+            return context.booleanValue(compare(subjectValue, comparisonValue));
+        }
+    }
+
+    public static final class GreaterThan extends Comparison {
+
+        public GreaterThan(final NumberNode subject, final NumberNode comparison) {
+            super(subject, comparison);
+        }
+
+        @Override
+        protected boolean compare(final long subjectValue, final long comparisonValue) {
+            return subjectValue > comparisonValue;
+        }
+    }
+
+    public static final class GreaterThanOrEqual extends Comparison {
+
+        public GreaterThanOrEqual(final NumberNode subject, final NumberNode comparison) {
+            super(subject, comparison);
+        }
+
+        @Override
+        protected boolean compare(final long subjectValue, final long comparisonValue) {
+            return subjectValue >= comparisonValue;
+        }
+    }
+
+    public static final class LessThan extends Comparison {
+
+        public LessThan(final NumberNode subject, final NumberNode comparison) {
+            super(subject, comparison);
+        }
+
+        @Override
+        protected boolean compare(final long subjectValue, final long comparisonValue) {
+            return subjectValue < comparisonValue;
+        }
+    }
+
+    public static final class LessThanOrEqual extends Comparison {
+
+        public LessThanOrEqual(final NumberNode subject, final NumberNode comparison) {
+            super(subject, comparison);
+        }
+
+        @Override
+        protected boolean compare(final long subjectValue, final long comparisonValue) {
+            return subjectValue <= comparisonValue;
+        }
+    }
+
+    /**
+     * Base class for the functions that search a String for another String.
+     * If either String is <code>null</code>, the result is <code>false</code>.
+     */
+    private abstract static class Search extends BooleanNode {
+
+        private final StringNode subject;
+        private final StringNode search;
+
+        Search(final StringNode subject, final StringNode search) {
+            this.subject = subject;
+            this.search = search;
+        }
+
+        protected abstract boolean search(String subjectValue, String searchValue);
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return context.booleanValue(false);
+            }
+
+            final String searchValue = search.evaluate(context);
+            return context.booleanValue(searchValue != null && search(subjectValue, searchValue));
+        }
+    }
+
+    public static final class StartsWith extends Search {
+
+        public StartsWith(final StringNode subject, final StringNode search) {
+            super(subject, search);
+        }
+
+        @Override
+        protected boolean search(final String subjectValue, final String searchValue) {
+            return subjectValue.startsWith(searchValue);
+        }
+    }
+
+    public static final class EndsWith extends Search {
+
+        public EndsWith(final StringNode subject, final StringNode search) {
+            super(subject, search);
+        }
+
+        @Override
+        protected boolean search(final String subjectValue, final String searchValue) {
+            return subjectValue.endsWith(searchValue);
+        }
+    }
+
+    public static final class Contains extends Search {
+
+        public Contains(final StringNode subject, final StringNode search) {
+            super(subject, search);
+        }
+
+        @Override
+        protected boolean search(final String subjectValue, final String searchValue) {
+            return subjectValue.contains(searchValue);
+        }
+    }
+
+    public static final class Matches extends BooleanNode {
+
+        private final StringNode subject;
+        private final StringNode search;
+        private final Pattern compiledPattern;
+        private final boolean find;
+
+        /**
+         * @param subject
+         * @param search
+         * @param find if <code>true</code>, the pattern must be found somewhere
+         * in the subject, as for the find() function; otherwise the whole
+         * subject must match, as for the matches() function
+         */
+        public Matches(final StringNode subject, final StringNode search, final boolean find) {
+            this.subject = subject;
+            this.search = search;
+            this.find = find;
+            this.compiledPattern = (search instanceof StringFunctions.Literal) ? Pattern.compile(((StringFunctions.Literal) search).getValue()) : null;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return context.booleanValue(false);
+            }
+
+            final Pattern pattern = (compiledPattern == null) ? Pattern.compile(search.evaluate(context)) : compiledPattern;
+            return context.booleanValue(find ? pattern.matcher(subjectValue).find() : pattern.matcher(subjectValue).matches());
+        }
+    }
+
+    public static final class IsNull extends BooleanNode {
+
+        private final StringNode subject;
+        private final boolean negate;
+
+        /**
+         * @param subject
+         * @param negate if <code>true</code>, evaluates to <code>true</code>
+         * when the subject is not <code>null</code>, as for the notNull()
+         * function
+         */
+        public IsNull(final StringNode subject, final boolean negate) {
+            this.subject = subject;
+            this.negate = negate;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final boolean isNull = subject.evaluate(context) == null;
+            return context.booleanValue(negate ? !isNull : isNull);
+        }
+    }
+
+    public static final class And extends BooleanNode {
+
+        private final BooleanNode subject;
+        private final BooleanNode rhs;
+
+        public And(final BooleanNode subject, final BooleanNode rhs) {
+            this.subject = subject;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final boolean subjectValue = subject.evaluate(context);
+            if (!context.wasNull() && !subjectValue) {
+                return context.booleanValue(false);
+            }
+
+            // the result of rhs, including whether or not it is null
+            return rhs.evaluate(context);
+        }
+    }
+
+    public static final class Or extends BooleanNode {
+
+        private final BooleanNode subject;
+        private final BooleanNode rhs;
+
+        public Or(final BooleanNode subject, final BooleanNode rhs) {
+            this.subject = subject;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final boolean subjectValue = subject.evaluate(context);
+            if (!context.wasNull() && subjectValue) {
+                return context.booleanValue(true);
+            }
+
+            // the result of rhs, including whether or not it is null
+            return rhs.evaluate(context);
+        }
+    }
+
+    public static final class Not extends BooleanNode {
+
+        private final BooleanNode subject;
+
+        public Not(final BooleanNode subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public boolean evaluate(final EvaluationContext context) {
+            final boolean subjectValue = subject.evaluate(context);
+            if (context.wasNull()) {
+                return context.nullBoolean();
+            }
+            return context.booleanValue(!subjectValue);
+        }
+    }
+}
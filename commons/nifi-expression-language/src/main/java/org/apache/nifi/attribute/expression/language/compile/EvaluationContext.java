@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language.compile;
+
+import java.util.Map;
+
+/**
+ * Holds the state of a single evaluation of a compiled Expression. Number and
+ * Boolean nodes return primitives, so they report a <code>null</code> result
+ * through this context: every such node sets the flag before returning, and
+ * the caller checks {@link #wasNull()} immediately after the call, in the
+ * same way as <code>java.sql.ResultSet.wasNull()</code>.
+ *
+ * A context is not thread-safe and must not be shared between evaluations.
+ */
+public final class EvaluationContext {
+
+    private final Map<String, String> attributes;
+    private boolean wasNull = false;
+
+    public EvaluationContext(final Map<String, String> attributes) {
+        this.attributes = attributes;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return <code>true</code> if the last Number or Boolean node that was
+     * evaluated produced a <code>null</code> value
+     */
+    public boolean wasNull() {
+        return wasNull;
+    }
+
+    long numberValue(final long value) {
+        wasNull = false;
+        return value;
+    }
+
+    long nullNumber() {
+        wasNull = true;
+        return 0L;
+    }
+
+    boolean booleanValue(final boolean value) {
+        wasNull = false;
+        return value;
+    }
+
+    boolean nullBoolean() {
+        wasNull = true;
+        return false;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language.compile;
+
+import org.apache.nifi.attribute.expression.language.evaluation.DateEvaluator;
+import org.apache.nifi.expression.AttributeExpression.ResultType;
+
+/**
+ * Date values are not compiled. This node carries the interpreted Evaluator
+ * for a Date-typed sub-expression so that the enclosing function can convert
+ * it or fall back to the interpreter.
+ */
+public final class InterpretedDateNode extends CompiledNode {
+
+    private final DateEvaluator evaluator;
+
+    public InterpretedDateNode(final DateEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    public DateEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    @Override
+    public ResultType getResultType() {
+        return ResultType.DATE;
+    }
+}
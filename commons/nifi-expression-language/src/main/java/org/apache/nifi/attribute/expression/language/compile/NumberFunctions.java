@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language.compile;
+
+import java.util.regex.Pattern;
+
+import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
+
+/**
+ * Compiled forms of the functions that return a Number. Each node has the same
+ * semantics as the corresponding Evaluator in the
+ * <code>evaluation.functions</code> and <code>evaluation.cast</code>
+ * packages, but returns a primitive <code>long</code> and reports
+ * <code>null</code> through {@link EvaluationContext#wasNull()}.
+ */
+public final class NumberFunctions {
+
+    private NumberFunctions() {
+    }
+
+    public static final class Literal extends NumberNode {
+
+        private final long value;
+
+        public Literal(final long value) {
+            this.value = value;
+        }
+
+        @Override
+        public long evaluate(final EvaluationContext context) {
+            return context.numberValue(value);
+        }
+    }
+
+    public static final class Interpreted extends NumberNode {
+
+        private final Evaluator<Long> evaluator;
+
+        public Interpreted(final Evaluator<Long> evaluator) {
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        public long evaluate(final EvaluationContext context) {
+            final Long value = evaluator.evaluate(context.getAttributes()).getValue();
+            return value == null ? context.nullNumber() : context.numberValue(value);
+        }
+    }
+
+    /**
+     * Implicit conversion of a String to a Number
+     */
+    public static final class StringToNumber extends NumberNode {
+
+        private static final Pattern NUMBER_PATTERN = Pattern.compile("-?\\d+");
+
+        private final StringNode subject;
+
+        public StringToNumber(final StringNode subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public long evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return context.nullNumber();
+            }
+
+            final String trimmed = subjectValue.trim();
+            if (NUMBER_PATTERN.matcher(trimmed).matches()) {
+                return context.numberValue(Long.parseLong(trimmed));
+            }
+            return context.nullNumber();
+        }
+    }
+
+    /**
+     * The toNumber() function
+     */
+    public static final class ToNumber extends NumberNode {
+
+        private final StringNode subject;
+
+        public ToNumber(final StringNode subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public long evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null || subjectValue.trim().isEmpty()) {
+                return context.nullNumber();
+            }
+            return context.numberValue(Long.parseLong(subjectValue));
+        }
+    }
+
+    public static final class Length extends NumberNode {
+
+        private final StringNode subject;
+
+        public Length(final StringNode subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public long evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            return context.numberValue(subjectValue == null ? 0 : subjectValue.length());
+        }
+    }
+
+    public static final class IndexOf extends NumberNode {
+
+        private final StringNode subject;
+        private final StringNode search;
+
+        public IndexOf(final StringNode subject, final StringNode search) {
+            this.subject = subject;
+            this.search = search;
+        }
+
+        @Override
+        public long evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return context.numberValue(-1L);
+            }
+            return context.numberValue(subjectValue.indexOf(search.evaluate(context)));
+        }
+    }
+
+    public static final class LastIndexOf extends NumberNode {
+
+        private final StringNode subject;
+        private final StringNode search;
+
+        public LastIndexOf(final StringNode subject, final StringNode search) {
+            this.subject = subject;
+            this.search = search;
+        }
+
+        @Override
+        public long evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return context.numberValue(-1L);
+            }
+            return context.numberValue(subjectValue.lastIndexOf(search.evaluate(context)));
+        }
+    }
+
+    /**
+     * Base class for the arithmetic functions. If either operand is
+     * <code>null</code>, the result is <code>null</code>.
+     */
+    private abstract static class Arithmetic extends NumberNode {
+
+        private final NumberNode subject;
+        private final NumberNode operand;
+
+        Arithmetic(final NumberNode subject, final NumberNode operand) {
+            this.subject = subject;
+            this.operand = operand;
+        }
+
+        protected abstract long apply(long subjectValue, long operandValue);
+
+        @Override
+        public long evaluate(final EvaluationContext context) {
+            final long subjectValue = subject.evaluate(context);
+            if (context.wasNull()) {
+                return context.nullNumber();
+            }
+
+            final long operandValue = operand.evaluate(context);
+            if (context.wasNull()) {
+                return context.nullNumber();
+            }
+
+            return context.numberValue(apply(subjectValue, operandValue));
+        }
+    }
+
+    public static final class Plus extends Arithmetic {
+
+        public Plus(final NumberNode subject, final NumberNode operand) {
+            super(subject, operand);
+        }
+
+        @Override
+        protected long apply(final long subjectValue, final long operandValue) {
+            return subjectValue + operandValue;
+        }
+    }
+
+    public static final class Minus extends Arithmetic {
+
+        public Minus(final NumberNode subject, final NumberNode operand) {
+            super(subject, operand);
+        }
+
+        @Override
+        protected long apply(final long subjectValue, final long operandValue) {
+            return subjectValue - operandValue;
+        }
+    }
+
+    public static final class Multiply extends Arithmetic {
+
+        public Multiply(final NumberNode subject, final NumberNode operand) {
+            super(subject, operand);
+        }
+
+        @Override
+        protected long apply(final long subjectValue, final long operandValue) {
+            return subjectValue * operandValue;
+        }
+    }
+
+    public static final class Divide extends Arithmetic {
+
+        public Divide(final NumberNode subject, final NumberNode operand) {
+            super(subject, operand);
+        }
+
+        @Override
+        protected long apply(final long subjectValue, final long operandValue) {
+            return subjectValue / operandValue;
+        }
+    }
+
+    public static final class Mod extends Arithmetic {
+
+        public Mod(final NumberNode subject, final NumberNode operand) {
+            super(subject, operand);
+        }
+
+        @Override
+        protected long apply(final long subjectValue, final long operandValue) {
+            return subjectValue % operandValue;
+        }
+    }
+}
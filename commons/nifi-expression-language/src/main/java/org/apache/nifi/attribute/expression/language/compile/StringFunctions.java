@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language.compile;
+
+import java.util.regex.Pattern;
+
+import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
+import org.apache.nifi.attribute.expression.language.exception.AttributeExpressionLanguageException;
+
+/**
+ * Compiled forms of the functions that return a String. Each node has the same
+ * semantics as the corresponding Evaluator in the
+ * <code>evaluation.functions</code> package.
+ */
+public final class StringFunctions {
+
+    private StringFunctions() {
+    }
+
+    public static final class Literal extends StringNode {
+
+        private final String value;
+
+        public Literal(final String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            return value;
+        }
+    }
+
+    public static final class Attribute extends StringNode {
+
+        private final StringNode name;
+
+        public Attribute(final StringNode name) {
+            this.name = name;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            return context.getAttributes().get(name.evaluate(context));
+        }
+    }
+
+    public static final class NamedAttribute extends StringNode {
+
+        private final String name;
+
+        public NamedAttribute(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            return context.getAttributes().get(name);
+        }
+    }
+
+    public static final class NumberToString extends StringNode {
+
+        private final NumberNode subject;
+
+        public NumberToString(final NumberNode subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final long value = subject.evaluate(context);
+            return context.wasNull() ? null : String.valueOf(value);
+        }
+    }
+
+    public static final class BooleanToString extends StringNode {
+
+        private final BooleanNode subject;
+
+        public BooleanToString(final BooleanNode subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final boolean value = subject.evaluate(context);
+            return context.wasNull() ? null : String.valueOf(value);
+        }
+    }
+
+    public static final class Interpreted extends StringNode {
+
+        private final Evaluator<String> evaluator;
+
+        public Interpreted(final Evaluator<String> evaluator) {
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            return evaluator.evaluate(context.getAttributes()).getValue();
+        }
+    }
+
+    public static final class Trim extends StringNode {
+
+        private final StringNode subject;
+
+        public Trim(final StringNode subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            return subjectValue == null ? null : subjectValue.trim();
+        }
+    }
+
+    public static final class ToUpper extends StringNode {
+
+        private final StringNode subject;
+
+        public ToUpper(final StringNode subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            return subjectValue == null ? null : subjectValue.toUpperCase();
+        }
+    }
+
+    public static final class ToLower extends StringNode {
+
+        private final StringNode subject;
+
+        public ToLower(final StringNode subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            return subjectValue == null ? null : subjectValue.toLowerCase();
+        }
+    }
+
+    public static final class Append extends StringNode {
+
+        private final StringNode subject;
+        private final StringNode append;
+
+        public Append(final StringNode subject, final StringNode append) {
+            this.subject = subject;
+            this.append = append;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            final String appendValue = append.evaluate(context);
+            return (subjectValue == null ? "" : subjectValue) + (appendValue == null ? "" : appendValue);
+        }
+    }
+
+    public static final class Prepend extends StringNode {
+
+        private final StringNode subject;
+        private final StringNode prepend;
+
+        public Prepend(final StringNode subject, final StringNode prepend) {
+            this.subject = subject;
+            this.prepend = prepend;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            final String prependValue = prepend.evaluate(context);
+            return (prependValue == null ? "" : prependValue) + (subjectValue == null ? "" : subjectValue);
+        }
+    }
+
+    public static final class SubstringBefore extends StringNode {
+
+        private final StringNode subject;
+        private final StringNode before;
+
+        public SubstringBefore(final StringNode subject, final StringNode before) {
+            this.subject = subject;
+            this.before = before;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return "";
+            }
+            final String beforeValue = before.evaluate(context);
+            if (beforeValue == null || beforeValue.length() == 0) {
+                return subjectValue;
+            }
+            final int index = subjectValue.indexOf(beforeValue);
+            return index < 0 ? subjectValue : subjectValue.substring(0, index);
+        }
+    }
+
+    public static final class SubstringBeforeLast extends StringNode {
+
+        private final StringNode subject;
+        private final StringNode before;
+
+        public SubstringBeforeLast(final StringNode subject, final StringNode before) {
+            this.subject = subject;
+            this.before = before;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return "";
+            }
+            final int index = subjectValue.lastIndexOf(before.evaluate(context));
+            return index < 0 ? subjectValue : subjectValue.substring(0, index);
+        }
+    }
+
+    public static final class SubstringAfter extends StringNode {
+
+        private final StringNode subject;
+        private final StringNode after;
+
+        public SubstringAfter(final StringNode subject, final StringNode after) {
+            this.subject = subject;
+            this.after = after;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return "";
+            }
+            final String afterValue = after.evaluate(context);
+            if (afterValue == null || afterValue.length() == 0) {
+                return subjectValue;
+            }
+            final int index = subjectValue.indexOf(afterValue);
+            return index < 0 ? subjectValue : subjectValue.substring(index + afterValue.length());
+        }
+    }
+
+    public static final class SubstringAfterLast extends StringNode {
+
+        private final StringNode subject;
+        private final StringNode after;
+
+        public SubstringAfterLast(final StringNode subject, final StringNode after) {
+            this.subject = subject;
+            this.after = after;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return "";
+            }
+            final String afterValue = after.evaluate(context);
+            final int index = subjectValue.lastIndexOf(afterValue);
+            if (index < 0 || index >= subjectValue.length()) {
+                return subjectValue;
+            }
+            return subjectValue.substring(index + afterValue.length());
+        }
+    }
+
+    public static final class Substring extends StringNode {
+
+        private final StringNode subject;
+        private final NumberNode startIndex;
+        private final NumberNode endIndex;
+
+        public Substring(final StringNode subject, final NumberNode startIndex, final NumberNode endIndex) {
+            this.subject = subject;
+            this.startIndex = startIndex;
+            this.endIndex = endIndex;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return "";
+            }
+
+            final int startIndexValue = (int) startIndex.evaluate(context);
+            if (context.wasNull()) {
+                throw new AttributeExpressionLanguageException("Cannot evaluate substring() because its start index is null");
+            }
+            if (endIndex == null) {
+                return subjectValue.substring(startIndexValue);
+            }
+
+            final int endIndexValue = (int) endIndex.evaluate(context);
+            if (context.wasNull()) {
+                throw new AttributeExpressionLanguageException("Cannot evaluate substring() because its end index is null");
+            }
+            return subjectValue.substring(startIndexValue, endIndexValue);
+        }
+    }
+
+    public static final class Replace extends StringNode {
+
+        private final StringNode subject;
+        private final StringNode search;
+        private final StringNode replacement;
+
+        public Replace(final StringNode subject, final StringNode search, final StringNode replacement) {
+            this.subject = subject;
+            this.search = search;
+            this.replacement = replacement;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return null;
+            }
+            return subjectValue.replace(search.evaluate(context), replacement.evaluate(context));
+        }
+    }
+
+    public static final class ReplaceAll extends StringNode {
+
+        private final StringNode subject;
+        private final StringNode search;
+        private final StringNode replacement;
+        private final Pattern compiledPattern;
+
+        public ReplaceAll(final StringNode subject, final StringNode search, final StringNode replacement) {
+            this.subject = subject;
+            this.search = search;
+            this.replacement = replacement;
+            this.compiledPattern = (search instanceof Literal) ? Pattern.compile(((Literal) search).getValue()) : null;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return null;
+            }
+            final Pattern pattern = (compiledPattern == null) ? Pattern.compile(search.evaluate(context)) : compiledPattern;
+            return pattern.matcher(subjectValue).replaceAll(replacement.evaluate(context));
+        }
+    }
+
+    public static final class ReplaceNull extends StringNode {
+
+        private final StringNode subject;
+        private final StringNode replacement;
+
+        public ReplaceNull(final StringNode subject, final StringNode replacement) {
+            this.subject = subject;
+            this.replacement = replacement;
+        }
+
+        @Override
+        public String evaluate(final EvaluationContext context) {
+            final String subjectValue = subject.evaluate(context);
+            return subjectValue == null ? replacement.evaluate(context) : subjectValue;
+        }
+    }
+}
@@ -17,11 +17,13 @@
 package org.apache.nifi.attribute.expression.language.evaluation.functions;
 
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
 import org.apache.nifi.attribute.expression.language.evaluation.QueryResult;
 import org.apache.nifi.attribute.expression.language.evaluation.StringEvaluator;
 import org.apache.nifi.attribute.expression.language.evaluation.StringQueryResult;
+import org.apache.nifi.attribute.expression.language.evaluation.literals.StringLiteralEvaluator;
 
 public class ReplaceAllEvaluator extends StringEvaluator {
 
@@ -29,10 +31,20 @@ public class ReplaceAllEvaluator extends StringEvaluator {
     private final StringEvaluator search;
     private final StringEvaluator replacement;
 
+    private final Pattern compiledPattern;
+
     public ReplaceAllEvaluator(final StringEvaluator subject, final StringEvaluator search, final StringEvaluator replacement) {
         this.subject = subject;
         this.search = search;
         this.replacement = replacement;
+
+        // if the search string is a literal, we don't need to evaluate it each time; we can just
+        // pre-compile it. Otherwise, it must be compiled every time.
+        if (search instanceof StringLiteralEvaluator) {
+            this.compiledPattern = Pattern.compile(search.evaluate(null).getValue());
+        } else {
+            this.compiledPattern = null;
+        }
     }
 
     @Override
@@ -41,10 +53,15 @@ public class ReplaceAllEvaluator extends StringEvaluator {
         if (subjectValue == null) {
             return new StringQueryResult(null);
         }
-        final String searchValue = search.evaluate(attributes).getValue();
-        final String replacementValue = replacement.evaluate(attributes).getValue();
+        final Pattern pattern;
+        if (compiledPattern == null) {
+            pattern = Pattern.compile(search.evaluate(attributes).getValue());
+        } else {
+            pattern = compiledPattern;
+        }
 
-        return new StringQueryResult(subjectValue.replaceAll(searchValue, replacementValue));
+        final String replacementValue = replacement.evaluate(attributes).getValue();
+        return new StringQueryResult(pattern.matcher(subjectValue).replaceAll(replacementValue));
     }
 
     @Override
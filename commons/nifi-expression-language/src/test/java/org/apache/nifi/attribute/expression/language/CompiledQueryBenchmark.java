@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares interpreted and compiled evaluation of a PreparedQuery for
+ * Expressions dominated by String, Number, and Boolean functions.
+ *
+ * This is not run as part of the build. Build the benchmark harness with
+ * <code>mvn clean test-compile -Pbenchmark</code> and then run
+ * {@link #main(String[])} with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class CompiledQueryBenchmark {
+
+    @Param({
+        "${filename:toUpper():substringBefore('.'):append('-'):append(${path:substringAfterLast('/')})}",
+        "${fileSize:toNumber():plus(512):divide(1024):multiply(${count}):mod(7)}",
+        "${fileSize:gt(1024):and(${filename:endsWith('.txt')}):or(${filename:isNull()}):not()}"
+    })
+    private String expression;
+
+    private Map<String, String> attributes;
+    private PreparedQuery interpreted;
+    private PreparedQuery compiled;
+
+    @Setup
+    public void setup() {
+        attributes = new HashMap<>();
+        attributes.put("filename", "data-00001.txt");
+        attributes.put("fileSize", "4096");
+        attributes.put("count", "12");
+        attributes.put("path", "./in/2014/11");
+        attributes.put("uuid", "4a2b3c4d-0000-1111-2222-333344445555");
+
+        interpreted = Query.prepare(expression, false);
+        compiled = Query.prepare(expression, true);
+    }
+
+    @Benchmark
+    public String interpreted() {
+        return interpreted.evaluateExpressions(attributes, null);
+    }
+
+    @Benchmark
+    public String compiled() {
+        return compiled.evaluateExpressions(attributes, null);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CompiledQueryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.runtime.tree.Tree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the per-FlowFile cost of evaluating an Expression by re-building its
+ * Evaluators from the parsed Tree on every evaluation against evaluating a
+ * PreparedQuery whose Evaluators were built once, when the query was prepared.
+ *
+ * This is not run as part of the build. Build the benchmark harness with
+ * <code>mvn clean test-compile -Pbenchmark</code> and then run
+ * {@link #main(String[])} with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class PreparedQueryBenchmark {
+
+    @Param({
+        "${filename}",
+        "${filename:toUpper():substringBefore('.'):append('-'):append(${fileSize})}",
+        "${filename:matches('.*[.]txt')}",
+        "${filename:replaceAll('[.]txt$', '.csv')}",
+        "${fileSize:toNumber():gt(1024):and(${filename:endsWith('.txt')})}"
+    })
+    private String expression;
+
+    private Map<String, String> attributes;
+    private Tree tree;
+    private PreparedQuery preparedQuery;
+
+    @Setup
+    public void setup() {
+        attributes = new HashMap<>();
+        attributes.put("filename", "data-00001.txt");
+        attributes.put("fileSize", "4096");
+        attributes.put("path", "./");
+        attributes.put("uuid", "4a2b3c4d-0000-1111-2222-333344445555");
+
+        tree = Query.compileTree(expression);
+        preparedQuery = Query.prepare(expression);
+    }
+
+    @Benchmark
+    public String rebuildEvaluatorsPerEvaluation() {
+        return Query.evaluateExpression(tree, expression, attributes, null);
+    }
+
+    @Benchmark
+    public String preparedQuery() {
+        return preparedQuery.evaluateExpressions(attributes, null);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PreparedQueryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
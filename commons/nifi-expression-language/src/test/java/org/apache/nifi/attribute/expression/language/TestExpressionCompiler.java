@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TestExpressionCompiler {
+
+    private static final String[] EXPRESSIONS = {
+        "${attr}",
+        "${missing}",
+        "${'attr'}",
+        "${${indirect}}",
+        "${attr:trim():toUpper()}",
+        "${attr:toLower():append('.txt'):prepend('/tmp/')}",
+        "${filename:substringBefore('.')}",
+        "${filename:substringBeforeLast('.')}",
+        "${filename:substringAfter('.')}",
+        "${filename:substringAfterLast('.')}",
+        "${filename:substring(2)}",
+        "${filename:substring(2, 5)}",
+        "${filename:substring(${start}, ${end})}",
+        "${filename:substring(${missing})}",
+        "${filename:replace('.', '_')}",
+        "${filename:replaceAll('[.]txt$', '.csv')}",
+        "${filename:replaceAll(${regex}, '_')}",
+        "${missing:replaceNull('default')}",
+        "${filename:replaceNull('default')}",
+        "${filename:length()}",
+        "${filename:indexOf('.')}",
+        "${filename:lastIndexOf('.')}",
+        "${number:toNumber():plus(5):multiply(3):minus(1)}",
+        "${number:toNumber():divide(2)}",
+        "${number:toNumber():mod(5)}",
+        "${number:plus(1)}",
+        "${missing:toNumber():plus(1)}",
+        "${empty:toNumber()}",
+        "${attr:length():plus(${number})}",
+        "${number:toNumber():divide(0)}",
+        "${number:gt(10)}",
+        "${number:ge(42)}",
+        "${number:lt(50)}",
+        "${number:le(41)}",
+        "${missing:gt(10)}",
+        "${number:equals(42)}",
+        "${number:toNumber():equals(42)}",
+        "${number:toNumber():equals(${number})}",
+        "${flag:equals(true)}",
+        "${flag:toString():equals('true')}",
+        "${attr:equals('hello')}",
+        "${attr:equalsIgnoreCase('HELLO')}",
+        "${missing:equals('hello')}",
+        "${attr:startsWith('he')}",
+        "${attr:endsWith('lo')}",
+        "${attr:contains('ll')}",
+        "${missing:contains('ll')}",
+        "${filename:matches('.*[.]txt')}",
+        "${filename:find('txt')}",
+        "${filename:matches(${regex})}",
+        "${missing:isNull()}",
+        "${attr:isNull()}",
+        "${missing:notNull()}",
+        "${attr:notNull()}",
+        "${flag:and(${attr:equals('hello')})}",
+        "${flag:or(${missing:equals('x')})}",
+        "${missing:equals('x'):or(${attr:isNull()})}",
+        "${attr:isNull():not()}",
+        "${missing:gt(1):not()}",
+        "${missing:gt(1):and(true)}",
+        "${missing:gt(1):or(false)}",
+        "${attr:equals('hello'):and(${number:gt(40)}):or(${flag})}",
+        "${flag:not()}",
+        "${attr:append(${number:plus(1)})}",
+        "${attr:append(${attr:length():gt(3)})}",
+        "${attr:append('${number}')}",
+        "${date:toDate('yyyy/MM/dd'):format('yyyy-MM-dd')}",
+        "${date:toDate('yyyy/MM/dd'):toNumber():plus(1)}",
+        "${date:toDate('yyyy/MM/dd'):toNumber():gt(0)}",
+        "${attr:urlEncode():append('!')}",
+        "${attr:substringAfter(${missing})}",
+        "${now():toNumber():gt(0)}",
+        "${attr:length():toString():length()}",
+    };
+
+    @Test
+    public void testCompiledMatchesInterpreted() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("attr", "hello");
+        attributes.put("indirect", "attr");
+        attributes.put("filename", "my.data.file.txt");
+        attributes.put("number", "42");
+        attributes.put("empty", "");
+        attributes.put("flag", "true");
+        attributes.put("start", "3");
+        attributes.put("end", "7");
+        attributes.put("regex", "[aeiou]");
+        attributes.put("date", "2014/11/25");
+
+        for (final String expression : EXPRESSIONS) {
+            // the compiled Expression must fail wherever the interpreter fails, though not necessarily with the same exception
+            final String interpreted;
+            try {
+                interpreted = Query.prepare(expression, false).evaluateExpressions(attributes, null);
+            } catch (final RuntimeException e) {
+                try {
+                    Query.prepare(expression, true).evaluateExpressions(attributes, null);
+                    fail("Interpreter failed to evaluate " + expression + " but compiled Expression succeeded");
+                } catch (final RuntimeException expected) {
+                }
+                continue;
+            }
+
+            final String compiled = Query.prepare(expression, true).evaluateExpressions(attributes, null);
+            assertEquals(expression, interpreted, compiled);
+        }
+    }
+
+    @Test
+    public void testCompileFallsBackForMultiAttributeReferences() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("abc", "a");
+        attributes.put("abd", "a");
+
+        assertEquals("true", Query.prepare("${allMatchingAttributes('ab.*'):equals('a')}", true).evaluateExpressions(attributes, null));
+        assertEquals("false", Query.prepare("${anyAttribute('abc', 'abd'):equals('b')}", true).evaluateExpressions(attributes, null));
+    }
+
+    @Test
+    public void testCompilesCommonFunctions() {
+        assertNotNull(ExpressionCompiler.compile(Query.compileTree("${filename:substringAfterLast('.'):toUpper()}")));
+        assertNotNull(ExpressionCompiler.compile(Query.compileTree("${fileSize:toNumber():gt(1024):and(${filename:endsWith('.txt')})}")));
+        assertNotNull(ExpressionCompiler.compile(Query.compileTree("${attr:format('yyyy')}")));
+    }
+
+    @Test
+    public void testPrepareDefaultsToInterpreter() {
+        assertNull(System.getProperty(Query.COMPILE_PROPERTY));
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("attr", "hello");
+        assertEquals("HELLO", Query.prepare("${attr:toUpper()}").evaluateExpressions(attributes, null));
+    }
+}
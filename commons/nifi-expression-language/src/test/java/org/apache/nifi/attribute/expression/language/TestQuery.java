@@ -252,6 +252,29 @@ public class TestQuery {
     }
     
     
+    @Test
+    public void testFlowFilePropertiesAndSystemProperties() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("attr", "My Value");
+        attributes.put("entryDate", "overridden");
+
+        final FlowFile mockFlowFile = Mockito.mock(FlowFile.class);
+        Mockito.when(mockFlowFile.getAttributes()).thenReturn(attributes);
+        Mockito.when(mockFlowFile.getId()).thenReturn(42L);
+        Mockito.when(mockFlowFile.getSize()).thenReturn(1024L);
+        Mockito.when(mockFlowFile.getEntryDate()).thenReturn(1000L);
+        Mockito.when(mockFlowFile.getLineageStartDate()).thenReturn(2000L);
+
+        System.setProperty("nifi.test.expression.property", "sysprop");
+        try {
+            assertEquals("My Value 42 1024 overridden 2000 sysprop", Query.evaluateExpressions(
+                    "${attr} ${flowFileId} ${fileSize} ${entryDate} ${lineageStartDate} ${nifi.test.expression.property}", mockFlowFile));
+            assertEquals("", Query.evaluateExpressions("${fileSize}"));
+        } finally {
+            System.clearProperty("nifi.test.expression.property");
+        }
+    }
+
     @Test
     public void testGetAttributeValue() {
         final Map<String, String> attributes = new HashMap<>();
@@ -18,9 +18,12 @@ package org.apache.nifi.attribute.expression.language;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -84,6 +87,66 @@ public class TestStandardPreparedQuery {
 
     }
     
+    @Test
+    public void testPreparedQueryReusedForDifferentAttributes() {
+        final StandardPreparedQuery prepared = (StandardPreparedQuery) Query.prepare("${filename:replaceAll('[.]txt$', '.csv'):toUpper()} is ${fileSize:gt(10)}");
+
+        final Map<String, String> attrs = new HashMap<>();
+        attrs.put("filename", "abc.txt");
+        attrs.put("fileSize", "5");
+        assertEquals("ABC.CSV is false", prepared.evaluateExpressions(attrs, null));
+
+        attrs.put("filename", "xyz.txt");
+        attrs.put("fileSize", "50");
+        assertEquals("XYZ.CSV is true", prepared.evaluateExpressions(attrs, null));
+    }
+
+    @Test
+    public void testMultiAttributeReferenceEvaluatedRepeatedly() {
+        final StandardPreparedQuery prepared = (StandardPreparedQuery) Query.prepare("${anyAttribute('abc', 'xyz'):equals('b')}");
+
+        final Map<String, String> attrs = new HashMap<>();
+        attrs.put("abc", "a");
+        attrs.put("xyz", "b");
+        for (int i = 0; i < 3; i++) {
+            assertEquals("true", prepared.evaluateExpressions(attrs, null));
+        }
+
+        attrs.put("xyz", "c");
+        assertEquals("false", prepared.evaluateExpressions(attrs, null));
+    }
+
+    @Test
+    public void testConcurrentEvaluation() throws InterruptedException {
+        final StandardPreparedQuery prepared = (StandardPreparedQuery) Query.prepare("${xx:substringBefore('-'):matches('[a-z]+')}-${xx:substringAfter('-')}");
+        final AtomicInteger failures = new AtomicInteger(0);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int threadIndex = t;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final Map<String, String> attrs = new HashMap<>();
+                    for (int i = 0; i < 10000; i++) {
+                        attrs.put("xx", "thread-" + threadIndex + "." + i);
+                        if (!("true-" + threadIndex + "." + i).equals(prepared.evaluateExpressions(attrs, null))) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, failures.get());
+    }
+
     private String evaluate(final String query, final Map<String, String> attrs) {
         final String evaluated = ((StandardPreparedQuery) Query.prepare(query)).evaluateExpressions(attrs, null);
         return evaluated;
@@ -27,9 +27,12 @@ import java.net.InetSocketAddress;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 public class NiFiProperties extends Properties {
 
@@ -62,6 +65,9 @@ public class NiFiProperties extends Properties {
     public static final String SITE_TO_SITE_SECURE = "nifi.remote.input.secure";
     public static final String TEMPLATE_DIRECTORY = "nifi.templates.directory";
     public static final String ADMINISTRATIVE_YIELD_DURATION = "nifi.administrative.yield.duration";
+    public static final String PROCESSOR_SCHEDULING_PARK_IDLE = "nifi.processor.scheduling.park.idle";
+    public static final String PROCESSOR_SCHEDULING_MAX_PARK_DURATION = "nifi.processor.scheduling.park.max.duration";
+    public static final String PROCESSOR_SCHEDULING_ENGINE = "nifi.processor.scheduling.engine";
     public static final String PERSISTENT_STATE_DIRECTORY = "nifi.persistent.state.directory";
 
     // content repository properties
@@ -74,16 +80,22 @@ public class NiFiProperties extends Properties {
     public static final String CONTENT_ARCHIVE_BACK_PRESSURE_PERCENTAGE = "nifi.content.repository.archive.backpressure.percentage";
     public static final String CONTENT_ARCHIVE_ENABLED = "nifi.content.repository.archive.enabled";
     public static final String CONTENT_ARCHIVE_CLEANUP_FREQUENCY = "nifi.content.repository.archive.cleanup.frequency";
+    public static final String CONTENT_REPOSITORY_READ_MODE = "nifi.content.repository.read.mode";
+    public static final String CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE = "nifi.content.repository.read.channel.cache.size";
+    public static final String CONTENT_REPOSITORY_CONTAINER_SELECTOR = "nifi.content.repository.container.selector";
     public static final String CONTENT_VIEWER_URL = "nifi.content.viewer.url";
 
     // flowfile repository properties
     public static final String FLOWFILE_REPOSITORY_IMPLEMENTATION = "nifi.flowfile.repository.implementation";
     public static final String FLOWFILE_REPOSITORY_ALWAYS_SYNC = "nifi.flowfile.repository.always.sync";
+    public static final String FLOWFILE_REPOSITORY_GROUP_COMMIT_WINDOW = "nifi.flowfile.repository.group.commit.window";
     public static final String FLOWFILE_REPOSITORY_DIRECTORY = "nifi.flowfile.repository.directory";
     public static final String FLOWFILE_REPOSITORY_PARTITIONS = "nifi.flowfile.repository.partitions";
     public static final String FLOWFILE_REPOSITORY_CHECKPOINT_INTERVAL = "nifi.flowfile.repository.checkpoint.interval";
+    public static final String FLOWFILE_REPOSITORY_RECOVERY_THREADS = "nifi.flowfile.repository.recovery.threads";
     public static final String FLOWFILE_SWAP_MANAGER_IMPLEMENTATION = "nifi.swap.manager.implementation";
     public static final String QUEUE_SWAP_THRESHOLD = "nifi.queue.swap.threshold";
+    public static final String QUEUE_CONCURRENT_CONNECTIONS = "nifi.queue.concurrent.connections";
     public static final String SWAP_STORAGE_LOCATION = "nifi.swap.storage.directory";
     public static final String SWAP_IN_THREADS = "nifi.swap.in.threads";
     public static final String SWAP_IN_PERIOD = "nifi.swap.in.period";
@@ -99,9 +111,12 @@ public class NiFiProperties extends Properties {
     public static final String PROVENANCE_ROLLOVER_SIZE = "nifi.provenance.repository.rollover.size";
     public static final String PROVENANCE_QUERY_THREAD_POOL_SIZE = "nifi.provenance.repository.query.threads";
     public static final String PROVENANCE_COMPRESS_ON_ROLLOVER = "nifi.provenance.repository.compress.on.rollover";
+    public static final String PROVENANCE_COMPRESSION_BLOCK_SIZE = "nifi.provenance.repository.compression.block.size";
     public static final String PROVENANCE_INDEXED_FIELDS = "nifi.provenance.repository.indexed.fields";
     public static final String PROVENANCE_INDEXED_ATTRIBUTES = "nifi.provenance.repository.indexed.attributes";
     public static final String PROVENANCE_INDEX_SHARD_SIZE = "nifi.provenance.repository.index.shard.size";
+    public static final String PROVENANCE_REALTIME_INDEXING = "nifi.provenance.repository.index.realtime";
+    public static final String PROVENANCE_REALTIME_INDEX_QUEUE_SIZE = "nifi.provenance.repository.index.realtime.queue.size";
     public static final String PROVENANCE_JOURNAL_COUNT = "nifi.provenance.repository.journal.count";
 
     // component status repository properties
@@ -190,6 +205,9 @@ public class NiFiProperties extends Properties {
     public static final String DEFAULT_FLOWFILE_REPO_PARTITIONS = "256";
     public static final String DEFAULT_FLOWFILE_CHECKPOINT_INTERVAL = "2 min";
     public static final int DEFAULT_MAX_FLOWFILES_PER_CLAIM = 100;
+    public static final String DEFAULT_CONTENT_REPOSITORY_READ_MODE = "stream";
+    public static final int DEFAULT_CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE = 100;
+    public static final String DEFAULT_CONTENT_REPOSITORY_CONTAINER_SELECTOR = "round-robin";
     public static final int DEFAULT_QUEUE_SWAP_THRESHOLD = 20000;
     public static final String DEFAULT_SWAP_STORAGE_LOCATION = "./flowfile_repository/swap";
     public static final String DEFAULT_SWAP_IN_PERIOD = "1 sec";
@@ -197,6 +215,8 @@ public class NiFiProperties extends Properties {
     public static final int DEFAULT_SWAP_IN_THREADS = 4;
     public static final int DEFAULT_SWAP_OUT_THREADS = 4;
     public static final String DEFAULT_ADMINISTRATIVE_YIELD_DURATION = "30 sec";
+    public static final String DEFAULT_PROCESSOR_SCHEDULING_MAX_PARK_DURATION = "1 sec";
+    public static final String DEFAULT_PROCESSOR_SCHEDULING_ENGINE = "standard";
     public static final String DEFAULT_PERSISTENT_STATE_DIRECTORY = "./conf/state";
     public static final String DEFAULT_COMPONENT_STATUS_SNAPSHOT_FREQUENCY = "5 mins";
 
@@ -314,6 +334,29 @@ public class NiFiProperties extends Properties {
         }
     }
 
+    /**
+     * Returns the identifiers of the Connections whose FlowFile Queue should
+     * be a lock-free FIFO queue instead of the standard prioritized queue. A
+     * listed Connection that has Prioritizers is still given the standard
+     * queue. The value is a comma-separated list of Connection identifiers.
+     *
+     * @return the identifiers, or an empty set if none are configured
+     */
+    public Set<String> getConcurrentQueueConnectionIds() {
+        final String value = getProperty(QUEUE_CONCURRENT_CONNECTIONS);
+        if (StringUtils.isBlank(value)) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> ids = new HashSet<>();
+        for (final String id : value.split(",")) {
+            if (!StringUtils.isBlank(id)) {
+                ids.add(id.trim());
+            }
+        }
+        return ids;
+    }
+
     public File getSwapStorageLocation() {
         final String location = getProperty(SWAP_STORAGE_LOCATION);
         if (location == null) {
@@ -365,6 +408,45 @@ public class NiFiProperties extends Properties {
         return getProperty(ADMINISTRATIVE_YIELD_DURATION, DEFAULT_ADMINISTRATIVE_YIELD_DURATION);
     }
 
+    /**
+     * Indicates whether Timer-Driven Processors that have no work to do should
+     * be parked until one of their connections changes, rather than being
+     * triggered again after their scheduling period.
+     *
+     * @return true if idle Processors should be parked, false by default
+     */
+    public boolean isProcessorSchedulingParkIdle() {
+        return Boolean.parseBoolean(getProperty(PROCESSOR_SCHEDULING_PARK_IDLE));
+    }
+
+    /**
+     * @return the longest a parked Processor waits before it checks for work
+     * again on its own
+     */
+    public String getProcessorSchedulingMaxParkDuration() {
+        final String value = getProperty(PROCESSOR_SCHEDULING_MAX_PARK_DURATION);
+        if (StringUtils.isBlank(value)) {
+            return DEFAULT_PROCESSOR_SCHEDULING_MAX_PARK_DURATION;
+        }
+        return value;
+    }
+
+    /**
+     * The engine that runs Timer-Driven and CRON-Driven components: either
+     * <code>standard</code>, a scheduled thread pool with a single shared
+     * queue, or <code>work-stealing</code>, which gives each thread its own
+     * queue and shares threads fairly between components.
+     *
+     * @return the name of the engine, <code>standard</code> by default
+     */
+    public String getProcessorSchedulingEngine() {
+        final String value = getProperty(PROCESSOR_SCHEDULING_ENGINE);
+        if (StringUtils.isBlank(value)) {
+            return DEFAULT_PROCESSOR_SCHEDULING_ENGINE;
+        }
+        return value.trim();
+    }
+
     /**
      * The socket port to listen on for a Remote Input Port.
      *
@@ -441,6 +523,18 @@ public class NiFiProperties extends Properties {
         return getProperty(FLOWFILE_REPOSITORY_CHECKPOINT_INTERVAL, DEFAULT_FLOWFILE_CHECKPOINT_INTERVAL);
     }
 
+    /**
+     * Returns the number of threads that should be used to recover the
+     * FlowFile Repository and the Swap Files on startup. Defaults to the
+     * number of available processors.
+     *
+     * @return
+     */
+    public int getFlowFileRepositoryRecoveryThreads() {
+        final int threads = getIntegerProperty(FLOWFILE_REPOSITORY_RECOVERY_THREADS, Runtime.getRuntime().availableProcessors());
+        return Math.max(1, threads);
+    }
+
     /**
      * @return the restore directory or null if not configured
      */
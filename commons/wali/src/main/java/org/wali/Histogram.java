@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wali;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A simple, thread-safe histogram of non-negative <code>long</code> values.
+ * Recording a value requires no locking and no allocation.
+ * </p>
+ *
+ * <p>
+ * Values are counted in buckets whose upper bounds are powers of two: bucket 0
+ * holds the value 0, bucket 1 holds the value 1, bucket 2 holds the values 2
+ * and 3, bucket 3 holds the values 4 through 7, and so on. As a result, the
+ * percentiles that are reported are accurate only to within a factor of two,
+ * which is sufficient for tuning purposes.
+ * </p>
+ */
+public final class Histogram {
+
+    private static final int NUM_BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong(0L);
+    private final AtomicLong sum = new AtomicLong(0L);
+    private final AtomicLong max = new AtomicLong(0L);
+
+    /**
+     * Records the given value. Negative values are recorded as 0.
+     *
+     * @param value
+     */
+    public void record(final long value) {
+        final long normalized = Math.max(0L, value);
+        buckets.incrementAndGet(getBucketIndex(normalized));
+        count.incrementAndGet();
+        sum.addAndGet(normalized);
+
+        long currentMax;
+        do {
+            currentMax = max.get();
+        } while (normalized > currentMax && !max.compareAndSet(currentMax, normalized));
+    }
+
+    private static int getBucketIndex(final long value) {
+        return value == 0L ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long getBucketUpperBound(final int bucketIndex) {
+        if (bucketIndex == 0) {
+            return 0L;
+        }
+        if (bucketIndex >= NUM_BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return (1L << bucketIndex) - 1;
+    }
+
+    /**
+     * @return the number of values that have been recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the sum of all values that have been recorded
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * @return the largest value that has been recorded, or 0 if no value has
+     * been recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of all values that have been recorded, or 0 if no value
+     * has been recorded
+     */
+    public double getMean() {
+        final long numValues = count.get();
+        return numValues == 0L ? 0D : (double) sum.get() / numValues;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile of the values that have
+     * been recorded. That is, at least <code>percentile</code> percent of the
+     * values recorded are less than or equal to the value returned.
+     *
+     * @param percentile a value between 0 and 100
+     * @return an upper bound for the given percentile, or 0 if no value has
+     * been recorded
+     */
+    public long getPercentile(final double percentile) {
+        if (percentile < 0D || percentile > 100D) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100 but was " + percentile);
+        }
+
+        final long[] counts = getBucketCounts();
+        long total = 0L;
+        for (final long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+
+        final long threshold = (long) Math.ceil(total * percentile / 100D);
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= threshold && seen > 0L) {
+                return Math.min(getBucketUpperBound(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * @return the number of values that have been recorded in each bucket,
+     * where the bucket at index <code>i</code> holds values no greater than
+     * <code>2<sup>i</sup> - 1</code>
+     */
+    public long[] getBucketCounts() {
+        final long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram[count=" + getCount() + ", mean=" + String.format("%.1f", getMean()) + ", p50=" + getPercentile(50D)
+                + ", p90=" + getPercentile(90D) + ", p99=" + getPercentile(99D) + ", max=" + getMax() + "]";
+    }
+}
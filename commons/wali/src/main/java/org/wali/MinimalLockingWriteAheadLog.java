@@ -18,6 +18,8 @@ package org.wali;
 
 import static java.util.Objects.requireNonNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -45,14 +47,23 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -104,10 +115,43 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
     private volatile boolean updated = false;
     private volatile boolean recovered = false;
 
+    // While a checkpoint is writing the snapshot, this map holds the value that each Record had when the
+    // checkpoint began, for every Record that has been updated since, so that the snapshot can be written
+    // without copying the entire record map while holding the write lock. It is null when no checkpoint is
+    // writing a snapshot.
+    private volatile ConcurrentMap<Object, Object> checkpointPreImages = null;
+    private static final Object NO_PRE_IMAGE = new Object(); // Record did not exist when the checkpoint began
+    private static final Object CHECKPOINTED = new Object(); // Record has already been written to the snapshot
+
+    private final long groupCommitWindowNanos;
+    private final Histogram commitsPerSync = new Histogram();
+    private final Histogram syncLatencyNanos = new Histogram();
+
+    private final AtomicLong checkpointCount = new AtomicLong(0L);
+    private volatile long lastCheckpointNanos = -1L;
+    private volatile long lastCheckpointLockNanos = -1L;
+    private volatile long maxCheckpointLockNanos = -1L;
+
+    // Snapshots are written in blocks of records that can each be deserialized independently of one another,
+    // so that recovery can spread the work of deserializing the snapshot across multiple threads
+    private static final int SNAPSHOT_BLOCK_SIZE = 10000;
+    private final int recoveryThreads;
+    private volatile long snapshotRecoveryNanos = -1L;
+    private volatile long journalRecoveryNanos = -1L;
+
     public MinimalLockingWriteAheadLog(final Path path, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener) throws IOException {
         this(new TreeSet<>(Collections.singleton(path)), partitionCount, serde, syncListener);
     }
 
+    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener) throws IOException {
+        this(paths, partitionCount, serde, syncListener, -1L, TimeUnit.NANOSECONDS);
+    }
+
+    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener,
+            final long groupCommitWindow, final TimeUnit groupCommitWindowUnit) throws IOException {
+        this(paths, partitionCount, serde, syncListener, groupCommitWindow, groupCommitWindowUnit, 1);
+    }
+
     /**
      *
      * @param paths a sorted set of Paths to use for the partitions/journals and
@@ -120,11 +164,33 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
      *
      * @param serde
      * @param syncListener
+     *
+     * @param groupCommitWindow if negative, each update that is to be synced
+     * to disk syncs its partition while holding the partition's lock.
+     * Otherwise, group commit is enabled: the partition is unlocked after the
+     * update is written, and concurrent updates to the same partition share a
+     * single sync. The first update to require a sync waits up to this amount
+     * of time for other updates to join it before syncing the partition. Each
+     * update still waits until its data has been synced before returning.
+     *
+     * @param groupCommitWindowUnit the unit of the groupCommitWindow
+     *
+     * @param recoveryThreads the number of threads to use when recovering
+     * records. If greater than 1, the blocks of the snapshot are deserialized
+     * concurrently, and the partitions concurrently skip over the transactions
+     * that are already reflected in the snapshot, so the SerDe must be able to
+     * deserialize from multiple streams at once. Transactions that are not in
+     * the snapshot are always replayed in order by a single thread, as an edit
+     * is merged with the state that the previous transaction left the record
+     * in.
      * @throws IOException
      */
     @SuppressWarnings("unchecked")
-    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener) throws IOException {
+    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener,
+            final long groupCommitWindow, final TimeUnit groupCommitWindowUnit, final int recoveryThreads) throws IOException {
         this.syncListener = syncListener;
+        this.recoveryThreads = Math.max(1, recoveryThreads);
+        this.groupCommitWindowNanos = groupCommitWindow < 0L ? -1L : groupCommitWindowUnit.toNanos(groupCommitWindow);
 
         requireNonNull(paths);
         requireNonNull(serde);
@@ -189,7 +255,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
             final Path partitionBasePath = pathIterator.next();
 
-            partitions[i] = new Partition<>(partitionBasePath.resolve("partition-" + i), serde, i, getVersion());
+            partitions[i] = new Partition<>(partitionBasePath.resolve("partition-" + i), serde, i, getVersion(), commitsPerSync, syncLatencyNanos);
         }
     }
 
@@ -204,6 +270,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         }
 
         updated = true;
+        final boolean groupCommit = forceSync && groupCommitWindowNanos >= 0L;
         readLock.lock();
         try {
             while (true) {
@@ -216,6 +283,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 final int resolvedIdx = (int) (partitionIdx % partitions.length);
                 final Partition<T> partition = partitions[resolvedIdx];
                 if (partition.tryClaim()) {
+                    final long syncSequence;
                     try {
                         final long transactionId = transactionIdGenerator.getAndIncrement();
                         if (logger.isTraceEnabled()) {
@@ -225,24 +293,49 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                         }
 
                         try {
-                            partition.update(records, transactionId, unmodifiableRecordMap, forceSync);
+                            syncSequence = partition.update(records, transactionId, unmodifiableRecordMap, forceSync && !groupCommit);
                         } catch (final Exception e) {
-                            partition.blackList();
-                            numberBlackListedPartitions.incrementAndGet();
+                            if (partition.blackList()) {
+                                numberBlackListedPartitions.incrementAndGet();
+                            }
                             throw e;
                         }
 
-                        if (forceSync && syncListener != null) {
+                        if (forceSync && !groupCommit && syncListener != null) {
                             syncListener.onSync(resolvedIdx);
                         }
                     } finally {
                         partition.releaseClaim();
                     }
 
+                    if (groupCommit) {
+                        // wait, without holding the partition's claim, for a sync that includes our update
+                        try {
+                            partition.awaitSync(syncSequence, groupCommitWindowNanos);
+                        } catch (final IOException e) {
+                            if (partition.blackList()) {
+                                numberBlackListedPartitions.incrementAndGet();
+                            }
+                            throw e;
+                        }
+
+                        if (syncListener != null) {
+                            syncListener.onSync(resolvedIdx);
+                        }
+                    }
+
+                    final ConcurrentMap<Object, Object> preImages = checkpointPreImages;
                     for (final T record : records) {
                         final UpdateType updateType = serde.getUpdateType(record);
                         final Object recordIdentifier = serde.getRecordIdentifier(record);
 
+                        if (preImages != null) {
+                            // a checkpoint is in progress; preserve the state of the Record as of the start of the
+                            // checkpoint before changing it. This must happen before the record map is changed.
+                            final T preImage = recordMap.get(recordIdentifier);
+                            preImages.putIfAbsent(recordIdentifier, preImage == null ? NO_PRE_IMAGE : preImage);
+                        }
+
                         if (updateType == UpdateType.DELETE) {
                             recordMap.remove(recordIdentifier);
                         } else if (updateType == UpdateType.SWAP_OUT) {
@@ -281,10 +374,15 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         }
 
         final long recoverStart = System.nanoTime();
+        final ExecutorService recoveryExecutor = createRecoveryExecutor();
         writeLock.lock();
         try {
-            Long maxTransactionId = recoverFromSnapshot(recordMap);
-            recoverFromEdits(recordMap, maxTransactionId);
+            Long maxTransactionId = recoverFromSnapshot(recordMap, recoveryExecutor);
+            final long snapshotRecoveredNanos = System.nanoTime();
+            snapshotRecoveryNanos = snapshotRecoveredNanos - recoverStart;
+
+            recoverFromEdits(recordMap, maxTransactionId, recoveryExecutor);
+            journalRecoveryNanos = System.nanoTime() - snapshotRecoveredNanos;
 
             for (final Partition<T> partition : partitions) {
                 final long transId = partition.getMaxRecoveredTransactionId();
@@ -298,10 +396,14 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             logger.info("{} finished recovering records. Performing Checkpoint to ensure proper state of Partitions before updates", this);
         } finally {
             writeLock.unlock();
+            if (recoveryExecutor != null) {
+                recoveryExecutor.shutdownNow();
+            }
         }
         final long recoverNanos = System.nanoTime() - recoverStart;
         final long recoveryMillis = TimeUnit.MILLISECONDS.convert(recoverNanos, TimeUnit.NANOSECONDS);
-        logger.info("Successfully recovered {} records in {} milliseconds", recordMap.size(), recoveryMillis);
+        logger.info("Successfully recovered {} records in {} milliseconds using {} threads (Snapshot = {} milliseconds, Journals = {} milliseconds)",
+                new Object[]{recordMap.size(), recoveryMillis, recoveryThreads, getSnapshotRecoveryTime(TimeUnit.MILLISECONDS), getJournalRecoveryTime(TimeUnit.MILLISECONDS)});
         checkpoint();
 
         recovered = true;
@@ -313,7 +415,46 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         return recoveredExternalLocations;
     }
 
-    private Long recoverFromSnapshot(final Map<Object, T> recordMap) throws IOException {
+    private ExecutorService createRecoveryExecutor() {
+        if (recoveryThreads < 2) {
+            return null;
+        }
+
+        final AtomicInteger threadCounter = new AtomicInteger(0);
+        return Executors.newFixedThreadPool(recoveryThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "Write-Ahead Log Recovery Thread-" + threadCounter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Waits for the given tasks to complete, returning the sum of their
+     * results
+     */
+    private int waitForRecoveryTasks(final List<Future<Integer>> futures) throws IOException {
+        int total = 0;
+        for (final Future<Integer> future : futures) {
+            try {
+                total += future.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + this + " to recover records", e);
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to recover records for " + this, cause);
+            }
+        }
+        return total;
+    }
+
+    private Long recoverFromSnapshot(final ConcurrentMap<Object, T> recordMap, final ExecutorService recoveryExecutor) throws IOException {
         final boolean partialExists = Files.exists(partialPath);
         final boolean snapshotExists = Files.exists(snapshotPath);
 
@@ -355,22 +496,51 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             dataIn.readUTF(); // ignore serde class name for now
             final int serdeVersion = dataIn.readInt();
             final long maxTransactionId = dataIn.readLong();
-            final int numRecords = dataIn.readInt();
 
-            for (int i = 0; i < numRecords; i++) {
-                final T record = serde.deserializeRecord(dataIn, serdeVersion);
-                if (record == null) {
-                    throw new EOFException();
-                }
+            final int numRecords;
+            if (waliImplementationVersion < 2) {
+                numRecords = dataIn.readInt();
+                recoverSnapshotRecords(dataIn, numRecords, serdeVersion, recordMap);
+            } else {
+                // Version 2 writes the records in blocks, each preceded by its number of records and length in
+                // bytes, and followed by a block with 0 records. We read each block and hand it off to be
+                // deserialized while we read the next one.
+                final Semaphore blocksInFlight = new Semaphore(recoveryThreads * 2);
+                final List<Future<Integer>> futures = new ArrayList<>();
+                int recordCount = 0;
+                int blockRecords;
+                while ((blockRecords = dataIn.readInt()) > 0) {
+                    final byte[] block = new byte[dataIn.readInt()];
+                    dataIn.readFully(block);
+
+                    if (recoveryExecutor == null) {
+                        recoverSnapshotRecords(new DataInputStream(new ByteArrayInputStream(block)), blockRecords, serdeVersion, recordMap);
+                        recordCount += blockRecords;
+                        continue;
+                    }
 
-                final UpdateType updateType = serde.getUpdateType(record);
-                if (updateType == UpdateType.DELETE) {
-                    logger.warn("While recovering from snapshot, found record with type 'DELETE'; this record will not be restored");
-                    continue;
+                    try {
+                        blocksInFlight.acquire();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while recovering " + this + " from Snapshot", e);
+                    }
+
+                    final int numBlockRecords = blockRecords;
+                    futures.add(recoveryExecutor.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws IOException {
+                            try {
+                                recoverSnapshotRecords(new DataInputStream(new ByteArrayInputStream(block)), numBlockRecords, serdeVersion, recordMap);
+                                return numBlockRecords;
+                            } finally {
+                                blocksInFlight.release();
+                            }
+                        }
+                    }));
                 }
 
-                logger.trace("Recovered from snapshot: {}", record);
-                recordMap.put(serde.getRecordIdentifier(record), record);
+                numRecords = recordCount + waitForRecoveryTasks(futures);
             }
 
             final int numSwapRecords = dataIn.readInt();
@@ -385,6 +555,24 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         }
     }
 
+    private void recoverSnapshotRecords(final DataInputStream in, final int numRecords, final int serdeVersion, final Map<Object, T> recordMap) throws IOException {
+        for (int i = 0; i < numRecords; i++) {
+            final T record = serde.deserializeRecord(in, serdeVersion);
+            if (record == null) {
+                throw new EOFException();
+            }
+
+            final UpdateType updateType = serde.getUpdateType(record);
+            if (updateType == UpdateType.DELETE) {
+                logger.warn("While recovering from snapshot, found record with type 'DELETE'; this record will not be restored");
+                continue;
+            }
+
+            logger.trace("Recovered from snapshot: {}", record);
+            recordMap.put(serde.getRecordIdentifier(record), record);
+        }
+    }
+
     /**
      * Recovers records from the edit logs via the Partitions. Returns a boolean
      * if recovery of a Partition requires the Write-Ahead Log be checkpointed
@@ -392,41 +580,57 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
      *
      * @param modifiableRecordMap
      * @param maxTransactionIdRestored
+     * @param recoveryExecutor if not null, the executor to use to skip over
+     * transactions that are already reflected in the snapshot for each of the
+     * partitions concurrently
      * @return
      * @throws IOException
      */
-    private void recoverFromEdits(final Map<Object, T> modifiableRecordMap, final Long maxTransactionIdRestored) throws IOException {
+    private void recoverFromEdits(final Map<Object, T> modifiableRecordMap, final Long maxTransactionIdRestored, final ExecutorService recoveryExecutor) throws IOException {
         final Map<Object, T> updateMap = new HashMap<>();
         final Map<Object, T> unmodifiableRecordMap = Collections.unmodifiableMap(modifiableRecordMap);
-        final Map<Object, T> ignorableMap = new HashMap<>();
-        final Set<String> ignorableSwapLocations = new HashSet<>();
 
         // populate a map of the next transaction id for each partition to the
         // partition that has that next transaction id.
         final SortedMap<Long, Partition<T>> transactionMap = new TreeMap<>();
-        for (final Partition<T> partition : partitions) {
-            Long transactionId;
-            boolean keepTransaction;
-            do {
-                transactionId = partition.getNextRecoverableTransactionId();
-
-                keepTransaction = transactionId == null || maxTransactionIdRestored == null || transactionId > maxTransactionIdRestored;
-                if (keepTransaction && transactionId != null) {
-                    // map this transaction id to its partition so that we can
-                    // start restoring transactions from this partition,
-                    // starting at 'transactionId'
+        if (recoveryExecutor == null) {
+            for (final Partition<T> partition : partitions) {
+                final Long transactionId = skipRecoveredTransactions(partition, maxTransactionIdRestored);
+                if (transactionId != null) {
                     transactionMap.put(transactionId, partition);
-                } else if (transactionId != null) {
-                    // skip the next transaction, because our snapshot already
-                    // contained this transaction.
-                    try {
-                        partition.recoverNextTransaction(ignorableMap, updateMap, ignorableSwapLocations);
-                    } catch (final EOFException e) {
-                        logger.error("{} unexpectedly reached End of File while reading from {} for Transaction {}; assuming crash and ignoring this transaction.",
-                                new Object[]{this, partition, transactionId});
+                }
+            }
+        } else {
+            // each partition can skip the transactions that are already in the snapshot independently of the others
+            final List<Future<Long>> futures = new ArrayList<>(partitions.length);
+            for (final Partition<T> partition : partitions) {
+                futures.add(recoveryExecutor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        return skipRecoveredTransactions(partition, maxTransactionIdRestored);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < partitions.length; i++) {
+                final Long transactionId;
+                try {
+                    transactionId = futures.get(i).get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while recovering " + this + " from Journals", e);
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
                     }
+                    throw new IOException("Failed to recover " + partitions[i], cause);
                 }
-            } while (!keepTransaction);
+
+                if (transactionId != null) {
+                    transactionMap.put(transactionId, partitions[i]);
+                }
+            }
         }
 
         while (!transactionMap.isEmpty()) {
@@ -466,36 +670,64 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         }
     }
 
+    /**
+     * Skips over the transactions in the given partition that are already
+     * reflected in the snapshot, returning the ID of the first transaction that
+     * must be replayed, or <code>null</code> if there are no more transactions
+     * in the partition
+     */
+    private Long skipRecoveredTransactions(final Partition<T> partition, final Long maxTransactionIdRestored) throws IOException {
+        final Map<Object, T> ignorableMap = new HashMap<>();
+        final Map<Object, T> ignorableUpdateMap = new HashMap<>();
+        final Set<String> ignorableSwapLocations = new HashSet<>();
+
+        while (true) {
+            final Long transactionId = partition.getNextRecoverableTransactionId();
+            if (transactionId == null || maxTransactionIdRestored == null || transactionId > maxTransactionIdRestored) {
+                return transactionId;
+            }
+
+            // skip the next transaction, because our snapshot already
+            // contained this transaction.
+            try {
+                ignorableUpdateMap.clear();
+                partition.recoverNextTransaction(ignorableMap, ignorableUpdateMap, ignorableSwapLocations);
+            } catch (final EOFException e) {
+                logger.error("{} unexpectedly reached End of File while reading from {} for Transaction {}; assuming crash and ignoring this transaction.",
+                        new Object[]{this, partition, transactionId});
+            }
+        }
+    }
+
     @Override
     public synchronized int checkpoint() throws IOException {
-        final Set<T> records;
         final Set<String> swapLocations;
         final long maxTransactionId;
+        final ConcurrentMap<Object, Object> preImages = new ConcurrentHashMap<>();
 
         final long startNanos = System.nanoTime();
 
         FileOutputStream fileOut = null;
         DataOutputStream dataOut = null;
 
+        int numRecords = 0;
         long stopTheWorldNanos = -1L;
         long stopTheWorldStart = -1L;
         try {
             writeLock.lock();
             try {
                 stopTheWorldStart = System.nanoTime();
-                // stop the world while we make a copy of the records that must
-                // be checkpointed and rollover the partitions.
-                // We copy the records because serializing them is potentially
-                // very expensive, especially when we have hundreds
-                // of thousands or even millions of them. We don't want to
-                // prevent WALI from being used during this time.
-
-                // So the design is to copy all of the records, determine the
-                // last transaction ID that the records represent,
-                // and roll over the partitions to new write-ahead logs.
-                // Then, outside of the write lock, we will serialize the data
-                // to disk, and then remove the old Partition data.
-                records = new HashSet<>(recordMap.values());
+                // stop the world only long enough to determine the last transaction ID
+                // that the snapshot will represent and to rollover the partitions to new
+                // write-ahead logs.
+                //
+                // We do not copy the records here, because with hundreds of thousands or
+                // even millions of them, doing so would prevent WALI from being used for
+                // a significant amount of time. Instead, once the write lock is released,
+                // we serialize the records directly from the record map. Any update that
+                // happens in the meantime first stores the Record's previous state in the
+                // 'checkpointPreImages' map, so that the snapshot reflects exactly the
+                // state of the repository as of 'maxTransactionId'.
                 maxTransactionId = transactionIdGenerator.get() - 1;
 
                 swapLocations = new HashSet<>(externalLocations);
@@ -503,6 +735,8 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                     partition.rollover();
                 }
 
+                checkpointPreImages = preImages;
+
                 // notify global sync with the write lock held. We do this because we don't want the repository to get updated
                 // while the listener is performing its necessary tasks
                 if (syncListener != null) {
@@ -516,24 +750,46 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
             // perform checkpoint, writing to .partial file
             fileOut = new FileOutputStream(partialPath.toFile());
-            dataOut = new DataOutputStream(fileOut);
+            dataOut = new DataOutputStream(new BufferedOutputStream(fileOut));
             dataOut.writeUTF(MinimalLockingWriteAheadLog.class.getName());
             dataOut.writeInt(getVersion());
             dataOut.writeUTF(serde.getClass().getName());
             dataOut.writeInt(serde.getVersion());
             dataOut.writeLong(maxTransactionId);
-            dataOut.writeInt(records.size());
 
-            for (final T record : records) {
+            final SnapshotBlockWriter blockWriter = new SnapshotBlockWriter(dataOut);
+            for (final Map.Entry<Object, T> entry : recordMap.entrySet()) {
+                // Obtain the value before claiming the Record. If we claim it, no update has
+                // yet preserved a pre-image, so the value is the one that we want. Otherwise,
+                // the pre-image is written below.
+                final T record = entry.getValue();
+                if (preImages.putIfAbsent(entry.getKey(), CHECKPOINTED) == null) {
+                    logger.trace("Checkpointing {}", record);
+                    blockWriter.write(record);
+                    numRecords++;
+                }
+            }
+
+            for (final Object preImage : preImages.values()) {
+                if (preImage == CHECKPOINTED || preImage == NO_PRE_IMAGE) {
+                    continue;
+                }
+
+                @SuppressWarnings("unchecked")
+                final T record = (T) preImage;
                 logger.trace("Checkpointing {}", record);
-                serde.serializeRecord(record, dataOut);
+                blockWriter.write(record);
+                numRecords++;
             }
+            blockWriter.finish();
 
             dataOut.writeInt(swapLocations.size());
             for (final String swapLocation : swapLocations) {
                 dataOut.writeUTF(swapLocation);
             }
         } finally {
+            checkpointPreImages = null;
+
             if (dataOut != null) {
                 try {
                     dataOut.flush();
@@ -571,10 +827,92 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         final long partitionMillis = TimeUnit.MILLISECONDS.convert(partitionEnd - partitionStart, TimeUnit.NANOSECONDS);
         final long stopTheWorldMillis = TimeUnit.NANOSECONDS.toMillis(stopTheWorldNanos);
 
+        checkpointCount.incrementAndGet();
+        lastCheckpointNanos = endNanos - startNanos;
+        lastCheckpointLockNanos = stopTheWorldNanos;
+        if (stopTheWorldNanos > maxCheckpointLockNanos) {
+            maxCheckpointLockNanos = stopTheWorldNanos;
+        }
+
         logger.info("{} checkpointed with {} Records and {} Swap Files in {} milliseconds (Stop-the-world time = {} milliseconds, Clear Edit Logs time = {} millis), max Transaction ID {}",
-                new Object[]{this, records.size(), swapLocations.size(), millis, stopTheWorldMillis, partitionMillis, maxTransactionId});
+                new Object[]{this, numRecords, swapLocations.size(), millis, stopTheWorldMillis, partitionMillis, maxTransactionId});
+
+        return numRecords;
+    }
+
+    /**
+     * @param timeUnit the unit of the returned duration
+     * @return the amount of time that recovery spent restoring records from
+     * the snapshot, or -1 if records have not been recovered
+     */
+    public long getSnapshotRecoveryTime(final TimeUnit timeUnit) {
+        final long nanos = snapshotRecoveryNanos;
+        return nanos < 0L ? -1L : timeUnit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timeUnit the unit of the returned duration
+     * @return the amount of time that recovery spent replaying the partitions'
+     * journals, or -1 if records have not been recovered
+     */
+    public long getJournalRecoveryTime(final TimeUnit timeUnit) {
+        final long nanos = journalRecoveryNanos;
+        return nanos < 0L ? -1L : timeUnit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return a histogram of the number of updates that were made durable by
+     * each sync of a partition. Without group commit, every sync covers
+     * exactly one update.
+     */
+    public Histogram getCommitsPerSyncHistogram() {
+        return commitsPerSync;
+    }
+
+    /**
+     * @return a histogram of the number of nanoseconds that each sync of a
+     * partition took
+     */
+    public Histogram getSyncLatencyHistogram() {
+        return syncLatencyNanos;
+    }
 
-        return records.size();
+    /**
+     * @return the number of checkpoints that have completed successfully
+     */
+    public long getCheckpointCount() {
+        return checkpointCount.get();
+    }
+
+    /**
+     * @param timeUnit
+     * @return the amount of time that the most recent successful checkpoint
+     * took, or -1 if no checkpoint has completed
+     */
+    public long getLastCheckpointDuration(final TimeUnit timeUnit) {
+        final long nanos = lastCheckpointNanos;
+        return nanos < 0L ? -1L : timeUnit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timeUnit
+     * @return the amount of time that the most recent successful checkpoint
+     * held the write lock, preventing the repository from being updated, or -1
+     * if no checkpoint has completed
+     */
+    public long getLastCheckpointLockHoldTime(final TimeUnit timeUnit) {
+        final long nanos = lastCheckpointLockNanos;
+        return nanos < 0L ? -1L : timeUnit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timeUnit
+     * @return the longest amount of time that any successful checkpoint held
+     * the write lock, or -1 if no checkpoint has completed
+     */
+    public long getMaxCheckpointLockHoldTime(final TimeUnit timeUnit) {
+        final long nanos = maxCheckpointLockNanos;
+        return nanos < 0L ? -1L : timeUnit.convert(nanos, TimeUnit.NANOSECONDS);
     }
 
     @Override
@@ -591,7 +929,51 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
     }
 
     public int getVersion() {
-        return 1;
+        return 2;
+    }
+
+    /**
+     * Writes records to a snapshot in blocks. Each block is serialized through
+     * its own stream, so that any state that the SerDe keeps for a stream does
+     * not span blocks and each block can be deserialized on its own.
+     */
+    private class SnapshotBlockWriter {
+
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+        private DataOutputStream blockOut = new DataOutputStream(blockBytes);
+        private int blockRecords = 0;
+
+        SnapshotBlockWriter(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(final T record) throws IOException {
+            serde.serializeRecord(record, blockOut);
+            if (++blockRecords >= SNAPSHOT_BLOCK_SIZE) {
+                writeBlock();
+            }
+        }
+
+        void finish() throws IOException {
+            writeBlock();
+            out.writeInt(0);
+        }
+
+        private void writeBlock() throws IOException {
+            if (blockRecords == 0) {
+                return;
+            }
+
+            blockOut.flush();
+            out.writeInt(blockRecords);
+            out.writeInt(blockBytes.size());
+            blockBytes.writeTo(out);
+
+            blockBytes.reset();
+            blockOut = new DataOutputStream(blockBytes);
+            blockRecords = 0;
+        }
     }
 
     /**
@@ -632,9 +1014,23 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
         private final Queue<Path> recoveryFiles;
 
-        public Partition(final Path path, final SerDe<S> serde, final int partitionIndex, final int writeAheadLogVersion) throws IOException {
+        // Group commit state. The write sequence is incremented, while holding the claim, each time that an
+        // update is written; the remaining members are protected by the sync lock.
+        private final AtomicLong writeSequence = new AtomicLong(0L);
+        private final Lock syncLock = new ReentrantLock();
+        private final Condition syncCompleted = syncLock.newCondition();
+        private long syncedSequence = 0L;
+        private boolean syncInProgress = false;
+        private IOException syncFailure = null;
+        private final Histogram commitsPerSync;
+        private final Histogram syncLatencyNanos;
+
+        public Partition(final Path path, final SerDe<S> serde, final int partitionIndex, final int writeAheadLogVersion,
+                final Histogram commitsPerSync, final Histogram syncLatencyNanos) throws IOException {
             this.editDirectory = path;
             this.serde = serde;
+            this.commitsPerSync = commitsPerSync;
+            this.syncLatencyNanos = syncLatencyNanos;
 
             final File file = path.toFile();
             if (!file.exists() && !file.mkdirs()) {
@@ -684,14 +1080,24 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             this.dataOut = null;
         }
 
-        public void blackList() {
+        /**
+         * Blacklists this partition so that it cannot be claimed until it is
+         * rolled over
+         *
+         * @return <code>true</code> if the partition was not already
+         * blacklisted
+         */
+        public boolean blackList() {
+            final boolean newlyBlackListed;
             lock.lock();
             try {
+                newlyBlackListed = !blackListed;
                 blackListed = true;
             } finally {
                 lock.unlock();
             }
             logger.debug("Blacklisted {}", this);
+            return newlyBlackListed;
         }
 
         /**
@@ -718,6 +1124,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 outStream.flush();
                 dataOut = outStream;
                 fileOut = fos;
+                resetSyncState();
 
                 currentJournalFilename = editPath.toFile().getName();
 
@@ -831,7 +1238,19 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             return true;
         }
 
-        public void update(final Collection<S> records, final long transactionId, final Map<Object, S> recordMap, final boolean forceSync) throws IOException {
+        /**
+         * Writes the given records to the journal
+         *
+         * @param records
+         * @param transactionId
+         * @param recordMap
+         * @param forceSync whether or not to sync the journal before returning
+         * @return the sequence number of this write, to be passed to
+         * {@link #awaitSync(long, long)} in order to wait for the write to be
+         * synced to disk
+         * @throws IOException
+         */
+        public long update(final Collection<S> records, final long transactionId, final Map<Object, S> recordMap, final boolean forceSync) throws IOException {
             if (this.closed) {
                 throw new IllegalStateException("Partition is closed");
             }
@@ -856,7 +1275,96 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             out.flush();
 
             if (forceSync) {
+                final long syncStart = System.nanoTime();
                 fileOut.getFD().sync();
+                syncLatencyNanos.record(System.nanoTime() - syncStart);
+                commitsPerSync.record(1L);
+            }
+
+            return writeSequence.incrementAndGet();
+        }
+
+        /**
+         * Waits until all data up to and including the write with the given
+         * sequence number has been synced to disk. If no other thread is
+         * currently syncing the partition, the calling thread waits for the
+         * given window, so that other threads' writes can be included, and then
+         * syncs the partition on behalf of all threads whose writes have
+         * completed. Otherwise, it waits for the thread that is syncing.
+         *
+         * This method must be called without holding the claim, so that other
+         * threads can write to the partition while waiting for the sync.
+         *
+         * @param sequence
+         * @param windowNanos
+         * @throws IOException if the sync failed
+         */
+        public void awaitSync(final long sequence, final long windowNanos) throws IOException {
+            syncLock.lock();
+            try {
+                while (true) {
+                    if (syncedSequence >= sequence) {
+                        return;
+                    }
+                    if (syncFailure != null) {
+                        throw new IOException("Failed to sync " + this + " to disk", syncFailure);
+                    }
+                    if (!syncInProgress) {
+                        break;
+                    }
+                    syncCompleted.awaitUninterruptibly();
+                }
+
+                syncInProgress = true;
+            } finally {
+                syncLock.unlock();
+            }
+
+            if (windowNanos > 0L) {
+                LockSupport.parkNanos(windowNanos);
+            }
+
+            // every write with a sequence number up to the target has already been flushed to the
+            // file, so a single sync makes all of them durable.
+            final long targetSequence = writeSequence.get();
+            IOException failure = null;
+            final long syncStart = System.nanoTime();
+            try {
+                fileOut.getFD().sync();
+            } catch (final IOException e) {
+                failure = e;
+            }
+            final long syncNanos = System.nanoTime() - syncStart;
+
+            syncLock.lock();
+            try {
+                syncInProgress = false;
+                if (failure == null) {
+                    syncLatencyNanos.record(syncNanos);
+                    commitsPerSync.record(targetSequence - syncedSequence);
+                    syncedSequence = targetSequence;
+                } else {
+                    syncFailure = failure;
+                }
+                syncCompleted.signalAll();
+            } finally {
+                syncLock.unlock();
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void resetSyncState() {
+            syncLock.lock();
+            try {
+                writeSequence.set(0L);
+                syncedSequence = 0L;
+                syncInProgress = false;
+                syncFailure = null;
+            } finally {
+                syncLock.unlock();
             }
         }
 
@@ -945,6 +1453,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             outStream.flush();
             dataOut = outStream;
             fileOut = fos;
+            resetSyncState();
         }
 
         public Set<Object> recoverNextTransaction(final Map<Object, S> currentRecordMap, final Map<Object, S> updatedRecordMap, final Set<String> swapLocations) throws IOException {
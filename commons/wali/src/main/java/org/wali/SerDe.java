@@ -22,7 +22,11 @@ import java.io.IOException;
 import java.util.Map;
 
 /**
- * A mechanism for Serializing and De-Serializing a Record of a given Type
+ * A mechanism for Serializing and De-Serializing a Record of a given Type.
+ *
+ * If the {@link MinimalLockingWriteAheadLog} that uses this SerDe is
+ * configured with more than one recovery thread, the deserialize methods may
+ * be called concurrently, each time with a different stream.
  *
  * @param <T> the type of record that is to be Serialized and De-Serialized by
  * this object
@@ -38,8 +38,10 @@ package org.wali;
  *
  * <p>
  * The {@link #onSync(int)} method will always be called while the associated
- * partition is locked. The {@link #onGlobalSync()} will always be called while
- * the entire repository is locked.
+ * partition is locked, unless the repository is configured to group the syncs
+ * of concurrent updates, in which case it is called once the update has been
+ * synced, after the partition has been unlocked. The {@link #onGlobalSync()}
+ * will always be called while the entire repository is locked.
  * </p>
  *
  */
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wali;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestHistogram {
+
+    @Test
+    public void testPercentiles() {
+        final Histogram histogram = new Histogram();
+        assertEquals(0L, histogram.getPercentile(99D));
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1L);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1000L);
+        }
+
+        assertEquals(100L, histogram.getCount());
+        assertEquals(10090L, histogram.getSum());
+        assertEquals(1000L, histogram.getMax());
+        assertEquals(1L, histogram.getPercentile(50D));
+        assertEquals(1L, histogram.getPercentile(90D));
+        assertEquals(1000L, histogram.getPercentile(99D));
+        assertEquals(1000L, histogram.getPercentile(100D));
+    }
+
+    @Test
+    public void testBuckets() {
+        final Histogram histogram = new Histogram();
+        histogram.record(0L);
+        histogram.record(-5L);
+        histogram.record(3L);
+        histogram.record(4L);
+        histogram.record(Long.MAX_VALUE);
+
+        final long[] counts = histogram.getBucketCounts();
+        assertEquals(2L, counts[0]);
+        assertEquals(1L, counts[2]);
+        assertEquals(1L, counts[3]);
+        assertEquals(1L, counts[63]);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100D));
+    }
+}
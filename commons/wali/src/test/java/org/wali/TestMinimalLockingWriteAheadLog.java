@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
@@ -28,10 +29,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
@@ -253,6 +260,189 @@ public class TestMinimalLockingWriteAheadLog {
 
     }
 
+    @Test
+    public void testUpdateWhileCheckpointing() throws Exception {
+        final int numPartitions = 4;
+        final Path path = Paths.get("target/minimal-locking-repo-update-while-checkpointing");
+        deleteRecursively(path.toFile());
+        Files.createDirectories(path);
+
+        final CountDownLatch checkpointWriting = new CountDownLatch(1);
+        final CountDownLatch allowCheckpointToFinish = new CountDownLatch(1);
+        final DummyRecordSerde serde = new DummyRecordSerde() {
+            @Override
+            public void serializeRecord(final DummyRecord record, final DataOutputStream out) throws IOException {
+                if (checkpointWriting.getCount() > 0L && record.getId().startsWith("block")) {
+                    checkpointWriting.countDown();
+                    try {
+                        allowCheckpointToFinish.await();
+                    } catch (final InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                super.serializeRecord(record, out);
+            }
+        };
+
+        final MinimalLockingWriteAheadLog<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+        assertTrue(repo.recoverRecords().isEmpty());
+
+        final List<DummyRecord> initialRecords = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            initialRecords.add(new DummyRecord(String.valueOf(i), UpdateType.CREATE).setProperty("A", "B"));
+        }
+        initialRecords.add(new DummyRecord("block", UpdateType.CREATE));
+        repo.update(initialRecords, false);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<Integer> checkpointFuture = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    return repo.checkpoint();
+                }
+            });
+            assertTrue(checkpointWriting.await(10, TimeUnit.SECONDS));
+
+            // While the snapshot is being written, update half of the records, delete some, and create new ones.
+            final Future<?> updateFuture = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    for (int i = 0; i < 50; i++) {
+                        repo.update(Collections.singleton(new DummyRecord(String.valueOf(i), UpdateType.UPDATE).setProperty("A", "C")), false);
+                    }
+                    for (int i = 50; i < 60; i++) {
+                        repo.update(Collections.singleton(new DummyRecord(String.valueOf(i), UpdateType.DELETE)), false);
+                    }
+                    for (int i = 100; i < 110; i++) {
+                        repo.update(Collections.singleton(new DummyRecord(String.valueOf(i), UpdateType.CREATE).setProperty("A", "D")), false);
+                    }
+                    return null;
+                }
+            });
+
+            try {
+                updateFuture.get(10, TimeUnit.SECONDS);
+            } finally {
+                allowCheckpointToFinish.countDown();
+            }
+
+            // the snapshot must contain the records as they were when the checkpoint began
+            assertEquals(101, checkpointFuture.get(10, TimeUnit.SECONDS).intValue());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2L, repo.getCheckpointCount());
+        assertTrue(repo.getLastCheckpointDuration(TimeUnit.NANOSECONDS) >= repo.getLastCheckpointLockHoldTime(TimeUnit.NANOSECONDS));
+        assertTrue(repo.getMaxCheckpointLockHoldTime(TimeUnit.NANOSECONDS) >= repo.getLastCheckpointLockHoldTime(TimeUnit.NANOSECONDS));
+        repo.shutdown();
+
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, new DummyRecordSerde(), null);
+        final Collection<DummyRecord> recoveredRecords = recoverRepo.recoverRecords();
+        assertEquals(101, recoveredRecords.size());
+        for (final DummyRecord record : recoveredRecords) {
+            if (record.getId().equals("block")) {
+                continue;
+            }
+
+            final int id = Integer.parseInt(record.getId());
+            assertFalse(id >= 50 && id < 60);
+            final String expectedValue = id < 50 ? "C" : id < 100 ? "B" : "D";
+            assertEquals(expectedValue, record.getProperty("A"));
+        }
+        recoverRepo.shutdown();
+    }
+
+    @Test
+    public void testGroupCommit() throws IOException, InterruptedException {
+        final int numPartitions = 2;
+        final Path path = Paths.get("target/minimal-locking-repo-group-commit");
+        deleteRecursively(path.toFile());
+        Files.createDirectories(path);
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final SortedSet<Path> paths = new TreeSet<>(Collections.singleton(path));
+        final MinimalLockingWriteAheadLog<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(paths, numPartitions, serde, null, 1L, TimeUnit.MILLISECONDS);
+        assertTrue(repo.recoverRecords().isEmpty());
+
+        // each InsertThread syncs only its last update, so sync every update instead
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final int threadIndex = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            final DummyRecord record = new DummyRecord(threadIndex + "-" + j, UpdateType.CREATE).setProperty("A", "B");
+                            repo.update(Collections.singleton(record), true);
+                        }
+                    } catch (final IOException e) {
+                        Assert.fail("Failed to update: " + e.toString());
+                    }
+                }
+            }));
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        final Histogram commitsPerSync = repo.getCommitsPerSyncHistogram();
+        assertEquals(400L, commitsPerSync.getSum());
+        assertTrue(commitsPerSync.getCount() <= 400L);
+        assertEquals(commitsPerSync.getCount(), repo.getSyncLatencyHistogram().getCount());
+        repo.shutdown();
+
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, numPartitions, serde, null);
+        final Collection<DummyRecord> recoveredRecords = recoverRepo.recoverRecords();
+        assertEquals(400, recoveredRecords.size());
+        recoverRepo.shutdown();
+    }
+
+    @Test
+    public void testParallelRecovery() throws IOException {
+        final int numPartitions = 4;
+        final Path path = Paths.get("target/minimal-locking-repo-parallel-recovery");
+        deleteRecursively(path.toFile());
+        Files.createDirectories(path);
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final SortedSet<Path> paths = new TreeSet<>(Collections.singleton(path));
+        final MinimalLockingWriteAheadLog<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(paths, numPartitions, serde, null);
+        assertTrue(repo.recoverRecords().isEmpty());
+
+        // enough records that the snapshot is written in several blocks
+        for (int i = 0; i < 25000; i++) {
+            repo.update(Collections.singleton(new DummyRecord(String.valueOf(i), UpdateType.CREATE).setProperty("A", "B")), false);
+        }
+        repo.checkpoint();
+
+        // and then some transactions that are only in the journals
+        for (int i = 0; i < 1000; i++) {
+            repo.update(Collections.singleton(new DummyRecord(String.valueOf(i), UpdateType.DELETE)), false);
+            repo.update(Collections.singleton(new DummyRecord(String.valueOf(i + 1000), UpdateType.UPDATE).setProperty("A", "C")), false);
+        }
+        repo.shutdown();
+
+        final MinimalLockingWriteAheadLog<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(paths, numPartitions, serde, null, -1L, TimeUnit.NANOSECONDS, 4);
+        final Collection<DummyRecord> recoveredRecords = recoverRepo.recoverRecords();
+        assertEquals(24000, recoveredRecords.size());
+        for (final DummyRecord record : recoveredRecords) {
+            final int id = Integer.parseInt(record.getId());
+            assertTrue(id >= 1000);
+            assertEquals(id < 2000 ? "C" : "B", record.getProperties().get("A"));
+        }
+
+        assertTrue(recoverRepo.getSnapshotRecoveryTime(TimeUnit.NANOSECONDS) >= 0L);
+        assertTrue(recoverRepo.getJournalRecoveryTime(TimeUnit.NANOSECONDS) >= 0L);
+        recoverRepo.shutdown();
+    }
+
     private static class InsertThread extends Thread {
 
         private final List<List<DummyRecord>> records;
@@ -46,6 +46,10 @@ public class SystemDiagnosticsDTO {
     private Integer totalThreads;
     private Integer daemonThreads;
 
+    private Long activeQueuedFlowFiles;
+    private String bytesPerQueuedFlowFile;
+    private Integer claimsPendingDestruction;
+
     private StorageUsageDTO flowFileRepositoryStorageUsage;
     private Set<StorageUsageDTO> contentRepositoryStorageUsage;
     private Set<GarbageCollectionDTO> garbageCollection;
@@ -183,6 +187,45 @@ public class SystemDiagnosticsDTO {
         this.totalThreads = totalThreads;
     }
 
+    /**
+     * The number of FlowFiles held in memory by the active queues.
+     *
+     * @return
+     */
+    public Long getActiveQueuedFlowFiles() {
+        return activeQueuedFlowFiles;
+    }
+
+    public void setActiveQueuedFlowFiles(Long activeQueuedFlowFiles) {
+        this.activeQueuedFlowFiles = activeQueuedFlowFiles;
+    }
+
+    /**
+     * The estimated heap space occupied by each FlowFile in an active queue.
+     *
+     * @return
+     */
+    public String getBytesPerQueuedFlowFile() {
+        return bytesPerQueuedFlowFile;
+    }
+
+    public void setBytesPerQueuedFlowFile(String bytesPerQueuedFlowFile) {
+        this.bytesPerQueuedFlowFile = bytesPerQueuedFlowFile;
+    }
+
+    /**
+     * The number of content claims waiting to be destroyed or archived.
+     *
+     * @return
+     */
+    public Integer getClaimsPendingDestruction() {
+        return claimsPendingDestruction;
+    }
+
+    public void setClaimsPendingDestruction(Integer claimsPendingDestruction) {
+        this.claimsPendingDestruction = claimsPendingDestruction;
+    }
+
     /**
      * The amount of used heap.
      *
@@ -302,6 +345,76 @@ public class SystemDiagnosticsDTO {
         private Long totalSpaceBytes;
         private Long usedSpaceBytes;
         private String utilization;
+        private String writeThroughput;
+        private Double writeNanosPerByte;
+        private Long archivedFileCount;
+        private String archivedSize;
+        private String archiveCleanupRate;
+
+        /**
+         * The rate at which data is being written, per second.
+         *
+         * @return
+         */
+        public String getWriteThroughput() {
+            return writeThroughput;
+        }
+
+        public void setWriteThroughput(String writeThroughput) {
+            this.writeThroughput = writeThroughput;
+        }
+
+        /**
+         * The average time taken to write a byte, in nanoseconds.
+         *
+         * @return
+         */
+        public Double getWriteNanosPerByte() {
+            return writeNanosPerByte;
+        }
+
+        public void setWriteNanosPerByte(Double writeNanosPerByte) {
+            this.writeNanosPerByte = writeNanosPerByte;
+        }
+
+        /**
+         * The number of files held in the archive.
+         *
+         * @return
+         */
+        public Long getArchivedFileCount() {
+            return archivedFileCount;
+        }
+
+        public void setArchivedFileCount(Long archivedFileCount) {
+            this.archivedFileCount = archivedFileCount;
+        }
+
+        /**
+         * The total size of the files held in the archive.
+         *
+         * @return
+         */
+        public String getArchivedSize() {
+            return archivedSize;
+        }
+
+        public void setArchivedSize(String archivedSize) {
+            this.archivedSize = archivedSize;
+        }
+
+        /**
+         * The rate at which archived files are being destroyed, per second.
+         *
+         * @return
+         */
+        public String getArchiveCleanupRate() {
+            return archiveCleanupRate;
+        }
+
+        public void setArchiveCleanupRate(String archiveCleanupRate) {
+            this.archiveCleanupRate = archiveCleanupRate;
+        }
 
         /**
          * The identifier for this storage location.
@@ -3187,6 +3187,16 @@ public class WebClusterManager implements HttpClusterManager, ProtocolHandler, C
             }
         }
 
+        // queued flow files, weighting the size estimate of each node by the number of flow files it holds
+        final long mergedQueuedFlowFiles = target.getActiveQueuedFlowFiles() + sd.getActiveQueuedFlowFiles();
+        if (mergedQueuedFlowFiles > 0) {
+            final long mergedQueuedBytes = target.getBytesPerQueuedFlowFile() * target.getActiveQueuedFlowFiles()
+                    + sd.getBytesPerQueuedFlowFile() * sd.getActiveQueuedFlowFiles();
+            target.setBytesPerQueuedFlowFile(mergedQueuedBytes / mergedQueuedFlowFiles);
+        }
+        target.setActiveQueuedFlowFiles(mergedQueuedFlowFiles);
+        target.setClaimsPendingDestruction(target.getClaimsPendingDestruction() + sd.getClaimsPendingDestruction());
+
         // db disk usage
         merge(target.getFlowFileRepositoryStorageUsage(), sd.getFlowFileRepositoryStorageUsage());
 
@@ -3232,6 +3242,12 @@ public class WebClusterManager implements HttpClusterManager, ProtocolHandler, C
     private void merge(final StorageUsage target, final StorageUsage du) {
         target.setFreeSpace(target.getFreeSpace() + du.getFreeSpace());
         target.setTotalSpace(target.getTotalSpace() + du.getTotalSpace());
+        target.setWriteBytesPerSecond(target.getWriteBytesPerSecond() + du.getWriteBytesPerSecond());
+        // the slowest node is the one that holds the cluster back
+        target.setWriteNanosPerByte(Math.max(target.getWriteNanosPerByte(), du.getWriteNanosPerByte()));
+        target.setArchivedFileCount(target.getArchivedFileCount() + du.getArchivedFileCount());
+        target.setArchivedBytes(target.getArchivedBytes() + du.getArchivedBytes());
+        target.setArchiveFilesDestroyedPerSecond(target.getArchiveFilesDestroyedPerSecond() + du.getArchiveFilesDestroyedPerSecond());
     }
 
     private void merge(final GarbageCollection target, final GarbageCollection gc) {
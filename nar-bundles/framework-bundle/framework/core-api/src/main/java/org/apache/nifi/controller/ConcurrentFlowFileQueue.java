@@ -0,0 +1,745 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.FlowFilePrioritizer;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.processor.FlowFileFilter;
+import org.apache.nifi.processor.FlowFileFilter.FlowFileFilterResult;
+import org.apache.nifi.processor.QueueSize;
+import org.apache.nifi.scheduling.SchedulingStrategy;
+import org.apache.nifi.util.FormatUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A FlowFileQueue for Connections that do not have any FlowFilePrioritizer
+ * configured. FlowFiles are handed out in the order in which they were
+ * enqueued.
+ *
+ * Unlike the {@link StandardFlowFileQueue}, this queue does not guard the
+ * active queue with a single lock. The active queue is a lock-free deque and
+ * the sizes of the queue are kept in atomic counters, so that many threads can
+ * put to and poll from the queue at once, and so that the size of the queue
+ * can be read without blocking anyone. Penalized FlowFiles are moved aside,
+ * ordered by the time at which their penalty expires, until they become
+ * available again. Only swapping and {@link #poll(FlowFileFilter, Set)} are
+ * performed with a lock held. A poll with a filter walks the active queue in
+ * place and only excludes other polls with a filter, so ordinary polls carry
+ * on in order while it runs.
+ *
+ * Because the sizes are updated independently of the deque, the sizes that
+ * are reported may briefly disagree with the contents of the queue while a
+ * FlowFile is being added or removed, and the active queue may grow slightly
+ * past the swap threshold when many threads put to it at once.
+ *
+ * Prioritizers are not supported by this queue. Connections that have
+ * Prioritizers are given the standard queue when they are created.
+ */
+public final class ConcurrentFlowFileQueue implements LockableFlowFileQueue {
+
+    public static final int MAX_EXPIRED_RECORDS_PER_ITERATION = StandardFlowFileQueue.MAX_EXPIRED_RECORDS_PER_ITERATION;
+    public static final int SWAP_RECORD_POLL_SIZE = StandardFlowFileQueue.SWAP_RECORD_POLL_SIZE;
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrentFlowFileQueue.class);
+
+    private final ConcurrentLinkedDeque<FlowFileRecord> activeQueue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger activeQueueSize = new AtomicInteger(0);
+    private final AtomicLong activeQueueContentSize = new AtomicLong(0L);
+
+    // penalized FlowFiles are still counted as part of the active queue
+    private final PriorityQueue<FlowFileRecord> penalizedQueue = new PriorityQueue<>(20, new PenaltyComparator());
+    private final AtomicInteger penalizedCount = new AtomicInteger(0);
+
+    // guards the swap queue; the swapped counts are atomic so that they can be read without it
+    private final ReentrantLock swapLock = new ReentrantLock();
+    private final ArrayList<FlowFileRecord> swapQueue = new ArrayList<>();
+    private final AtomicInteger swappedRecordCount = new AtomicInteger(0);
+    private final AtomicLong swappedContentSize = new AtomicLong(0L);
+    private volatile boolean swapMode = false;
+
+    private final AtomicInteger unacknowledgedCount = new AtomicInteger(0);
+    private final AtomicLong unacknowledgedContentSize = new AtomicLong(0L);
+
+    // held by external lockers and by poll(FlowFileFilter, Set) only
+    private final ReentrantLock filterLock = new ReentrantLock();
+
+    private volatile String maximumQueueDataSize = "0 MB";
+    private volatile long maximumQueueByteCount = 0L;
+    private volatile long maximumQueueObjectCount = 0L;
+    private final AtomicBoolean queueFullRef = new AtomicBoolean(false);
+
+    private volatile List<FlowFilePrioritizer> priorities = Collections.emptyList();
+
+    private final AtomicLong flowFileExpirationMillis = new AtomicLong(0L);
+    private final AtomicReference<String> flowFileExpirationPeriod = new AtomicReference<>("0 mins");
+
+    private final String identifier;
+    private final Connection connection;
+    private final ProcessScheduler scheduler;
+    private final int swapThreshold;
+
+    public ConcurrentFlowFileQueue(final String identifier, final Connection connection, final ProcessScheduler scheduler, final int swapThreshold) {
+        this.identifier = identifier;
+        this.connection = connection;
+        this.scheduler = scheduler;
+        this.swapThreshold = swapThreshold;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the prioritizers that were last given to
+     * {@link #setPriorities(List)}, which this queue does not use
+     */
+    @Override
+    public List<FlowFilePrioritizer> getPriorities() {
+        return priorities;
+    }
+
+    @Override
+    public int getSwapThreshold() {
+        return swapThreshold;
+    }
+
+    /**
+     * This queue always hands out FlowFiles in the order in which they were
+     * enqueued, so the prioritizers that are given are not used, and a
+     * warning is logged. They are still reported by {@link #getPriorities()},
+     * so that they are kept in the flow, and the Connection is given the
+     * standard queue the next time that it is created. This is not an error,
+     * so that a flow in which the Connection has since been prioritized can
+     * still be loaded.
+     *
+     * @param newPriorities
+     */
+    @Override
+    public void setPriorities(final List<FlowFilePrioritizer> newPriorities) {
+        final List<FlowFilePrioritizer> prioritizers = (newPriorities == null) ? Collections.<FlowFilePrioritizer>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(newPriorities));
+        if (!prioritizers.isEmpty()) {
+            logger.warn("{} is a First-In-First-Out queue, so its Prioritizers {} will not be used until NiFi is restarted", this, prioritizers);
+        }
+        priorities = prioritizers;
+    }
+
+    @Override
+    public void setBackPressureObjectThreshold(final long maxQueueSize) {
+        maximumQueueObjectCount = maxQueueSize;
+        queueFullRef.set(determineIfFull());
+    }
+
+    @Override
+    public long getBackPressureObjectThreshold() {
+        return maximumQueueObjectCount;
+    }
+
+    @Override
+    public void setBackPressureDataSizeThreshold(final String maxDataSize) {
+        maximumQueueByteCount = DataUnit.parseDataSize(maxDataSize, DataUnit.B).longValue();
+        maximumQueueDataSize = maxDataSize;
+        queueFullRef.set(determineIfFull());
+    }
+
+    @Override
+    public String getBackPressureDataSizeThreshold() {
+        return maximumQueueDataSize;
+    }
+
+    @Override
+    public QueueSize size() {
+        return new QueueSize(activeQueueSize.get() + swappedRecordCount.get() + unacknowledgedCount.get(),
+                activeQueueContentSize.get() + swappedContentSize.get() + unacknowledgedContentSize.get());
+    }
+
+    @Override
+    public long contentSize() {
+        return activeQueueContentSize.get() + swappedContentSize.get() + unacknowledgedContentSize.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return activeQueueSize.get() == 0 && swappedRecordCount.get() == 0 && unacknowledgedCount.get() == 0;
+    }
+
+    @Override
+    public boolean isActiveQueueEmpty() {
+        return activeQueueSize.get() == 0;
+    }
+
+    @Override
+    public QueueSize getActiveQueueSize() {
+        return new QueueSize(activeQueueSize.get(), activeQueueContentSize.get());
+    }
+
+    @Override
+    public void acknowledge(final FlowFileRecord flowFile) {
+        unacknowledgedCount.decrementAndGet();
+        unacknowledgedContentSize.addAndGet(-flowFile.getSize());
+        final boolean queueFullAtStart = queueFullRef.get();
+        if (queueFullAtStart) {
+            queueFullRef.set(determineIfFull());
+        }
+
+        if (connection.getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN || (queueFullAtStart && !queueFullRef.get())) {
+            // queue was full but no longer is. Notify that the source may now be available to run,
+            // because of back pressure caused by this queue.
+            scheduler.registerEvent(connection.getSource());
+        }
+    }
+
+    @Override
+    public void acknowledge(final Collection<FlowFileRecord> flowFiles) {
+        long totalSize = 0L;
+        for (final FlowFileRecord flowFile : flowFiles) {
+            totalSize += flowFile.getSize();
+        }
+
+        unacknowledgedCount.addAndGet(-flowFiles.size());
+        unacknowledgedContentSize.addAndGet(-totalSize);
+        final boolean queueFullAtStart = queueFullRef.get();
+        if (queueFullAtStart) {
+            queueFullRef.set(determineIfFull());
+        }
+
+        if (connection.getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN || (queueFullAtStart && !queueFullRef.get())) {
+            // it's possible that queue was full but no longer is. Notify that the source may now be available to run,
+            // because of back pressure caused by this queue.
+            scheduler.registerEvent(connection.getSource());
+        }
+    }
+
+    @Override
+    public boolean isFull() {
+        return queueFullRef.get();
+    }
+
+    private boolean determineIfFull() {
+        final long maxSize = maximumQueueObjectCount;
+        final long maxBytes = maximumQueueByteCount;
+        if (maxSize <= 0 && maxBytes <= 0) {
+            return false;
+        }
+
+        final QueueSize queueSize = size();
+        if (maxSize > 0 && queueSize.getObjectCount() >= maxSize) {
+            return true;
+        }
+
+        if (maxBytes > 0 && queueSize.getByteCount() >= maxBytes) {
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void put(final FlowFileRecord file) {
+        if (!swapMode && activeQueueSize.get() < swapThreshold) {
+            // update the sizes before the FlowFile becomes visible so that they never go negative
+            activeQueueSize.incrementAndGet();
+            activeQueueContentSize.addAndGet(file.getSize());
+            activeQueue.offer(file);
+        } else {
+            swapLock.lock();
+            try {
+                swapQueue.add(file);
+                swappedContentSize.addAndGet(file.getSize());
+                swappedRecordCount.incrementAndGet();
+                swapMode = true;
+            } finally {
+                swapLock.unlock();
+            }
+        }
+
+        queueFullRef.set(determineIfFull());
+
+        // notify the destination regardless of its scheduling strategy, so that a destination that is waiting for work is woken
+        scheduler.registerEvent(connection.getDestination());
+    }
+
+    @Override
+    public void putAll(final Collection<FlowFileRecord> files) {
+        final int numFiles = files.size();
+        long bytes = 0L;
+        for (final FlowFile flowFile : files) {
+            bytes += flowFile.getSize();
+        }
+
+        if (!swapMode && activeQueueSize.get() < swapThreshold - numFiles) {
+            activeQueueSize.addAndGet(numFiles);
+            activeQueueContentSize.addAndGet(bytes);
+            activeQueue.addAll(files);
+        } else {
+            swapLock.lock();
+            try {
+                swapQueue.addAll(files);
+                swappedContentSize.addAndGet(bytes);
+                swappedRecordCount.addAndGet(numFiles);
+                swapMode = true;
+            } finally {
+                swapLock.unlock();
+            }
+        }
+
+        queueFullRef.set(determineIfFull());
+
+        // notify the destination regardless of its scheduling strategy, so that a destination that is waiting for work is woken
+        scheduler.registerEvent(connection.getDestination());
+    }
+
+    @Override
+    public List<FlowFileRecord> pollSwappableRecords() {
+        swapLock.lock();
+        try {
+            if (swapQueue.size() < SWAP_RECORD_POLL_SIZE) {
+                return null;
+            }
+
+            final List<FlowFileRecord> toSwap = swapQueue.subList(0, SWAP_RECORD_POLL_SIZE);
+            final List<FlowFileRecord> swapRecords = new ArrayList<>(toSwap);
+            toSwap.clear();
+
+            swapQueue.trimToSize();
+            return swapRecords;
+        } finally {
+            swapLock.unlock();
+        }
+    }
+
+    @Override
+    public void putSwappedRecords(final Collection<FlowFileRecord> records) {
+        swapLock.lock();
+        try {
+            long bytes = 0L;
+            for (final FlowFileRecord record : records) {
+                bytes += record.getSize();
+            }
+
+            activeQueueSize.addAndGet(records.size());
+            activeQueueContentSize.addAndGet(bytes);
+            activeQueue.addAll(records);
+            swappedRecordCount.addAndGet(-records.size());
+            swappedContentSize.addAndGet(-bytes);
+
+            if (swappedRecordCount.get() > swapQueue.size()) {
+                // we have more swap files to be swapped in.
+                return;
+            }
+
+            // If a call to #pollSwappableRecords will not produce any, go ahead and roll those FlowFiles back into the mix
+            if (swapQueue.size() < SWAP_RECORD_POLL_SIZE) {
+                moveFromSwapQueue(swapQueue.size());
+                swapMode = false;
+            }
+        } finally {
+            swapLock.unlock();
+            scheduler.registerEvent(connection.getDestination());
+        }
+    }
+
+    @Override
+    public void incrementSwapCount(final int numRecords, final long contentSize) {
+        swapLock.lock();
+        try {
+            swappedContentSize.addAndGet(contentSize);
+            swappedRecordCount.addAndGet(numRecords);
+        } finally {
+            swapLock.unlock();
+        }
+    }
+
+    @Override
+    public int unswappedSize() {
+        return activeQueueSize.get() + unacknowledgedCount.get();
+    }
+
+    @Override
+    public int getSwapRecordCount() {
+        return swappedRecordCount.get();
+    }
+
+    @Override
+    public int getSwapQueueSize() {
+        swapLock.lock();
+        try {
+            if (logger.isDebugEnabled()) {
+                final long byteToMbDivisor = 1024L * 1024L;
+
+                logger.debug("Total Queue Size: ActiveQueue={}/{} MB, Swap Queue={}/{} MB, Unacknowledged={}/{} MB",
+                        activeQueueSize.get(), activeQueueContentSize.get() / byteToMbDivisor,
+                        swappedRecordCount.get(), swappedContentSize.get() / byteToMbDivisor,
+                        unacknowledgedCount.get(), unacknowledgedContentSize.get() / byteToMbDivisor);
+            }
+
+            return swapQueue.size();
+        } finally {
+            swapLock.unlock();
+        }
+    }
+
+    /**
+     * If there are FlowFiles waiting on the swap queue and none have been
+     * swapped out to disk, moves them to the active queue until we meet our
+     * threshold, as {@link StandardFlowFileQueue} does. If another thread is
+     * already migrating, this thread does not wait for it.
+     */
+    private void migrateSwapToActive() {
+        if (!swapMode) {
+            return;
+        }
+
+        if (!swapLock.tryLock()) {
+            return;
+        }
+
+        try {
+            if (swappedRecordCount.get() > swapQueue.size()) {
+                // we already have FlowFiles swapped out, so we won't migrate the queue; we will wait for
+                // an external process to swap FlowFiles back in.
+                return;
+            }
+
+            final int toMigrate = Math.min(swapQueue.size(), swapThreshold - activeQueueSize.get());
+            if (toMigrate > 0) {
+                moveFromSwapQueue(toMigrate);
+            }
+
+            if (swappedRecordCount.get() == 0) {
+                swapMode = false;
+            }
+        } finally {
+            swapLock.unlock();
+        }
+    }
+
+    /**
+     * Moves the first <code>count</code> FlowFiles of the swap queue to the
+     * active queue. MUST be called with the swap lock held.
+     */
+    private void moveFromSwapQueue(final int count) {
+        final List<FlowFileRecord> toMigrate = swapQueue.subList(0, count);
+        long bytes = 0L;
+        for (final FlowFileRecord record : toMigrate) {
+            bytes += record.getSize();
+        }
+
+        activeQueueSize.addAndGet(count);
+        activeQueueContentSize.addAndGet(bytes);
+        activeQueue.addAll(toMigrate);
+        swappedRecordCount.addAndGet(-count);
+        swappedContentSize.addAndGet(-bytes);
+        toMigrate.clear();
+    }
+
+    /**
+     * Sets aside a FlowFile that was found to be penalized while polling. The
+     * FlowFile remains part of the active queue's size.
+     */
+    private void penalize(final FlowFileRecord flowFile) {
+        synchronized (penalizedQueue) {
+            penalizedQueue.add(flowFile);
+            penalizedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns to the head of the active queue any FlowFile whose penalty has
+     * expired, so that it is handed out before FlowFiles that arrived after
+     * it was set aside.
+     */
+    private void releaseExpiredPenalties() {
+        if (penalizedCount.get() == 0) {
+            return;
+        }
+
+        final List<FlowFileRecord> released = new ArrayList<>();
+        synchronized (penalizedQueue) {
+            FlowFileRecord next;
+            while ((next = penalizedQueue.peek()) != null && !next.isPenalized()) {
+                released.add(penalizedQueue.poll());
+            }
+            penalizedCount.addAndGet(-released.size());
+        }
+
+        pushToHead(released);
+    }
+
+    private void pushToHead(final List<FlowFileRecord> records) {
+        for (int i = records.size() - 1; i >= 0; i--) {
+            activeQueue.offerFirst(records.get(i));
+        }
+    }
+
+    private void removeFromActiveQueue(final FlowFileRecord flowFile) {
+        activeQueueSize.decrementAndGet();
+        activeQueueContentSize.addAndGet(-flowFile.getSize());
+    }
+
+    private boolean isLaterThan(final Long maxAge) {
+        if (maxAge == null) {
+            return false;
+        }
+        return maxAge < System.currentTimeMillis();
+    }
+
+    private Long getExpirationDate(final FlowFile flowFile, final long expirationMillis) {
+        if (flowFile == null) {
+            return null;
+        }
+        if (expirationMillis <= 0) {
+            return null;
+        } else {
+            final long entryDate = flowFile.getEntryDate();
+            final long expirationDate = entryDate + expirationMillis;
+            return expirationDate;
+        }
+    }
+
+    @Override
+    public FlowFileRecord poll(final Set<FlowFileRecord> expiredRecords) {
+        final List<FlowFileRecord> records = poll(1, expiredRecords);
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    @Override
+    public List<FlowFileRecord> poll(final int maxResults, final Set<FlowFileRecord> expiredRecords) {
+        migrateSwapToActive();
+        releaseExpiredPenalties();
+
+        final long expirationMillis = flowFileExpirationMillis.get();
+        final boolean queueFullAtStart = queueFullRef.get();
+        final List<FlowFileRecord> records = new ArrayList<>(Math.min(1024, maxResults));
+        int expiredCount = 0;
+        long polledBytes = 0L;
+
+        while (records.size() < maxResults) {
+            final FlowFileRecord flowFile = activeQueue.poll();
+            if (flowFile == null) {
+                break;
+            }
+
+            if (isLaterThan(getExpirationDate(flowFile, expirationMillis))) {
+                removeFromActiveQueue(flowFile);
+                expiredRecords.add(flowFile);
+                expiredCount++;
+                if (expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                    break;
+                }
+            } else if (flowFile.isPenalized()) {
+                penalize(flowFile);
+            } else {
+                removeFromActiveQueue(flowFile);
+                records.add(flowFile);
+                polledBytes += flowFile.getSize();
+            }
+        }
+
+        unacknowledgedCount.addAndGet(records.size());
+        unacknowledgedContentSize.addAndGet(polledBytes);
+
+        // if at least 1 FlowFile was expired & the queue was full before we started, then
+        // we need to determine whether or not the queue is full again. If no FlowFile was expired,
+        // then the queue will still be full until the appropriate #acknowledge method is called.
+        if (queueFullAtStart && expiredCount > 0) {
+            queueFullRef.set(determineIfFull());
+        }
+
+        return records;
+    }
+
+    @Override
+    public long drainQueue(final Queue<FlowFileRecord> sourceQueue, final List<FlowFileRecord> destination, int maxResults, final Set<FlowFileRecord> expiredRecords) {
+        long drainedSize = 0L;
+        FlowFileRecord pulled = null;
+
+        final long expirationMillis = this.flowFileExpirationMillis.get();
+        while (destination.size() < maxResults && (pulled = sourceQueue.poll()) != null) {
+            if (isLaterThan(getExpirationDate(pulled, expirationMillis))) {
+                expiredRecords.add(pulled);
+                if (expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                    break;
+                }
+            } else {
+                if (pulled.isPenalized()) {
+                    sourceQueue.add(pulled);
+                    break;
+                }
+                destination.add(pulled);
+            }
+            drainedSize += pulled.getSize();
+        }
+        return drainedSize;
+    }
+
+    @Override
+    public List<FlowFileRecord> poll(final FlowFileFilter filter, final Set<FlowFileRecord> expiredRecords) {
+        filterLock.lock();
+        try {
+            migrateSwapToActive();
+            releaseExpiredPenalties();
+
+            final long expirationMillis = this.flowFileExpirationMillis.get();
+            final boolean queueFullAtStart = queueFullRef.get();
+            boolean anyExpired = false;
+
+            final List<FlowFileRecord> selectedFlowFiles = new ArrayList<>();
+
+            // Walk the deque rather than draining it, so that FlowFiles that are not selected stay where they are and
+            // other threads can keep polling in order while the filter runs. A FlowFile is only taken if removing it
+            // succeeds; if another thread polled it first, it is skipped.
+            for (final FlowFileRecord flowFile : activeQueue) {
+                if (isLaterThan(getExpirationDate(flowFile, expirationMillis))) {
+                    if (activeQueue.removeFirstOccurrence(flowFile)) {
+                        removeFromActiveQueue(flowFile);
+                        expiredRecords.add(flowFile);
+                        anyExpired = true;
+
+                        if (expiredRecords.size() >= MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                            break;
+                        }
+                    }
+                    continue;
+                } else if (flowFile.isPenalized()) {
+                    if (activeQueue.removeFirstOccurrence(flowFile)) {
+                        penalize(flowFile);
+                    }
+                    continue;
+                }
+
+                final FlowFileFilterResult result = filter.filter(flowFile);
+                if (result.isAccept() && activeQueue.removeFirstOccurrence(flowFile)) {
+                    removeFromActiveQueue(flowFile);
+                    unacknowledgedCount.incrementAndGet();
+                    unacknowledgedContentSize.addAndGet(flowFile.getSize());
+                    selectedFlowFiles.add(flowFile);
+                }
+
+                if (!result.isContinue()) {
+                    break;
+                }
+            }
+
+            // if at least 1 FlowFile was expired & the queue was full before we started, then
+            // we need to determine whether or not the queue is full again. If no FlowFile was expired,
+            // then the queue will still be full until the appropriate #acknowledge method is called.
+            if (queueFullAtStart && anyExpired) {
+                queueFullRef.set(determineIfFull());
+            }
+
+            return selectedFlowFiles;
+        } finally {
+            filterLock.unlock();
+        }
+    }
+
+    @Override
+    public String getFlowFileExpiration() {
+        return flowFileExpirationPeriod.get();
+    }
+
+    @Override
+    public int getFlowFileExpiration(final TimeUnit timeUnit) {
+        return (int) timeUnit.convert(flowFileExpirationMillis.get(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void setFlowFileExpiration(final String flowExpirationPeriod) {
+        final long millis = FormatUtils.getTimeDuration(flowExpirationPeriod, TimeUnit.MILLISECONDS);
+        if (millis < 0) {
+            throw new IllegalArgumentException("FlowFile Expiration Period must be positive");
+        }
+        this.flowFileExpirationPeriod.set(flowExpirationPeriod);
+        this.flowFileExpirationMillis.set(millis);
+    }
+
+    @Override
+    public String toString() {
+        return "FlowFileQueue[id=" + identifier + "]";
+    }
+
+    /**
+     * Lock the queue so that no other thread can lock it or poll it with a
+     * {@link FlowFileFilter}. Unlike the {@link StandardFlowFileQueue}, other
+     * threads may continue to put FlowFiles to and poll FlowFiles from the
+     * queue while it is locked.
+     */
+    @Override
+    public void lock() {
+        filterLock.lock();
+    }
+
+    /**
+     * Unlock the queue
+     */
+    @Override
+    public void unlock() {
+        filterLock.unlock();
+    }
+
+    @Override
+    public List<FlowFileRecord> sampleActiveQueue(final int maxResults) {
+        // the deque's iterator is weakly consistent, so no lock is needed for a sample
+        final List<FlowFileRecord> sample = new ArrayList<>(Math.max(0, Math.min(maxResults, activeQueueSize.get())));
+        for (final FlowFileRecord flowFile : activeQueue) {
+            if (sample.size() >= maxResults) {
+                break;
+            }
+            sample.add(flowFile);
+        }
+        return sample;
+    }
+
+    private static final class PenaltyComparator implements Comparator<FlowFileRecord>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int compare(final FlowFileRecord f1, final FlowFileRecord f2) {
+            final int penaltyComparison = Long.compare(f1.getPenaltyExpirationMillis(), f2.getPenaltyExpirationMillis());
+            if (penaltyComparison != 0) {
+                return penaltyComparison;
+            }
+
+            return Long.compare(f1.getId(), f2.getId());
+        }
+    }
+}
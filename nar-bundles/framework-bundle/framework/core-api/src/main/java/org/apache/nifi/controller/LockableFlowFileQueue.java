@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import java.util.List;
+
+import org.apache.nifi.controller.repository.FlowFileRecord;
+
+/**
+ * A FlowFileQueue that can be locked by a caller that needs to make several
+ * calls against the queue without other callers interleaving.
+ */
+public interface LockableFlowFileQueue extends FlowFileQueue {
+
+    /**
+     * Lock the queue so that other threads are unable to interact with the
+     * queue
+     */
+    void lock();
+
+    /**
+     * Unlock the queue
+     */
+    void unlock();
+
+    /**
+     * Returns up to the given number of the FlowFiles that are currently held
+     * in memory by the active queue, without removing them from the queue.
+     * This is intended for diagnostics that sample the queued FlowFiles, so
+     * the FlowFiles returned are in no particular order.
+     *
+     * @param maxResults the maximum number of FlowFiles to return
+     * @return a sample of the FlowFiles in the active queue
+     */
+    List<FlowFileRecord> sampleActiveQueue(int maxResults);
+}
@@ -58,7 +58,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author none
  */
-public final class StandardFlowFileQueue implements FlowFileQueue {
+public final class StandardFlowFileQueue implements LockableFlowFileQueue {
 
     public static final int MAX_EXPIRED_RECORDS_PER_ITERATION = 100000;
     public static final int SWAP_RECORD_POLL_SIZE = 10000;
@@ -297,7 +297,8 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
 
     @Override
     public void acknowledge(final FlowFileRecord flowFile) {
-        if (queueFullRef.get()) {
+        final boolean queueFullAtStart = queueFullRef.get();
+        if (queueFullAtStart) {
             writeLock.lock();
             try {
                 updateUnacknowledgedSize(-1, -flowFile.getSize());
@@ -309,7 +310,7 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
             updateUnacknowledgedSize(-1, -flowFile.getSize());
         }
 
-        if (connection.getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
+        if (connection.getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN || (queueFullAtStart && !queueFullRef.get())) {
             // queue was full but no longer is. Notify that the source may now be available to run,
             // because of back pressure caused by this queue.
             scheduler.registerEvent(connection.getSource());
@@ -323,7 +324,8 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
             totalSize += flowFile.getSize();
         }
 
-        if (queueFullRef.get()) {
+        final boolean queueFullAtStart = queueFullRef.get();
+        if (queueFullAtStart) {
             writeLock.lock();
             try {
                 updateUnacknowledgedSize(-flowFiles.size(), -totalSize);
@@ -335,7 +337,7 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
             updateUnacknowledgedSize(-flowFiles.size(), -totalSize);
         }
 
-        if (connection.getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
+        if (connection.getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN || (queueFullAtStart && !queueFullRef.get())) {
             // it's possible that queue was full but no longer is. Notify that the source may now be available to run,
             // because of back pressure caused by this queue.
             scheduler.registerEvent(connection.getSource());
@@ -391,9 +393,8 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
             writeLock.unlock("put(FlowFileRecord)");
         }
 
-        if (connection.getDestination().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
-            scheduler.registerEvent(connection.getDestination());
-        }
+        // notify the destination regardless of its scheduling strategy, so that a destination that is waiting for work is woken
+        scheduler.registerEvent(connection.getDestination());
     }
 
     @Override
@@ -422,9 +423,8 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
             writeLock.unlock("putAll");
         }
 
-        if (connection.getDestination().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
-            scheduler.registerEvent(connection.getDestination());
-        }
+        // notify the destination regardless of its scheduling strategy, so that a destination that is waiting for work is woken
+        scheduler.registerEvent(connection.getDestination());
     }
 
     @Override
@@ -951,6 +951,7 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
      * Lock the queue so that other threads are unable to interact with the
      * queue
      */
+    @Override
     public void lock() {
         writeLock.lock();
     }
@@ -958,10 +959,26 @@ public final class StandardFlowFileQueue implements FlowFileQueue {
     /**
      * Unlock the queue
      */
+    @Override
     public void unlock() {
         writeLock.unlock("external unlock");
     }
 
+    @Override
+    public List<FlowFileRecord> sampleActiveQueue(final int maxResults) {
+        readLock.lock();
+        try {
+            final List<FlowFileRecord> sample = new ArrayList<>(Math.min(maxResults, activeQueue.size()));
+            final Iterator<FlowFileRecord> itr = activeQueue.iterator();
+            while (sample.size() < maxResults && itr.hasNext()) {
+                sample.add(itr.next());
+            }
+            return sample;
+        } finally {
+            readLock.unlock("sampleActiveQueue");
+        }
+    }
+
     private void updateUnacknowledgedSize(final int addToCount, final long addToSize) {
         boolean updated = false;
 
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.processor.ProcessSession;
+
+/**
+ * A {@link ProcessSession} whose FlowFile content can be handed to a channel,
+ * or read as a ByteBuffer, straight from the Content Repository. This is for
+ * the framework's own use, such as Site-to-Site, and is deliberately not part
+ * of the ProcessSession API that Processors and other implementations of it
+ * depend on.
+ */
+public interface ChannelTransferSession extends ProcessSession {
+
+    /**
+     * Transfers a region of the content of the given FlowFile to the given
+     * channel, as {@link ContentRepository#exportTo(org.apache.nifi.controller.repository.claim.ContentClaim, WritableByteChannel, long, long)}
+     * does. A blocking destination receives the whole region; a non-blocking
+     * destination may accept fewer bytes, in which case the caller should call
+     * this method again with the offset advanced by the number of bytes
+     * returned.
+     *
+     * @param flowFile the FlowFile whose content should be transferred
+     * @param destination the channel to transfer the content to
+     * @param offset the number of bytes into the FlowFile's content at which
+     * the transfer should begin
+     * @param length the maximum number of bytes to transfer
+     * @return the number of bytes transferred
+     * @throws org.apache.nifi.processor.exception.FlowFileHandlingException if
+     * the given FlowFile is already transferred or removed or doesn't belong to
+     * this session
+     * @throws org.apache.nifi.processor.exception.MissingFlowFileException if
+     * the given FlowFile content cannot be found
+     * @throws org.apache.nifi.processor.exception.FlowFileAccessException if
+     * some IO problem occurs accessing FlowFile content
+     */
+    long exportTo(FlowFile flowFile, WritableByteChannel destination, long offset, long length);
+
+    /**
+     * Returns a read-only ByteBuffer over a region of the content of the given
+     * FlowFile, as {@link ContentRepository#readBuffer(org.apache.nifi.controller.repository.claim.ContentClaim, long, int)}
+     * does. The bytes are not counted as read by the session, because the
+     * buffer is meant for inspecting content that is also transferred with
+     * {@link #exportTo(FlowFile, WritableByteChannel, long, long)}, which
+     * counts them.
+     *
+     * @param flowFile the FlowFile whose content should be read
+     * @param offset the number of bytes into the FlowFile's content at which
+     * the region begins
+     * @param length the maximum number of bytes in the region
+     * @return a read-only buffer over the region, which is shorter than the
+     * given length if the content ends first
+     * @throws org.apache.nifi.processor.exception.FlowFileHandlingException if
+     * the given FlowFile is already transferred or removed or doesn't belong to
+     * this session
+     * @throws org.apache.nifi.processor.exception.MissingFlowFileException if
+     * the given FlowFile content cannot be found
+     * @throws org.apache.nifi.processor.exception.FlowFileAccessException if
+     * some IO problem occurs accessing FlowFile content
+     */
+    ByteBuffer readBuffer(FlowFile flowFile, long offset, int length);
+}
@@ -38,6 +38,18 @@ public interface FlowFileEvent {
 
     long getProcessingNanoseconds();
 
+    /**
+     * @return the number of nanoseconds that the component's tasks spent
+     * waiting for a thread after they became due to run
+     */
+    long getRunQueueWaitNanoseconds();
+
+    /**
+     * @return the number of nanoseconds of CPU time used by the component's
+     * tasks, or 0 if the JVM does not support measuring thread CPU time
+     */
+    long getCpuNanoseconds();
+
     long getAverageLineageMillis();
 
     long getAggregateLineageMillis();
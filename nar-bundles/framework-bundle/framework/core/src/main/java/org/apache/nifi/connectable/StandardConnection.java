@@ -26,7 +26,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.nifi.controller.ConcurrentFlowFileQueue;
 import org.apache.nifi.controller.FlowFileQueue;
+import org.apache.nifi.controller.LockableFlowFileQueue;
 import org.apache.nifi.controller.ProcessScheduler;
 import org.apache.nifi.controller.StandardFlowFileQueue;
 import org.apache.nifi.controller.repository.FlowFileRecord;
@@ -52,7 +54,7 @@ public final class StandardConnection implements Connection {
     private final Connectable source;
     private final AtomicReference<Connectable> destination;
     private final AtomicReference<Collection<Relationship>> relationships;
-    private final StandardFlowFileQueue flowFileQueue;
+    private final LockableFlowFileQueue flowFileQueue;
     private final AtomicInteger labelIndex = new AtomicInteger(1);
     private final AtomicLong zIndex = new AtomicLong(0L);
     private final ProcessScheduler scheduler;
@@ -67,7 +69,12 @@ public final class StandardConnection implements Connection {
         destination = new AtomicReference<>(builder.destination);
         relationships = new AtomicReference<>(Collections.unmodifiableCollection(builder.relationships));
         scheduler = builder.scheduler;
-        flowFileQueue = new StandardFlowFileQueue(id, this, scheduler, NiFiProperties.getInstance().getQueueSwapThreshold());
+        final int swapThreshold = NiFiProperties.getInstance().getQueueSwapThreshold();
+        if (builder.concurrentQueue) {
+            flowFileQueue = new ConcurrentFlowFileQueue(id, this, scheduler, swapThreshold);
+        } else {
+            flowFileQueue = new StandardFlowFileQueue(id, this, scheduler, swapThreshold);
+        }
         hashCode = new HashCodeBuilder(7, 67).append(id).toHashCode();
     }
 
@@ -246,6 +253,7 @@ public final class StandardConnection implements Connection {
         private Connectable source;
         private Connectable destination;
         private Collection<Relationship> relationships;
+        private boolean concurrentQueue = false;
 
         public Builder(final ProcessScheduler scheduler) {
             this.scheduler = scheduler;
@@ -292,6 +300,17 @@ public final class StandardConnection implements Connection {
             return this;
         }
 
+        /**
+         * @param concurrentQueue whether the connection should use a lock-free
+         * First-In-First-Out queue, which does not support Prioritizers, in
+         * place of the standard queue
+         * @return this
+         */
+        public Builder concurrentQueue(final boolean concurrentQueue) {
+            this.concurrentQueue = concurrentQueue;
+            return this;
+        }
+
         public StandardConnection build() {
             if (source == null) {
                 throw new IllegalStateException("Cannot build a Connection without a Source");
@@ -40,14 +40,19 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
@@ -91,6 +96,7 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
     private final long swapInMillis;
     private final long swapOutMillis;
     private final int swapOutThreadCount;
+    private final int recoveryThreadCount;
 
     private ContentClaimManager claimManager;	// effectively final
 
@@ -108,6 +114,7 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         swapInMillis = FormatUtils.getTimeDuration(properties.getSwapInPeriod(), TimeUnit.MILLISECONDS);
         swapOutMillis = FormatUtils.getTimeDuration(properties.getSwapOutPeriod(), TimeUnit.MILLISECONDS);
         swapOutThreadCount = properties.getSwapOutThreads();
+        recoveryThreadCount = properties.getFlowFileRepositoryRecoveryThreads();
         swapInExecutor = new FlowEngine(properties.getSwapInThreads(), "Swap In FlowFiles");
     }
 
@@ -537,58 +544,110 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         }
 
         final ConnectionSwapInfo swapInfo = new ConnectionSwapInfo();
-        int swappedCount = 0;
-        long swappedBytes = 0L;
-        long maxRecoveredId = 0L;
-
-        for (final File swapFile : swapFiles) {
-            // read record to disk via the swap file
-            try (final InputStream fis = new FileInputStream(swapFile);
-                    final InputStream bufferedIn = new BufferedInputStream(fis);
-                    final DataInputStream in = new DataInputStream(bufferedIn)) {
-
-                final int swapEncodingVersion = in.readInt();
-                if (swapEncodingVersion > SWAP_ENCODING_VERSION) {
-                    throw new IOException("Cannot swap FlowFiles in from " + swapFile + " because the encoding version is "
-                            + swapEncodingVersion + ", which is too new (expecting " + SWAP_ENCODING_VERSION + " or less)");
-                }
+        final AtomicInteger swappedCount = new AtomicInteger(0);
+        final AtomicLong swappedBytes = new AtomicLong(0L);
+        final long recoveryStart = System.nanoTime();
 
-                final String connectionId = in.readUTF();
-                final FlowFileQueue queue = queueMap.get(connectionId);
-                if (queue == null) {
-                    logger.error("Cannot recover Swapped FlowFiles from Swap File {} because the FlowFiles belong to a Connection with ID {} and that Connection does not exist", swapFile, connectionId);
-                    continue;
-                }
+        // the Swap Files are independent of one another, so we recover them concurrently
+        final ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger threadCounter = new AtomicInteger(0);
 
-                final int numRecords = in.readInt();
-                final long contentSize = in.readLong();
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "Recover Swap Files Thread-" + threadCounter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
 
-                swapInfo.addSwapSizeInfo(connectionId, swapFile.getAbsolutePath(), new QueueSize(numRecords, contentSize));
-                swappedCount += numRecords;
-                swappedBytes += contentSize;
-
-                final List<FlowFileRecord> records = deserializeFlowFiles(in, numRecords, queue, swapEncodingVersion, true, claimManager);
-                long maxId = 0L;
-                for (final FlowFileRecord record : records) {
-                    if (record.getId() > maxId) {
-                        maxId = record.getId();
+        final ExecutorService recoveryExecutor = Executors.newFixedThreadPool(Math.min(recoveryThreadCount, Math.max(1, swapFiles.length)), threadFactory);
+        final List<Future<Long>> futures = new ArrayList<>(swapFiles.length);
+        try {
+            for (final File swapFile : swapFiles) {
+                futures.add(recoveryExecutor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        return recoverSwapFile(swapFile, queueMap, claimManager, swapInfo, swappedCount, swappedBytes);
                     }
+                }));
+            }
+
+            long maxRecoveredId = 0L;
+            for (final Future<Long> future : futures) {
+                final long maxId;
+                try {
+                    maxId = future.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while recovering Swap Files", e);
+                } catch (final ExecutionException e) {
+                    throw new RuntimeException("Failed to recover Swap Files", e.getCause());
                 }
 
                 if (maxId > maxRecoveredId) {
                     maxRecoveredId = maxId;
                 }
-            } catch (final IOException ioe) {
-                logger.error("Cannot recover Swapped FlowFiles from Swap File {} due to {}", swapFile, ioe.toString());
-                if (logger.isDebugEnabled()) {
-                    logger.error("", ioe);
-                }
             }
+
+            restoreSwapLocations(queueMap.values(), swapInfo);
+            logger.info("Recovered {} FlowFiles ({} bytes) from {} Swap Files in {} milliseconds", new Object[]{swappedCount.get(), swappedBytes.get(),
+                swapFiles.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recoveryStart)});
+            return maxRecoveredId;
+        } finally {
+            recoveryExecutor.shutdownNow();
         }
+    }
 
-        restoreSwapLocations(queueMap.values(), swapInfo);
-        logger.info("Recovered {} FlowFiles ({} bytes) from Swap Files", swappedCount, swappedBytes);
-        return maxRecoveredId;
+    /**
+     * Recovers the FlowFiles from the given Swap File, returning the largest
+     * FlowFile ID that was recovered, or 0 if the Swap File could not be
+     * recovered
+     */
+    private long recoverSwapFile(final File swapFile, final Map<String, FlowFileQueue> queueMap, final ContentClaimManager claimManager,
+            final ConnectionSwapInfo swapInfo, final AtomicInteger swappedCount, final AtomicLong swappedBytes) {
+        // read record to disk via the swap file
+        try (final InputStream fis = new FileInputStream(swapFile);
+                final InputStream bufferedIn = new BufferedInputStream(fis);
+                final DataInputStream in = new DataInputStream(bufferedIn)) {
+
+            final int swapEncodingVersion = in.readInt();
+            if (swapEncodingVersion > SWAP_ENCODING_VERSION) {
+                throw new IOException("Cannot swap FlowFiles in from " + swapFile + " because the encoding version is "
+                        + swapEncodingVersion + ", which is too new (expecting " + SWAP_ENCODING_VERSION + " or less)");
+            }
+
+            final String connectionId = in.readUTF();
+            final FlowFileQueue queue = queueMap.get(connectionId);
+            if (queue == null) {
+                logger.error("Cannot recover Swapped FlowFiles from Swap File {} because the FlowFiles belong to a Connection with ID {} and that Connection does not exist", swapFile, connectionId);
+                return 0L;
+            }
+
+            final int numRecords = in.readInt();
+            final long contentSize = in.readLong();
+
+            synchronized (swapInfo) {
+                swapInfo.addSwapSizeInfo(connectionId, swapFile.getAbsolutePath(), new QueueSize(numRecords, contentSize));
+            }
+            swappedCount.addAndGet(numRecords);
+            swappedBytes.addAndGet(contentSize);
+
+            final List<FlowFileRecord> records = deserializeFlowFiles(in, numRecords, queue, swapEncodingVersion, true, claimManager);
+            long maxId = 0L;
+            for (final FlowFileRecord record : records) {
+                if (record.getId() > maxId) {
+                    maxId = record.getId();
+                }
+            }
+
+            return maxId;
+        } catch (final IOException ioe) {
+            logger.error("Cannot recover Swapped FlowFiles from Swap File {} due to {}", swapFile, ioe.toString());
+            if (logger.isDebugEnabled()) {
+                logger.error("", ioe);
+            }
+            return 0L;
+        }
     }
 
     public void restoreSwapLocations(final Collection<FlowFileQueue> flowFileQueues, final ConnectionSwapInfo swapInfo) {
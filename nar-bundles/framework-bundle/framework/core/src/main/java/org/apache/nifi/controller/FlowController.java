@@ -95,8 +95,10 @@ import org.apache.nifi.controller.repository.io.LimitedInputStream;
 import org.apache.nifi.controller.scheduling.EventDrivenSchedulingAgent;
 import org.apache.nifi.controller.scheduling.ProcessContextFactory;
 import org.apache.nifi.controller.scheduling.QuartzSchedulingAgent;
+import org.apache.nifi.controller.scheduling.SchedulingAgent;
 import org.apache.nifi.controller.scheduling.StandardProcessScheduler;
 import org.apache.nifi.controller.scheduling.TimerDrivenSchedulingAgent;
+import org.apache.nifi.controller.scheduling.WorkAwareSchedulingAgent;
 import org.apache.nifi.controller.service.ControllerServiceNode;
 import org.apache.nifi.controller.service.ControllerServiceProvider;
 import org.apache.nifi.controller.service.StandardControllerServiceProvider;
@@ -114,6 +116,7 @@ import org.apache.nifi.diagnostics.SystemDiagnostics;
 import org.apache.nifi.diagnostics.SystemDiagnosticsFactory;
 import org.apache.nifi.encrypt.StringEncryptor;
 import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.engine.WorkStealingFlowEngine;
 import org.apache.nifi.events.BulletinFactory;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.events.NodeBulletinProcessingStrategy;
@@ -196,6 +199,8 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
     public static final String DEFAULT_PROVENANCE_REPO_IMPLEMENTATION = "org.apache.nifi.provenance.VolatileProvenanceRepository";
     public static final String DEFAULT_SWAP_MANAGER_IMPLEMENTATION = "org.apache.nifi.controller.FileSystemSwapManager";
     public static final String DEFAULT_COMPONENT_STATUS_REPO_IMPLEMENTATION = "org.apache.nifi.controller.status.history.VolatileComponentStatusRepository";
+    public static final String ENGINE_STANDARD = "standard";
+    public static final String ENGINE_WORK_STEALING = "work-stealing";
 
     public static final String SCHEDULE_MINIMUM_NANOSECONDS = "flowcontroller.minimum.nanoseconds";
     public static final String GRACEFUL_SHUTDOWN_PERIOD = "nifi.flowcontroller.graceful.shutdown.seconds";
@@ -207,7 +212,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
 
     private final AtomicInteger maxTimerDrivenThreads;
     private final AtomicInteger maxEventDrivenThreads;
-    private final AtomicReference<FlowEngine> timerDrivenEngineRef;
+    private final AtomicReference<ScheduledExecutorService> timerDrivenEngineRef;
     private final AtomicReference<FlowEngine> eventDrivenEngineRef;
 
     private final ContentRepository contentRepository;
@@ -228,6 +233,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
     private final ControllerServiceProvider controllerServiceProvider;
     private final UserService userService;
     private final EventDrivenWorkerQueue eventDrivenWorkerQueue;
+    private final Set<String> concurrentQueueConnectionIds;
     private final ComponentStatusRepository componentStatusRepository;
     private final long systemStartTime = System.currentTimeMillis();    // time at which the node was started
     private final ConcurrentMap<String, ReportingTaskNode> reportingTasks = new ConcurrentHashMap<>();
@@ -375,7 +381,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
         extensionManager = new ExtensionManager();
         controllerServiceProvider = new StandardControllerServiceProvider();
 
-        timerDrivenEngineRef = new AtomicReference<>(new FlowEngine(maxTimerDrivenThreads.get(), "Timer-Driven Process"));
+        timerDrivenEngineRef = new AtomicReference<>(createTimerDrivenEngine(properties, maxTimerDrivenThreads.get()));
         eventDrivenEngineRef = new AtomicReference<>(new FlowEngine(maxEventDrivenThreads.get(), "Event-Driven Process"));
 
         final FlowFileRepository flowFileRepo = createFlowFileRepository(properties, contentClaimManager);
@@ -409,7 +415,13 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
                 eventDrivenEngineRef.get(), this, eventDrivenWorkerQueue, contextFactory, maxEventDrivenThreads.get(), encryptor));
 
         final QuartzSchedulingAgent quartzSchedulingAgent = new QuartzSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor);
-        final TimerDrivenSchedulingAgent timerDrivenAgent = new TimerDrivenSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor);
+        final SchedulingAgent timerDrivenAgent;
+        if (properties.isProcessorSchedulingParkIdle()) {
+            final long maxParkMillis = FormatUtils.getTimeDuration(properties.getProcessorSchedulingMaxParkDuration(), TimeUnit.MILLISECONDS);
+            timerDrivenAgent = new WorkAwareSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor, maxParkMillis, TimeUnit.MILLISECONDS);
+        } else {
+            timerDrivenAgent = new TimerDrivenSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor);
+        }
         processScheduler.setSchedulingAgent(SchedulingStrategy.TIMER_DRIVEN, timerDrivenAgent);
         processScheduler.setSchedulingAgent(SchedulingStrategy.PRIMARY_NODE_ONLY, timerDrivenAgent);
         processScheduler.setSchedulingAgent(SchedulingStrategy.CRON_DRIVEN, quartzSchedulingAgent);
@@ -441,6 +453,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
         this.configuredForClustering = configuredForClustering;
         this.heartbeatDelaySeconds = (int) FormatUtils.getTimeDuration(properties.getNodeHeartbeatInterval(), TimeUnit.SECONDS);
         this.protocolSender = protocolSender;
+        this.concurrentQueueConnectionIds = properties.getConcurrentQueueConnectionIds();
         try {
             this.templateManager = new TemplateManager(properties.getTemplateDirectory());
         } catch (IOException e) {
@@ -656,7 +669,8 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
     }
 
     /**
-     * Creates a connection between two Connectable objects.
+     * Creates a connection between two Connectable objects that does not have
+     * any Prioritizers configured.
      *
      * @param id required ID of the connection
      * @param name the name of the connection, or <code>null</code> to leave the
@@ -672,6 +686,33 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
      * empty collection
      */
     public Connection createConnection(final String id, final String name, final Connectable source, final Connectable destination, final Collection<String> relationshipNames) {
+        return createConnection(id, name, source, destination, relationshipNames, false);
+    }
+
+    /**
+     * Creates a connection between two Connectable objects. If the ID of the
+     * connection is listed in the <code>nifi.queue.concurrent.connections</code>
+     * property and the connection is not prioritized, the connection is given
+     * a lock-free First-In-First-Out queue. Otherwise, it is given the
+     * standard queue.
+     *
+     * @param id required ID of the connection
+     * @param name the name of the connection, or <code>null</code> to leave the
+     * connection unnamed
+     * @param source required source
+     * @param destination required destination
+     * @param relationshipNames required collection of relationship names
+     * @param prioritized whether or not Prioritizers will be configured for
+     * the connection
+     * @return
+     *
+     * @throws NullPointerException if the ID, source, destination, or set of
+     * relationships is null.
+     * @throws IllegalArgumentException if <code>relationships</code> is an
+     * empty collection
+     */
+    public Connection createConnection(final String id, final String name, final Connectable source, final Connectable destination, final Collection<String> relationshipNames,
+            final boolean prioritized) {
         final StandardConnection.Builder builder = new StandardConnection.Builder(processScheduler);
 
         final List<Relationship> relationships = new ArrayList<>();
@@ -679,7 +720,8 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
             relationships.add(new Relationship.Builder().name(relationshipName).build());
         }
 
-        return builder.id(requireNonNull(id).intern()).name(name == null ? null : name.intern()).relationships(relationships).source(requireNonNull(source)).destination(destination).build();
+        return builder.id(requireNonNull(id).intern()).name(name == null ? null : name.intern()).relationships(relationships).source(requireNonNull(source)).destination(destination)
+                .concurrentQueue(!prioritized && concurrentQueueConnectionIds.contains(id)).build();
     }
 
     /**
@@ -1000,7 +1042,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
 
         writeLock.lock();
         try {
-            if (isTerminated() || timerDrivenEngineRef.get().isTerminating()) {
+            if (isTerminated() || timerDrivenEngineRef.get().isShutdown()) {
                 throw new IllegalStateException("Controller already stopped or still stopping...");
             }
 
@@ -1032,6 +1074,12 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
                 LOG.warn("Unable to shut down FlowFileRepository due to {}", new Object[]{t});
             }
 
+            try {
+                contentRepository.shutdown();
+            } catch (final Throwable t) {
+                LOG.warn("Unable to shut down ContentRepository due to {}", new Object[]{t});
+            }
+
             if (this.timerDrivenEngineRef.get().isTerminated() && eventDrivenEngineRef.get().isTerminated()) {
                 LOG.info("Controller has been terminated successfully.");
             } else {
@@ -1137,15 +1185,46 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
      *
      * This method must be called while holding the write lock!
      */
-    private void setMaxThreadCount(final int maxThreadCount, final FlowEngine engine, final AtomicInteger maxThreads) {
+    private void setMaxThreadCount(final int maxThreadCount, final ScheduledExecutorService engine, final AtomicInteger maxThreads) {
         if (maxThreadCount < 1) {
             throw new IllegalArgumentException();
         }
 
         maxThreads.getAndSet(maxThreadCount);
-        if (null != engine && engine.getCorePoolSize() < maxThreadCount) {
-            engine.setCorePoolSize(maxThreads.intValue());
+        if (engine instanceof FlowEngine) {
+            final FlowEngine flowEngine = (FlowEngine) engine;
+            if (flowEngine.getCorePoolSize() < maxThreadCount) {
+                flowEngine.setCorePoolSize(maxThreads.intValue());
+            }
+        } else if (engine instanceof WorkStealingFlowEngine) {
+            final WorkStealingFlowEngine workStealingEngine = (WorkStealingFlowEngine) engine;
+            if (workStealingEngine.getCorePoolSize() < maxThreadCount) {
+                workStealingEngine.setCorePoolSize(maxThreads.intValue());
+            }
+        }
+    }
+
+    /**
+     * Creates the engine that runs Timer-Driven and CRON-Driven components, as
+     * configured by the {@link NiFiProperties#PROCESSOR_SCHEDULING_ENGINE}
+     * property.
+     *
+     * @param properties
+     * @param threadCount
+     * @return
+     */
+    private static ScheduledExecutorService createTimerDrivenEngine(final NiFiProperties properties, final int threadCount) {
+        final String engineName = properties.getProcessorSchedulingEngine();
+        if (ENGINE_WORK_STEALING.equalsIgnoreCase(engineName)) {
+            LOG.info("Timer-Driven components will be run by a work-stealing engine");
+            return new WorkStealingFlowEngine(threadCount, "Timer-Driven Process");
+        }
+        if (ENGINE_STANDARD.equalsIgnoreCase(engineName)) {
+            return new FlowEngine(threadCount, "Timer-Driven Process");
         }
+
+        throw new IllegalArgumentException("Invalid value for " + NiFiProperties.PROCESSOR_SCHEDULING_ENGINE + ": " + engineName
+                + "; must be either " + ENGINE_STANDARD + " or " + ENGINE_WORK_STEALING);
     }
 
     /**
@@ -1191,7 +1270,12 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
 
     public SystemDiagnostics getSystemDiagnostics() {
         final SystemDiagnosticsFactory factory = new SystemDiagnosticsFactory();
-        return factory.create(flowFileRepository, contentRepository);
+        final List<Connection> connections = getGroup(getRootGroupId()).findAllConnections();
+        final List<FlowFileQueue> queues = new ArrayList<>(connections.size());
+        for (final Connection connection : connections) {
+            queues.add(connection.getFlowFileQueue());
+        }
+        return factory.create(flowFileRepository, contentRepository, queues, contentClaimManager);
     }
 
     //
@@ -1555,7 +1639,9 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
                     relationships.addAll(connectionDTO.getSelectedRelationships());
                 }
 
-                final Connection connection = createConnection(connectionDTO.getId(), connectionDTO.getName(), source, destination, relationships);
+                final List<String> prioritizers = connectionDTO.getPrioritizers();
+                final boolean prioritized = prioritizers != null && !prioritizers.isEmpty();
+                final Connection connection = createConnection(connectionDTO.getId(), connectionDTO.getName(), source, destination, relationships, prioritized);
 
                 if (connectionDTO.getBends() != null) {
                     final List<Position> bendPoints = new ArrayList<>();
@@ -1570,7 +1656,6 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
                 queue.setBackPressureObjectThreshold(connectionDTO.getBackPressureObjectThreshold());
                 queue.setFlowFileExpiration(connectionDTO.getFlowFileExpiration());
 
-                final List<String> prioritizers = connectionDTO.getPrioritizers();
                 if (prioritizers != null) {
                     final List<String> newPrioritizersClasses = new ArrayList<>(prioritizers);
                     final List<FlowFilePrioritizer> newPrioritizers = new ArrayList<>();
@@ -2281,6 +2366,8 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
             status.setBytesWritten(0L);
             status.setBytesRead(0L);
             status.setProcessingNanos(0);
+            status.setRunQueueWaitNanos(0L);
+            status.setCpuNanos(0L);
             status.setInvocations(0);
             status.setAverageLineageDuration(0L);
         } else {
@@ -2301,6 +2388,8 @@ public class FlowController implements EventAccess, ControllerServiceProvider, H
             status.setBytesWritten(writtenBytes);
 
             status.setProcessingNanos(entry.getProcessingNanoseconds());
+            status.setRunQueueWaitNanos(entry.getRunQueueWaitNanoseconds());
+            status.setCpuNanos(entry.getCpuNanoseconds());
             status.setInvocations(entry.getInvocations());
 
             status.setAverageLineageDuration(entry.getAverageLineageMillis());
@@ -798,7 +798,9 @@ public class StandardFlowSynchronizer implements FlowSynchronizer {
                 throw new RuntimeException("Found Invalid Connectable ID for Destination: " + dto.getDestination().getId());
             }
 
-            final Connection connection = controller.createConnection(dto.getId(), dto.getName(), source, destination, dto.getSelectedRelationships());
+            final List<String> prioritizers = dto.getPrioritizers();
+            final boolean prioritized = prioritizers != null && !prioritizers.isEmpty();
+            final Connection connection = controller.createConnection(dto.getId(), dto.getName(), source, destination, dto.getSelectedRelationships(), prioritized);
             connection.setProcessGroup(processGroup);
 
             final List<Position> bendPoints = new ArrayList<>();
@@ -817,7 +819,6 @@ public class StandardFlowSynchronizer implements FlowSynchronizer {
             }
 
             List<FlowFilePrioritizer> newPrioritizers = null;
-            final List<String> prioritizers = dto.getPrioritizers();
             if (prioritizers != null) {
                 final List<String> newPrioritizersClasses = new ArrayList<>(prioritizers);
                 newPrioritizers = new ArrayList<>();
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A time-ordered index of the files in a single container's archive
+ * directories. The index allows the oldest archived data to be found and
+ * destroyed without scanning the archive directories, which can hold millions
+ * of files. It is kept in memory, written to disk when the repository is shut
+ * down, and restored from that file on the next start; if the file does not
+ * exist, the index is rebuilt by scanning the archive directories.
+ *
+ * Is thread safe
+ */
+class ArchiveIndex {
+
+    private static final int SERIALIZATION_VERSION = 1;
+
+    private final Path containerPath;
+    private final TreeSet<ArchivedFile> byAge = new TreeSet<>();
+    private final Map<String, ArchivedFile> byName = new HashMap<>();
+    private long totalBytes = 0L;
+    private long sequence = 0L;
+    private volatile boolean complete = false;
+
+    public ArchiveIndex(final Path containerPath) {
+        this.containerPath = containerPath;
+    }
+
+    /**
+     * Adds the given archived file to the index, replacing any existing entry
+     * for the same file
+     *
+     * @param section the section of the container that holds the file
+     * @param name the name of the file
+     * @param size the size of the file, in bytes
+     * @param timestamp the time at which the file's content was created
+     */
+    public synchronized void add(final String section, final String name, final long size, final long timestamp) {
+        final ArchivedFile file = new ArchivedFile(section, name, size, timestamp, sequence++);
+        final ArchivedFile previous = byName.put(file.getKey(), file);
+        if (previous != null) {
+            byAge.remove(previous);
+            totalBytes -= previous.getSize();
+        }
+        byAge.add(file);
+        totalBytes += size;
+    }
+
+    /**
+     * Removes the given file from the index, if it is present
+     *
+     * @param section the section of the container that holds the file
+     * @param name the name of the file
+     * @return <code>true</code> if the file was indexed
+     */
+    public synchronized boolean remove(final String section, final String name) {
+        final ArchivedFile file = byName.remove(ArchivedFile.getKey(section, name));
+        if (file == null) {
+            return false;
+        }
+        byAge.remove(file);
+        totalBytes -= file.getSize();
+        return true;
+    }
+
+    /**
+     * @return the oldest archived file, without removing it from the index, or
+     * <code>null</code> if the archive is empty
+     */
+    public synchronized ArchivedFile peekOldest() {
+        return byAge.isEmpty() ? null : byAge.first();
+    }
+
+    /**
+     * @return the oldest archived file, removing it from the index, or
+     * <code>null</code> if the archive is empty
+     */
+    public synchronized ArchivedFile pollOldest() {
+        final ArchivedFile file = byAge.pollFirst();
+        if (file != null) {
+            byName.remove(file.getKey());
+            totalBytes -= file.getSize();
+        }
+        return file;
+    }
+
+    /**
+     * @return the creation time of the oldest archived file, or -1 if the
+     * archive is empty
+     */
+    public synchronized long getOldestTimestamp() {
+        return byAge.isEmpty() ? -1L : byAge.first().getTimestamp();
+    }
+
+    public synchronized int getFileCount() {
+        return byName.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized void clear() {
+        byAge.clear();
+        byName.clear();
+        totalBytes = 0L;
+    }
+
+    /**
+     * @return <code>true</code> if every archived file in the container is
+     * known to be in the index
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void markComplete() {
+        complete = true;
+    }
+
+    /**
+     * Writes the index to the given file, oldest file first, so that it can be
+     * restored by {@link #restore(Path)} rather than rebuilt. The file is
+     * written under a temporary name and then renamed, so a partially written
+     * index is never restored.
+     *
+     * @param file the file to write
+     * @throws IOException if unable to write the file
+     */
+    public synchronized void write(final Path file) throws IOException {
+        final Path partialFile = file.resolveSibling(file.getFileName() + ".partial");
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partialFile)))) {
+            out.writeInt(SERIALIZATION_VERSION);
+            out.writeInt(byAge.size());
+            for (final ArchivedFile archivedFile : byAge) {
+                out.writeUTF(archivedFile.getSection());
+                out.writeUTF(archivedFile.getName());
+                out.writeLong(archivedFile.getSize());
+                out.writeLong(archivedFile.getTimestamp());
+            }
+        }
+        Files.move(partialFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the contents of the index with those of a file written by
+     * {@link #write(Path)}
+     *
+     * @param file the file to read
+     * @return <code>false</code> if the file does not exist
+     * @throws IOException if unable to read the file, in which case the index
+     * is left empty
+     */
+    public synchronized boolean restore(final Path file) throws IOException {
+        clear();
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final int version = in.readInt();
+            if (version != SERIALIZATION_VERSION) {
+                throw new IOException("Cannot restore Archive Index from " + file + " because it has unknown serialization version " + version);
+            }
+
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String section = in.readUTF();
+                final String name = in.readUTF();
+                final long size = in.readLong();
+                final long timestamp = in.readLong();
+                add(section, name, size, timestamp);
+            }
+        } catch (final NoSuchFileException nsfe) {
+            return false;
+        } catch (final IOException ioe) {
+            clear();
+            throw ioe;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param file an archived file from this index
+     * @return the location of the given file on disk
+     */
+    public Path getPath(final ArchivedFile file) {
+        return containerPath.resolve(file.getSection()).resolve(FileSystemRepository.ARCHIVE_DIR_NAME).resolve(file.getName());
+    }
+
+    static class ArchivedFile implements Comparable<ArchivedFile> {
+
+        private final String section;
+        private final String name;
+        private final long size;
+        private final long timestamp;
+        private final long sequence;
+
+        private ArchivedFile(final String section, final String name, final long size, final long timestamp, final long sequence) {
+            this.section = section;
+            this.name = name;
+            this.size = size;
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+        }
+
+        private static String getKey(final String section, final String name) {
+            return section + "/" + name;
+        }
+
+        private String getKey() {
+            return getKey(section, name);
+        }
+
+        public String getSection() {
+            return section;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public int compareTo(final ArchivedFile other) {
+            final int timestampComparison = Long.compare(timestamp, other.timestamp);
+            return timestampComparison == 0 ? Long.compare(sequence, other.sequence) : timestampComparison;
+        }
+
+        @Override
+        public String toString() {
+            return getKey();
+        }
+    }
+}
@@ -0,0 +1,622 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+
+/**
+ * An immutable map of FlowFile attributes. Adding or removing an attribute
+ * creates a new map that shares all but a handful of small arrays with the
+ * map that it was created from, so a FlowFile whose attributes are updated by
+ * several Processors in series does not copy all of its attributes on each
+ * update, and the versions of a FlowFile that are held by a session and its
+ * queues share most of their memory.
+ *
+ * The map is a compressed hash trie (a CHAMP trie): each node holds up to 32
+ * entries or child nodes, selected by successive 5-bit slices of the key's
+ * hash code, in an array that is sized to what the node actually holds. A
+ * lookup or update therefore touches one node per level, and a map of fewer
+ * than a few dozen attributes rarely has more than two levels.
+ *
+ * The keys of the {@link CoreAttributes} are canonicalized by
+ * {@link #internKey(String)} so that FlowFiles that have been restored from
+ * the FlowFile Repository or swapped in share a single instance of each.
+ * Other keys and short values are deduplicated on a best-effort basis by a
+ * small, lossy table: FlowFiles that are created by the same Processor tend
+ * to carry the same attribute names and many of the same values (a mime
+ * type, a path, a source host), and a queue of such FlowFiles otherwise
+ * holds one copy of each string per FlowFile.
+ *
+ * Null keys and values are not permitted.
+ */
+final class AttributeMap extends AbstractMap<String, String> {
+
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+    // seven levels of 5 bits cover a 32-bit hash, plus one level for keys whose hashes collide entirely
+    private static final int MAX_DEPTH = 8;
+
+    private static final Map<String, String> CORE_KEYS = new HashMap<>();
+
+    // longer strings are rarely repeated verbatim across FlowFiles, so they are not worth the comparison
+    private static final int MAX_DEDUPLICATED_LENGTH = 64;
+    private static final int DEDUPLICATION_TABLE_SIZE = 4096;
+    // slots are overwritten without synchronization; Strings are safely published through their final fields
+    private static final String[] DEDUPLICATION_TABLE = new String[DEDUPLICATION_TABLE_SIZE];
+
+    static {
+        for (final CoreAttributes attribute : CoreAttributes.values()) {
+            CORE_KEYS.put(attribute.key(), attribute.key());
+        }
+    }
+
+    static final AttributeMap EMPTY = new AttributeMap(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private AttributeMap(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @param key an attribute key
+     * @return the canonical instance of the key if it is the key of one of the
+     * {@link CoreAttributes}, otherwise the given key
+     */
+    static String internKey(final String key) {
+        final String coreKey = CORE_KEYS.get(key);
+        return coreKey == null ? deduplicate(key) : coreKey;
+    }
+
+    /**
+     * @param key the canonical attribute key, as returned by
+     * {@link #internKey(String)}
+     * @param value the attribute value
+     * @return an equal instance of the value that may be shared with other
+     * FlowFiles
+     */
+    static String internValue(final String key, final String value) {
+        // every FlowFile has its own UUID, so there is nothing to share
+        if (CoreAttributes.UUID.key().equals(key)) {
+            return value;
+        }
+        return deduplicate(value);
+    }
+
+    private static String deduplicate(final String value) {
+        if (value.length() > MAX_DEDUPLICATED_LENGTH) {
+            return value;
+        }
+
+        final int slot = hash(value) & (DEDUPLICATION_TABLE_SIZE - 1);
+        final String cached = DEDUPLICATION_TABLE[slot];
+        if (value.equals(cached)) {
+            return cached;
+        }
+        DEDUPLICATION_TABLE[slot] = value;
+        return value;
+    }
+
+    private static boolean isShared(final String value) {
+        if (CORE_KEYS.get(value) == value) {
+            return true;
+        }
+        return value.length() <= MAX_DEDUPLICATED_LENGTH && DEDUPLICATION_TABLE[hash(value) & (DEDUPLICATION_TABLE_SIZE - 1)] == value;
+    }
+
+    /**
+     * Estimates sizes for a 64-bit JVM with compressed object pointers, which
+     * is how NiFi is normally run.
+     */
+    static long alignedBytes(final long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static long estimateArrayBytes(final int length) {
+        return alignedBytes(16 + 4L * length);
+    }
+
+    /**
+     * @param value a string
+     * @return the estimated size of the string and its characters, or 0 if
+     * the string is the canonical instance that is shared by all FlowFiles
+     */
+    static long estimateStringBytes(final String value) {
+        if (isShared(value)) {
+            return 0L;
+        }
+        return 24 + alignedBytes(16 + 2L * value.length());
+    }
+
+    /**
+     * @return an estimate of the heap space that this map occupies, not
+     * counting the strings that are shared through {@link #internKey(String)}
+     * and {@link #internValue(String, String)}. Nodes that are shared with
+     * other versions of the map are counted in full, so for a FlowFile that
+     * has been updated in place this is an upper bound.
+     */
+    long estimateHeapBytes() {
+        if (this == EMPTY) {
+            return 0L;
+        }
+        // object header, the two cached views of AbstractMap, the root and the size
+        return 32 + root.estimateHeapBytes();
+    }
+
+    private static int hash(final Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bitpos(final int hash, final int shift) {
+        return 1 << ((hash >>> shift) & LEVEL_MASK);
+    }
+
+    /**
+     * @param key the attribute key
+     * @param value the attribute value
+     * @return a map that contains the given attribute in addition to all
+     * attributes of this map other than the one being replaced, or this map
+     * if it already maps the key to the given value
+     */
+    AttributeMap plus(final String key, final String value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+
+        final String currentValue = get(key);
+        if (value.equals(currentValue)) {
+            return this;
+        }
+
+        final Node newRoot = root.put(key, value, hash(key), 0);
+        return new AttributeMap(newRoot, currentValue == null ? size + 1 : size);
+    }
+
+    /**
+     * @param key the attribute key
+     * @return a map that contains all attributes of this map except for the
+     * given one, or this map if it does not contain the key
+     */
+    AttributeMap minus(final String key) {
+        if (key == null || get(key) == null) {
+            return this;
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+
+        return new AttributeMap(root.remove(key, hash(key), 0), size - 1);
+    }
+
+    /**
+     * @param attributes the attributes to add
+     * @return a map that contains the given attributes in addition to those of
+     * this map, with the given values replacing any current values
+     */
+    AttributeMap plusAll(final Map<String, String> attributes) {
+        AttributeMap map = this;
+        for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+            map = map.plus(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    @Override
+    public String get(final Object key) {
+        if (key == null) {
+            return null;
+        }
+        return root.find(key, hash(key), 0);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new EntryIterator(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static abstract class Node {
+
+        abstract String find(Object key, int hash, int shift);
+
+        abstract Node put(String key, String value, int hash, int shift);
+
+        /**
+         * Removes the given key, which must be present in this node or one of
+         * its descendants
+         */
+        abstract Node remove(Object key, int hash, int shift);
+
+        abstract int dataArity();
+
+        abstract String keyAt(int index);
+
+        abstract String valueAt(int index);
+
+        abstract int nodeArity();
+
+        abstract Node nodeAt(int index);
+
+        boolean isSingleEntry() {
+            return dataArity() == 1 && nodeArity() == 0;
+        }
+
+        /**
+         * @return the estimated size of this node itself, not counting its
+         * entries or child nodes
+         */
+        abstract long estimateShallowBytes();
+
+        long estimateHeapBytes() {
+            long bytes = estimateShallowBytes();
+            for (int i = 0; i < dataArity(); i++) {
+                bytes += estimateStringBytes(keyAt(i)) + estimateStringBytes(valueAt(i));
+            }
+            for (int i = 0; i < nodeArity(); i++) {
+                bytes += nodeAt(i).estimateHeapBytes();
+            }
+            return bytes;
+        }
+
+        static Node merge(final String key0, final String value0, final int hash0,
+                final String key1, final String value1, final int hash1, final int shift) {
+            if (shift >= Integer.SIZE) {
+                return new CollisionNode(new String[]{key0, key1}, new String[]{value0, value1});
+            }
+
+            final int mask0 = (hash0 >>> shift) & LEVEL_MASK;
+            final int mask1 = (hash1 >>> shift) & LEVEL_MASK;
+            if (mask0 != mask1) {
+                final int dataMap = (1 << mask0) | (1 << mask1);
+                if (mask0 < mask1) {
+                    return new BitmapNode(dataMap, 0, new Object[]{key0, value0, key1, value1});
+                } else {
+                    return new BitmapNode(dataMap, 0, new Object[]{key1, value1, key0, value0});
+                }
+            }
+
+            final Node child = merge(key0, value0, hash0, key1, value1, hash1, shift + BITS_PER_LEVEL);
+            return new BitmapNode(0, 1 << mask0, new Object[]{child});
+        }
+    }
+
+    /**
+     * Holds key/value pairs at the front of its array, in bit order, and child
+     * nodes at the back of its array, in reverse bit order
+     */
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(0, 0, new Object[0]);
+
+        private final int dataMap;
+        private final int nodeMap;
+        private final Object[] content;
+
+        BitmapNode(final int dataMap, final int nodeMap, final Object[] content) {
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+        }
+
+        private int dataIndex(final int bit) {
+            return Integer.bitCount(dataMap & (bit - 1));
+        }
+
+        private int nodeContentIndex(final int bit) {
+            return content.length - 1 - Integer.bitCount(nodeMap & (bit - 1));
+        }
+
+        @Override
+        String find(final Object key, final int hash, final int shift) {
+            final int bit = bitpos(hash, shift);
+            if ((dataMap & bit) != 0) {
+                final int index = dataIndex(bit);
+                return key.equals(content[2 * index]) ? (String) content[2 * index + 1] : null;
+            }
+            if ((nodeMap & bit) != 0) {
+                return ((Node) content[nodeContentIndex(bit)]).find(key, hash, shift + BITS_PER_LEVEL);
+            }
+            return null;
+        }
+
+        @Override
+        Node put(final String key, final String value, final int hash, final int shift) {
+            final int bit = bitpos(hash, shift);
+            if ((dataMap & bit) != 0) {
+                final int index = dataIndex(bit);
+                final String currentKey = (String) content[2 * index];
+                if (currentKey.equals(key)) {
+                    final Object[] newContent = content.clone();
+                    newContent[2 * index + 1] = value;
+                    return new BitmapNode(dataMap, nodeMap, newContent);
+                }
+
+                // two keys share this slot at this level, so move both down into a new child node
+                final String currentValue = (String) content[2 * index + 1];
+                final Node child = merge(currentKey, currentValue, hash(currentKey), key, value, hash, shift + BITS_PER_LEVEL);
+                return migrateDataToNode(bit, index, child);
+            }
+
+            if ((nodeMap & bit) != 0) {
+                final int contentIndex = nodeContentIndex(bit);
+                final Node child = ((Node) content[contentIndex]).put(key, value, hash, shift + BITS_PER_LEVEL);
+                final Object[] newContent = content.clone();
+                newContent[contentIndex] = child;
+                return new BitmapNode(dataMap, nodeMap, newContent);
+            }
+
+            final int index = dataIndex(bit);
+            final Object[] newContent = new Object[content.length + 2];
+            System.arraycopy(content, 0, newContent, 0, 2 * index);
+            newContent[2 * index] = key;
+            newContent[2 * index + 1] = value;
+            System.arraycopy(content, 2 * index, newContent, 2 * index + 2, content.length - 2 * index);
+            return new BitmapNode(dataMap | bit, nodeMap, newContent);
+        }
+
+        @Override
+        Node remove(final Object key, final int hash, final int shift) {
+            final int bit = bitpos(hash, shift);
+            if ((dataMap & bit) != 0) {
+                final int index = dataIndex(bit);
+                final Object[] newContent = new Object[content.length - 2];
+                System.arraycopy(content, 0, newContent, 0, 2 * index);
+                System.arraycopy(content, 2 * index + 2, newContent, 2 * index, content.length - 2 * index - 2);
+                return new BitmapNode(dataMap ^ bit, nodeMap, newContent);
+            }
+
+            final int contentIndex = nodeContentIndex(bit);
+            final Node child = ((Node) content[contentIndex]).remove(key, hash, shift + BITS_PER_LEVEL);
+            if (child.isSingleEntry()) {
+                // keep the trie compact by pulling a lone remaining entry up into this node
+                return migrateNodeToData(bit, contentIndex, child.keyAt(0), child.valueAt(0));
+            }
+
+            final Object[] newContent = content.clone();
+            newContent[contentIndex] = child;
+            return new BitmapNode(dataMap, nodeMap, newContent);
+        }
+
+        private Node migrateDataToNode(final int bit, final int dataIndex, final Node child) {
+            final Object[] newContent = new Object[content.length - 1];
+            final int oldNodeIndex = nodeContentIndex(bit);
+            // the child's position at the back of the new array, which is one shorter and has two fewer data slots
+            final int newNodeIndex = oldNodeIndex - 1;
+
+            System.arraycopy(content, 0, newContent, 0, 2 * dataIndex);
+            System.arraycopy(content, 2 * dataIndex + 2, newContent, 2 * dataIndex, newNodeIndex - 2 * dataIndex);
+            newContent[newNodeIndex] = child;
+            System.arraycopy(content, oldNodeIndex + 1, newContent, newNodeIndex + 1, content.length - oldNodeIndex - 1);
+            return new BitmapNode(dataMap ^ bit, nodeMap | bit, newContent);
+        }
+
+        private Node migrateNodeToData(final int bit, final int contentIndex, final String key, final String value) {
+            final Object[] newContent = new Object[content.length + 1];
+            final int dataIndex = dataIndex(bit);
+
+            System.arraycopy(content, 0, newContent, 0, 2 * dataIndex);
+            newContent[2 * dataIndex] = key;
+            newContent[2 * dataIndex + 1] = value;
+            System.arraycopy(content, 2 * dataIndex, newContent, 2 * dataIndex + 2, contentIndex - 2 * dataIndex);
+            System.arraycopy(content, contentIndex + 1, newContent, contentIndex + 2, content.length - contentIndex - 1);
+            return new BitmapNode(dataMap | bit, nodeMap ^ bit, newContent);
+        }
+
+        @Override
+        int dataArity() {
+            return Integer.bitCount(dataMap);
+        }
+
+        @Override
+        String keyAt(final int index) {
+            return (String) content[2 * index];
+        }
+
+        @Override
+        String valueAt(final int index) {
+            return (String) content[2 * index + 1];
+        }
+
+        @Override
+        int nodeArity() {
+            return Integer.bitCount(nodeMap);
+        }
+
+        @Override
+        Node nodeAt(final int index) {
+            return (Node) content[content.length - 1 - index];
+        }
+
+        @Override
+        long estimateShallowBytes() {
+            return 24 + estimateArrayBytes(content.length);
+        }
+    }
+
+    /**
+     * Holds the keys whose 32-bit hash codes are identical
+     */
+    private static final class CollisionNode extends Node {
+
+        private final String[] keys;
+        private final String[] values;
+
+        CollisionNode(final String[] keys, final String[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        private int indexOf(final Object key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        String find(final Object key, final int hash, final int shift) {
+            final int index = indexOf(key);
+            return index < 0 ? null : values[index];
+        }
+
+        @Override
+        Node put(final String key, final String value, final int hash, final int shift) {
+            final int index = indexOf(key);
+            if (index >= 0) {
+                final String[] newValues = values.clone();
+                newValues[index] = value;
+                return new CollisionNode(keys, newValues);
+            }
+
+            final String[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+            final String[] newValues = Arrays.copyOf(values, values.length + 1);
+            newKeys[keys.length] = key;
+            newValues[values.length] = value;
+            return new CollisionNode(newKeys, newValues);
+        }
+
+        @Override
+        Node remove(final Object key, final int hash, final int shift) {
+            final int index = indexOf(key);
+            final String[] newKeys = new String[keys.length - 1];
+            final String[] newValues = new String[values.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+            return new CollisionNode(newKeys, newValues);
+        }
+
+        @Override
+        int dataArity() {
+            return keys.length;
+        }
+
+        @Override
+        String keyAt(final int index) {
+            return keys[index];
+        }
+
+        @Override
+        String valueAt(final int index) {
+            return values[index];
+        }
+
+        @Override
+        int nodeArity() {
+            return 0;
+        }
+
+        @Override
+        Node nodeAt(final int index) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        long estimateShallowBytes() {
+            return 24 + 2 * estimateArrayBytes(keys.length);
+        }
+    }
+
+    private static final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+
+        private final Node[] nodes = new Node[MAX_DEPTH];
+        private final int[] dataCursors = new int[MAX_DEPTH];
+        private final int[] nodeCursors = new int[MAX_DEPTH];
+        private int depth = 0;
+
+        EntryIterator(final Node root) {
+            nodes[0] = root;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (depth >= 0) {
+                final Node node = nodes[depth];
+                if (dataCursors[depth] < node.dataArity()) {
+                    return true;
+                }
+
+                if (nodeCursors[depth] < node.nodeArity()) {
+                    final Node child = node.nodeAt(nodeCursors[depth]++);
+                    depth++;
+                    nodes[depth] = child;
+                    dataCursors[depth] = 0;
+                    nodeCursors[depth] = 0;
+                } else {
+                    nodes[depth] = null;
+                    depth--;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final Node node = nodes[depth];
+            final int index = dataCursors[depth]++;
+            return new AbstractMap.SimpleImmutableEntry<>(node.keyAt(index), node.valueAt(index));
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
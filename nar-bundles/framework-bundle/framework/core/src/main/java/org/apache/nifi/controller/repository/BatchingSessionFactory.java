@@ -18,6 +18,8 @@ package org.apache.nifi.controller.repository;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
@@ -49,7 +51,7 @@ public class BatchingSessionFactory implements ProcessSessionFactory {
         return highThroughputSession;
     }
 
-    private class HighThroughputSession implements ProcessSession {
+    private class HighThroughputSession implements ChannelTransferSession {
 
         private final StandardProcessSession session;
 
@@ -237,6 +239,16 @@ public class BatchingSessionFactory implements ProcessSessionFactory {
             session.exportTo(flowFile, destination);
         }
 
+        @Override
+        public long exportTo(FlowFile flowFile, WritableByteChannel destination, long offset, long length) {
+            return session.exportTo(flowFile, destination, offset, length);
+        }
+
+        @Override
+        public ByteBuffer readBuffer(FlowFile flowFile, long offset, int length) {
+            return session.readBuffer(flowFile, offset, length);
+        }
+
         @Override
         public ProvenanceReporter getProvenanceReporter() {
             return session.getProvenanceReporter();
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The observed write performance, free space and archive backlog of one
+ * container of the {@link FileSystemRepository}. Writes and archive deletions
+ * are counted as they happen; the latency, throughput and space figures are
+ * recalculated by
+ * {@link #update(long, long)}, which the repository calls periodically, so
+ * that the counters are the only state touched on the write path.
+ */
+public final class ContainerMetrics {
+
+    // how much of each update's write time per byte carries over from the previous ones
+    private static final double LATENCY_SMOOTHING = 0.7D;
+
+    private final String containerName;
+
+    private final AtomicLong bytesWritten = new AtomicLong(0L);
+    private final AtomicLong writeCount = new AtomicLong(0L);
+    private final AtomicLong writeNanos = new AtomicLong(0L);
+    private final AtomicInteger activeWrites = new AtomicInteger(0);
+    private final AtomicLong archiveFilesDestroyed = new AtomicLong(0L);
+    private final AtomicLong archiveBytesDestroyed = new AtomicLong(0L);
+
+    // guarded by synchronizing on this; only touched by update
+    private long lastUpdateNanos = System.nanoTime();
+    private long lastBytesWritten = 0L;
+    private long lastWriteNanos = 0L;
+    private long lastArchiveFilesDestroyed = 0L;
+    private long lastArchiveBytesDestroyed = 0L;
+
+    private volatile double writeNanosPerByte = 0D;
+    private volatile long bytesPerSecond = 0L;
+    private volatile long usableSpace = -1L;
+    private volatile long capacity = -1L;
+    private volatile long archiveFilesDestroyedPerSecond = 0L;
+    private volatile long archiveBytesDestroyedPerSecond = 0L;
+    private volatile int archivedFileCount = 0;
+    private volatile long archivedBytes = 0L;
+    private volatile long oldestArchiveTimestamp = -1L;
+
+    public ContainerMetrics(final String containerName) {
+        this.containerName = containerName;
+    }
+
+    public String getContainerName() {
+        return containerName;
+    }
+
+    void writeStarted() {
+        activeWrites.incrementAndGet();
+    }
+
+    void writeFinished() {
+        activeWrites.decrementAndGet();
+    }
+
+    /**
+     * Records a finished write to the container, such as everything written to
+     * one claim
+     *
+     * @param bytes the number of bytes written
+     * @param nanos the time taken to write, flush and sync those bytes
+     */
+    void recordWrite(final long bytes, final long nanos) {
+        bytesWritten.addAndGet(bytes);
+        writeNanos.addAndGet(nanos);
+        writeCount.incrementAndGet();
+    }
+
+    void recordArchiveDestroyed(final long bytes) {
+        archiveBytesDestroyed.addAndGet(bytes);
+        archiveFilesDestroyed.incrementAndGet();
+    }
+
+    /**
+     * Records the size of the container's archive
+     *
+     * @param fileCount the number of archived files
+     * @param bytes the total size of the archived files
+     * @param oldestTimestamp the creation time of the oldest archived file, or
+     * -1 if the archive is empty
+     */
+    void updateArchive(final int fileCount, final long bytes, final long oldestTimestamp) {
+        this.archivedFileCount = fileCount;
+        this.archivedBytes = bytes;
+        this.oldestArchiveTimestamp = oldestTimestamp;
+    }
+
+    /**
+     * Recalculates the write latency and throughput, and the rate at which
+     * archived data is destroyed, from what has been recorded since the last
+     * update, and records the container's space
+     *
+     * @param usableSpace the number of bytes that can still be written to the
+     * container
+     * @param capacity the size of the container's storage, in bytes
+     */
+    synchronized void update(final long usableSpace, final long capacity) {
+        final long now = System.nanoTime();
+        final long bytes = bytesWritten.get();
+        final long nanos = writeNanos.get();
+        final long filesDestroyed = archiveFilesDestroyed.get();
+        final long bytesDestroyed = archiveBytesDestroyed.get();
+
+        final long elapsedNanos = now - lastUpdateNanos;
+        if (elapsedNanos > 0L) {
+            bytesPerSecond = (long) ((bytes - lastBytesWritten) * 1000000000D / elapsedNanos);
+            archiveFilesDestroyedPerSecond = (long) ((filesDestroyed - lastArchiveFilesDestroyed) * 1000000000D / elapsedNanos);
+            archiveBytesDestroyedPerSecond = (long) ((bytesDestroyed - lastArchiveBytesDestroyed) * 1000000000D / elapsedNanos);
+        }
+
+        final long bytesSinceUpdate = bytes - lastBytesWritten;
+        if (bytesSinceUpdate > 0L) {
+            final double latency = (double) (nanos - lastWriteNanos) / bytesSinceUpdate;
+            final double previous = writeNanosPerByte;
+            writeNanosPerByte = (previous == 0D) ? latency : LATENCY_SMOOTHING * previous + (1D - LATENCY_SMOOTHING) * latency;
+        }
+
+        lastUpdateNanos = now;
+        lastBytesWritten = bytes;
+        lastWriteNanos = nanos;
+        lastArchiveFilesDestroyed = filesDestroyed;
+        lastArchiveBytesDestroyed = bytesDestroyed;
+
+        this.usableSpace = usableSpace;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the smoothed average time taken to write one byte to the
+     * container, in nanoseconds, or 0 if nothing has been written yet
+     */
+    public double getWriteNanosPerByte() {
+        return writeNanosPerByte;
+    }
+
+    /**
+     * @return the number of bytes written per second between the last two
+     * updates
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return the number of streams that are currently writing to the
+     * container
+     */
+    public int getActiveWrites() {
+        return Math.max(0, activeWrites.get());
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return the number of finished writes, such as the number of claims
+     * written
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * @return the usable space as of the last update, or -1 if not yet known
+     */
+    public long getUsableSpace() {
+        return usableSpace;
+    }
+
+    /**
+     * @return the fraction of the container's storage that is usable, or 1 if
+     * the space is not yet known
+     */
+    public double getUsableFraction() {
+        final long total = capacity;
+        final long usable = usableSpace;
+        if (total <= 0L || usable < 0L) {
+            return 1D;
+        }
+        return Math.min(1D, (double) usable / total);
+    }
+
+    /**
+     * @return the number of files in the container's archive
+     */
+    public int getArchivedFileCount() {
+        return archivedFileCount;
+    }
+
+    /**
+     * @return the total size of the files in the container's archive
+     */
+    public long getArchivedBytes() {
+        return archivedBytes;
+    }
+
+    /**
+     * @return the creation time of the oldest file in the container's archive,
+     * or -1 if the archive is empty
+     */
+    public long getOldestArchiveTimestamp() {
+        return oldestArchiveTimestamp;
+    }
+
+    /**
+     * @return the number of archived files destroyed per second between the
+     * last two updates
+     */
+    public long getArchiveFilesDestroyedPerSecond() {
+        return archiveFilesDestroyedPerSecond;
+    }
+
+    /**
+     * @return the number of archived bytes destroyed per second between the
+     * last two updates
+     */
+    public long getArchiveBytesDestroyedPerSecond() {
+        return archiveBytesDestroyedPerSecond;
+    }
+
+    public long getArchiveFilesDestroyed() {
+        return archiveFilesDestroyed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ContainerMetrics[container=" + containerName + ", writeNanosPerByte=" + writeNanosPerByte + ", bytesPerSecond=" + bytesPerSecond
+                + ", activeWrites=" + getActiveWrites() + ", usableSpace=" + usableSpace + ", archivedFiles=" + archivedFileCount
+                + ", archiveFilesDestroyedPerSecond=" + archiveFilesDestroyedPerSecond + "]";
+    }
+}
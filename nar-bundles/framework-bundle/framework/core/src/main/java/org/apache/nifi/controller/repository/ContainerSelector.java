@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.util.List;
+
+/**
+ * Chooses the container of the {@link FileSystemRepository} in which a new
+ * Content Claim is created. The implementation is configured with the
+ * <code>nifi.content.repository.container.selector</code> property, either
+ * by one of the names <code>round-robin</code> or <code>weighted</code> or by
+ * the fully qualified name of a class that implements this interface and has
+ * a public no-argument constructor.
+ *
+ * Implementations must be thread safe.
+ */
+public interface ContainerSelector {
+
+    /**
+     * @param candidates the metrics of the containers that may be chosen, in
+     * the order in which the containers are configured; never empty
+     * @param claimIndex a number that is incremented for every claim that is
+     * created
+     * @return the metrics of the chosen container, which must be one of the
+     * candidates
+     */
+    ContainerMetrics select(List<ContainerMetrics> candidates, long claimIndex);
+}
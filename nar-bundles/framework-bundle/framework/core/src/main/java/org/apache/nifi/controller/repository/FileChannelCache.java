@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache of read-only FileChannels, keyed by ContentClaim, so that
+ * the content of a claim that is read repeatedly, such as a claim that holds
+ * the content of many FlowFiles, is opened only once. When the cache is full,
+ * the least recently used channel is dropped.
+ *
+ * Channels are reference counted: a channel that is dropped from the cache, or
+ * invalidated, is closed only once every reader that acquired it has released
+ * it. Callers must invalidate a claim before its file is removed or moved, so
+ * that the cache does not hold on to a file that no longer exists. A channel
+ * whose claim is invalidated while the channel is being opened is handed to
+ * the caller but is not cached.
+ */
+class FileChannelCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileChannelCache.class);
+
+    private final int maxSize;
+    private final Map<ContentClaim, CachedChannel> channels; // guarded by synchronizing on this
+    private final Map<ContentClaim, PendingOpen> pendingOpens = new HashMap<>(); // guarded by synchronizing on this
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+
+    public FileChannelCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.channels = new LinkedHashMap<>(Math.max(16, maxSize * 2), 0.75F, true);
+    }
+
+    /**
+     * Returns the cached channel for the given claim, opening the given path
+     * if the claim's channel is not cached. The caller must call
+     * {@link CachedChannel#close()} when finished with the channel.
+     *
+     * @param claim
+     * @param path the path of the claim's content
+     * @return
+     * @throws IOException
+     */
+    public CachedChannel acquire(final ContentClaim claim, final Path path) throws IOException {
+        final PendingOpen pendingOpen;
+        synchronized (this) {
+            final CachedChannel cached = channels.get(claim);
+            if (cached != null) {
+                cached.references.incrementAndGet();
+                hits.incrementAndGet();
+                return cached;
+            }
+
+            // the channel is opened without the lock held; record the open so that an invalidation meanwhile is noticed
+            PendingOpen pending = pendingOpens.get(claim);
+            if (pending == null) {
+                pending = new PendingOpen();
+                pendingOpens.put(claim, pending);
+            }
+            pending.openers++;
+            pendingOpen = pending;
+        }
+
+        misses.incrementAndGet();
+        final CachedChannel opened;
+        try {
+            opened = new CachedChannel(FileChannel.open(path, StandardOpenOption.READ));
+        } catch (final IOException | RuntimeException e) {
+            synchronized (this) {
+                finishOpen(claim, pendingOpen);
+            }
+            throw e;
+        }
+
+        final List<CachedChannel> evicted = new ArrayList<>(1);
+        synchronized (this) {
+            finishOpen(claim, pendingOpen);
+            if (pendingOpen.invalidated) {
+                // the file may already be gone; caching the channel would hold on to it until the channel was evicted
+                return opened;
+            }
+
+            final CachedChannel cached = channels.get(claim);
+            if (cached != null) {
+                // another thread opened the channel at the same time
+                cached.references.incrementAndGet();
+                opened.close();
+                return cached;
+            }
+
+            // one reference is held by the cache and one by the caller
+            opened.references.set(2);
+            channels.put(claim, opened);
+
+            final Iterator<CachedChannel> itr = channels.values().iterator();
+            while (channels.size() > maxSize && itr.hasNext()) {
+                evicted.add(itr.next());
+                itr.remove();
+            }
+        }
+
+        for (final CachedChannel channelToRelease : evicted) {
+            channelToRelease.close();
+        }
+
+        return opened;
+    }
+
+    // must be called with the lock held
+    private void finishOpen(final ContentClaim claim, final PendingOpen pendingOpen) {
+        if (--pendingOpen.openers == 0) {
+            pendingOpens.remove(claim);
+        }
+    }
+
+    /**
+     * Opens a channel for the given path that is not cached and is closed as
+     * soon as it is released
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static CachedChannel open(final Path path) throws IOException {
+        return new CachedChannel(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * Drops the channel for the given claim from the cache. The channel is
+     * closed once no reader holds it. A channel for the claim that is being
+     * opened at the same time will not be cached.
+     *
+     * @param claim
+     */
+    public void invalidate(final ContentClaim claim) {
+        final CachedChannel cached;
+        synchronized (this) {
+            cached = channels.remove(claim);
+            final PendingOpen pendingOpen = pendingOpens.get(claim);
+            if (pendingOpen != null) {
+                pendingOpen.invalidated = true;
+            }
+        }
+
+        if (cached != null) {
+            cached.close();
+        }
+    }
+
+    /**
+     * Drops all channels from the cache
+     */
+    public void clear() {
+        final List<CachedChannel> toRelease;
+        synchronized (this) {
+            toRelease = new ArrayList<>(channels.values());
+            channels.clear();
+            for (final PendingOpen pendingOpen : pendingOpens.values()) {
+                pendingOpen.invalidated = true;
+            }
+        }
+
+        for (final CachedChannel cached : toRelease) {
+            cached.close();
+        }
+    }
+
+    public synchronized int size() {
+        return channels.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The threads that are opening a channel for a claim that is not cached,
+     * and whether the claim has been invalidated since they started. Guarded
+     * by synchronizing on the cache.
+     */
+    private static class PendingOpen {
+
+        private int openers = 0;
+        private boolean invalidated = false;
+    }
+
+    /**
+     * A FileChannel that is closed when its last reference is released
+     */
+    static class CachedChannel implements Closeable {
+
+        private final FileChannel channel;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private CachedChannel(final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        public FileChannel getChannel() {
+            return channel;
+        }
+
+        /**
+         * Releases one reference to the channel
+         */
+        @Override
+        public void close() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    channel.close();
+                } catch (final IOException ioe) {
+                    logger.warn("Failed to close {} due to {}", channel, ioe.toString());
+                }
+            }
+        }
+    }
+}
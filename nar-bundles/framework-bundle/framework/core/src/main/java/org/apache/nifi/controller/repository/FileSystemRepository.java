@@ -17,40 +17,39 @@
 package org.apache.nifi.controller.repository;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.FilterOutputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.file.FileVisitResult;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
@@ -63,14 +62,15 @@ import java.util.regex.Pattern;
 
 import org.apache.nifi.controller.repository.claim.ContentClaim;
 import org.apache.nifi.controller.repository.claim.ContentClaimManager;
+import org.apache.nifi.controller.repository.ArchiveIndex.ArchivedFile;
+import org.apache.nifi.controller.repository.FileChannelCache.CachedChannel;
+import org.apache.nifi.controller.repository.io.FileChannelInputStream;
 import org.apache.nifi.controller.repository.io.SyncOnCloseOutputStream;
 import org.apache.nifi.engine.FlowEngine;
 import org.apache.nifi.file.FileUtils;
 import org.apache.nifi.io.StreamUtils;
 import org.apache.nifi.util.FormatUtils;
-import org.apache.nifi.util.LongHolder;
 import org.apache.nifi.util.NiFiProperties;
-import org.apache.nifi.util.StopWatch;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -85,7 +85,13 @@ public class FileSystemRepository implements ContentRepository {
 
     public static final int SECTIONS_PER_CONTAINER = 1024;
     public static final String ARCHIVE_DIR_NAME = "archive";
+    // the file in each container that holds its archive index while the repository is shut down
+    static final String ARCHIVE_INDEX_FILENAME = "archive.index";
     public static final Pattern MAX_ARCHIVE_SIZE_PATTERN = Pattern.compile("\\d{1,2}%");
+    public static final String READ_MODE_STREAM = "stream";
+    public static final String READ_MODE_CHANNEL = "channel";
+    // regions at least this large are memory-mapped by readBuffer rather than copied onto the heap
+    static final int MAPPED_READ_THRESHOLD = 256 * 1024;
     private static final Logger LOG = LoggerFactory.getLogger(FileSystemRepository.class);
 
     private final Map<String, Path> containers;
@@ -95,20 +101,26 @@ public class FileSystemRepository implements ContentRepository {
     private final ScheduledExecutorService executor = new FlowEngine(4, "FileSystemRepository Workers");
     private final ConcurrentMap<String, BlockingQueue<ContentClaim>> reclaimable = new ConcurrentHashMap<>();
     private final Map<String, ContainerState> containerStateMap = new HashMap<>();
+    private final Map<String, ContainerMetrics> containerMetricsMap = new LinkedHashMap<>();
+    private final List<ContainerMetrics> allContainerMetrics;
+    private final ContainerSelector containerSelector;
 
     private final boolean archiveData;
     private final long maxArchiveMillis;
     private final Map<String, Long> minUsableContainerBytesForArchive = new HashMap<>();
     private final boolean alwaysSync;
     private final ScheduledExecutorService containerCleanupExecutor;
+    private final FileChannelCache channelCache; // null unless reading through cached channels
+    // claims whose file is a hard link shared with another claim; the link is broken before either is written to
+    private final Set<ContentClaim> linkedClaims = Collections.newSetFromMap(new ConcurrentHashMap<ContentClaim, Boolean>());
 
     private ContentClaimManager contentClaimManager;	// effectively final
 
-    // Map of contianer to archived files that should be deleted next.
-    private final Map<String, BlockingQueue<ArchiveInfo>> archivedFiles = new HashMap<>();
-
-    // guarded by synchronizing on this
-    private final AtomicLong oldestArchiveDate = new AtomicLong(0L);
+    // Map of container to the time-ordered index of its archived files
+    private final Map<String, ArchiveIndex> archiveIndexes = new HashMap<>();
+    // Map of container to the background scan that is building its archive index, if one was needed
+    private final Map<String, Future<?>> archiveScans = new HashMap<>();
+    private volatile boolean shutdown = false;
 
     public FileSystemRepository() throws IOException {
         final NiFiProperties properties = NiFiProperties.getInstance();
@@ -122,9 +134,15 @@ public class FileSystemRepository implements ContentRepository {
         this.containerNames = new ArrayList<>(containers.keySet());
         index = new AtomicLong(0L);
 
+        for (final String containerName : containerNames) {
+            containerMetricsMap.put(containerName, new ContainerMetrics(containerName));
+        }
+        allContainerMetrics = Collections.unmodifiableList(new ArrayList<>(containerMetricsMap.values()));
+        containerSelector = createContainerSelector(properties.getProperty(NiFiProperties.CONTENT_REPOSITORY_CONTAINER_SELECTOR,
+                NiFiProperties.DEFAULT_CONTENT_REPOSITORY_CONTAINER_SELECTOR).trim());
+
         for (final String containerName : containerNames) {
             reclaimable.put(containerName, new LinkedBlockingQueue<ContentClaim>(10000));
-            archivedFiles.put(containerName, new LinkedBlockingQueue<ArchiveInfo>(100000));
         }
 
         final String enableArchiving = properties.getProperty(NiFiProperties.CONTENT_ARCHIVE_ENABLED);
@@ -191,9 +209,29 @@ public class FileSystemRepository implements ContentRepository {
 
         this.alwaysSync = Boolean.parseBoolean(properties.getProperty("nifi.content.repository.always.sync"));
         LOG.info("Initializing FileSystemRepository with 'Always Sync' set to {}", alwaysSync);
+
+        final String readMode = properties.getProperty(NiFiProperties.CONTENT_REPOSITORY_READ_MODE, NiFiProperties.DEFAULT_CONTENT_REPOSITORY_READ_MODE).trim();
+        if (READ_MODE_CHANNEL.equalsIgnoreCase(readMode)) {
+            final String cacheSize = properties.getProperty(NiFiProperties.CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE);
+            final int maxChannels;
+            try {
+                maxChannels = StringUtils.isBlank(cacheSize) ? NiFiProperties.DEFAULT_CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE : Integer.parseInt(cacheSize.trim());
+            } catch (final NumberFormatException nfe) {
+                throw new RuntimeException("Invalid value set for property " + NiFiProperties.CONTENT_REPOSITORY_READ_CHANNEL_CACHE_SIZE);
+            }
+            channelCache = new FileChannelCache(Math.max(1, maxChannels));
+            LOG.info("Content will be read using positional reads through a cache of up to {} open files", maxChannels);
+        } else if (READ_MODE_STREAM.equalsIgnoreCase(readMode)) {
+            channelCache = null;
+        } else {
+            throw new RuntimeException("Invalid value set for property " + NiFiProperties.CONTENT_REPOSITORY_READ_MODE + "; must be either "
+                    + READ_MODE_STREAM + " or " + READ_MODE_CHANNEL);
+        }
+
         initializeRepository();
 
         executor.scheduleWithFixedDelay(new BinDestructableClaims(), 1, 1, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(new UpdateContainerMetrics(), 0, 1, TimeUnit.SECONDS);
         for (int i = 0; i < fileRespositoryPaths.size(); i++) {
             executor.scheduleWithFixedDelay(new ArchiveOrDestroyDestructableClaims(), 1, 1, TimeUnit.SECONDS);
         }
@@ -210,10 +248,8 @@ public class FileSystemRepository implements ContentRepository {
         }
 
         containerCleanupExecutor = new FlowEngine(containers.size(), "Cleanup FileSystemRepository Container");
-        for (final Map.Entry<String, Path> containerEntry : containers.entrySet()) {
-            final String containerName = containerEntry.getKey();
-            final Path containerPath = containerEntry.getValue();
-            final Runnable cleanup = new DestroyExpiredArchiveClaims(containerName, containerPath);
+        for (final String containerName : containerNames) {
+            final Runnable cleanup = new DestroyExpiredArchiveClaims(containerName);
             containerCleanupExecutor.scheduleWithFixedDelay(cleanup, cleanupMillis, cleanupMillis, TimeUnit.MILLISECONDS);
         }
     }
@@ -223,6 +259,42 @@ public class FileSystemRepository implements ContentRepository {
         this.contentClaimManager = claimManager;
     }
 
+    private static ContainerSelector createContainerSelector(final String selector) {
+        if (NiFiProperties.DEFAULT_CONTENT_REPOSITORY_CONTAINER_SELECTOR.equalsIgnoreCase(selector)) {
+            return new RoundRobinContainerSelector();
+        }
+        if ("weighted".equalsIgnoreCase(selector)) {
+            LOG.info("Content Claims will be created in containers weighted by write latency, active writes and usable space");
+            return new WeightedContainerSelector();
+        }
+
+        try {
+            final Class<?> selectorClass = Class.forName(selector, true, FileSystemRepository.class.getClassLoader());
+            return selectorClass.asSubclass(ContainerSelector.class).newInstance();
+        } catch (final ClassNotFoundException | ClassCastException | InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException("Invalid value set for property " + NiFiProperties.CONTENT_REPOSITORY_CONTAINER_SELECTOR + "; must be round-robin, weighted, "
+                    + "or the name of a class that implements " + ContainerSelector.class.getName(), e);
+        }
+    }
+
+    /**
+     * @return the write performance and usable space of each container, keyed
+     * by container name
+     */
+    public Map<String, ContainerMetrics> getContainerMetrics() {
+        return Collections.unmodifiableMap(containerMetricsMap);
+    }
+
+    /**
+     * @param containerName the name of a container
+     * @return <code>true</code> if every archived file in the container has
+     * been indexed
+     */
+    boolean isArchiveIndexed(final String containerName) {
+        final ArchiveIndex archiveIndex = archiveIndexes.get(containerName);
+        return archiveIndex != null && archiveIndex.isComplete();
+    }
+
     private static double getRatio(final String value) {
         final String trimmed = value.trim();
         final String percentage = trimmed.substring(0, trimmed.length() - 1);
@@ -231,15 +303,15 @@ public class FileSystemRepository implements ContentRepository {
 
     private synchronized void initializeRepository() throws IOException {
         final Map<String, Path> realPathMap = new HashMap<>();
-        final ExecutorService executor = Executors.newFixedThreadPool(containers.size());
-        final List<Future<Long>> futures = new ArrayList<>();
+        final ExecutorService archiveScanExecutor = new FlowEngine(containers.size(), "Index FileSystemRepository Archive");
 
         // Run through each of the containers. For each container, create the sections if necessary.
-        // Then, we need to scan through the archived data so that we can determine what the oldest 
-        // archived data is, so that we know when we have to start aging data off.
+        // Then restore the index of archived files that was saved when the repository was last shut down. If there
+        // isn't one, we have to scan the archive directories to build the index. That can be very expensive because
+        // of all of the disk accesses, so we do it in the background, with 1 thread per container because containers
+        // are often unique to a disk, and accept new data in the meantime.
         for (final Map.Entry<String, Path> container : containers.entrySet()) {
             final String containerName = container.getKey();
-            final ContainerState containerState = containerStateMap.get(containerName);
             final Path containerPath = container.getValue();
             final boolean pathExists = Files.exists(containerPath);
 
@@ -255,68 +327,83 @@ public class FileSystemRepository implements ContentRepository {
             }
 
             realPathMap.put(containerName, realPath);
+            final ArchiveIndex archiveIndex = new ArchiveIndex(realPath);
+            archiveIndexes.put(containerName, archiveIndex);
 
-            // We need to scan the archive directories to find out the oldest timestamp so that know whether or not we
-            // will have to delete archived data based on time threshold. Scanning all of the directories can be very 
-            // expensive because of all of the disk accesses. So we do this in multiple threads. Since containers are
-            // often unique to a disk, we just map 1 thread to each container.
-            final Callable<Long> scanContainer = new Callable<Long>() {
-                @Override
-                public Long call() throws IOException {
-                    final LongHolder oldestDateHolder = new LongHolder(0L);
-
-                    // the path already exists, so scan the path to find any files and update maxIndex to the max of
-                    // all filenames seen.
-                    Files.walkFileTree(realPath, new SimpleFileVisitor<Path>() {
-                        @Override
-                        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-                            if (attrs.isDirectory()) {
-                                return FileVisitResult.CONTINUE;
-                            }
-
-                            // Check if this is an 'archive' directory
-                            final Path relativePath = realPath.relativize(file);
-                            if (relativePath.getNameCount() > 3 && ARCHIVE_DIR_NAME.equals(relativePath.subpath(1, 2).toString())) {
-                                final long lastModifiedTime = getLastModTime(file);
-
-                                if (lastModifiedTime < oldestDateHolder.get()) {
-                                    oldestDateHolder.set(lastModifiedTime);
-                                }
-                                containerState.incrementArchiveCount();
-                            }
+            // If the path didn't exist to begin with, there's no archive directory, so don't bother scanning.
+            if (!pathExists) {
+                archiveIndex.markComplete();
+                continue;
+            }
 
-                            return FileVisitResult.CONTINUE;
-                        }
-                    });
+            final Path indexFile = realPath.resolve(ARCHIVE_INDEX_FILENAME);
+            try {
+                final long startNanos = System.nanoTime();
+                if (archiveIndex.restore(indexFile)) {
+                    // the saved index is only accurate until the archive changes, so it must not be restored again
+                    // if we are not shut down cleanly
+                    Files.delete(indexFile);
+                    archiveIndex.markComplete();
 
-                    return oldestDateHolder.get();
+                    final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    LOG.info("Restored index of {} archived files for Container {} in {} millis", archiveIndex.getFileCount(), containerName, millis);
+                    continue;
                 }
-            };
-
-            // If the path didn't exist to begin with, there's no archive directory, so don't bother scanning.
-            if (pathExists) {
-                futures.add(executor.submit(scanContainer));
+            } catch (final IOException ioe) {
+                archiveIndex.clear();
+                LOG.warn("Failed to restore index of archived files for Container {} from {} due to {}; will scan archive instead", containerName, indexFile, ioe.toString());
+                Files.deleteIfExists(indexFile);
             }
+
+            archiveScans.put(containerName, archiveScanExecutor.submit(new IndexArchive(containerName, realPath, archiveIndex)));
         }
 
+        archiveScanExecutor.shutdown();
+        containers.clear();
+        containers.putAll(realPathMap);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
         executor.shutdown();
-        for (final Future<Long> future : futures) {
+        containerCleanupExecutor.shutdown();
+
+        boolean terminated = false;
+        try {
+            terminated = executor.awaitTermination(10, TimeUnit.SECONDS) && containerCleanupExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException ie) {
+            LOG.warn("Interrupted while waiting for FileSystemRepository tasks to finish");
+        }
+
+        if (channelCache != null) {
+            channelCache.clear();
+        }
+
+        // the archive can't be changing while its index is saved, or the saved index will be wrong
+        if (!terminated) {
+            LOG.warn("FileSystemRepository tasks did not finish in time; archive indexes will not be saved, so the archive will be scanned on restart");
+            return;
+        }
+
+        for (final Map.Entry<String, ArchiveIndex> entry : archiveIndexes.entrySet()) {
+            final String containerName = entry.getKey();
+            final ArchiveIndex archiveIndex = entry.getValue();
+            if (!archiveIndex.isComplete()) {
+                continue;
+            }
+
+            final Path indexFile = containers.get(containerName).resolve(ARCHIVE_INDEX_FILENAME);
             try {
-                final Long oldestDate = future.get();
-                if (oldestDate < oldestArchiveDate.get()) {
-                    oldestArchiveDate.set(oldestDate);
-                }
-            } catch (final ExecutionException | InterruptedException e) {
-                if (e.getCause() instanceof IOException) {
-                    throw (IOException) e.getCause();
-                } else {
-                    throw new RuntimeException(e);
+                archiveIndex.write(indexFile);
+                LOG.info("Saved index of {} archived files for Container {}", archiveIndex.getFileCount(), containerName);
+            } catch (final IOException ioe) {
+                LOG.warn("Failed to save index of archived files for Container {} due to {}; the archive will be scanned on restart", containerName, ioe.toString());
+                if (LOG.isDebugEnabled()) {
+                    LOG.warn("", ioe);
                 }
             }
         }
-
-        containers.clear();
-        containers.putAll(realPathMap);
     }
 
     @Override
@@ -389,11 +476,11 @@ public class FileSystemRepository implements ContentRepository {
 
         final ContentClaim contentClaim = contentClaimManager.newContentClaim(containerName, sectionName, id, false);
         if (contentClaimManager.getClaimantCount(contentClaim) == 0) {
-            removeIncompleteContent(fileToRemove);
+            removeIncompleteContent(containerName, fileToRemove);
         }
     }
 
-    private void removeIncompleteContent(final Path fileToRemove) {
+    private void removeIncompleteContent(final String containerName, final Path fileToRemove) {
         String fileDescription = null;
         try {
             fileDescription = fileToRemove.toFile().getAbsolutePath() + " (" + Files.size(fileToRemove) + " bytes)";
@@ -405,7 +492,7 @@ public class FileSystemRepository implements ContentRepository {
 
         try {
             if (archiveData) {
-                archive(fileToRemove);
+                archive(containerName, fileToRemove);
             } else {
                 Files.delete(fileToRemove);
             }
@@ -452,22 +539,25 @@ public class FileSystemRepository implements ContentRepository {
     public ContentClaim create(final boolean lossTolerant) throws IOException {
         final long currentIndex = index.incrementAndGet();
 
-        String containerName = null;
-        boolean waitRequired = true;
-        ContainerState containerState = null;
-        for (long containerIndex = currentIndex; containerIndex < currentIndex + containers.size(); containerIndex++) {
-            final long modulatedContainerIndex = containerIndex % containers.size();
-            containerName = containerNames.get((int) modulatedContainerIndex);
-
-            containerState = containerStateMap.get(containerName);
-            if (!containerState.isWaitRequired()) {
-                waitRequired = false;
-                break;
+        // only containers that have not reached their archive back pressure threshold are candidates, unless all have
+        List<ContainerMetrics> candidates = null;
+        for (int i = 0; i < allContainerMetrics.size(); i++) {
+            final ContainerMetrics metrics = allContainerMetrics.get(i);
+            if (containerStateMap.get(metrics.getContainerName()).isWaitRequired()) {
+                if (candidates == null) {
+                    candidates = new ArrayList<>(allContainerMetrics.subList(0, i));
+                }
+            } else if (candidates != null) {
+                candidates.add(metrics);
             }
         }
 
+        final boolean waitRequired = candidates != null && candidates.isEmpty();
+        final List<ContainerMetrics> selectable = (candidates == null || waitRequired) ? allContainerMetrics : candidates;
+        final String containerName = containerSelector.select(selectable, currentIndex).getContainerName();
+
         if (waitRequired) {
-            containerState.waitForArchiveExpiration();
+            containerStateMap.get(containerName).waitForArchiveExpiration();
         }
 
         final long modulatedSectionIndex = currentIndex % SECTIONS_PER_CONTAINER;
@@ -519,6 +609,16 @@ public class FileSystemRepository implements ContentRepository {
         } catch (final ContentNotFoundException cnfe) {
         }
 
+        if (channelCache != null) {
+            channelCache.invalidate(claim);
+        }
+        linkedClaims.remove(claim);
+
+        final ArchiveIndex archiveIndex = archiveIndexes.get(claim.getContainer());
+        if (archiveIndex != null) {
+            archiveIndex.remove(claim.getSection(), claim.getId());
+        }
+
         final File file = path.toFile();
         if (!file.delete() && file.exists()) {
             LOG.warn("Unable to delete {} at path {}", new Object[]{claim, path});
@@ -534,8 +634,25 @@ public class FileSystemRepository implements ContentRepository {
             return null;
         }
 
-        final ContentClaim newClaim = create(lossTolerant);
+        // Content is not modified once it has been written, so the clone can share the original's file by way of a
+        // hard link, which takes constant time and no disk space. The clone is created in the same container and
+        // section as the original because a hard link cannot span file systems.
         final Path currPath = getPath(original, true);
+        final String claimId = System.currentTimeMillis() + "-" + index.incrementAndGet();
+        final ContentClaim linkedClaim = contentClaimManager.newContentClaim(original.getContainer(), original.getSection(), claimId, lossTolerant);
+        contentClaimManager.incrementClaimantCount(linkedClaim, true);
+        try {
+            linkedClaims.add(original);
+            linkedClaims.add(linkedClaim);
+            Files.createLink(getPath(linkedClaim), currPath);
+            return linkedClaim;
+        } catch (final IOException | UnsupportedOperationException e) {
+            LOG.debug("Unable to create a hard link for {} so will copy its content instead: {}", original, e.toString());
+            linkedClaims.remove(linkedClaim);
+            contentClaimManager.decrementClaimantCount(linkedClaim);
+        }
+
+        final ContentClaim newClaim = create(lossTolerant);
         final Path newPath = getPath(newClaim);
         try (final FileOutputStream fos = new FileOutputStream(newPath.toFile())) {
             Files.copy(currPath, fos);
@@ -549,11 +666,38 @@ public class FileSystemRepository implements ContentRepository {
         return newClaim;
     }
 
+    /**
+     * If the given claim shares its file with another claim because one was
+     * cloned from the other, gives the claim a file of its own so that writing
+     * to it does not change the other claim's content. When appending, the
+     * current content is copied into the new file; otherwise the new file is
+     * empty.
+     */
+    private void breakLink(final ContentClaim claim, final boolean append) throws IOException {
+        if (linkedClaims.isEmpty() || !linkedClaims.remove(claim)) {
+            return;
+        }
+
+        if (channelCache != null) {
+            channelCache.invalidate(claim);
+        }
+
+        final Path path = getPath(claim);
+        if (append) {
+            final Path copy = path.resolveSibling(path.getFileName() + ".copy");
+            Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(copy, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Files.deleteIfExists(path);
+        }
+    }
+
     @Override
     public long merge(final Collection<ContentClaim> claims, final ContentClaim destination, final byte[] header, final byte[] footer, final byte[] demarcator) throws IOException {
         if (claims.contains(destination)) {
             throw new IllegalArgumentException("destination cannot be within claims");
         }
+        breakLink(destination, false);
         try (final FileChannel dest = FileChannel.open(getPath(destination), StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
             long position = 0L;
             if (header != null && header.length > 0) {
@@ -614,8 +758,10 @@ public class FileSystemRepository implements ContentRepository {
 
     @Override
     public long importFrom(final InputStream content, final ContentClaim claim, final boolean append) throws IOException {
-        try (final FileOutputStream out = new FileOutputStream(getPath(claim).toFile(), append)) {
-            final long copied = StreamUtils.copy(content, out);
+        breakLink(claim, append);
+        try (final FileOutputStream out = new FileOutputStream(getPath(claim).toFile(), append);
+                final OutputStream meteredOut = meter(out, claim)) {
+            final long copied = StreamUtils.copy(content, meteredOut);
             if (alwaysSync) {
                 out.getFD().sync();
             }
@@ -668,24 +814,12 @@ public class FileSystemRepository implements ContentRepository {
 
         }
 
-        if (append) {
-            try (final InputStream sourceStream = Files.newInputStream(getPath(claim, true), StandardOpenOption.READ);
-                    final OutputStream destinationStream = Files.newOutputStream(destination, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
-                StreamUtils.skip(sourceStream, offset);
-
-                final byte[] buffer = new byte[8192];
-                int len;
-                long copied = 0L;
-                while ((len = sourceStream.read(buffer, 0, (int) Math.min(length - copied, buffer.length))) > 0) {
-                    destinationStream.write(buffer, 0, len);
-                    copied += len;
-                }
-                return copied;
-            }
-        } else {
-            try (final OutputStream out = Files.newOutputStream(destination, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
-                return exportTo(claim, out, offset, length);
-            }
+        final OpenOption[] openOptions = append
+                ? new OpenOption[]{StandardOpenOption.WRITE, StandardOpenOption.APPEND}
+                : new OpenOption[]{StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING};
+        try (final FileChannel sourceChannel = FileChannel.open(getPath(claim, true), StandardOpenOption.READ);
+                final FileChannel destinationChannel = FileChannel.open(destination, openOptions)) {
+            return transfer(sourceChannel, offset, Math.min(length, claimSize - offset), destinationChannel);
         }
     }
 
@@ -722,6 +856,45 @@ public class FileSystemRepository implements ContentRepository {
         }
     }
 
+    @Override
+    public long exportTo(final ContentClaim claim, final WritableByteChannel destination, final long offset, final long length) throws IOException {
+        if (offset < 0L) {
+            throw new IllegalArgumentException("offset cannot be negative");
+        }
+        if (claim == null) {
+            if (offset > 0L) {
+                throw new IllegalArgumentException("Cannot specify an offset of " + offset + " for a null claim");
+            }
+            return 0L;
+        }
+
+        try (final CachedChannel cachedChannel = channelCache == null ? FileChannelCache.open(getPath(claim, true)) : acquireChannel(claim)) {
+            final FileChannel channel = cachedChannel.getChannel();
+            final long claimSize = channel.size();
+            if (offset > claimSize) {
+                throw new IllegalArgumentException("offset of " + offset + " exceeds claim size of " + claimSize);
+            }
+            return transfer(channel, offset, Math.min(length, claimSize - offset), destination);
+        }
+    }
+
+    /**
+     * Hands the given region of the source to the operating system, which can
+     * move it to a file or socket without copying it into the JVM. Stops early
+     * if the destination is non-blocking and will not accept any more bytes.
+     */
+    private static long transfer(final FileChannel source, final long offset, final long length, final WritableByteChannel destination) throws IOException {
+        long transferred = 0L;
+        while (transferred < length) {
+            final long bytesTransferred = source.transferTo(offset + transferred, length - transferred, destination);
+            if (bytesTransferred <= 0L) {
+                break;
+            }
+            transferred += bytesTransferred;
+        }
+        return transferred;
+    }
+
     @Override
     public long size(final ContentClaim claim) throws IOException {
         if (claim == null) {
@@ -736,19 +909,141 @@ public class FileSystemRepository implements ContentRepository {
         if (claim == null) {
             return new ByteArrayInputStream(new byte[0]);
         }
+        if (channelCache != null) {
+            return read(claim, 0L);
+        }
         final Path path = getPath(claim, true);
         return new FileInputStream(path.toFile());
     }
 
+    @Override
+    public InputStream read(final ContentClaim claim, final long offset) throws IOException {
+        if (offset < 0L) {
+            throw new IllegalArgumentException("offset cannot be negative");
+        }
+        if (claim == null) {
+            if (offset > 0L) {
+                throw new EOFException();
+            }
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        if (channelCache == null) {
+            final InputStream in = new FileInputStream(getPath(claim, true).toFile());
+            try {
+                StreamUtils.skip(in, offset);
+            } catch (final IOException ioe) {
+                in.close();
+                throw ioe;
+            }
+            return in;
+        }
+
+        final CachedChannel cachedChannel = acquireChannel(claim);
+        try {
+            if (offset > cachedChannel.getChannel().size()) {
+                throw new EOFException("Cannot read " + claim + " at offset " + offset + " because its content is only "
+                        + cachedChannel.getChannel().size() + " bytes");
+            }
+        } catch (final IOException ioe) {
+            cachedChannel.close();
+            throw ioe;
+        }
+
+        return new FileChannelInputStream(cachedChannel.getChannel(), offset, cachedChannel);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Regions of at least {@link #MAPPED_READ_THRESHOLD} bytes are
+     * memory-mapped rather than copied. A mapping remains valid after the
+     * claim is archived or removed, but on some platforms it prevents the
+     * file from being deleted until the buffer is garbage collected, so
+     * callers should not hold on to the buffer longer than they need it.
+     */
+    @Override
+    public ByteBuffer readBuffer(final ContentClaim claim, final long offset, final int length) throws IOException {
+        if (offset < 0L) {
+            throw new IllegalArgumentException("offset cannot be negative");
+        }
+        if (claim == null || length <= 0) {
+            if (claim == null && offset > 0L) {
+                throw new EOFException();
+            }
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+
+        try (final CachedChannel cachedChannel = channelCache == null ? FileChannelCache.open(getPath(claim, true)) : acquireChannel(claim)) {
+            final FileChannel channel = cachedChannel.getChannel();
+            final long size = channel.size();
+            if (offset > size) {
+                throw new EOFException("Cannot read " + claim + " at offset " + offset + " because its content is only " + size + " bytes");
+            }
+
+            final int bytesToRead = (int) Math.min(length, size - offset);
+            if (bytesToRead >= MAPPED_READ_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, offset, bytesToRead);
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocate(bytesToRead);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Obtains a channel for the given claim from the channel cache. Content
+     * that has been archived is not cached, because the archive may be cleaned
+     * up without the claim being invalidated.
+     */
+    private CachedChannel acquireChannel(final ContentClaim claim) throws IOException {
+        final Path path = getPath(claim, true);
+        if (ARCHIVE_DIR_NAME.equals(path.getParent().toFile().getName())) {
+            return FileChannelCache.open(path);
+        }
+        return channelCache.acquire(claim, path);
+    }
+
+    /**
+     * @return the number of reads that found the claim's file already open, or
+     * 0 if content is not read through cached channels
+     */
+    public long getChannelCacheHitCount() {
+        return channelCache == null ? 0L : channelCache.getHitCount();
+    }
+
+    /**
+     * @return the number of reads that had to open the claim's file, or 0 if
+     * content is not read through cached channels
+     */
+    public long getChannelCacheMissCount() {
+        return channelCache == null ? 0L : channelCache.getMissCount();
+    }
+
     @Override
     @SuppressWarnings("resource")
     public OutputStream write(final ContentClaim claim) throws IOException {
+        breakLink(claim, false);
         final FileOutputStream fos = new FileOutputStream(getPath(claim).toFile());
-        return alwaysSync ? new SyncOnCloseOutputStream(fos) : fos;
+        return meter(alwaysSync ? new SyncOnCloseOutputStream(fos) : fos, claim);
     }
 
     @Override
     public void purge() {
+        if (channelCache != null) {
+            channelCache.clear();
+        }
+        linkedClaims.clear();
+        for (final ArchiveIndex archiveIndex : archiveIndexes.values()) {
+            archiveIndex.clear();
+        }
+
         // delete all content from repositories
         for (final Path path : containers.values()) {
             FileUtils.deleteFilesInDir(path.toFile(), null, LOG, true);
@@ -857,12 +1152,17 @@ public class FileSystemRepository implements ContentRepository {
             throw new IllegalStateException("Cannot archive ContentClaim " + contentClaim + " because it is currently in use");
         }
 
+        if (channelCache != null) {
+            channelCache.invalidate(contentClaim);
+        }
+        linkedClaims.remove(contentClaim);
+
         final Path curPath = getPath(contentClaim, true);
-        archive(curPath);
+        archive(contentClaim.getContainer(), curPath);
         LOG.debug("Successfully moved {} to archive", contentClaim);
     }
 
-    private void archive(final Path curPath) throws IOException {
+    private void archive(final String containerName, final Path curPath) throws IOException {
         // check if already archived
         final boolean alreadyArchived = ARCHIVE_DIR_NAME.equals(curPath.getParent().toFile().getName());
         if (alreadyArchived) {
@@ -889,8 +1189,16 @@ public class FileSystemRepository implements ContentRepository {
                 // for the existence of the directory continually.
                 Files.createDirectories(archivePath.getParent());
                 Files.move(curPath, archivePath);
+            } else {
+                return;
             }
         }
+
+        final ArchiveIndex archiveIndex = archiveIndexes.get(containerName);
+        if (archiveIndex != null) {
+            final String section = curPath.getParent().toFile().getName();
+            archiveIndex.add(section, archivePath.toFile().getName(), Files.size(archivePath), getLastModTime(archivePath));
+        }
     }
 
     private long getLastModTime(final File file) {
@@ -914,170 +1222,67 @@ public class FileSystemRepository implements ContentRepository {
         return getLastModTime(file.toFile());
     }
 
-    private long destroyExpiredArchives(final String containerName, final Path container) throws IOException {
-        final List<ArchiveInfo> notYetExceedingThreshold = new ArrayList<>();
-        final long removalTimeThreshold = System.currentTimeMillis() - maxArchiveMillis;
-        long oldestArchiveDateFound = System.currentTimeMillis();
-
+    private long destroyExpiredArchives(final String containerName) throws IOException {
         // determine how much space we must have in order to stop deleting old data
         final Long minRequiredSpace = minUsableContainerBytesForArchive.get(containerName);
         if (minRequiredSpace == null) {
             return -1L;
         }
 
-        final long usableSpace = getContainerUsableSpace(containerName);
-        final ContainerState containerState = containerStateMap.get(containerName);
-
-        // First, delete files from our queue
+        final ArchiveIndex archiveIndex = archiveIndexes.get(containerName);
+        final ContainerMetrics metrics = containerMetricsMap.get(containerName);
+        final long removalTimeThreshold = System.currentTimeMillis() - maxArchiveMillis;
         final long startNanos = System.nanoTime();
-        final long toFree = minRequiredSpace - usableSpace;
-        final BlockingQueue<ArchiveInfo> fileQueue = archivedFiles.get(containerName);
-        ArchiveInfo toDelete;
-        int deleteCount = 0;
-        long freed = 0L;
-        while ((toDelete = fileQueue.poll()) != null) {
-            try {
-                final long fileSize = toDelete.getSize();
-                Files.deleteIfExists(toDelete.toPath());
-                containerState.decrementArchiveCount();
-                LOG.debug("Deleted archived ContentClaim with ID {} from Container {} because the archival size was exceeding the max configured size", toDelete.getName(), containerName);
-                freed += fileSize;
-                deleteCount++;
 
-                // If we'd freed up enough space, we're done... unless the next file needs to be destroyed based on time.
-                if (freed >= toFree) {
-                    // check next file's last mod time.
-                    final ArchiveInfo nextFile = fileQueue.peek();
-                    if (nextFile == null) {
-                        // Continue on to queue up the files, in case the next file must be destroyed based on time.
-                        break;
-                    }
-
-                    // If the last mod time indicates that it should be removed, just continue loop.
-                    final long oldestArchiveDate = getLastModTime(nextFile.toPath());
-                    if (oldestArchiveDate <= removalTimeThreshold) {
-                        continue;
-                    }
-
-                    // Otherwise, we're done. Return the last mod time of the oldest file in the container's archive.
-                    final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
-                    LOG.info("Deleted {} files from archive for Container {}; oldest Archive Date is now {}; container cleanup took {} millis", deleteCount, containerName, new Date(oldestArchiveDate), millis);
-
-                    return oldestArchiveDate;
-                }
-            } catch (final IOException ioe) {
-                LOG.warn("Failed to delete {} from archive due to {}", toDelete, ioe.toString());
-                if (LOG.isDebugEnabled()) {
-                    LOG.warn("", ioe);
+        // The index is ordered by age, so we delete from the front of it until the oldest file is not yet expired and
+        // the container has enough usable space. Space freed is estimated from the sizes of the deleted files, and only
+        // checked against the file system once the estimate says we're done, because hard-linked files free nothing
+        // until their last link is gone.
+        long toFree = minRequiredSpace - getContainerUsableSpace(containerName);
+        long freed = 0L;
+        int deleteCount = 0;
+        ArchivedFile oldest;
+        while ((oldest = archiveIndex.peekOldest()) != null) {
+            final boolean expired = oldest.getTimestamp() <= removalTimeThreshold;
+            if (!expired && freed >= toFree) {
+                if (freed == 0L) {
+                    break;
                 }
-            }
-        }
-
-        // Go through each container and grab the archived data into a List
-        final StopWatch stopWatch = new StopWatch(true);
-        for (int i = 0; i < SECTIONS_PER_CONTAINER; i++) {
-            final Path sectionContainer = container.resolve(String.valueOf(i));
-            final Path archive = sectionContainer.resolve("archive");
-            if (!Files.exists(archive)) {
-                continue;
-            }
-
-            try {
-                Files.walkFileTree(archive, new SimpleFileVisitor<Path>() {
-                    @Override
-                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-                        if (attrs.isDirectory()) {
-                            return FileVisitResult.CONTINUE;
-                        }
-
-                        final long lastModTime = getLastModTime(file);
-                        if (lastModTime < removalTimeThreshold) {
-                            try {
-                                Files.deleteIfExists(file);
-                                containerState.decrementArchiveCount();
-                                LOG.debug("Deleted archived ContentClaim with ID {} from Container {} because it was older than the configured max archival duration", file.toFile().getName(), containerName);
-                            } catch (final IOException ioe) {
-                                LOG.warn("Failed to remove archived ContentClaim with ID {} from Container {} due to {}", file.toFile().getName(), containerName, ioe.toString());
-                                if (LOG.isDebugEnabled()) {
-                                    LOG.warn("", ioe);
-                                }
-                            }
-                        } else if (usableSpace < minRequiredSpace) {
-                            notYetExceedingThreshold.add(new ArchiveInfo(container, file, attrs.size(), lastModTime));
-                        }
 
-                        return FileVisitResult.CONTINUE;
-                    }
-                });
-            } catch (final IOException ioe) {
-                LOG.warn("Failed to cleanup archived files in {} due to {}", archive, ioe.toString());
-                if (LOG.isDebugEnabled()) {
-                    LOG.warn("", ioe);
+                toFree = minRequiredSpace - getContainerUsableSpace(containerName);
+                freed = 0L;
+                if (toFree <= 0L) {
+                    break;
                 }
             }
-        }
-        final long deleteExpiredMillis = stopWatch.getElapsed(TimeUnit.MILLISECONDS);
 
-        // Sort the list according to last modified time
-        Collections.sort(notYetExceedingThreshold, new Comparator<ArchiveInfo>() {
-            @Override
-            public int compare(final ArchiveInfo o1, final ArchiveInfo o2) {
-                return Long.compare(o1.getLastModTime(), o2.getLastModTime());
+            // another thread may have removed the file from the index since we looked at it
+            if (!archiveIndex.remove(oldest.getSection(), oldest.getName())) {
+                continue;
             }
-        });
-
-        final long sortRemainingMillis = stopWatch.getElapsed(TimeUnit.MILLISECONDS) - deleteExpiredMillis;
-
-        // Delete the oldest data
-        final Iterator<ArchiveInfo> itr = notYetExceedingThreshold.iterator();
-        int counter = 0;
-        while (itr.hasNext()) {
-            final ArchiveInfo archiveInfo = itr.next();
 
+            final Path path = archiveIndex.getPath(oldest);
             try {
-                final Path path = archiveInfo.toPath();
                 Files.deleteIfExists(path);
-                containerState.decrementArchiveCount();
-                LOG.debug("Deleted archived ContentClaim with ID {} from Container {} because the archival size was exceeding the max configured size", archiveInfo.getName(), containerName);
-
-                // Check if we've freed enough space every 25 files that we destroy
-                if (++counter % 25 == 0) {
-                    if (getContainerUsableSpace(containerName) > minRequiredSpace) {  // check if we can stop now
-                        LOG.debug("Finished cleaning up archive for Container {}", containerName);
-                        break;
-                    }
-                }
+                freed += oldest.getSize();
+                deleteCount++;
+                metrics.recordArchiveDestroyed(oldest.getSize());
+                LOG.debug("Deleted archived ContentClaim with ID {} from Container {} because {}", oldest.getName(), containerName,
+                        expired ? "it was older than the configured max archival duration" : "the archival size was exceeding the max configured size");
             } catch (final IOException ioe) {
-                LOG.warn("Failed to delete {} from archive due to {}", archiveInfo, ioe.toString());
+                LOG.warn("Failed to delete {} from archive due to {}", path, ioe.toString());
                 if (LOG.isDebugEnabled()) {
                     LOG.warn("", ioe);
                 }
             }
-
-            itr.remove();
         }
 
-        final long deleteOldestMillis = stopWatch.getElapsed(TimeUnit.MILLISECONDS) - sortRemainingMillis - deleteExpiredMillis;
-
-        long oldestContainerArchive;
-        if (notYetExceedingThreshold.isEmpty()) {
-            oldestContainerArchive = System.currentTimeMillis();
-        } else {
-            oldestContainerArchive = notYetExceedingThreshold.get(0).getLastModTime();
-        }
-
-        if (oldestContainerArchive < oldestArchiveDateFound) {
-            oldestArchiveDateFound = oldestContainerArchive;
-        }
-
-        // Queue up the files in the order that they should be destroyed so that we don't have to scan the directories for a while.
-        for (final ArchiveInfo toEnqueue : notYetExceedingThreshold.subList(0, Math.min(100000, notYetExceedingThreshold.size()))) {
-            fileQueue.offer(toEnqueue);
+        final long oldestContainerArchive = archiveIndex.getOldestTimestamp();
+        if (deleteCount > 0) {
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            LOG.info("Deleted {} files from archive for Container {}; oldest Archive Date is now {}; container cleanup took {} millis",
+                    deleteCount, containerName, oldestContainerArchive < 0L ? "(archive is empty)" : new Date(oldestContainerArchive), millis);
         }
-
-        final long cleanupMillis = stopWatch.getElapsed(TimeUnit.MILLISECONDS) - deleteOldestMillis - sortRemainingMillis - deleteExpiredMillis;
-        LOG.debug("Oldest Archive Date for Container {} is {}; delete expired = {} ms, sort remaining = {} ms, delete oldest = {} ms, cleanup = {} ms",
-                containerName, new Date(oldestContainerArchive), deleteExpiredMillis, sortRemainingMillis, deleteOldestMillis, cleanupMillis);
         return oldestContainerArchive;
     }
 
@@ -1094,7 +1299,6 @@ public class FileSystemRepository implements ContentRepository {
                     for (final Map.Entry<String, BlockingQueue<ContentClaim>> entry : reclaimable.entrySet()) {
                         // drain the queue of all ContentClaims that can be destroyed for the given container.
                         final String container = entry.getKey();
-                        final ContainerState containerState = containerStateMap.get(container);
 
                         toRemove.clear();
                         entry.getValue().drainTo(toRemove);
@@ -1108,7 +1312,6 @@ public class FileSystemRepository implements ContentRepository {
                             if (archiveData) {
                                 try {
                                     archive(claim);
-                                    containerState.incrementArchiveCount();
                                     successCount++;
                                 } catch (final Exception e) {
                                     LOG.warn("Failed to archive {} due to {}", claim, e.toString());
@@ -1147,57 +1350,29 @@ public class FileSystemRepository implements ContentRepository {
         }
     }
 
-    private static class ArchiveInfo {
-
-        private final Path containerPath;
-        private final String relativePath;
-        private final String name;
-        private final long size;
-        private final long lastModTime;
-
-        public ArchiveInfo(final Path containerPath, final Path path, final long size, final long lastModTime) {
-            this.containerPath = containerPath;
-            this.relativePath = containerPath.relativize(path).toString();
-            this.name = path.toFile().getName();
-            this.size = size;
-            this.lastModTime = lastModTime;
-        }
-
-        public String getName() {
-            return name;
-        }
-
-        public long getSize() {
-            return size;
-        }
-
-        public long getLastModTime() {
-            return lastModTime;
-        }
-
-        public Path toPath() {
-            return containerPath.resolve(relativePath);
-        }
-    }
-
     private class DestroyExpiredArchiveClaims implements Runnable {
 
         private final String containerName;
-        private final Path containerPath;
 
-        private DestroyExpiredArchiveClaims(final String containerName, final Path containerPath) {
+        private DestroyExpiredArchiveClaims(final String containerName) {
             this.containerName = containerName;
-            this.containerPath = containerPath;
         }
 
         @Override
         public void run() {
-            if (oldestArchiveDate.get() > (System.currentTimeMillis() - maxArchiveMillis)) {
-                final Long minRequiredSpace = minUsableContainerBytesForArchive.get(containerName);
-                if (minRequiredSpace == null) {
-                    return;
-                }
+            final Long minRequiredSpace = minUsableContainerBytesForArchive.get(containerName);
+            if (minRequiredSpace == null) {
+                return;
+            }
+
+            // wait until the whole archive has been indexed, so that the oldest data is always destroyed first
+            final Future<?> archiveScan = archiveScans.get(containerName);
+            if (archiveScan != null && !archiveScan.isDone()) {
+                return;
+            }
 
+            final long oldestArchiveDate = archiveIndexes.get(containerName).getOldestTimestamp();
+            if (oldestArchiveDate < 0L || oldestArchiveDate > (System.currentTimeMillis() - maxArchiveMillis)) {
                 try {
                     final long usableSpace = getContainerUsableSpace(containerName);
                     if (usableSpace > minRequiredSpace) {
@@ -1210,39 +1385,182 @@ public class FileSystemRepository implements ContentRepository {
 
             try {
                 Thread.currentThread().setName("Cleanup Archive for " + containerName);
-                final long oldestContainerArchive;
+                final long oldestContainerArchive = destroyExpiredArchives(containerName);
+                if (oldestContainerArchive >= 0L && LOG.isDebugEnabled()) {
+                    LOG.debug("Oldest Archive Date for Container {} is now {}", containerName, new Date(oldestContainerArchive));
+                }
+            } catch (final Throwable t) {
+                LOG.error("Failed to cleanup archive for container {} due to {}", containerName, t.toString());
+                LOG.error("", t);
+            } finally {
+                // indicate that we've finished cleaning up the archive.
+                containerStateMap.get(containerName).signalCreationReady();
+            }
+        }
+    }
 
-                try {
-                    oldestContainerArchive = destroyExpiredArchives(containerName, containerPath);
-
-                    final ContainerState containerState = containerStateMap.get(containerName);
-                    containerState.signalCreationReady(); // indicate that we've finished cleaning up the archive.
-                } catch (final IOException ioe) {
-                    LOG.error("Failed to cleanup archive for container {} due to {}", containerName, ioe.toString());
-                    if (LOG.isDebugEnabled()) {
-                        LOG.error("", ioe);
+    /**
+     * Builds the index of a container's archived files by listing the archive
+     * directory of each section. Files that are archived while the scan runs
+     * are indexed as they are archived, so it does not matter whether or not
+     * the scan sees them.
+     */
+    private class IndexArchive implements Runnable {
+
+        private final String containerName;
+        private final Path containerPath;
+        private final ArchiveIndex archiveIndex;
+
+        private IndexArchive(final String containerName, final Path containerPath, final ArchiveIndex archiveIndex) {
+            this.containerName = containerName;
+            this.containerPath = containerPath;
+            this.archiveIndex = archiveIndex;
+        }
+
+        @Override
+        public void run() {
+            final long startNanos = System.nanoTime();
+            try {
+                for (int i = 0; i < SECTIONS_PER_CONTAINER; i++) {
+                    if (shutdown) {
+                        return;
+                    }
+
+                    final String section = String.valueOf(i);
+                    final Path archiveDir = containerPath.resolve(section).resolve(ARCHIVE_DIR_NAME);
+                    if (!Files.exists(archiveDir)) {
+                        continue;
                     }
-                    return;
-                }
 
-                if (oldestContainerArchive < 0L) {
-                    boolean updated;
-                    do {
-                        long oldest = oldestArchiveDate.get();
-                        if (oldestContainerArchive < oldest) {
-                            updated = oldestArchiveDate.compareAndSet(oldest, oldestContainerArchive);
+                    try (final DirectoryStream<Path> archivedFiles = Files.newDirectoryStream(archiveDir)) {
+                        for (final Path file : archivedFiles) {
+                            final BasicFileAttributes attrs;
+                            try {
+                                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                            } catch (final NoSuchFileException nsfe) {
+                                // destroyed since it was listed
+                                continue;
+                            }
 
-                            if (updated && LOG.isDebugEnabled()) {
-                                LOG.debug("Oldest Archive Date is now {}", new Date(oldestContainerArchive));
+                            if (attrs.isRegularFile()) {
+                                archiveIndex.add(section, file.toFile().getName(), attrs.size(), getLastModTime(file));
                             }
-                        } else {
-                            updated = true;
                         }
-                    } while (!updated);
+                    }
                 }
+
+                archiveIndex.markComplete();
+                final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                LOG.info("Indexed {} archived files for Container {} in {} millis", archiveIndex.getFileCount(), containerName, millis);
             } catch (final Throwable t) {
-                LOG.error("Failed to cleanup archive for container {} due to {}", containerName, t.toString());
-                LOG.error("", t);
+                LOG.error("Failed to index archived files for Container {} due to {}; files that were not indexed will not be destroyed until the archive is scanned again on restart",
+                        containerName, t.toString());
+                if (LOG.isDebugEnabled()) {
+                    LOG.error("", t);
+                }
+            } finally {
+                containerStateMap.get(containerName).signalCreationReady();
+            }
+        }
+    }
+
+    private OutputStream meter(final OutputStream out, final ContentClaim claim) {
+        final ContainerMetrics metrics = containerMetricsMap.get(claim.getContainer());
+        return metrics == null ? out : new MeteredOutputStream(out, metrics);
+    }
+
+    /**
+     * Records the bytes written to a container and the time spent writing
+     * them, including the time taken to flush and to sync on close. Only one
+     * in every {@link #SAMPLE_INTERVAL} writes is timed, so that small writes
+     * do not pay for two clock reads each; the time taken by the writes that
+     * were not timed is estimated from the bytes that were. The totals are
+     * given to the container's metrics once, when the stream is closed.
+     */
+    private static class MeteredOutputStream extends FilterOutputStream {
+
+        private static final int SAMPLE_INTERVAL = 16;
+
+        private final ContainerMetrics metrics;
+        private long bytesWritten = 0L;
+        private long timedBytes = 0L;
+        private long timedWriteNanos = 0L;
+        private long flushNanos = 0L;
+        private int writeCount = 0;
+        private boolean closed = false;
+
+        public MeteredOutputStream(final OutputStream out, final ContainerMetrics metrics) {
+            super(out);
+            this.metrics = metrics;
+            metrics.writeStarted();
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (writeCount++ % SAMPLE_INTERVAL == 0) {
+                final long start = System.nanoTime();
+                out.write(b);
+                timedWriteNanos += System.nanoTime() - start;
+                timedBytes++;
+            } else {
+                out.write(b);
+            }
+            bytesWritten++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (writeCount++ % SAMPLE_INTERVAL == 0) {
+                final long start = System.nanoTime();
+                out.write(b, off, len);
+                timedWriteNanos += System.nanoTime() - start;
+                timedBytes += len;
+            } else {
+                out.write(b, off, len);
+            }
+            bytesWritten += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            final long start = System.nanoTime();
+            out.flush();
+            flushNanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            final long start = System.nanoTime();
+            try {
+                out.close();
+            } finally {
+                flushNanos += System.nanoTime() - start;
+                final long writeNanos = (timedBytes == 0L) ? 0L : (long) ((double) timedWriteNanos * bytesWritten / timedBytes);
+                // a claim that nothing was written to says nothing about how long a byte takes to write
+                metrics.recordWrite(bytesWritten, bytesWritten == 0L ? 0L : writeNanos + flushNanos);
+                metrics.writeFinished();
+            }
+        }
+    }
+
+    private class UpdateContainerMetrics implements Runnable {
+
+        @Override
+        public void run() {
+            for (final ContainerMetrics metrics : allContainerMetrics) {
+                final String containerName = metrics.getContainerName();
+                final ArchiveIndex archiveIndex = archiveIndexes.get(containerName);
+                metrics.updateArchive(archiveIndex.getFileCount(), archiveIndex.getTotalBytes(), archiveIndex.getOldestTimestamp());
+                try {
+                    metrics.update(getContainerUsableSpace(containerName), getContainerCapacity(containerName));
+                } catch (final Throwable t) {
+                    LOG.warn("Unable to determine the usable space of container {} due to {}", containerName, t.toString());
+                }
             }
         }
     }
@@ -1250,7 +1568,6 @@ public class FileSystemRepository implements ContentRepository {
     private class ContainerState {
 
         private final String containerName;
-        private final AtomicLong archivedFileCount = new AtomicLong(0L);
         private final long backPressureBytes;
         private final long capacity;
         private final boolean archiveEnabled;
@@ -1290,7 +1607,7 @@ public class FileSystemRepository implements ContentRepository {
                 }
             }
 
-            return used >= backPressureBytes && archivedFileCount.get() > 0;
+            return used >= backPressureBytes && archiveIndexes.get(containerName).getFileCount() > 0;
         }
 
         public void waitForArchiveExpiration() {
@@ -1332,14 +1649,6 @@ public class FileSystemRepository implements ContentRepository {
                 lock.unlock();
             }
         }
-
-        public void incrementArchiveCount() {
-            archivedFileCount.incrementAndGet();
-        }
-
-        public void decrementArchiveCount() {
-            archivedFileCount.decrementAndGet();
-        }
     }
 
 }
@@ -98,7 +98,8 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
                         event.getBytesRead(), event.getBytesWritten(),
                         event.getFlowFilesReceived(), event.getBytesReceived(),
                         event.getFlowFilesSent(), event.getBytesSent(),
-                        event.getProcessingNanoseconds(), event.getInvocations(), event.getAggregateLineageMillis());
+                        event.getProcessingNanoseconds(), event.getInvocations(), event.getAggregateLineageMillis(),
+                        event.getRunQueueWaitNanoseconds(), event.getCpuNanoseconds());
             } while (!ref.compareAndSet(value, newValue));
         }
 
@@ -125,6 +126,8 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
         private final int flowFilesReceived, flowFilesSent;
         private final long bytesReceived, bytesSent;
         private final long processingNanos;
+        private final long runQueueWaitNanos;
+        private final long cpuNanos;
         private final long aggregateLineageMillis;
         private final int invocations;
 
@@ -138,6 +141,7 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
             flowFilesReceived = flowFilesSent = 0;
             bytesReceived = bytesSent = 0L;
             processingNanos = invocations = 0;
+            runQueueWaitNanos = cpuNanos = 0L;
             aggregateLineageMillis = 0L;
             this.millisecondTimestamp = System.currentTimeMillis();
             this.minuteTimestamp = millisecondTimestamp / 60000;
@@ -148,7 +152,8 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
                 final long bytesRead, final long bytesWritten,
                 final int flowFilesReceived, final long bytesReceived,
                 final int flowFilesSent, final long bytesSent,
-                final long processingNanos, final int invocations, final long aggregateLineageMillis) {
+                final long processingNanos, final int invocations, final long aggregateLineageMillis,
+                final long runQueueWaitNanos, final long cpuNanos) {
             this.flowFilesIn = base.flowFilesIn + flowFilesIn;
             this.flowFilesOut = base.flowFilesOut + flowFilesOut;
             this.flowFilesRemoved = base.flowFilesRemoved + flowFilesRemoved;
@@ -162,6 +167,8 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
             this.flowFilesSent = base.flowFilesSent + flowFilesSent;
             this.bytesSent = base.bytesSent + bytesSent;
             this.processingNanos = base.processingNanos + processingNanos;
+            this.runQueueWaitNanos = base.runQueueWaitNanos + runQueueWaitNanos;
+            this.cpuNanos = base.cpuNanos + cpuNanos;
             this.invocations = base.invocations + invocations;
             this.aggregateLineageMillis = base.aggregateLineageMillis + aggregateLineageMillis;
             this.millisecondTimestamp = System.currentTimeMillis();
@@ -212,6 +219,14 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
             return processingNanos;
         }
 
+        public long getRunQueueWaitNanoseconds() {
+            return runQueueWaitNanos;
+        }
+
+        public long getCpuNanoseconds() {
+            return cpuNanos;
+        }
+
         public int getInvocations() {
             return invocations;
         }
@@ -272,6 +287,7 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
             long bytesRead = 0L, bytesWritten = 0L;
             int invocations = 0;
             long processingNanos = 0L;
+            long runQueueWaitNanos = 0L, cpuNanos = 0L;
             long aggregateLineageMillis = 0L;
             int flowFilesReceived = 0, flowFilesSent = 0;
             long bytesReceived = 0L, bytesSent = 0L;
@@ -299,6 +315,8 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
                     bytesSent += sumValue.getBytesSent();
                     invocations += sumValue.getInvocations();
                     processingNanos += sumValue.getProcessingNanoseconds();
+                    runQueueWaitNanos += sumValue.getRunQueueWaitNanoseconds();
+                    cpuNanos += sumValue.getCpuNanoseconds();
                     aggregateLineageMillis += sumValue.getAggregateLineageMillis();
                 }
             }
@@ -306,7 +324,7 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
             return new StandardFlowFileEvent(consumerId, flowFilesIn, contentSizeIn,
                     flowFilesOut, contentSizeOut, flowFilesRemoved, contentSizeRemoved,
                     bytesRead, bytesWritten, flowFilesReceived, bytesReceived, flowFilesSent, bytesSent,
-                    invocations, aggregateLineageMillis, processingNanos);
+                    invocations, aggregateLineageMillis, processingNanos, runQueueWaitNanos, cpuNanos);
         }
     }
 }
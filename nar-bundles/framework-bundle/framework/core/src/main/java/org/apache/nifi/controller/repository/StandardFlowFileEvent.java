@@ -29,6 +29,8 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
     private long bytesRead;
     private long bytesWritten;
     private long processingNanos;
+    private long runQueueWaitNanos;
+    private long cpuNanos;
     private long aggregateLineageMillis;
     private int flowFilesReceived;
     private long bytesReceived;
@@ -47,7 +49,8 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
             final long bytesRead, final long bytesWritten,
             final int flowFilesReceived, final long bytesReceived,
             final int flowFilesSent, final long bytesSent,
-            final int invocations, final long averageLineageMillis, final long processingNanos) {
+            final int invocations, final long averageLineageMillis, final long processingNanos,
+            final long runQueueWaitNanos, final long cpuNanos) {
         this.componentId = componentId;
         this.flowFilesIn = flowFilesIn;
         this.contentSizeIn = contentSizeIn;
@@ -64,6 +67,8 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
         this.bytesSent = bytesSent;
         this.aggregateLineageMillis = averageLineageMillis;
         this.processingNanos = processingNanos;
+        this.runQueueWaitNanos = runQueueWaitNanos;
+        this.cpuNanos = cpuNanos;
     }
 
     public StandardFlowFileEvent(final FlowFileEvent other) {
@@ -83,6 +88,8 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
         this.bytesSent = other.getBytesSent();
         this.aggregateLineageMillis = other.getAggregateLineageMillis();
         this.processingNanos = other.getProcessingNanoseconds();
+        this.runQueueWaitNanos = other.getRunQueueWaitNanoseconds();
+        this.cpuNanos = other.getCpuNanoseconds();
     }
 
     @Override
@@ -171,6 +178,24 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
         this.processingNanos = processingNanos;
     }
 
+    @Override
+    public long getRunQueueWaitNanoseconds() {
+        return runQueueWaitNanos;
+    }
+
+    public void setRunQueueWaitNanos(final long runQueueWaitNanos) {
+        this.runQueueWaitNanos = runQueueWaitNanos;
+    }
+
+    @Override
+    public long getCpuNanoseconds() {
+        return cpuNanos;
+    }
+
+    public void setCpuNanos(final long cpuNanos) {
+        this.cpuNanos = cpuNanos;
+    }
+
     @Override
     public int getInvocations() {
         return invocations;
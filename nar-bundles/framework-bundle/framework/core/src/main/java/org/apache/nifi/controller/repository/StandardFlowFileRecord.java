@@ -18,9 +18,7 @@ package org.apache.nifi.controller.repository;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -53,7 +51,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
     private final Set<String> lineageIdentifiers;
     private final long size;
     private final long penaltyExpirationMs;
-    private final Map<String, String> attributes;
+    private final AttributeMap attributes;
     private final ContentClaim claim;
     private final long claimOffset;
     private final long lastQueueDate;
@@ -83,7 +81,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     @Override
     public Set<String> getLineageIdentifiers() {
-        return Collections.unmodifiableSet(lineageIdentifiers);
+        return lineageIdentifiers; // immutable
     }
 
     @Override
@@ -113,7 +111,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     @Override
     public Map<String, String> getAttributes() {
-        return Collections.unmodifiableMap(this.attributes);
+        return this.attributes; // immutable
     }
 
     @Override
@@ -165,15 +163,53 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
         return new HashCodeBuilder(7, 13).append(id).toHashCode();
     }
 
+    /**
+     * Estimates the heap space that this FlowFile occupies while it is held
+     * in a queue. The Content Claim, the lineage identifiers and the attribute
+     * keys and values that are deduplicated are shared with other FlowFiles
+     * and are not counted.
+     *
+     * @return the estimated number of bytes
+     */
+    public long getEstimatedHeapSize() {
+        // object header, seven longs and three references
+        long bytes = AttributeMap.alignedBytes(12 + 7 * 8 + 3 * 4);
+        bytes += attributes.estimateHeapBytes();
+        // the identifiers themselves are the UUIDs of ancestors, which hold the same strings
+        final int lineageCount = lineageIdentifiers.size();
+        if (lineageCount == 1) {
+            bytes += 16;
+        } else if (lineageCount > 1) {
+            // the unmodifiable wrapper, the HashSet and its HashMap, the table and one node per identifier
+            bytes += 80 + AttributeMap.estimateArrayBytes(2 * lineageCount) + 32L * lineageCount;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return an immutable set of the given lineage identifiers, sized to
+     * what it holds; nearly every FlowFile has exactly one
+     */
+    private static Set<String> compactLineageIdentifiers(final Collection<String> lineageIdentifiers) {
+        switch (lineageIdentifiers.size()) {
+            case 0:
+                return Collections.emptySet();
+            case 1:
+                return Collections.singleton(lineageIdentifiers.iterator().next());
+            default:
+                return Collections.unmodifiableSet(new HashSet<>(lineageIdentifiers));
+        }
+    }
+
     public static final class Builder {
 
         private long bId;
         private long bEntryDate = System.currentTimeMillis();
         private long bLineageStartDate = bEntryDate;
-        private final Set<String> bLineageIdentifiers = new HashSet<>();
+        private Set<String> bLineageIdentifiers = Collections.emptySet();
         private long bPenaltyExpirationMs = -1L;
         private long bSize = 0L;
-        private Map<String, String> bAttributes = new HashMap<>();
+        private AttributeMap bAttributes = AttributeMap.EMPTY;
         private ContentClaim bClaim = null;
         private long bClaimOffset = 0L;
         private long bLastQueueDate = System.currentTimeMillis();
@@ -185,8 +221,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
         public Builder lineageIdentifiers(final Collection<String> lineageIdentifiers) {
             if (null != lineageIdentifiers) {
-                bLineageIdentifiers.clear();
-                bLineageIdentifiers.addAll(lineageIdentifiers);
+                bLineageIdentifiers = compactLineageIdentifiers(lineageIdentifiers);
             }
             return this;
         }
@@ -215,7 +250,8 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
         public Builder addAttribute(final String key, final String value) {
             if (key != null && value != null) {
-                bAttributes.put(FlowFile.KeyValidator.validateKey(key), value);
+                final String internedKey = AttributeMap.internKey(FlowFile.KeyValidator.validateKey(key));
+                bAttributes = bAttributes.plus(internedKey, AttributeMap.internValue(internedKey, value));
             }
             return this;
         }
@@ -229,7 +265,8 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
                     final String key = entry.getKey();
                     final String value = entry.getValue();
                     if (key != null && value != null) {
-                        bAttributes.put(key, value);
+                        final String internedKey = AttributeMap.internKey(key);
+                        bAttributes = bAttributes.plus(internedKey, AttributeMap.internValue(internedKey, value));
                     }
                 }
             }
@@ -239,7 +276,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
         public Builder removeAttributes(final String... keys) {
             if (keys != null) {
                 for (final String key : keys) {
-                    bAttributes.remove(key);
+                    bAttributes = bAttributes.minus(key);
                 }
             }
             return this;
@@ -248,7 +285,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
         public Builder removeAttributes(final Set<String> keys) {
             if (keys != null) {
                 for (final String key : keys) {
-                    bAttributes.remove(key);
+                    bAttributes = bAttributes.minus(key);
                 }
             }
             return this;
@@ -256,13 +293,13 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
         public Builder removeAttributes(final Pattern keyPattern) {
             if (keyPattern != null) {
-                final Iterator<String> iterator = bAttributes.keySet().iterator();
-                while (iterator.hasNext()) {
-                    final String key = iterator.next();
+                AttributeMap remaining = bAttributes;
+                for (final String key : bAttributes.keySet()) {
                     if (keyPattern.matcher(key).matches()) {
-                        iterator.remove();
+                        remaining = remaining.minus(key);
                     }
                 }
+                bAttributes = remaining;
             }
             return this;
         }
@@ -289,11 +326,20 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
             bId = specFlowFile.getId();
             bEntryDate = specFlowFile.getEntryDate();
             bLineageStartDate = specFlowFile.getLineageStartDate();
-            bLineageIdentifiers.clear();
-            bLineageIdentifiers.addAll(specFlowFile.getLineageIdentifiers());
+            if (specFlowFile instanceof StandardFlowFileRecord) {
+                // immutable, so the new FlowFile can share it
+                bLineageIdentifiers = ((StandardFlowFileRecord) specFlowFile).lineageIdentifiers;
+            } else {
+                bLineageIdentifiers = compactLineageIdentifiers(specFlowFile.getLineageIdentifiers());
+            }
             bPenaltyExpirationMs = specFlowFile.getPenaltyExpirationMillis();
             bSize = specFlowFile.getSize();
-            bAttributes.putAll(specFlowFile.getAttributes());
+            if (bAttributes.isEmpty() && specFlowFile instanceof StandardFlowFileRecord) {
+                // the attributes are immutable, so they can be shared with the new FlowFile rather than copied
+                bAttributes = ((StandardFlowFileRecord) specFlowFile).attributes;
+            } else {
+                bAttributes = bAttributes.plusAll(specFlowFile.getAttributes());
+            }
             bClaim = specFlowFile.getContentClaim();
             bClaimOffset = specFlowFile.getContentClaimOffset();
 
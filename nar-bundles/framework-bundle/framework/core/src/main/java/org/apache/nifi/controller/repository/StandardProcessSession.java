@@ -21,6 +21,8 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -58,7 +60,6 @@ import org.apache.nifi.io.NonCloseableInputStream;
 import org.apache.nifi.io.StreamUtils;
 import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.processor.FlowFileFilter;
-import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.QueueSize;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.processor.exception.FlowFileAccessException;
@@ -89,7 +90,7 @@ import org.slf4j.LoggerFactory;
  * <p/>
  * @author none
  */
-public final class StandardProcessSession implements ProcessSession, ProvenanceEventEnricher {
+public final class StandardProcessSession implements ChannelTransferSession, ProvenanceEventEnricher {
 
     private static final AtomicLong idGenerator = new AtomicLong(0L);
 
@@ -136,6 +137,7 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
 
     private ContentClaim currentReadClaim = null;
     private ByteCountingInputStream currentReadClaimStream = null;
+    private long currentReadClaimStreamOffset = 0L;
     private long processingStartTime;
 
     // maps a FlowFile to all Provenance Events that were generated for that FlowFile.
@@ -1564,8 +1566,9 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
             // callback for reading FlowFile 1 and if we used the same stream we'd be destroying the ability to read from FlowFile 1.
             if (recursionSet.isEmpty()) {
                 if (currentReadClaim == claim) {
-                    if (currentReadClaimStream != null && currentReadClaimStream.getStreamLocation() <= offset) {
-                        final long bytesToSkip = offset - currentReadClaimStream.getStreamLocation();
+                    final long streamLocation = currentReadClaimStreamOffset + (currentReadClaimStream == null ? 0L : currentReadClaimStream.getStreamLocation());
+                    if (currentReadClaimStream != null && streamLocation <= offset) {
+                        final long bytesToSkip = offset - streamLocation;
                         if (bytesToSkip > 0) {
                             StreamUtils.skip(currentReadClaimStream, bytesToSkip);
                         }
@@ -1574,23 +1577,23 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
                     }
                 }
 
-                final InputStream rawInStream = context.getContentRepository().read(claim);
+                // Ask the Content Repository to position the stream for us, rather than skipping to the offset,
+                // as it may be able to do so without reading the content that precedes it.
+                final InputStream rawInStream = context.getContentRepository().read(claim, offset);
 
                 if (currentReadClaimStream != null) {
                     currentReadClaimStream.close();
                 }
 
                 currentReadClaim = claim;
+                currentReadClaimStreamOffset = offset;
                 currentReadClaimStream = new ByteCountingInputStream(rawInStream, new LongHolder(0L));
-                StreamUtils.skip(currentReadClaimStream, offset);
 
                 // Use a non-closeable stream because we want to keep it open after the callback has finished so that we can
                 // reuse the same InputStream for the next FlowFile
                 return new NonCloseableInputStream(currentReadClaimStream);
             } else {
-                final InputStream rawInStream = context.getContentRepository().read(claim);
-                StreamUtils.skip(rawInStream, offset);
-                return rawInStream;
+                return context.getContentRepository().read(claim, offset);
             }
         } catch (final ContentNotFoundException cnfe) {
             throw cnfe;
@@ -2023,6 +2026,7 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         } catch (final Exception e) {
         }
         currentReadClaimStream = null;
+        currentReadClaimStreamOffset = 0L;
         currentReadClaim = null;
     }
 
@@ -2304,6 +2308,56 @@ public final class StandardProcessSession implements ProcessSession, ProvenanceE
         }
     }
 
+    @Override
+    public long exportTo(final FlowFile source, final WritableByteChannel destination, final long offset, final long length) {
+        validateRecordState(source);
+        if (offset < 0 || offset > source.getSize()) {
+            throw new IllegalArgumentException("offset of " + offset + " is not valid for " + source + " of size " + source.getSize());
+        }
+
+        final StandardRepositoryRecord record = records.get(source);
+        try {
+            if (record.getCurrentClaim() == null) {
+                return 0L;
+            }
+
+            ensureNotAppending(record.getCurrentClaim());
+            final long size = context.getContentRepository().exportTo(record.getCurrentClaim(), destination,
+                    record.getCurrentClaimOffset() + offset, Math.min(length, source.getSize() - offset));
+            bytesRead.increment(size);
+            return size;
+        } catch (final ContentNotFoundException nfe) {
+            handleContentNotFound(nfe, record);
+            return 0L;
+        } catch (final Throwable t) {
+            throw new FlowFileAccessException("Failed to export " + source + " to " + destination + " due to " + t.toString(), t);
+        }
+    }
+
+    @Override
+    public ByteBuffer readBuffer(final FlowFile source, final long offset, final int length) {
+        validateRecordState(source);
+        if (offset < 0 || offset > source.getSize()) {
+            throw new IllegalArgumentException("offset of " + offset + " is not valid for " + source + " of size " + source.getSize());
+        }
+
+        final StandardRepositoryRecord record = records.get(source);
+        try {
+            if (record.getCurrentClaim() == null) {
+                return ByteBuffer.allocate(0).asReadOnlyBuffer();
+            }
+
+            ensureNotAppending(record.getCurrentClaim());
+            return context.getContentRepository().readBuffer(record.getCurrentClaim(), record.getCurrentClaimOffset() + offset,
+                    (int) Math.min(length, source.getSize() - offset));
+        } catch (final ContentNotFoundException nfe) {
+            handleContentNotFound(nfe, record);
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        } catch (final Throwable t) {
+            throw new FlowFileAccessException("Failed to read " + source + " due to " + t.toString(), t);
+        }
+    }
+
     private void handleContentNotFound(final ContentNotFoundException nfe, final Collection<StandardRepositoryRecord> suspectRecords) {
         for (final StandardRepositoryRecord record : suspectRecords) {
             handleContentNotFound(nfe, record);
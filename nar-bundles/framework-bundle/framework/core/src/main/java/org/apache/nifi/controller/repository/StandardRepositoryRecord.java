@@ -37,7 +37,7 @@ public class StandardRepositoryRecord implements RepositoryRecord {
     private final FlowFileRecord originalFlowFileRecord;
     private final FlowFileQueue originalQueue;
     private String swapLocation;
-    private final Map<String, String> updatedAttributes = new HashMap<>();
+    private Map<String, String> updatedAttributes = null; // created when an attribute is first updated
     private final Map<String, String> originalAttributes;
 
     /**
@@ -116,17 +116,23 @@ public class StandardRepositoryRecord implements RepositoryRecord {
 
     public void setWorking(final FlowFileRecord flowFile, final String attributeKey, final String attributeValue) {
         workingFlowFileRecord = flowFile;
+        if (updatedAttributes == null) {
+            updatedAttributes = new HashMap<>();
+        }
         updatedAttributes.put(attributeKey, attributeValue);
     }
 
     public void setWorking(final FlowFileRecord flowFile, final Map<String, String> updatedAttribs) {
         workingFlowFileRecord = flowFile;
+        if (updatedAttributes == null) {
+            updatedAttributes = new HashMap<>();
+        }
         updatedAttributes.putAll(updatedAttribs);
     }
 
     @Override
     public boolean isAttributesChanged() {
-        return !updatedAttributes.isEmpty();
+        return updatedAttributes != null && !updatedAttributes.isEmpty();
     }
 
     public void markForAbort() {
@@ -186,7 +192,7 @@ public class StandardRepositoryRecord implements RepositoryRecord {
     }
 
     Map<String, String> getUpdatedAttributes() {
-        return updatedAttributes;
+        return updatedAttributes == null ? Collections.<String, String>emptyMap() : updatedAttributes;
     }
 
     @Override
@@ -21,6 +21,8 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -82,6 +84,13 @@ import org.slf4j.LoggerFactory;
  * Repository has not been specified, attempting to create a non-loss-tolerant
  * ContentClaim will result in an {@link IllegalStateException} being thrown.
  * </p>
+ *
+ * <p>
+ * Setting the <code>nifi.volatile.content.repository.off.heap</code> property
+ * to <code>true</code> stores the content in direct memory instead of the Java
+ * heap. The JVM's <code>-XX:MaxDirectMemorySize</code> must then allow for the
+ * configured maximum size.
+ * </p>
  */
 public class VolatileContentRepository implements ContentRepository {
 
@@ -91,6 +100,7 @@ public class VolatileContentRepository implements ContentRepository {
 
     public static final String MAX_SIZE_PROPERTY = "nifi.volatile.content.repository.max.size";
     public static final String BLOCK_SIZE_PROPERTY = "nifi.volatile.content.repository.block.size";
+    public static final String OFF_HEAP_PROPERTY = "nifi.volatile.content.repository.off.heap";
 
     private final ScheduledExecutorService executor = new FlowEngine(3, "VolatileContentRepository Workers");
     private final ConcurrentMap<ContentClaim, ContentBlock> claimMap = new ConcurrentHashMap<>(256);
@@ -126,7 +136,9 @@ public class VolatileContentRepository implements ContentRepository {
             blockSize = DataUnit.parseDataSize(blockSizeVal, DataUnit.B).intValue();
         }
 
-        memoryManager = new MemoryManager(maxBytes, blockSize);
+        // off-heap blocks keep a large repository out of the heap that the garbage collector has to scan
+        final boolean offHeap = Boolean.parseBoolean(properties.getProperty(OFF_HEAP_PROPERTY, "false"));
+        memoryManager = new MemoryManager(maxBytes, blockSize, offHeap);
 
         for (int i = 0; i < 3; i++) {
             executor.scheduleWithFixedDelay(new CleanupOldClaims(), 1000, 10, TimeUnit.MILLISECONDS);
@@ -408,6 +420,37 @@ public class VolatileContentRepository implements ContentRepository {
         return length;
     }
 
+    @Override
+    public long exportTo(final ContentClaim claim, final WritableByteChannel destination, final long offset, final long length) throws IOException {
+        final ContentClaim backupClaim = claim == null ? null : getBackupClaim(claim);
+        if (backupClaim != null) {
+            return getBackupRepository().exportTo(backupClaim, destination, offset, length);
+        }
+
+        // the content is already in memory, so it can only be copied to the channel
+        final byte[] buffer = new byte[8192];
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long transferred = 0L;
+        try (final InputStream in = read(claim, offset)) {
+            while (transferred < length) {
+                final int len = in.read(buffer, 0, (int) Math.min(length - transferred, buffer.length));
+                if (len < 0) {
+                    break;
+                }
+
+                byteBuffer.clear().limit(len);
+                final int bytesWritten = destination.write(byteBuffer);
+                transferred += bytesWritten;
+                if (bytesWritten < len) {
+                    // a non-blocking destination that is full; the rest of the buffer has not been sent
+                    break;
+                }
+            }
+        }
+
+        return transferred;
+    }
+
     private ContentBlock getContent(final ContentClaim claim) throws ContentNotFoundException {
         final ContentBlock content = claimMap.get(claim);
         if (content == null) {
@@ -437,6 +480,45 @@ public class VolatileContentRepository implements ContentRepository {
         return (backupClaim == null) ? getContent(claim).read() : getBackupRepository().read(backupClaim);
     }
 
+    @Override
+    public InputStream read(final ContentClaim claim, final long offset) throws IOException {
+        final ContentClaim backupClaim = claim == null ? null : getBackupClaim(claim);
+        if (backupClaim != null) {
+            return getBackupRepository().read(backupClaim, offset);
+        }
+
+        final InputStream in = read(claim);
+        try {
+            StreamUtils.skip(in, offset);
+        } catch (final IOException ioe) {
+            in.close();
+            throw ioe;
+        }
+        return in;
+    }
+
+    @Override
+    public ByteBuffer readBuffer(final ContentClaim claim, final long offset, final int length) throws IOException {
+        final ContentClaim backupClaim = claim == null ? null : getBackupClaim(claim);
+        if (backupClaim != null) {
+            return getBackupRepository().readBuffer(backupClaim, offset, length);
+        }
+
+        final byte[] buffer = new byte[Math.max(0, length)];
+        int bytesRead = 0;
+        try (final InputStream in = read(claim, offset)) {
+            while (bytesRead < buffer.length) {
+                final int len = in.read(buffer, bytesRead, buffer.length - bytesRead);
+                if (len < 0) {
+                    break;
+                }
+                bytesRead += len;
+            }
+        }
+
+        return ByteBuffer.wrap(buffer, 0, bytesRead).slice().asReadOnlyBuffer();
+    }
+
     @Override
     public OutputStream write(final ContentClaim claim) throws IOException {
         final ContentClaim backupClaim = getBackupClaim(claim);
@@ -458,6 +540,11 @@ public class VolatileContentRepository implements ContentRepository {
     public void cleanup() {
     }
 
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
     @Override
     public boolean isAccessible(final ContentClaim claim) throws IOException {
         if (claim == null) {
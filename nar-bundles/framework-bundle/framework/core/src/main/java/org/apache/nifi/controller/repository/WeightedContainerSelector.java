@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>
+ * Chooses containers at random, in proportion to a weight that favors
+ * containers that have been writing quickly, that have few writes in
+ * progress, and that have the most space left. The weight of a container is
+ * its fraction of usable space divided by the time that a write is expected
+ * to take there, which is its recent average time to write a byte multiplied
+ * by one more than the number of writes in progress.
+ * </p>
+ *
+ * <p>
+ * Choosing at random rather than always choosing the best container keeps
+ * every container in use, so that a container that recovers is noticed, and
+ * keeps the threads that create claims at the same moment from all piling
+ * onto one container. A container that has not been written to yet is
+ * assumed to be as fast as the fastest container that has.
+ * </p>
+ */
+public class WeightedContainerSelector implements ContainerSelector {
+
+    // the time per byte assumed when no container has been written to yet
+    private static final double DEFAULT_NANOS_PER_BYTE = 1D;
+
+    @Override
+    public ContainerMetrics select(final List<ContainerMetrics> candidates, final long claimIndex) {
+        return select(candidates, ThreadLocalRandom.current());
+    }
+
+    ContainerMetrics select(final List<ContainerMetrics> candidates, final Random random) {
+        final int count = candidates.size();
+        if (count == 1) {
+            return candidates.get(0);
+        }
+
+        double minLatency = Double.MAX_VALUE;
+        for (final ContainerMetrics metrics : candidates) {
+            final double latency = metrics.getWriteNanosPerByte();
+            if (latency > 0D && latency < minLatency) {
+                minLatency = latency;
+            }
+        }
+        if (minLatency == Double.MAX_VALUE) {
+            minLatency = DEFAULT_NANOS_PER_BYTE;
+        }
+
+        final double[] weights = new double[count];
+        double totalWeight = 0D;
+        for (int i = 0; i < count; i++) {
+            final ContainerMetrics metrics = candidates.get(i);
+            final double latency = Math.max(metrics.getWriteNanosPerByte(), minLatency);
+            final double expectedWriteNanos = latency * (1 + metrics.getActiveWrites());
+            weights[i] = metrics.getUsableFraction() / expectedWriteNanos;
+            totalWeight += weights[i];
+        }
+
+        if (totalWeight <= 0D) {
+            // every container is full; let the caller find out when it writes
+            return candidates.get(random.nextInt(count));
+        }
+
+        double target = random.nextDouble() * totalWeight;
+        for (int i = 0; i < count; i++) {
+            target -= weights[i];
+            if (target < 0D) {
+                return candidates.get(i);
+            }
+        }
+        return candidates.get(count - 1);
+    }
+}
@@ -22,15 +22,19 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -54,7 +58,6 @@ import org.wali.MinimalLockingWriteAheadLog;
 import org.wali.SerDe;
 import org.wali.SyncListener;
 import org.wali.UpdateType;
-import org.wali.WriteAheadRepository;
 
 /**
  * <p>
@@ -78,11 +81,28 @@ import org.wali.WriteAheadRepository;
  * choose instead to not sync to disk for every write but instead sync only when
  * we checkpoint.
  * </p>
+ *
+ * <p>
+ * When <code>nifi.flowfile.repository.always.sync</code> is <code>true</code>,
+ * the <code>nifi.flowfile.repository.group.commit.window</code> property may be
+ * set to a time period, such as <code>2 millis</code>. Concurrent updates to the
+ * same partition then share a single sync to disk, and the first update to
+ * require a sync waits up to this period for others to join it. Every update
+ * still waits for its data to be synced before returning. If the property is
+ * not set, each update syncs its own partition.
+ * </p>
+ *
+ * <p>
+ * On startup, the snapshot is deserialized using the number of threads given
+ * by the <code>nifi.flowfile.repository.recovery.threads</code> property, which
+ * defaults to the number of available processors.
+ * </p>
  */
 public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncListener {
 
     private final AtomicLong flowFileSequenceGenerator = new AtomicLong(0L);
     private final boolean alwaysSync;
+    private final long groupCommitWindowNanos;
 
     private static final Logger logger = LoggerFactory.getLogger(WriteAheadFlowFileRepository.class);
     private volatile ScheduledFuture<?> checkpointFuture;
@@ -90,9 +110,10 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
     private final long checkpointDelayMillis;
     private final Path flowFileRepositoryPath;
     private final int numPartitions;
+    private final int recoveryThreads;
 
     // effectively final
-    private WriteAheadRepository<RepositoryRecord> wal;
+    private MinimalLockingWriteAheadLog<RepositoryRecord> wal;
     private WriteAheadRecordSerde serde;
     private ContentClaimManager claimManager;
 
@@ -124,9 +145,17 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
 
         alwaysSync = Boolean.parseBoolean(properties.getProperty(NiFiProperties.FLOWFILE_REPOSITORY_ALWAYS_SYNC, "false"));
 
+        final String groupCommitWindow = properties.getProperty(NiFiProperties.FLOWFILE_REPOSITORY_GROUP_COMMIT_WINDOW);
+        if (groupCommitWindow == null || groupCommitWindow.trim().isEmpty()) {
+            groupCommitWindowNanos = -1L;
+        } else {
+            groupCommitWindowNanos = FormatUtils.getTimeDuration(groupCommitWindow.trim(), TimeUnit.NANOSECONDS);
+        }
+
         // determine the database file path and ensure it exists
         flowFileRepositoryPath = properties.getFlowFileRepositoryPath();
         numPartitions = properties.getFlowFileRepositoryPartitions();
+        recoveryThreads = properties.getFlowFileRepositoryRecoveryThreads();
         checkpointDelayMillis = FormatUtils.getTimeDuration(properties.getFlowFileRepositoryCheckpointInterval(), TimeUnit.MILLISECONDS);
     }
 
@@ -141,7 +170,8 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         // backup and then the data deleted from the normal location; then can move backup to normal location and
         // delete backup. On restore, if no files exist in partition's directory, would have to check backup directory
         serde = new WriteAheadRecordSerde(claimManager);
-        wal = new MinimalLockingWriteAheadLog<>(flowFileRepositoryPath, numPartitions, serde, this);
+        wal = new MinimalLockingWriteAheadLog<>(new TreeSet<>(Collections.singleton(flowFileRepositoryPath)), numPartitions, serde, this,
+                groupCommitWindowNanos, TimeUnit.NANOSECONDS, recoveryThreads);
     }
 
     @Override
@@ -316,7 +346,9 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             queueMap.put(queue.getIdentifier(), queue);
         }
         serde.setQueueMap(queueMap);
+        final long recoveryStart = System.nanoTime();
         final Collection<RepositoryRecord> recordList = wal.recoverRecords();
+        final long recoveryNanos = System.nanoTime() - recoveryStart;
         serde.setQueueMap(null);
 
         for (final RepositoryRecord record : recordList) {
@@ -344,7 +376,13 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         // Set the AtomicLong to 1 more than the max ID so that calls to #getNextFlowFileSequence() will
         // return the appropriate number.
         flowFileSequenceGenerator.set(maxId + 1);
-        logger.info("Successfully restored {} FlowFiles", recordList.size());
+
+        final long enqueueNanos = System.nanoTime() - recoveryStart - recoveryNanos;
+        logger.info("Successfully restored {} FlowFiles in {} milliseconds (Snapshot = {} milliseconds, Journals = {} milliseconds, "
+                + "Checkpoint = {} milliseconds, Enqueuing FlowFiles = {} milliseconds)", new Object[]{recordList.size(),
+                    TimeUnit.NANOSECONDS.toMillis(recoveryNanos + enqueueNanos), wal.getSnapshotRecoveryTime(TimeUnit.MILLISECONDS),
+                    wal.getJournalRecoveryTime(TimeUnit.MILLISECONDS), wal.getLastCheckpointDuration(TimeUnit.MILLISECONDS),
+                    TimeUnit.NANOSECONDS.toMillis(enqueueNanos)});
 
         final Runnable checkpointRunnable = new Runnable() {
             @Override
@@ -357,6 +395,11 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                     final long millis = TimeUnit.MILLISECONDS.convert((end - start), TimeUnit.NANOSECONDS);
                     logger.info("Successfully checkpointed FlowFile Repository with {} records in {} milliseconds",
                             new Object[]{numRecordsCheckpointed, millis});
+
+                    if (alwaysSync) {
+                        logger.info("FlowFile Repository updates per sync: {}; sync latency in nanoseconds: {}",
+                                wal.getCommitsPerSyncHistogram(), wal.getSyncLatencyHistogram());
+                    }
                 } catch (final IOException e) {
                     logger.error("Unable to checkpoint FlowFile Repository due to " + e.toString(), e);
                 }
@@ -384,7 +427,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         return wal.checkpoint();
     }
 
-    private static class WriteAheadRecordSerde implements SerDe<RepositoryRecord> {
+    static class WriteAheadRecordSerde implements SerDe<RepositoryRecord> {
 
         public static final byte ACTION_CREATE = 0;
         public static final byte ACTION_UPDATE = 1;
@@ -392,15 +435,36 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         public static final byte ACTION_SWAPPED_OUT = 3;
         public static final byte ACTION_SWAPPED_IN = 4;
 
+        private static final byte ATTRIBUTES_UNCHANGED = 0;
+        private static final byte ATTRIBUTES_FULL = 1;
+        private static final byte ATTRIBUTES_DELTA = 2;
+
+        private static final byte DICTIONARY_NEW_ENTRY = 0;
+        private static final byte DICTIONARY_LITERAL = 1;
+        private static final int MAX_DICTIONARY_SIZE = 8192;
+
+        /**
+         * Version 7 introduced a compact encoding: numbers are written as
+         * variable-length integers, dates relative to the FlowFile's entry
+         * date, repeated strings via a per-stream dictionary, and only the
+         * attributes that changed since the previous edit of a FlowFile.
+         */
+        static final int COMPACT_ENCODING_VERSION = 7;
+
+        // dictionaries are scoped to a single journal or snapshot, which the Write-Ahead Log writes and reads through
+        // a single stream, so they are keyed by stream. The streams are discarded when the journal is rolled over.
+        private final Map<OutputStream, WriteDictionary> writeDictionaries = new WeakHashMap<>();
+        private final Map<InputStream, ReadDictionary> readDictionaries = new WeakHashMap<>();
+
         private Map<String, FlowFileQueue> flowFileQueueMap = null;
-        private long recordsRestored = 0L;
+        private final AtomicLong recordsRestored = new AtomicLong(0L);
         private final ContentClaimManager claimManager;
 
         public WriteAheadRecordSerde(final ContentClaimManager claimManager) {
             this.claimManager = claimManager;
         }
 
-        private void setQueueMap(final Map<String, FlowFileQueue> queueMap) {
+        void setQueueMap(final Map<String, FlowFileQueue> queueMap) {
             this.flowFileQueueMap = queueMap;
         }
 
@@ -410,11 +474,13 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         }
 
         public void serializeEdit(final RepositoryRecord previousRecordState, final RepositoryRecord record, final DataOutputStream out, final boolean forceAttributesWritten) throws IOException {
+            final WriteDictionary dictionary = getWriteDictionary(out);
+
             if (record.isMarkedForAbort()) {
                 logger.warn("Repository Record {} is marked to be aborted; it will be persisted in the FlowFileRepository as a DELETE record", record);
                 out.write(ACTION_DELETE);
-                out.writeLong(getRecordIdentifier(record));
-                serializeContentClaim(record.getCurrentClaim(), record.getCurrentClaimOffset(), out);
+                writeVarLong(getRecordIdentifier(record), out);
+                serializeContentClaim(record.getCurrentClaim(), record.getCurrentClaimOffset(), out, dictionary);
                 return;
             }
 
@@ -422,8 +488,8 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
 
             if (updateType.equals(UpdateType.DELETE)) {
                 out.write(ACTION_DELETE);
-                out.writeLong(getRecordIdentifier(record));
-                serializeContentClaim(record.getCurrentClaim(), record.getCurrentClaimOffset(), out);
+                writeVarLong(getRecordIdentifier(record), out);
+                serializeContentClaim(record.getCurrentClaim(), record.getCurrentClaimOffset(), out, dictionary);
                 return;
             }
 
@@ -438,9 +504,9 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
 
             if (updateType.equals(UpdateType.SWAP_OUT)) {
                 out.write(ACTION_SWAPPED_OUT);
-                out.writeLong(getRecordIdentifier(record));
-                out.writeUTF(associatedQueue.getIdentifier());
-                out.writeUTF(getLocation(record));
+                writeVarLong(getRecordIdentifier(record), out);
+                dictionary.writeString(associatedQueue.getIdentifier(), out);
+                writeCompactString(getLocation(record), out);
                 return;
             }
 
@@ -461,50 +527,89 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                     throw new AssertionError();
             }
 
-            out.writeLong(getRecordIdentifier(record));
-            out.writeLong(flowFile.getEntryDate());
+            writeVarLong(getRecordIdentifier(record), out);
+
+            // the lineage start date and queue date are written relative to the entry date, as they are generally close to it
+            final long entryDate = flowFile.getEntryDate();
+            writeVarLong(entryDate, out);
 
             final Set<String> lineageIdentifiers = flowFile.getLineageIdentifiers();
-            out.writeInt(lineageIdentifiers.size());
+            writeVarLong(lineageIdentifiers.size(), out);
             for (final String lineageId : lineageIdentifiers) {
-                out.writeUTF(lineageId);
+                writeCompactString(lineageId, out);
             }
 
-            out.writeLong(flowFile.getLineageStartDate());
+            writeSignedVarLong(entryDate - flowFile.getLineageStartDate(), out);
 
             final Long queueDate = flowFile.getLastQueueDate();
-            out.writeLong(queueDate == null ? System.currentTimeMillis() : queueDate);
-            out.writeLong(flowFile.getSize());
+            writeSignedVarLong((queueDate == null ? System.currentTimeMillis() : queueDate) - entryDate, out);
+            writeVarLong(flowFile.getSize(), out);
 
             if (associatedQueue == null) {
                 logger.warn("{} Repository Record {} has no Connection associated with it; it will be destroyed on restart",
                         new Object[]{this, record});
-                writeString("", out);
+                dictionary.writeString("", out);
             } else {
-                writeString(associatedQueue.getIdentifier(), out);
+                dictionary.writeString(associatedQueue.getIdentifier(), out);
             }
 
-            serializeContentClaim(claim, record.getCurrentClaimOffset(), out);
+            serializeContentClaim(claim, record.getCurrentClaimOffset(), out, dictionary);
 
-            if (forceAttributesWritten || record.isAttributesChanged() || updateType == UpdateType.CREATE || updateType == UpdateType.SWAP_IN) {
-                out.write(1);   // indicate attributes changed
-                final Map<String, String> attributes = flowFile.getAttributes();
-                out.writeInt(attributes.size());
+            final Map<String, String> attributes = flowFile.getAttributes();
+            final FlowFile previousFlowFile = previousRecordState == null ? null : previousRecordState.getCurrent();
+            if (forceAttributesWritten || updateType == UpdateType.CREATE || updateType == UpdateType.SWAP_IN || previousFlowFile == null) {
+                out.write(ATTRIBUTES_FULL);
+                writeVarLong(attributes.size(), out);
                 for (final Map.Entry<String, String> entry : attributes.entrySet()) {
-                    writeString(entry.getKey(), out);
-                    writeString(entry.getValue(), out);
+                    dictionary.writeString(entry.getKey(), out);
+                    writeCompactString(entry.getValue(), out);
+                }
+            } else if (record.isAttributesChanged()) {
+                // write only the attributes that were removed, added, or modified since the previous edit
+                final Map<String, String> previousAttributes = previousFlowFile.getAttributes();
+                final List<String> removed = new ArrayList<>();
+                for (final String key : previousAttributes.keySet()) {
+                    if (!attributes.containsKey(key)) {
+                        removed.add(key);
+                    }
+                }
+
+                final List<Map.Entry<String, String>> updated = new ArrayList<>();
+                for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+                    if (!entry.getValue().equals(previousAttributes.get(entry.getKey()))) {
+                        updated.add(entry);
+                    }
+                }
+
+                out.write(ATTRIBUTES_DELTA);
+                writeVarLong(removed.size(), out);
+                for (final String key : removed) {
+                    dictionary.writeString(key, out);
+                }
+                writeVarLong(updated.size(), out);
+                for (final Map.Entry<String, String> entry : updated) {
+                    dictionary.writeString(entry.getKey(), out);
+                    writeCompactString(entry.getValue(), out);
                 }
             } else {
-                out.write(0);   // indicate attributes did not change
+                out.write(ATTRIBUTES_UNCHANGED);
             }
 
             if (updateType == UpdateType.SWAP_IN) {
-                out.writeUTF(record.getSwapLocation());
+                writeCompactString(record.getSwapLocation(), out);
             }
         }
 
         @Override
         public RepositoryRecord deserializeEdit(final DataInputStream in, final Map<Object, RepositoryRecord> currentRecordStates, final int version) throws IOException {
+            if (version >= COMPACT_ENCODING_VERSION) {
+                final int action = in.read();
+                if (action == -1) {
+                    throw new EOFException();
+                }
+                return deserializeCompactEdit(action, in, currentRecordStates);
+            }
+
             final int action = in.read();
             final long recordId = in.readLong();
             if (action == ACTION_DELETE) {
@@ -608,17 +713,21 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                 }
             }
 
-            recordsRestored++;
+            recordsRestored.incrementAndGet();
             return standardRepoRecord;
         }
 
         @Override
-        public StandardRepositoryRecord deserializeRecord(final DataInputStream in, final int version) throws IOException {
+        public RepositoryRecord deserializeRecord(final DataInputStream in, final int version) throws IOException {
             final int action = in.read();
             if (action == -1) {
                 return null;
             }
 
+            if (version >= COMPACT_ENCODING_VERSION) {
+                return deserializeCompactEdit(action, in, Collections.<Object, RepositoryRecord>emptyMap());
+            }
+
             final long recordId = in.readLong();
             if (action == ACTION_DELETE) {
                 final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder().id(recordId);
@@ -707,7 +816,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                 }
             }
 
-            recordsRestored++;
+            recordsRestored.incrementAndGet();
             return record;
         }
 
@@ -716,19 +825,284 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             serializeEdit(null, record, out, true);
         }
 
-        private void serializeContentClaim(final ContentClaim claim, final long offset, final DataOutputStream out) throws IOException {
+        private void serializeContentClaim(final ContentClaim claim, final long offset, final DataOutputStream out, final WriteDictionary dictionary) throws IOException {
             if (claim == null) {
                 out.write(0);
             } else {
                 out.write(1);
-                writeString(claim.getId(), out);
-                writeString(claim.getContainer(), out);
-                writeString(claim.getSection(), out);
-                out.writeLong(offset);
+                writeCompactString(claim.getId(), out);
+                dictionary.writeString(claim.getContainer(), out);
+                dictionary.writeString(claim.getSection(), out);
+                writeVarLong(offset, out);
                 out.writeBoolean(claim.isLossTolerant());
             }
         }
 
+        /**
+         * Reads an edit that was written using the compact encoding that was
+         * introduced in version {@link #COMPACT_ENCODING_VERSION}
+         */
+        private RepositoryRecord deserializeCompactEdit(final int action, final DataInputStream in, final Map<Object, RepositoryRecord> currentRecordStates) throws IOException {
+            final ReadDictionary dictionary = getReadDictionary(in);
+            final long recordId = readVarLong(in);
+
+            if (action == ACTION_DELETE) {
+                final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder().id(recordId);
+                deserializeCompactClaim(in, ffBuilder, dictionary);
+
+                final StandardRepositoryRecord record = new StandardRepositoryRecord((FlowFileQueue) null, ffBuilder.build());
+                record.markForDelete();
+                return record;
+            }
+
+            if (action == ACTION_SWAPPED_OUT) {
+                final String queueId = dictionary.readString(in);
+                final String location = readCompactString(in);
+                final FlowFileQueue queue = flowFileQueueMap == null ? null : flowFileQueueMap.get(queueId);
+
+                final FlowFileRecord flowFileRecord = new StandardFlowFileRecord.Builder()
+                        .id(recordId)
+                        .build();
+
+                return new StandardRepositoryRecord(queue, flowFileRecord, location);
+            }
+
+            if (action != ACTION_CREATE && action != ACTION_UPDATE && action != ACTION_SWAPPED_IN) {
+                throw new IOException("Found invalid action " + action + " after successfully restoring " + recordsRestored
+                        + " records. The FlowFile Repository appears to be corrupt!");
+            }
+
+            final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder();
+            final RepositoryRecord currentRecord = currentRecordStates.get(recordId);
+            final FlowFileRecord currentFlowFile = currentRecord == null ? null : currentRecord.getCurrent();
+            if (currentFlowFile != null) {
+                ffBuilder.fromFlowFile(currentFlowFile);
+            }
+            ffBuilder.id(recordId);
+
+            final long entryDate = readVarLong(in);
+            ffBuilder.entryDate(entryDate);
+
+            final int numLineageIds = (int) readVarLong(in);
+            final Set<String> lineageIdentifiers = new HashSet<>(numLineageIds);
+            for (int i = 0; i < numLineageIds; i++) {
+                lineageIdentifiers.add(readCompactString(in));
+            }
+            ffBuilder.lineageIdentifiers(lineageIdentifiers);
+            ffBuilder.lineageStartDate(entryDate - readSignedVarLong(in));
+            ffBuilder.lastQueueDate(entryDate + readSignedVarLong(in));
+            ffBuilder.size(readVarLong(in));
+
+            final String connectionId = dictionary.readString(in);
+            logger.debug("{} -> {}", new Object[]{recordId, connectionId});
+
+            deserializeCompactClaim(in, ffBuilder, dictionary);
+
+            final int attributesChanged = in.read();
+            if (attributesChanged == ATTRIBUTES_FULL) {
+                if (currentFlowFile != null) {
+                    ffBuilder.removeAttributes(new HashSet<>(currentFlowFile.getAttributes().keySet()));
+                }
+
+                final int numAttributes = (int) readVarLong(in);
+                final Map<String, String> attributes = new HashMap<>(numAttributes);
+                for (int i = 0; i < numAttributes; i++) {
+                    final String key = dictionary.readString(in);
+                    attributes.put(key, readCompactString(in));
+                }
+                ffBuilder.addAttributes(attributes);
+            } else if (attributesChanged == ATTRIBUTES_DELTA) {
+                final int numRemoved = (int) readVarLong(in);
+                final Set<String> removed = new HashSet<>(numRemoved);
+                for (int i = 0; i < numRemoved; i++) {
+                    removed.add(dictionary.readString(in));
+                }
+                ffBuilder.removeAttributes(removed);
+
+                final int numUpdated = (int) readVarLong(in);
+                final Map<String, String> updated = new HashMap<>(numUpdated);
+                for (int i = 0; i < numUpdated; i++) {
+                    final String key = dictionary.readString(in);
+                    updated.put(key, readCompactString(in));
+                }
+                ffBuilder.addAttributes(updated);
+            } else if (attributesChanged == -1) {
+                throw new EOFException();
+            } else if (attributesChanged != ATTRIBUTES_UNCHANGED) {
+                throw new IOException("Attribute Change Qualifier not found in stream; found value: "
+                        + attributesChanged + " after successfully restoring " + recordsRestored + " records. The FlowFile Repository appears to be corrupt!");
+            }
+
+            final FlowFileRecord flowFile = ffBuilder.build();
+            String swapLocation = null;
+            if (action == ACTION_SWAPPED_IN) {
+                swapLocation = readCompactString(in);
+            }
+
+            final StandardRepositoryRecord record;
+            if (flowFileQueueMap == null) {
+                record = new StandardRepositoryRecord(null, flowFile);
+            } else {
+                final FlowFileQueue queue = flowFileQueueMap.get(connectionId);
+                record = new StandardRepositoryRecord(queue, flowFile);
+                if (swapLocation != null) {
+                    record.setSwapLocation(swapLocation);
+                }
+
+                if (connectionId.isEmpty()) {
+                    logger.warn("{} does not have a FlowFile Queue associated with it; this record will be discarded", flowFile);
+                    record.markForAbort();
+                } else if (queue == null) {
+                    logger.warn("{} maps to unknown FlowFile Queue {}; this record will be discarded", flowFile, connectionId);
+                    record.markForAbort();
+                }
+            }
+
+            recordsRestored.incrementAndGet();
+            return record;
+        }
+
+        private void deserializeCompactClaim(final DataInputStream in, final StandardFlowFileRecord.Builder ffBuilder, final ReadDictionary dictionary) throws IOException {
+            final int claimExists = in.read();
+            if (claimExists == 1) {
+                final String claimId = readCompactString(in);
+                final String container = dictionary.readString(in);
+                final String section = dictionary.readString(in);
+                final long claimOffset = readVarLong(in);
+                final boolean lossTolerant = in.readBoolean();
+
+                final ContentClaim existingClaim = claimManager.newContentClaim(container, section, claimId, lossTolerant);
+                ffBuilder.contentClaim(existingClaim);
+                ffBuilder.contentClaimOffset(claimOffset);
+            } else if (claimExists == -1) {
+                throw new EOFException();
+            } else if (claimExists != 0) {
+                throw new IOException("Claim Existence Qualifier not found in stream; found value: "
+                        + claimExists + " after successfully restoring " + recordsRestored + " records");
+            }
+        }
+
+        private WriteDictionary getWriteDictionary(final DataOutputStream out) {
+            synchronized (writeDictionaries) {
+                WriteDictionary dictionary = writeDictionaries.get(out);
+                if (dictionary == null) {
+                    dictionary = new WriteDictionary();
+                    writeDictionaries.put(out, dictionary);
+                }
+                return dictionary;
+            }
+        }
+
+        private ReadDictionary getReadDictionary(final DataInputStream in) {
+            synchronized (readDictionaries) {
+                ReadDictionary dictionary = readDictionaries.get(in);
+                if (dictionary == null) {
+                    dictionary = new ReadDictionary();
+                    readDictionaries.put(in, dictionary);
+                }
+                return dictionary;
+            }
+        }
+
+        private static void writeVarLong(final long value, final OutputStream out) throws IOException {
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0L) {
+                out.write((int) ((remaining & 0x7F) | 0x80));
+                remaining >>>= 7;
+            }
+            out.write((int) remaining);
+        }
+
+        private static void writeSignedVarLong(final long value, final OutputStream out) throws IOException {
+            writeVarLong((value << 1) ^ (value >> 63), out);
+        }
+
+        private static long readVarLong(final InputStream in) throws IOException {
+            long value = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = in.read();
+                if (b == -1) {
+                    throw new EOFException();
+                }
+
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length integer; the FlowFile Repository appears to be corrupt!");
+        }
+
+        private static long readSignedVarLong(final InputStream in) throws IOException {
+            final long encoded = readVarLong(in);
+            return (encoded >>> 1) ^ -(encoded & 1);
+        }
+
+        private static void writeCompactString(final String toWrite, final OutputStream out) throws IOException {
+            final byte[] bytes = toWrite.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length, out);
+            out.write(bytes);
+        }
+
+        private String readCompactString(final InputStream in) throws IOException {
+            final int numBytes = (int) readVarLong(in);
+            final byte[] bytes = new byte[numBytes];
+            fillBuffer(in, bytes, numBytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Strings that repeat across many edits, such as attribute names,
+         * queue identifiers, and Content Claim containers and sections, are
+         * written in full only the first time that they appear in a given
+         * journal or snapshot and are referenced by index after that. A
+         * dictionary is associated with a single stream, and the stream is
+         * written by only one thread at a time.
+         */
+        private static class WriteDictionary {
+
+            private final Map<String, Integer> indices = new HashMap<>();
+
+            void writeString(final String value, final OutputStream out) throws IOException {
+                final Integer index = indices.get(value);
+                if (index != null) {
+                    writeVarLong(index + 2, out);
+                    return;
+                }
+
+                if (indices.size() < MAX_DICTIONARY_SIZE) {
+                    out.write(DICTIONARY_NEW_ENTRY);
+                    indices.put(value, indices.size());
+                } else {
+                    out.write(DICTIONARY_LITERAL);
+                }
+                writeCompactString(value, out);
+            }
+        }
+
+        private class ReadDictionary {
+
+            private final List<String> values = new ArrayList<>();
+
+            String readString(final InputStream in) throws IOException {
+                final long code = readVarLong(in);
+                if (code == DICTIONARY_NEW_ENTRY) {
+                    final String value = readCompactString(in);
+                    values.add(value);
+                    return value;
+                } else if (code == DICTIONARY_LITERAL) {
+                    return readCompactString(in);
+                }
+
+                final long index = code - 2;
+                if (index >= values.size()) {
+                    throw new IOException("Found reference to unknown dictionary entry " + index + " after successfully restoring " + recordsRestored
+                            + " records. The FlowFile Repository appears to be corrupt!");
+                }
+                return values.get((int) index);
+            }
+        }
+
         private void deserializeClaim(final DataInputStream in, final int serializationVersion, final StandardFlowFileRecord.Builder ffBuilder) throws IOException {
             // determine current Content Claim.
             final int claimExists = in.read();
@@ -762,25 +1136,6 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             }
         }
 
-        private void writeString(final String toWrite, final OutputStream out) throws IOException {
-            final byte[] bytes = toWrite.getBytes("UTF-8");
-            final int utflen = bytes.length;
-
-            if (utflen < 65535) {
-                out.write(utflen >>> 8);
-                out.write(utflen);
-                out.write(bytes);
-            } else {
-                out.write(255);
-                out.write(255);
-                out.write(utflen >>> 24);
-                out.write(utflen >>> 16);
-                out.write(utflen >>> 8);
-                out.write(utflen);
-                out.write(bytes);
-            }
-        }
-
         private String readString(final InputStream in) throws IOException {
             final Integer numBytes = readFieldLength(in);
             if (numBytes == null) {
@@ -850,7 +1205,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
 
         @Override
         public int getVersion() {
-            return 6;
+            return COMPACT_ENCODING_VERSION;
         }
 
         @Override
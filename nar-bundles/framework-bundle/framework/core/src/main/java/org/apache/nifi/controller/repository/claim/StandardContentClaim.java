@@ -16,7 +16,7 @@
  */
 package org.apache.nifi.controller.repository.claim;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * <p>
@@ -35,9 +35,13 @@ public final class StandardContentClaim implements ContentClaim, Comparable<Cont
     private final String container;
     private final String section;
     private final boolean lossTolerant;
-    private final AtomicInteger claimantCount = new AtomicInteger(0);
     private final int hashCode;
 
+    private static final AtomicIntegerFieldUpdater<StandardContentClaim> claimantCountUpdater
+            = AtomicIntegerFieldUpdater.newUpdater(StandardContentClaim.class, "claimantCount");
+    // maintained by StandardContentClaimManager, and only ever non-zero on the instance that the manager counts
+    private volatile int claimantCount = 0;
+
     /**
      * Constructs a content claim
      *
@@ -85,15 +89,53 @@ public final class StandardContentClaim implements ContentClaim, Comparable<Cont
     }
 
     int getClaimantCount() {
-        return claimantCount.get();
+        return claimantCount;
     }
 
-    int decrementClaimantCount() {
-        return claimantCount.decrementAndGet();
+    /**
+     * Increments the claimant count if it is already greater than 0
+     *
+     * @return the new count, or 0 if the count was not incremented
+     */
+    int incrementClaimantCountIfClaimed() {
+        while (true) {
+            final int count = claimantCount;
+            if (count <= 0) {
+                return 0;
+            }
+            if (claimantCountUpdater.compareAndSet(this, count, count + 1)) {
+                return count + 1;
+            }
+        }
+    }
+
+    /**
+     * Decrements the claimant count if doing so would leave it greater than 0
+     *
+     * @return the new count, or 0 if the count was not decremented
+     */
+    int decrementClaimantCountIfShared() {
+        while (true) {
+            final int count = claimantCount;
+            if (count <= 1) {
+                return 0;
+            }
+            if (claimantCountUpdater.compareAndSet(this, count, count - 1)) {
+                return count - 1;
+            }
+        }
     }
 
     int incrementClaimantCount() {
-        return claimantCount.incrementAndGet();
+        return claimantCountUpdater.incrementAndGet(this);
+    }
+
+    int decrementClaimantCount() {
+        return claimantCountUpdater.decrementAndGet(this);
+    }
+
+    void resetClaimantCount() {
+        claimantCount = 0;
     }
 
     /**
@@ -22,21 +22,60 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>
+ * Counts the claimants of each ContentClaim on the claim object itself. Every
+ * claim that has at least one claimant has a single canonical
+ * {@link StandardContentClaim} instance, which is registered in one of a
+ * number of shards selected by the claim's hash code. Incrementing or
+ * decrementing a count that is neither leaving nor returning to 0 is a single
+ * compare-and-set on that instance. Only the transitions to and from 0, which
+ * register and deregister the claim, lock its shard.
+ * </p>
+ *
+ * <p>
+ * Claims that have been marked destructable are kept in an unbounded queue,
+ * so marking a claim never blocks the thread that is updating the FlowFile
+ * Repository. A claim that is claimed again before it is drained is dropped
+ * from the set of pending claims in constant time and skipped when the queue
+ * is drained.
+ * </p>
+ */
 public class StandardContentClaimManager implements ContentClaimManager {
 
-    private static final ConcurrentMap<ContentClaim, AtomicInteger> claimantCounts = new ConcurrentHashMap<>();
     private static final Logger logger = LoggerFactory.getLogger(StandardContentClaimManager.class);
 
-    private static final BlockingQueue<ContentClaim> destructableClaims = new LinkedBlockingQueue<>(50000);
+    private static final int SHARD_COUNT = 16;
+
+    private final ConcurrentMap<ContentClaim, StandardContentClaim>[] shards;
+
+    private final BlockingQueue<ContentClaim> destructableClaims = new LinkedBlockingQueue<>();
+    private final ConcurrentMap<ContentClaim, Boolean> pendingDestruction = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public StandardContentClaimManager() {
+        shards = new ConcurrentMap[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    private ConcurrentMap<ContentClaim, StandardContentClaim> getShard(final ContentClaim claim) {
+        final int hash = claim.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (SHARD_COUNT - 1)];
+    }
 
     /**
      * Creates a new Content Claim with the given id, container, section, and
-     * loss tolerance.
+     * loss tolerance. If a claim with the same id, container, and section is
+     * already claimed, that instance is returned instead, so that the
+     * FlowFiles that are restored from the FlowFile Repository or swapped in
+     * and that reference the same content share a single claim object rather
+     * than each holding its own.
      *
      * @param id
      * @param container
@@ -46,22 +85,23 @@ public class StandardContentClaimManager implements ContentClaimManager {
      */
     @Override
     public ContentClaim newContentClaim(final String container, final String section, final String id, final boolean lossTolerant) {
-        return new StandardContentClaim(container, section, id, lossTolerant);
-    }
-
-    private static AtomicInteger getCounter(final ContentClaim claim) {
-        if (claim == null) {
-            return null;
+        final StandardContentClaim claim = new StandardContentClaim(container, section, id, lossTolerant);
+        final StandardContentClaim existing = getShard(claim).get(claim);
+        if (existing != null && existing.isLossTolerant() == lossTolerant) {
+            return existing;
         }
+        return claim;
+    }
 
-        AtomicInteger counter = claimantCounts.get(claim);
-        if (counter != null) {
-            return counter;
+    /**
+     * @return the given claim if it is the instance that holds the claimant
+     * count, otherwise <code>null</code>
+     */
+    private static StandardContentClaim asCounted(final ContentClaim claim) {
+        if (claim instanceof StandardContentClaim && ((StandardContentClaim) claim).getClaimantCount() > 0) {
+            return (StandardContentClaim) claim;
         }
-
-        counter = new AtomicInteger(0);
-        AtomicInteger existingCounter = claimantCounts.putIfAbsent(claim, counter);
-        return (existingCounter == null) ? counter : existingCounter;
+        return null;
     }
 
     @Override
@@ -69,8 +109,14 @@ public class StandardContentClaimManager implements ContentClaimManager {
         if (claim == null) {
             return 0;
         }
-        final AtomicInteger counter = claimantCounts.get(claim);
-        return (counter == null) ? 0 : counter.get();
+
+        final StandardContentClaim counted = asCounted(claim);
+        if (counted != null) {
+            return counted.getClaimantCount();
+        }
+
+        final StandardContentClaim canonical = getShard(claim).get(claim);
+        return (canonical == null) ? 0 : canonical.getClaimantCount();
     }
 
     @Override
@@ -79,17 +125,31 @@ public class StandardContentClaimManager implements ContentClaimManager {
             return 0;
         }
 
-        final AtomicInteger counter = claimantCounts.get(claim);
-        if (counter == null) {
-            logger.debug("Decrementing claimant count for {} but claimant count is not known. Returning -1", claim);
-            return -1;
+        final StandardContentClaim counted = asCounted(claim);
+        if (counted != null) {
+            final int newClaimantCount = counted.decrementClaimantCountIfShared();
+            if (newClaimantCount > 0) {
+                logger.debug("Decrementing claimant count for {} to {}", claim, newClaimantCount);
+                return newClaimantCount;
+            }
         }
 
-        final int newClaimantCount = counter.decrementAndGet();
-        logger.debug("Decrementing claimant count for {} to {}", claim, newClaimantCount);
-        if (newClaimantCount == 0) {
-            claimantCounts.remove(claim);
+        final ConcurrentMap<ContentClaim, StandardContentClaim> shard = getShard(claim);
+        final int newClaimantCount;
+        synchronized (shard) {
+            final StandardContentClaim canonical = shard.get(claim);
+            if (canonical == null) {
+                logger.debug("Decrementing claimant count for {} but claimant count is not known. Returning -1", claim);
+                return -1;
+            }
+
+            newClaimantCount = canonical.decrementClaimantCount();
+            if (newClaimantCount == 0) {
+                shard.remove(claim);
+            }
         }
+
+        logger.debug("Decrementing claimant count for {} to {}", claim, newClaimantCount);
         return newClaimantCount;
     }
 
@@ -100,13 +160,31 @@ public class StandardContentClaimManager implements ContentClaimManager {
 
     @Override
     public int incrementClaimantCount(final ContentClaim claim, final boolean newClaim) {
-        final AtomicInteger counter = getCounter(claim);
+        final StandardContentClaim counted = asCounted(claim);
+        if (counted != null) {
+            final int newClaimantCount = counted.incrementClaimantCountIfClaimed();
+            if (newClaimantCount > 0) {
+                logger.debug("Incrementing claimant count for {} to {}", claim, newClaimantCount);
+                return newClaimantCount;
+            }
+        }
+
+        final ConcurrentMap<ContentClaim, StandardContentClaim> shard = getShard(claim);
+        final int newClaimantCount;
+        synchronized (shard) {
+            StandardContentClaim canonical = shard.get(claim);
+            if (canonical == null) {
+                canonical = (claim instanceof StandardContentClaim) ? (StandardContentClaim) claim
+                        : new StandardContentClaim(claim.getContainer(), claim.getSection(), claim.getId(), claim.isLossTolerant());
+                shard.put(canonical, canonical);
+            }
+            newClaimantCount = canonical.incrementClaimantCount();
+        }
 
-        final int newClaimantCount = counter.incrementAndGet();
         logger.debug("Incrementing claimant count for {} to {}", claim, newClaimantCount);
-        // If the claimant count moved from 0 to 1, remove it from the queue of destructable claims.
+        // If the claimant count moved from 0 to 1, the claim is no longer destructable.
         if (!newClaim && newClaimantCount == 1) {
-            destructableClaims.remove(claim);
+            pendingDestruction.remove(claim);
         }
         return newClaimantCount;
     }
@@ -121,35 +199,88 @@ public class StandardContentClaimManager implements ContentClaimManager {
             return;
         }
 
-        logger.debug("Marking claim {} as destructable", claim);
-        try {
-            while (!destructableClaims.offer(claim, 30, TimeUnit.MINUTES)) {
-            }
-        } catch (final InterruptedException ie) {
+        if (pendingDestruction.putIfAbsent(claim, Boolean.TRUE) == null) {
+            logger.debug("Marking claim {} as destructable", claim);
+            destructableClaims.offer(claim);
         }
     }
 
+    /**
+     * Moves the given claim to the destination if it is still pending
+     * destruction
+     *
+     * @return <code>true</code> if the claim was added to the destination
+     */
+    private boolean transferIfPending(final ContentClaim claim, final Collection<ContentClaim> destination) {
+        if (pendingDestruction.remove(claim) == null) {
+            // claimed again since it was marked destructable, or already drained
+            return false;
+        }
+        destination.add(claim);
+        return true;
+    }
+
     @Override
     public void drainDestructableClaims(final Collection<ContentClaim> destination, final int maxElements) {
-        final int drainedCount = destructableClaims.drainTo(destination, maxElements);
+        int drainedCount = 0;
+        ContentClaim claim;
+        while (drainedCount < maxElements && (claim = destructableClaims.poll()) != null) {
+            if (transferIfPending(claim, destination)) {
+                drainedCount++;
+            }
+        }
         logger.debug("Drained {} destructable claims to {}", drainedCount, destination);
     }
 
     @Override
     public void drainDestructableClaims(final Collection<ContentClaim> destination, final int maxElements, final long timeout, final TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
         try {
-            final ContentClaim firstClaim = destructableClaims.poll(timeout, unit);
-            if (firstClaim != null) {
-                destination.add(firstClaim);
-                destructableClaims.drainTo(destination, maxElements - 1);
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                final ContentClaim firstClaim = destructableClaims.poll(remaining, TimeUnit.NANOSECONDS);
+                if (firstClaim == null) {
+                    return;
+                }
+                if (transferIfPending(firstClaim, destination)) {
+                    drainDestructableClaims(destination, maxElements - 1);
+                    return;
+                }
             }
         } catch (final InterruptedException e) {
         }
     }
 
+    /**
+     * @return the number of claims that have been marked destructable and not
+     * yet drained
+     */
+    @Override
+    public int getDestructableClaimCount() {
+        return pendingDestruction.size();
+    }
+
+    /**
+     * @return the number of distinct claims that have at least one claimant
+     */
+    public int getClaimedCount() {
+        int count = 0;
+        for (final ConcurrentMap<ContentClaim, StandardContentClaim> shard : shards) {
+            count += shard.size();
+        }
+        return count;
+    }
+
     @Override
     public void purge() {
-        claimantCounts.clear();
+        for (final ConcurrentMap<ContentClaim, StandardContentClaim> shard : shards) {
+            synchronized (shard) {
+                for (final StandardContentClaim claim : shard.values()) {
+                    claim.resetClaimantCount();
+                }
+                shard.clear();
+            }
+        }
     }
 
 }
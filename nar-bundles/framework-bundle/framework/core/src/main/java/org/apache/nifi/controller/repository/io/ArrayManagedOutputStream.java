@@ -20,12 +20,18 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * An OutputStream that stores what is written to it in blocks that are
+ * checked out of a {@link MemoryManager}, and that can provide InputStreams
+ * over those blocks. Reads and writes copy directly between the caller's
+ * array and the blocks, whether the blocks are on the heap or off it.
+ */
 public class ArrayManagedOutputStream extends OutputStream {
 
     private final MemoryManager memoryManager;
@@ -34,9 +40,11 @@ public class ArrayManagedOutputStream extends OutputStream {
     private final Lock readLock = rwLock.readLock();
     private final Lock writeLock = rwLock.writeLock();
 
-    private final List<byte[]> blocks = new ArrayList<>();
-    private int currentIndex;
-    private byte[] currentBlock;
+    // the indices of the blocks that hold this stream's data, in order
+    private int[] blocks = new int[4];
+    private int blockCount;
+    // the last block, positioned where the next byte is to be written
+    private ByteBuffer currentBlock;
     private long curSize;
 
     public ArrayManagedOutputStream(final MemoryManager memoryManager) {
@@ -47,10 +55,9 @@ public class ArrayManagedOutputStream extends OutputStream {
     public void write(final byte[] b, int off, final int len) throws IOException {
         writeLock.lock();
         try {
-            final int bytesFreeThisBlock = currentBlock == null ? 0 : currentBlock.length - currentIndex;
+            final int bytesFreeThisBlock = currentBlock == null ? 0 : currentBlock.remaining();
             if (bytesFreeThisBlock >= len) {
-                System.arraycopy(b, off, currentBlock, currentIndex, len);
-                currentIndex += len;
+                currentBlock.put(b, off, len);
                 curSize += len;
 
                 return;
@@ -59,47 +66,48 @@ public class ArrayManagedOutputStream extends OutputStream {
             // Try to get all of the blocks needed
             final long bytesNeeded = len - bytesFreeThisBlock;
             int blocksNeeded = (int) (bytesNeeded / memoryManager.getBlockSize());
-            if (blocksNeeded * memoryManager.getBlockSize() < bytesNeeded) {
+            if ((long) blocksNeeded * memoryManager.getBlockSize() < bytesNeeded) {
                 blocksNeeded++;
             }
 
             // get all of the blocks that we need
-            final List<byte[]> newBlocks = new ArrayList<>(blocksNeeded);
+            if (blockCount + blocksNeeded > blocks.length) {
+                blocks = Arrays.copyOf(blocks, Math.max(blocks.length * 2, blockCount + blocksNeeded));
+            }
             for (int i = 0; i < blocksNeeded; i++) {
-                final byte[] newBlock = memoryManager.checkOut();
-                if (newBlock == null) {
-                    memoryManager.checkIn(newBlocks);
+                final int newBlock = memoryManager.checkOut();
+                if (newBlock < 0) {
+                    for (int j = 0; j < i; j++) {
+                        memoryManager.checkIn(blocks[blockCount + j]);
+                    }
                     throw new IOException("No space left in Content Repository");
                 }
 
-                newBlocks.add(newBlock);
+                blocks[blockCount + i] = newBlock;
             }
 
             // we've successfully obtained the blocks needed. Copy the data.
             // first copy what we can to the current block
             long bytesCopied = 0;
-            final int bytesForCur = currentBlock == null ? 0 : currentBlock.length - currentIndex;
-            if (bytesForCur > 0) {
-                System.arraycopy(b, off, currentBlock, currentIndex, bytesForCur);
-
-                off += bytesForCur;
-                bytesCopied += bytesForCur;
-                currentBlock = null;
-                currentIndex = 0;
+            if (bytesFreeThisBlock > 0) {
+                currentBlock.put(b, off, bytesFreeThisBlock);
+
+                off += bytesFreeThisBlock;
+                bytesCopied += bytesFreeThisBlock;
             }
 
             // then copy to all new blocks
-            for (final byte[] block : newBlocks) {
-                final int bytesToCopy = (int) Math.min(len - bytesCopied, block.length);
-                System.arraycopy(b, off, block, 0, bytesToCopy);
-                currentIndex = bytesToCopy;
+            for (int i = 0; i < blocksNeeded; i++) {
+                final ByteBuffer block = memoryManager.getBlock(blocks[blockCount + i]);
+                final int bytesToCopy = (int) Math.min(len - bytesCopied, block.remaining());
+                block.put(b, off, bytesToCopy);
                 currentBlock = block;
                 off += bytesToCopy;
                 bytesCopied += bytesToCopy;
             }
 
             curSize += len;
-            blocks.addAll(newBlocks);
+            blockCount += blocksNeeded;
         } finally {
             writeLock.unlock();
         }
@@ -115,10 +123,9 @@ public class ArrayManagedOutputStream extends OutputStream {
     public void destroy() {
         writeLock.lock();
         try {
-            memoryManager.checkIn(blocks);
-            blocks.clear();
+            memoryManager.checkIn(blocks, blockCount);
+            blockCount = 0;
             currentBlock = null;
-            currentIndex = 0;
             curSize = 0L;
         } finally {
             writeLock.unlock();
@@ -141,15 +148,27 @@ public class ArrayManagedOutputStream extends OutputStream {
     public void writeTo(final OutputStream out) throws IOException {
         readLock.lock();
         try {
-            int i = 0;
-            for (final byte[] block : blocks) {
-                if (++i == blocks.size()) {
-                    if (currentIndex > 0) {
-                        out.write(block, 0, currentIndex);
-                    }
+            final int blockSize = memoryManager.getBlockSize();
+            final byte[] copyBuffer = memoryManager.isOffHeap() ? new byte[Math.min(8192, blockSize)] : null;
+
+            long bytesRemaining = curSize;
+            for (int i = 0; i < blockCount; i++) {
+                final ByteBuffer block = memoryManager.getBlock(blocks[i]);
+                final int bytesThisBlock = (int) Math.min(bytesRemaining, blockSize);
+                if (block.hasArray()) {
+                    out.write(block.array(), block.arrayOffset(), bytesThisBlock);
                 } else {
-                    out.write(block);
+                    final ByteBuffer view = block.duplicate();
+                    view.clear();
+                    int copied = 0;
+                    while (copied < bytesThisBlock) {
+                        final int toCopy = Math.min(copyBuffer.length, bytesThisBlock - copied);
+                        view.get(copyBuffer, 0, toCopy);
+                        out.write(copyBuffer, 0, toCopy);
+                        copied += toCopy;
+                    }
                 }
+                bytesRemaining -= bytesThisBlock;
             }
         } finally {
             readLock.unlock();
@@ -159,38 +178,43 @@ public class ArrayManagedOutputStream extends OutputStream {
     public int getBufferLength() {
         readLock.lock();
         try {
-            if (currentBlock == null) {
-                return 0;
-            }
             // all blocks are same size
-            return blocks.size() * currentBlock.length;
+            return blockCount * memoryManager.getBlockSize();
         } finally {
             readLock.unlock();
         }
     }
 
     public InputStream newInputStream() {
-        final int blockSize;
         final long totalSize;
 
         readLock.lock();
         try {
-            if (blocks.isEmpty()) {
+            if (blockCount == 0) {
                 return new ByteArrayInputStream(new byte[0]);
             }
 
-            blockSize = memoryManager.getBlockSize();
             totalSize = curSize;
         } finally {
             readLock.unlock();
         }
 
         return new InputStream() {
-            int blockIndex = 0;
-            int byteIndex = 0;
+            int blockIndex = -1;
+            // a view of the current block with its own position, so that readers do not disturb the writer
+            ByteBuffer view = null;
 
             long bytesRead = 0L;
 
+            private ByteBuffer currentView() {
+                if (view == null || !view.hasRemaining()) {
+                    blockIndex++;
+                    view = memoryManager.getBlock(blocks[blockIndex]).duplicate();
+                    view.clear();
+                }
+                return view;
+            }
+
             @Override
             public int read() throws IOException {
                 readLock.lock();
@@ -199,13 +223,7 @@ public class ArrayManagedOutputStream extends OutputStream {
                         return -1;
                     }
 
-                    if (byteIndex >= blockSize) {
-                        blockIndex++;
-                        byteIndex = 0;
-                    }
-
-                    final byte[] buffer = blocks.get(blockIndex);
-                    final int b = buffer[byteIndex++] & 0xFF;
+                    final int b = currentView().get() & 0xFF;
                     bytesRead++;
 
                     return b;
@@ -222,17 +240,11 @@ public class ArrayManagedOutputStream extends OutputStream {
                         return -1;
                     }
 
-                    if (byteIndex >= blockSize) {
-                        blockIndex++;
-                        byteIndex = 0;
-                    }
-
-                    final byte[] buffer = blocks.get(blockIndex);
+                    final ByteBuffer buffer = currentView();
                     final long bytesUnread = totalSize - bytesRead;
-                    final int bytesToCopy = (int) Math.min(bytesUnread, Math.min(len, buffer.length - byteIndex));
+                    final int bytesToCopy = (int) Math.min(bytesUnread, Math.min(len, buffer.remaining()));
 
-                    System.arraycopy(buffer, byteIndex, b, off, bytesToCopy);
-                    byteIndex += bytesToCopy;
+                    buffer.get(b, off, bytesToCopy);
                     bytesRead += bytesToCopy;
 
                     return bytesToCopy;
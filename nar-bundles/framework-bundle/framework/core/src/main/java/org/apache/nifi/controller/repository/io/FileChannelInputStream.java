@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An InputStream that reads from a FileChannel using positional reads, so
+ * that many streams may read from the same channel at different positions
+ * without affecting one another, and so that skipping is done without
+ * touching the file. Closing the stream does not close the channel; instead,
+ * the given Closeable, if any, is closed.
+ */
+public class FileChannelInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final Closeable onClose;
+    private long position;
+    private long mark;
+    private boolean closed = false;
+
+    public FileChannelInputStream(final FileChannel channel, final long position, final Closeable onClose) {
+        this.channel = channel;
+        this.position = position;
+        this.mark = position;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] single = new byte[1];
+        final int len = read(single, 0, 1);
+        return len < 1 ? -1 : (single[0] & 0xFF);
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        if (len == 0) {
+            return 0;
+        }
+
+        final int bytesRead = channel.read(ByteBuffer.wrap(b, off, len), position);
+        if (bytesRead > 0) {
+            position += bytesRead;
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        ensureOpen();
+        if (n <= 0L) {
+            return 0L;
+        }
+
+        final long skipped = Math.min(n, Math.max(0L, channel.size() - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0L, channel.size() - position));
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(final int readlimit) {
+        mark = position;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        ensureOpen();
+        position = mark;
+    }
+
+    /**
+     * @return the position in the channel from which the next byte will be
+     * read
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        if (onClose != null) {
+            onClose.close();
+        }
+    }
+}
@@ -16,40 +16,141 @@
  */
 package org.apache.nifi.controller.repository.io;
 
-import java.util.Collection;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * <p>
+ * A fixed pool of equally sized blocks of memory, all of which are allocated
+ * up front. The blocks are either on-heap byte arrays or slices of direct
+ * buffers. Direct buffers are allocated in slabs of many blocks each rather
+ * than one per block, so a large pool costs a handful of native allocations,
+ * and the content it holds is invisible to the garbage collector.
+ * </p>
+ *
+ * <p>
+ * Blocks are identified by their index in the pool. The free blocks form a
+ * lock-free stack that is threaded through an array of indices, so checking
+ * a block out or in is a single compare-and-set and does not allocate.
+ * </p>
+ */
 public class MemoryManager {
 
+    private static final int MAX_SLAB_SIZE = 64 * 1024 * 1024;
+    private static final int NO_BLOCK = -1;
+
     private final int blockSize;
+    private final boolean offHeap;
+    private final ByteBuffer[] blocks;
 
-    private final BlockingQueue<byte[]> queue;
+    // for each free block, the index of the next free block
+    private final int[] nextFree;
+    // the index of the first free block in the low 32 bits and a stamp in the high 32 bits
+    // that changes on every update, so that a stale head cannot be swapped back in (ABA)
+    private final AtomicLong freeListHead;
+    private final AtomicInteger freeBlockCount;
 
     public MemoryManager(final long totalSize, final int blockSize) {
+        this(totalSize, blockSize, false);
+    }
+
+    public MemoryManager(final long totalSize, final int blockSize, final boolean offHeap) {
         this.blockSize = blockSize;
+        this.offHeap = offHeap;
 
         final int numBlocks = (int) (totalSize / blockSize);
-        queue = new LinkedBlockingQueue<>(numBlocks);
+        blocks = new ByteBuffer[numBlocks];
+        if (offHeap) {
+            final int blocksPerSlab = Math.max(1, MAX_SLAB_SIZE / blockSize);
+            for (int slabStart = 0; slabStart < numBlocks; slabStart += blocksPerSlab) {
+                final int slabBlocks = Math.min(blocksPerSlab, numBlocks - slabStart);
+                final ByteBuffer slab = ByteBuffer.allocateDirect(slabBlocks * blockSize);
+                for (int i = 0; i < slabBlocks; i++) {
+                    slab.limit((i + 1) * blockSize).position(i * blockSize);
+                    blocks[slabStart + i] = slab.slice();
+                }
+            }
+        } else {
+            for (int i = 0; i < numBlocks; i++) {
+                blocks[i] = ByteBuffer.wrap(new byte[blockSize]);
+            }
+        }
 
+        nextFree = new int[numBlocks];
         for (int i = 0; i < numBlocks; i++) {
-            queue.offer(new byte[blockSize]);
+            nextFree[i] = (i + 1 < numBlocks) ? i + 1 : NO_BLOCK;
         }
+        freeListHead = new AtomicLong(numBlocks == 0 ? pack(0, NO_BLOCK) : pack(0, 0));
+        freeBlockCount = new AtomicInteger(numBlocks);
     }
 
-    byte[] checkOut() {
-        return queue.poll();
+    private static long pack(final int stamp, final int index) {
+        return ((long) stamp << 32) | (index & 0xFFFFFFFFL);
     }
 
-    void checkIn(final byte[] buffer) {
-        queue.offer(buffer);
+    /**
+     * @return the index of a free block, which now belongs to the caller, or
+     * -1 if all blocks are in use
+     */
+    int checkOut() {
+        while (true) {
+            final long head = freeListHead.get();
+            final int index = (int) head;
+            if (index == NO_BLOCK) {
+                return NO_BLOCK;
+            }
+
+            final int stamp = (int) (head >>> 32);
+            if (freeListHead.compareAndSet(head, pack(stamp + 1, nextFree[index]))) {
+                freeBlockCount.decrementAndGet();
+                return index;
+            }
+        }
     }
 
-    void checkIn(final Collection<byte[]> buffers) {
-        queue.addAll(buffers);
+    void checkIn(final int index) {
+        blocks[index].clear();
+        while (true) {
+            final long head = freeListHead.get();
+            nextFree[index] = (int) head;
+
+            final int stamp = (int) (head >>> 32);
+            if (freeListHead.compareAndSet(head, pack(stamp + 1, index))) {
+                freeBlockCount.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    void checkIn(final int[] indices, final int count) {
+        for (int i = 0; i < count; i++) {
+            checkIn(indices[i]);
+        }
+    }
+
+    /**
+     * @param index the index of a block that the caller has checked out
+     * @return the block's memory. Its position and limit belong to the caller
+     * until the block is checked back in
+     */
+    ByteBuffer getBlock(final int index) {
+        return blocks[index];
     }
 
     int getBlockSize() {
         return blockSize;
     }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public int getBlockCount() {
+        return blocks.length;
+    }
+
+    public int getFreeBlockCount() {
+        return freeBlockCount.get();
+    }
 }
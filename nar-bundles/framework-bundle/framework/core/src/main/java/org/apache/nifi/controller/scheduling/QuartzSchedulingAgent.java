@@ -21,6 +21,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -33,7 +34,6 @@ import org.apache.nifi.controller.tasks.ContinuallyRunConnectableTask;
 import org.apache.nifi.controller.tasks.ContinuallyRunProcessorTask;
 import org.apache.nifi.controller.tasks.ReportingTaskWrapper;
 import org.apache.nifi.encrypt.StringEncryptor;
-import org.apache.nifi.engine.FlowEngine;
 import org.apache.nifi.util.FormatUtils;
 
 import org.quartz.CronExpression;
@@ -46,13 +46,13 @@ public class QuartzSchedulingAgent implements SchedulingAgent {
 
     private final FlowController flowController;
     private final ProcessContextFactory contextFactory;
-    private final FlowEngine flowEngine;
+    private final ScheduledExecutorService flowEngine;
     private final StringEncryptor encryptor;
 
     private volatile String adminYieldDuration = "1 sec";
     private final Map<Object, List<AtomicBoolean>> canceledTriggers = new HashMap<>();
 
-    public QuartzSchedulingAgent(final FlowController flowController, final FlowEngine flowEngine, final ProcessContextFactory contextFactory, final StringEncryptor enryptor) {
+    public QuartzSchedulingAgent(final FlowController flowController, final ScheduledExecutorService flowEngine, final ProcessContextFactory contextFactory, final StringEncryptor enryptor) {
         this.flowController = flowController;
         this.contextFactory = contextFactory;
         this.flowEngine = flowEngine;
@@ -18,6 +18,7 @@ package org.apache.nifi.controller.scheduling;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -30,7 +31,6 @@ import org.apache.nifi.controller.tasks.ContinuallyRunConnectableTask;
 import org.apache.nifi.controller.tasks.ContinuallyRunProcessorTask;
 import org.apache.nifi.controller.tasks.ReportingTaskWrapper;
 import org.apache.nifi.encrypt.StringEncryptor;
-import org.apache.nifi.engine.FlowEngine;
 import org.apache.nifi.util.FormatUtils;
 
 import org.slf4j.Logger;
@@ -41,13 +41,13 @@ public class TimerDrivenSchedulingAgent implements SchedulingAgent {
     private static final Logger logger = LoggerFactory.getLogger(TimerDrivenSchedulingAgent.class);
 
     private final FlowController flowController;
-    private final FlowEngine flowEngine;
+    private final ScheduledExecutorService flowEngine;
     private final ProcessContextFactory contextFactory;
     private final StringEncryptor encryptor;
 
     private volatile String adminYieldDuration = "1 sec";
 
-    public TimerDrivenSchedulingAgent(final FlowController flowController, final FlowEngine flowEngine, final ProcessContextFactory contextFactory, final StringEncryptor encryptor) {
+    public TimerDrivenSchedulingAgent(final FlowController flowController, final ScheduledExecutorService flowEngine, final ProcessContextFactory contextFactory, final StringEncryptor encryptor) {
         this.flowController = flowController;
         this.flowEngine = flowEngine;
         this.contextFactory = contextFactory;
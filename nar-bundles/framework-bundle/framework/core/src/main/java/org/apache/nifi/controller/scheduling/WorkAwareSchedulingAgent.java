@@ -0,0 +1,464 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.ConnectableType;
+import org.apache.nifi.controller.FlowController;
+import org.apache.nifi.controller.ProcessorNode;
+import org.apache.nifi.controller.ReportingTaskNode;
+import org.apache.nifi.controller.tasks.ContinuallyRunProcessorTask;
+import org.apache.nifi.encrypt.StringEncryptor;
+import org.apache.nifi.engine.FairShareTask;
+import org.apache.nifi.util.FormatUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wali.Histogram;
+
+/**
+ * A scheduling agent for Timer-Driven Processors that does not trigger a
+ * Processor that has no work to do. Like the
+ * {@link TimerDrivenSchedulingAgent}, each concurrent task of a Processor is
+ * run on the shared Timer-Driven engine and is run again after the
+ * Processor's scheduling period, or when the Processor's yield expires. If a
+ * task finds that the Processor has no FlowFiles queued, or that too few of its
+ * destinations are available because of back pressure, the task is instead
+ * parked. A parked task uses no thread and is run again when one of the
+ * Processor's incoming connections receives data or one of its outgoing
+ * connections is no longer full, as signaled through {@link #onEvent}, or when
+ * the maximum park duration elapses, whichever comes first. The maximum park
+ * duration guards against any change in the Processor's connections that is
+ * not signaled.
+ *
+ * Reporting Tasks and Connectables other than Processors are scheduled exactly
+ * as the {@link TimerDrivenSchedulingAgent} schedules them.
+ */
+public class WorkAwareSchedulingAgent implements SchedulingAgent {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkAwareSchedulingAgent.class);
+
+    private static final long METRICS_LOG_MINUTES = 5L;
+
+    // the shortest interval at which an idle Processor is assumed to have been checked for work when estimating checks avoided
+    private static final long MIN_IDLE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private final FlowController flowController;
+    private final ScheduledExecutorService flowEngine;
+    private final ProcessContextFactory contextFactory;
+    private final StringEncryptor encryptor;
+    private final TimerDrivenSchedulingAgent timerDrivenAgent;
+    private final long maxParkNanos;
+
+    private final ConcurrentMap<Connectable, ParkingLot> parkingLots = new ConcurrentHashMap<>();
+
+    private final AtomicLong parkCount = new AtomicLong(0L);
+    private final AtomicLong wakeupCount = new AtomicLong(0L);
+    private final AtomicLong parkTimeoutCount = new AtomicLong(0L);
+    private final AtomicLong idleChecksAvoided = new AtomicLong(0L);
+    private final Histogram wakeLatency = new Histogram();
+
+    private volatile String adminYieldDuration = "1 sec";
+
+    public WorkAwareSchedulingAgent(final FlowController flowController, final ScheduledExecutorService flowEngine, final ProcessContextFactory contextFactory,
+            final StringEncryptor encryptor, final long maxParkDuration, final TimeUnit timeUnit) {
+        this.flowController = flowController;
+        this.flowEngine = flowEngine;
+        this.contextFactory = contextFactory;
+        this.encryptor = encryptor;
+        this.maxParkNanos = timeUnit.toNanos(maxParkDuration);
+        this.timerDrivenAgent = new TimerDrivenSchedulingAgent(flowController, flowEngine, contextFactory, encryptor);
+
+        // every wake cancels a park timeout, which would otherwise stay queued until it was due
+        if (flowEngine instanceof ScheduledThreadPoolExecutor) {
+            ((ScheduledThreadPoolExecutor) flowEngine).setRemoveOnCancelPolicy(true);
+        }
+
+        flowEngine.scheduleWithFixedDelay(new Runnable() {
+            private long lastParkCount = 0L;
+
+            @Override
+            public void run() {
+                final long currentParkCount = parkCount.get();
+                if (currentParkCount != lastParkCount) {
+                    lastParkCount = currentParkCount;
+                    logMetrics();
+                }
+            }
+        }, METRICS_LOG_MINUTES, METRICS_LOG_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void shutdown() {
+        logMetrics();
+        flowEngine.shutdown();
+    }
+
+    @Override
+    public void schedule(final ReportingTaskNode taskNode, final ScheduleState scheduleState) {
+        timerDrivenAgent.schedule(taskNode, scheduleState);
+    }
+
+    @Override
+    public void unschedule(final ReportingTaskNode taskNode, final ScheduleState scheduleState) {
+        timerDrivenAgent.unschedule(taskNode, scheduleState);
+    }
+
+    @Override
+    public void schedule(final Connectable connectable, final ScheduleState scheduleState) {
+        if (connectable.getConnectableType() != ConnectableType.PROCESSOR) {
+            timerDrivenAgent.schedule(connectable, scheduleState);
+            return;
+        }
+
+        final ProcessorNode procNode = (ProcessorNode) connectable;
+        final ContinuallyRunProcessorTask processorTask = new ContinuallyRunProcessorTask(this, procNode, flowController, contextFactory, scheduleState, encryptor);
+        final ParkingLot parkingLot = new ParkingLot(procNode, processorTask);
+
+        final ParkingLot previous = parkingLots.put(connectable, parkingLot);
+        if (previous != null) {
+            previous.stop();
+        }
+
+        for (int i = 0; i < connectable.getMaxConcurrentTasks(); i++) {
+            final ParkableTask task = new ParkableTask(parkingLot);
+            parkingLot.tasks.add(task);
+            task.submit(0L);
+        }
+
+        scheduleState.setFutures(Collections.<ScheduledFuture<?>>emptyList());
+        logger.info("Scheduled {} to run with {} threads; idle threads will be parked", connectable, connectable.getMaxConcurrentTasks());
+    }
+
+    @Override
+    public void unschedule(final Connectable connectable, final ScheduleState scheduleState) {
+        final ParkingLot parkingLot = parkingLots.remove(connectable);
+        if (parkingLot == null) {
+            timerDrivenAgent.unschedule(connectable, scheduleState);
+            return;
+        }
+
+        parkingLot.stop();
+        logger.info("Stopped scheduling {} to run", connectable);
+    }
+
+    /**
+     * Wakes one parked task of the given Connectable, if any of its tasks is
+     * parked.
+     *
+     * @param connectable
+     */
+    @Override
+    public void onEvent(final Connectable connectable) {
+        final ParkingLot parkingLot = parkingLots.get(connectable);
+        if (parkingLot != null) {
+            parkingLot.wakeOne();
+        }
+    }
+
+    @Override
+    public void setMaxThreadCount(final int maxThreads) {
+    }
+
+    @Override
+    public void setAdministrativeYieldDuration(final String yieldDuration) {
+        this.adminYieldDuration = yieldDuration;
+        timerDrivenAgent.setAdministrativeYieldDuration(yieldDuration);
+    }
+
+    @Override
+    public String getAdministrativeYieldDuration() {
+        return adminYieldDuration;
+    }
+
+    @Override
+    public long getAdministrativeYieldDuration(final TimeUnit timeUnit) {
+        return FormatUtils.getTimeDuration(adminYieldDuration, timeUnit);
+    }
+
+    /**
+     * @return the number of times that a task was parked because its
+     * Processor had no work to do
+     */
+    public long getParkCount() {
+        return parkCount.get();
+    }
+
+    /**
+     * @return the number of times that a parked task was woken because one of
+     * its Processor's connections changed
+     */
+    public long getWakeupCount() {
+        return wakeupCount.get();
+    }
+
+    /**
+     * @return the number of times that a parked task was woken because the
+     * maximum park duration elapsed
+     */
+    public long getParkTimeoutCount() {
+        return parkTimeoutCount.get();
+    }
+
+    /**
+     * @return an estimate of the number of times that an idle Processor would
+     * have been triggered only to find that it had no work, had its tasks not
+     * been parked. The estimate assumes that an idle Processor is checked once
+     * per scheduling period, but no more than once per millisecond.
+     */
+    public long getIdleChecksAvoided() {
+        return idleChecksAvoided.get();
+    }
+
+    /**
+     * @return a histogram of the number of nanoseconds between a parked task
+     * being signaled that its Processor has work and the task starting to run
+     */
+    public Histogram getWakeLatencyHistogram() {
+        return wakeLatency;
+    }
+
+    private void logMetrics() {
+        logger.info("Parked idle Processor tasks {} times; woken {} times by events and {} times by timeout; "
+                + "estimated {} idle checks avoided; wake latency in nanoseconds: {}",
+                new Object[]{parkCount.get(), wakeupCount.get(), parkTimeoutCount.get(), idleChecksAvoided.get(), wakeLatency});
+    }
+
+    /**
+     * The tasks of a single scheduled Processor, along with those of them that
+     * are currently parked.
+     */
+    private class ParkingLot {
+
+        private final ProcessorNode procNode;
+        private final ContinuallyRunProcessorTask processorTask;
+        private final List<ParkableTask> tasks = new ArrayList<>();
+        private final ConcurrentLinkedQueue<ParkableTask> parked = new ConcurrentLinkedQueue<>();
+        private volatile boolean scheduled = true;
+
+        public ParkingLot(final ProcessorNode procNode, final ContinuallyRunProcessorTask processorTask) {
+            this.procNode = procNode;
+            this.processorTask = processorTask;
+        }
+
+        public void wakeOne() {
+            final long signaledNanos = System.nanoTime();
+            ParkableTask task;
+            while ((task = parked.poll()) != null) {
+                if (task.wake(signaledNanos, false)) {
+                    return;
+                }
+            }
+        }
+
+        public void stop() {
+            scheduled = false;
+            for (final ParkableTask task : tasks) {
+                task.stop();
+            }
+            parked.clear();
+        }
+    }
+
+    /**
+     * One concurrent task of a Processor, which reschedules itself after each
+     * run, or parks itself if the Processor had no work to do.
+     */
+    private class ParkableTask implements Runnable, FairShareTask {
+
+        private static final int RUNNING = 0;
+        private static final int PARKED = 1;
+        private static final int STOPPED = 2;
+
+        private final ParkingLot parkingLot;
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+        private final AtomicLong parkGeneration = new AtomicLong(0L);
+        private volatile long parkedNanos;
+        private volatile long signaledNanos = -1L;
+        private volatile Future<?> future;
+        private Future<?> parkTimeout; // guarded by synchronizing on this
+
+        public ParkableTask(final ParkingLot parkingLot) {
+            this.parkingLot = parkingLot;
+        }
+
+        @Override
+        public String getFairShareKey() {
+            return parkingLot.processorTask.getFairShareKey();
+        }
+
+        @Override
+        public int getFairShareWeight() {
+            return parkingLot.processorTask.getFairShareWeight();
+        }
+
+        @Override
+        public void run() {
+            if (!parkingLot.scheduled) {
+                return;
+            }
+
+            final long signaled = signaledNanos;
+            if (signaled >= 0L) {
+                wakeLatency.record(System.nanoTime() - signaled);
+                signaledNanos = -1L;
+            }
+
+            boolean idle = false;
+            try {
+                idle = parkingLot.processorTask.call();
+            } catch (final Throwable t) {
+                logger.error("Failed to run {} due to {}", parkingLot.procNode, t.toString());
+                logger.error("", t);
+            }
+
+            if (!parkingLot.scheduled) {
+                return;
+            }
+
+            if (idle) {
+                park();
+                return;
+            }
+
+            // the Processor had work; if there is more than this task can keep up with, bring in a parked sibling
+            if (!parkingLot.parked.isEmpty() && parkingLot.processorTask.isWorkAvailable()) {
+                parkingLot.wakeOne();
+            }
+
+            final long yieldMillis = parkingLot.procNode.getYieldExpiration() - System.currentTimeMillis();
+            final long delayNanos = Math.max(parkingLot.procNode.getSchedulingPeriod(TimeUnit.NANOSECONDS), TimeUnit.MILLISECONDS.toNanos(yieldMillis));
+            submit(delayNanos);
+        }
+
+        private void submit(final long delayNanos) {
+            try {
+                future = flowEngine.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (final RejectedExecutionException ree) {
+                // the engine is shutting down; there is nothing more to run
+                logger.debug("Unable to schedule {} to run because the Timer-Driven engine has been shut down", parkingLot.procNode);
+            }
+        }
+
+        private void park() {
+            final long generation = parkGeneration.incrementAndGet();
+            parkedNanos = System.nanoTime();
+            if (!state.compareAndSet(RUNNING, PARKED)) {
+                return;
+            }
+
+            parkingLot.parked.offer(this);
+            parkCount.incrementAndGet();
+
+            // work may have arrived after the Processor was checked but before this task was parked, in which case
+            // the signal may have found no parked task to wake; check again so that the signal is not lost.
+            if (parkingLot.processorTask.isWorkAvailable()) {
+                parkingLot.parked.remove(this);
+                wake(-1L, false);
+                return;
+            }
+
+            try {
+                final Future<?> timeout = flowEngine.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (parkGeneration.get() == generation) {
+                            parkingLot.parked.remove(ParkableTask.this);
+                            wake(-1L, true);
+                        }
+                    }
+                }, maxParkNanos, TimeUnit.NANOSECONDS);
+
+                // if the task was woken or stopped before the timeout was recorded, the wake could not cancel it; and a
+                // timeout from an earlier park must not replace the timeout of a later one
+                synchronized (this) {
+                    if (state.get() == PARKED && parkGeneration.get() == generation) {
+                        parkTimeout = timeout;
+                        return;
+                    }
+                }
+                timeout.cancel(false);
+            } catch (final RejectedExecutionException ree) {
+                logger.debug("Unable to schedule {} to be checked for work because the Timer-Driven engine has been shut down", parkingLot.procNode);
+            }
+        }
+
+        private void cancelParkTimeout() {
+            final Future<?> timeout;
+            synchronized (this) {
+                timeout = parkTimeout;
+                parkTimeout = null;
+            }
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+
+        /**
+         * @return <code>true</code> if this call woke the task, false if it was
+         * not parked
+         */
+        private boolean wake(final long signaled, final boolean timedOut) {
+            if (!state.compareAndSet(PARKED, RUNNING)) {
+                return false;
+            }
+
+            final long parkDuration = System.nanoTime() - parkedNanos;
+            final long checkInterval = Math.max(MIN_IDLE_CHECK_NANOS, parkingLot.procNode.getSchedulingPeriod(TimeUnit.NANOSECONDS));
+            idleChecksAvoided.addAndGet(parkDuration / checkInterval);
+
+            if (timedOut) {
+                parkTimeoutCount.incrementAndGet();
+            } else {
+                // the timeout would find the task no longer parked; cancel it so that it is not left in the engine's queue
+                cancelParkTimeout();
+                if (signaled >= 0L) {
+                    wakeupCount.incrementAndGet();
+                }
+            }
+
+            signaledNanos = signaled;
+            submit(0L);
+            return true;
+        }
+
+        private void stop() {
+            state.set(STOPPED);
+            cancelParkTimeout();
+            final Future<?> currentFuture = future;
+            if (currentFuture != null) {
+                // stop scheduling to run but do not interrupt currently running tasks.
+                currentFuture.cancel(false);
+            }
+        }
+    }
+}
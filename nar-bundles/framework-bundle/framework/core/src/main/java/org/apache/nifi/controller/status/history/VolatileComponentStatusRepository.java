@@ -544,6 +544,18 @@ public class VolatileComponentStatusRepository implements ComponentStatusReposit
                 return TimeUnit.MILLISECONDS.convert(status.getProcessingNanos(), TimeUnit.NANOSECONDS);
             }
         })),
+        RUN_QUEUE_WAIT_MILLIS(new StandardMetricDescriptor<ProcessorStatus>("runQueueWaitMillis", "Total Run Queue Wait (5 mins)", "The total number of milliseconds that the Processor's tasks waited for a thread after they were due to run in the past 5 minutes", Formatter.DURATION, new ValueMapper<ProcessorStatus>() {
+            @Override
+            public Long getValue(final ProcessorStatus status) {
+                return TimeUnit.MILLISECONDS.convert(status.getRunQueueWaitNanos(), TimeUnit.NANOSECONDS);
+            }
+        })),
+        CPU_MILLIS(new StandardMetricDescriptor<ProcessorStatus>("cpuMillis", "Total CPU Time (5 mins)", "The total number of milliseconds of CPU time that the Processor has used to complete its tasks in the past 5 minutes", Formatter.DURATION, new ValueMapper<ProcessorStatus>() {
+            @Override
+            public Long getValue(final ProcessorStatus status) {
+                return TimeUnit.MILLISECONDS.convert(status.getCpuNanos(), TimeUnit.NANOSECONDS);
+            }
+        })),
         FLOWFILES_REMOVED(new StandardMetricDescriptor<ProcessorStatus>("flowFilesRemoved", "FlowFiles Removed (5 mins)", "The total number of FlowFiles removed by this Processor in the last 5 minutes", Formatter.COUNT, new ValueMapper<ProcessorStatus>() {
             @Override
             public Long getValue(final ProcessorStatus status) {
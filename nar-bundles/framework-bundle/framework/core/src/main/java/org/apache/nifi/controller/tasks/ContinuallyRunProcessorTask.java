@@ -17,6 +17,7 @@
 package org.apache.nifi.controller.tasks;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -31,6 +32,8 @@ import org.apache.nifi.controller.scheduling.ProcessContextFactory;
 import org.apache.nifi.controller.scheduling.ScheduleState;
 import org.apache.nifi.controller.scheduling.SchedulingAgent;
 import org.apache.nifi.encrypt.StringEncryptor;
+import org.apache.nifi.engine.FairShareTask;
+import org.apache.nifi.engine.TaskTimer;
 import org.apache.nifi.logging.ProcessorLog;
 import org.apache.nifi.nar.NarCloseable;
 import org.apache.nifi.processor.ProcessSessionFactory;
@@ -44,7 +47,14 @@ import org.apache.nifi.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ContinuallyRunProcessorTask implements Runnable {
+/**
+ * Triggers a Processor if it is able to run. When used as a {@link Callable},
+ * the task indicates whether the Processor was found to have no work to do, so
+ * that a scheduling agent may choose not to trigger it again until more work
+ * arrives. All of the concurrent tasks of a Processor share one
+ * {@link FairShareTask fair share}, weighted by the number of concurrent tasks.
+ */
+public class ContinuallyRunProcessorTask implements Runnable, Callable<Boolean>, FairShareTask {
 
     private static final Logger logger = LoggerFactory.getLogger(ContinuallyRunProcessorTask.class);
 
@@ -69,29 +79,64 @@ public class ContinuallyRunProcessorTask implements Runnable {
         this.processContext = new StandardProcessContext(procNode, flowController, encryptor);
     }
 
+    /**
+     * @return <code>true</code> if the Processor has FlowFiles to process (or
+     * does not need any) and enough of its destinations are available for it
+     * to run
+     */
+    public boolean isWorkAvailable() {
+        // make sure that either proc has incoming FlowFiles or has no incoming connections or is annotated with @TriggerWhenEmpty
+        final boolean flowFilesAvailable = procNode.isTriggerWhenEmpty() || !procNode.hasIncomingConnection() || Connectables.flowFilesQueued(procNode);
+        if (!flowFilesAvailable) {
+            return false;
+        }
+
+        if (numRelationships > 0) {
+            final int requiredNumberOfAvailableRelationships = procNode.isTriggerWhenAnyDestinationAvailable() ? 1 : numRelationships;
+            return context.isRelationshipAvailabilitySatisfied(requiredNumberOfAvailableRelationships);
+        }
+
+        return true;
+    }
+
+    @Override
+    public String getFairShareKey() {
+        return procNode.getIdentifier();
+    }
+
+    @Override
+    public int getFairShareWeight() {
+        return procNode.getMaxConcurrentTasks();
+    }
+
     @Override
     public void run() {
+        call();
+    }
+
+    /**
+     * Triggers the Processor if it is able to run.
+     *
+     * @return <code>true</code> if the Processor was not triggered because it
+     * had no work to do, <code>false</code> if it was triggered or if it was
+     * not triggered for another reason, such as being yielded
+     */
+    @Override
+    public Boolean call() {
         // make sure processor is not yielded
         boolean shouldRun = (procNode.getYieldExpiration() < System.currentTimeMillis());
         if (!shouldRun) {
-            return;
+            return false;
         }
 
         // make sure that either we're not clustered or this processor runs on all nodes or that this is the primary node
         shouldRun = !procNode.isIsolated() || !flowController.isClustered() || flowController.isPrimary();
         if (!shouldRun) {
-            return;
+            return false;
         }
 
-        // make sure that either proc has incoming FlowFiles or has no incoming connections or is annotated with @TriggerWhenEmpty
-        shouldRun = procNode.isTriggerWhenEmpty() || !procNode.hasIncomingConnection() || Connectables.flowFilesQueued(procNode);
-        if (!shouldRun) {
-            return;
-        }
-
-        if (numRelationships > 0) {
-            final int requiredNumberOfAvailableRelationships = procNode.isTriggerWhenAnyDestinationAvailable() ? 1 : numRelationships;
-            shouldRun = context.isRelationshipAvailabilitySatisfied(requiredNumberOfAvailableRelationships);
+        if (!isWorkAvailable()) {
+            return true;
         }
 
         final long batchNanos = procNode.getRunDuration(TimeUnit.NANOSECONDS);
@@ -108,12 +153,10 @@ public class ContinuallyRunProcessorTask implements Runnable {
             batch = false;
         }
 
-        if (!shouldRun) {
-            return;
-        }
-
         scheduleState.incrementActiveThreadCount();
 
+        final long runQueueWaitNanos = TaskTimer.getRunQueueWaitNanos();
+        final long startCpuNanos = TaskTimer.getCurrentThreadCpuNanos();
         final long startNanos = System.nanoTime();
         final long finishNanos = startNanos + batchNanos;
         int invocationCount = 0;
@@ -124,20 +167,14 @@ public class ContinuallyRunProcessorTask implements Runnable {
                     invocationCount++;
 
                     if (!batch) {
-                        return;
+                        return false;
                     }
 
                     if (System.nanoTime() > finishNanos) {
-                        return;
+                        return false;
                     }
 
-                    shouldRun = procNode.isTriggerWhenEmpty() || !procNode.hasIncomingConnection() || Connectables.flowFilesQueued(procNode);
-                    shouldRun = shouldRun && (procNode.getYieldExpiration() < System.currentTimeMillis());
-
-                    if (shouldRun && numRelationships > 0) {
-                        final int requiredNumberOfAvailableRelationships = procNode.isTriggerWhenAnyDestinationAvailable() ? 1 : numRelationships;
-                        shouldRun = context.isRelationshipAvailabilitySatisfied(requiredNumberOfAvailableRelationships);
-                    }
+                    shouldRun = (procNode.getYieldExpiration() < System.currentTimeMillis()) && isWorkAvailable();
                 }
             } catch (final ProcessException pe) {
                 final ProcessorLog procLog = new SimpleProcessLogger(procNode.getIdentifier(), procNode.getProcessor());
@@ -158,6 +195,7 @@ public class ContinuallyRunProcessorTask implements Runnable {
             }
 
             final long processingNanos = System.nanoTime() - startNanos;
+            final long cpuNanos = TaskTimer.getCurrentThreadCpuNanos() - startCpuNanos;
 
             // if the processor is no longer scheduled to run and this is the last thread,
             // invoke the OnStopped methods
@@ -173,6 +211,8 @@ public class ContinuallyRunProcessorTask implements Runnable {
             try {
                 final StandardFlowFileEvent procEvent = new StandardFlowFileEvent(procNode.getIdentifier());
                 procEvent.setProcessingNanos(processingNanos);
+                procEvent.setRunQueueWaitNanos(runQueueWaitNanos);
+                procEvent.setCpuNanos(cpuNanos);
                 procEvent.setInvocations(invocationCount);
                 context.getFlowFileEventRepository().updateRepository(procEvent);
             } catch (final IOException e) {
@@ -180,6 +220,8 @@ public class ContinuallyRunProcessorTask implements Runnable {
                 logger.error("", e);
             }
         }
+
+        return false;
     }
 
 }
@@ -28,6 +28,13 @@ public class StorageUsage implements Cloneable {
     private long freeSpace;
     private long totalSpace;
 
+    private long writeBytesPerSecond;
+    private double writeNanosPerByte;
+
+    private long archivedFileCount;
+    private long archivedBytes;
+    private long archiveFilesDestroyedPerSecond;
+
     public String getIdentifier() {
         return identifier;
     }
@@ -60,12 +67,77 @@ public class StorageUsage implements Cloneable {
         return DiagnosticUtils.getUtilization(getUsedSpace(), totalSpace);
     }
 
+    /**
+     * @return the number of bytes written to the storage per second, as
+     * recently measured by the repository, or 0 if not measured
+     */
+    public long getWriteBytesPerSecond() {
+        return writeBytesPerSecond;
+    }
+
+    public void setWriteBytesPerSecond(final long writeBytesPerSecond) {
+        this.writeBytesPerSecond = writeBytesPerSecond;
+    }
+
+    /**
+     * @return the average time taken to write a byte to the storage, in
+     * nanoseconds, as recently measured by the repository, or 0 if not
+     * measured
+     */
+    public double getWriteNanosPerByte() {
+        return writeNanosPerByte;
+    }
+
+    public void setWriteNanosPerByte(final double writeNanosPerByte) {
+        this.writeNanosPerByte = writeNanosPerByte;
+    }
+
+    /**
+     * @return the number of files held in the storage's archive, or 0 if the
+     * storage does not archive data
+     */
+    public long getArchivedFileCount() {
+        return archivedFileCount;
+    }
+
+    public void setArchivedFileCount(final long archivedFileCount) {
+        this.archivedFileCount = archivedFileCount;
+    }
+
+    /**
+     * @return the total size of the files held in the storage's archive
+     */
+    public long getArchivedBytes() {
+        return archivedBytes;
+    }
+
+    public void setArchivedBytes(final long archivedBytes) {
+        this.archivedBytes = archivedBytes;
+    }
+
+    /**
+     * @return the number of archived files destroyed per second, as recently
+     * measured by the repository
+     */
+    public long getArchiveFilesDestroyedPerSecond() {
+        return archiveFilesDestroyedPerSecond;
+    }
+
+    public void setArchiveFilesDestroyedPerSecond(final long archiveFilesDestroyedPerSecond) {
+        this.archiveFilesDestroyedPerSecond = archiveFilesDestroyedPerSecond;
+    }
+
     @Override
     public StorageUsage clone() {
         final StorageUsage clonedObj = new StorageUsage();
         clonedObj.identifier = identifier;
         clonedObj.freeSpace = freeSpace;
         clonedObj.totalSpace = totalSpace;
+        clonedObj.writeBytesPerSecond = writeBytesPerSecond;
+        clonedObj.writeNanosPerByte = writeNanosPerByte;
+        clonedObj.archivedFileCount = archivedFileCount;
+        clonedObj.archivedBytes = archivedBytes;
+        clonedObj.archiveFilesDestroyedPerSecond = archiveFilesDestroyedPerSecond;
         return clonedObj;
     }
 
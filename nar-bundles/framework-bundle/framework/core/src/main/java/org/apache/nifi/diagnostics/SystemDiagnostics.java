@@ -44,6 +44,10 @@ public class SystemDiagnostics implements Cloneable {
     private Map<String, StorageUsage> contentRepositoryStorageUsage;
     private Map<String, GarbageCollection> garbageCollection;
 
+    private long activeQueuedFlowFiles;
+    private long bytesPerQueuedFlowFile;
+    private int claimsPendingDestruction;
+
     private long creationTimestamp;
 
     public void setTotalNonHeap(final long totalNonHeap) {
@@ -166,6 +170,43 @@ public class SystemDiagnostics implements Cloneable {
         this.garbageCollection = garbageCollection;
     }
 
+    /**
+     * @return the number of FlowFiles that are held in memory by the active
+     * queues of all connections, which excludes those that have been swapped
+     * out
+     */
+    public long getActiveQueuedFlowFiles() {
+        return activeQueuedFlowFiles;
+    }
+
+    public void setActiveQueuedFlowFiles(final long activeQueuedFlowFiles) {
+        this.activeQueuedFlowFiles = activeQueuedFlowFiles;
+    }
+
+    /**
+     * @return the estimated heap space that each FlowFile in an active queue
+     * occupies, or 0 if no FlowFiles are queued
+     */
+    public long getBytesPerQueuedFlowFile() {
+        return bytesPerQueuedFlowFile;
+    }
+
+    public void setBytesPerQueuedFlowFile(final long bytesPerQueuedFlowFile) {
+        this.bytesPerQueuedFlowFile = bytesPerQueuedFlowFile;
+    }
+
+    /**
+     * @return the number of Content Claims that are no longer referenced and
+     * are waiting to be destroyed or archived by the Content Repository
+     */
+    public int getClaimsPendingDestruction() {
+        return claimsPendingDestruction;
+    }
+
+    public void setClaimsPendingDestruction(final int claimsPendingDestruction) {
+        this.claimsPendingDestruction = claimsPendingDestruction;
+    }
+
     public long getCreationTimestamp() {
         return creationTimestamp;
     }
@@ -204,6 +245,9 @@ public class SystemDiagnostics implements Cloneable {
         clonedObj.totalThreads = totalThreads;
         clonedObj.usedHeap = usedHeap;
         clonedObj.usedNonHeap = usedNonHeap;
+        clonedObj.activeQueuedFlowFiles = activeQueuedFlowFiles;
+        clonedObj.bytesPerQueuedFlowFile = bytesPerQueuedFlowFile;
+        clonedObj.claimsPendingDestruction = claimsPendingDestruction;
         clonedObj.creationTimestamp = creationTimestamp;
 
         return clonedObj;
@@ -23,14 +23,23 @@ import java.lang.management.MemoryMXBean;
 import java.lang.management.MemoryUsage;
 import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.nifi.controller.FlowFileQueue;
+import org.apache.nifi.controller.LockableFlowFileQueue;
+import org.apache.nifi.controller.repository.ContainerMetrics;
 import org.apache.nifi.controller.repository.ContentRepository;
+import org.apache.nifi.controller.repository.FileSystemRepository;
+import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.StandardFlowFileRecord;
+import org.apache.nifi.controller.repository.claim.ContentClaimManager;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,9 +51,18 @@ import org.slf4j.LoggerFactory;
  */
 public class SystemDiagnosticsFactory {
 
+    // bounds the cost of estimating the size of queued FlowFiles when there are many connections
+    private static final int SAMPLE_SIZE_PER_QUEUE = 100;
+    private static final int MAX_SAMPLE_SIZE = 5000;
+
     private final Logger logger = LoggerFactory.getLogger(SystemDiagnosticsFactory.class);
 
     public SystemDiagnostics create(final FlowFileRepository flowFileRepo, final ContentRepository contentRepo) {
+        return create(flowFileRepo, contentRepo, Collections.<FlowFileQueue>emptyList(), null);
+    }
+
+    public SystemDiagnostics create(final FlowFileRepository flowFileRepo, final ContentRepository contentRepo,
+            final Collection<FlowFileQueue> queues, final ContentClaimManager claimManager) {
         final SystemDiagnostics systemDiagnostics = new SystemDiagnostics();
 
         final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
@@ -91,6 +109,8 @@ public class SystemDiagnosticsFactory {
 
         // get the file repository disk usage
         final Set<String> containerNames = contentRepo.getContainerNames();
+        final Map<String, ContainerMetrics> containerMetrics = (contentRepo instanceof FileSystemRepository)
+                ? ((FileSystemRepository) contentRepo).getContainerMetrics() : Collections.<String, ContainerMetrics>emptyMap();
         final Map<String, StorageUsage> fileRepositoryUsage = new LinkedHashMap<>(containerNames.size());
         for (final String containerName : containerNames) {
             long containerCapacity = -1L;
@@ -110,6 +130,14 @@ public class SystemDiagnosticsFactory {
             storageUsage.setIdentifier(containerName);
             storageUsage.setFreeSpace(containerFree);
             storageUsage.setTotalSpace(containerCapacity);
+            final ContainerMetrics metrics = containerMetrics.get(containerName);
+            if (metrics != null) {
+                storageUsage.setWriteBytesPerSecond(metrics.getBytesPerSecond());
+                storageUsage.setWriteNanosPerByte(metrics.getWriteNanosPerByte());
+                storageUsage.setArchivedFileCount(metrics.getArchivedFileCount());
+                storageUsage.setArchivedBytes(metrics.getArchivedBytes());
+                storageUsage.setArchiveFilesDestroyedPerSecond(metrics.getArchiveFilesDestroyedPerSecond());
+            }
             fileRepositoryUsage.put(containerName, storageUsage);
         }
         systemDiagnostics.setContentRepositoryStorageUsage(fileRepositoryUsage);
@@ -124,6 +152,29 @@ public class SystemDiagnosticsFactory {
         }
         systemDiagnostics.setGarbageCollection(garbageCollection);
 
+        // get the number of FlowFiles held in memory and estimate their size from a sample of them
+        long activeQueuedFlowFiles = 0L;
+        long sampledBytes = 0L;
+        int sampledFlowFiles = 0;
+        for (final FlowFileQueue queue : queues) {
+            activeQueuedFlowFiles += queue.getActiveQueueSize().getObjectCount();
+            if (sampledFlowFiles < MAX_SAMPLE_SIZE && queue instanceof LockableFlowFileQueue) {
+                final int sampleSize = Math.min(SAMPLE_SIZE_PER_QUEUE, MAX_SAMPLE_SIZE - sampledFlowFiles);
+                for (final FlowFileRecord flowFile : ((LockableFlowFileQueue) queue).sampleActiveQueue(sampleSize)) {
+                    if (flowFile instanceof StandardFlowFileRecord) {
+                        sampledBytes += ((StandardFlowFileRecord) flowFile).getEstimatedHeapSize();
+                        sampledFlowFiles++;
+                    }
+                }
+            }
+        }
+        systemDiagnostics.setActiveQueuedFlowFiles(activeQueuedFlowFiles);
+        systemDiagnostics.setBytesPerQueuedFlowFile(sampledFlowFiles == 0 ? 0L : sampledBytes / sampledFlowFiles);
+
+        if (claimManager != null) {
+            systemDiagnostics.setClaimsPendingDestruction(claimManager.getDestructableClaimCount());
+        }
+
         // set the creation timestamp
         systemDiagnostics.setCreationTimestamp(new Date().getTime());
 
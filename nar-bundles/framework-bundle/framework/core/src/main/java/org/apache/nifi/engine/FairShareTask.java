@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+/**
+ * A task that belongs to a component whose use of threads should be balanced
+ * against other components by the {@link WorkStealingFlowEngine}. All tasks
+ * that return the same key are charged to the same share, and a share that
+ * has a greater weight is allowed to use proportionally more thread time.
+ * Other engines ignore this interface.
+ */
+public interface FairShareTask {
+
+    /**
+     * @return the key that identifies the share that this task is charged to,
+     * such as the identifier of the component that the task runs
+     */
+    String getFairShareKey();
+
+    /**
+     * @return the relative weight of the share, which must be at least 1
+     */
+    int getFairShareWeight();
+}
@@ -23,8 +23,10 @@ import org.slf4j.LoggerFactory;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -58,7 +60,8 @@ public final class FlowEngine extends ScheduledThreadPoolExecutor {
 
     /**
      * Hook method called by the running thread whenever a runnable task is
-     * given to the thread to run.
+     * given to the thread to run. Records how late the task is, so that the
+     * task can obtain it from {@link TaskTimer#getRunQueueWaitNanos()}.
      *
      * @param thread
      * @param runnable
@@ -67,6 +70,11 @@ public final class FlowEngine extends ScheduledThreadPoolExecutor {
     protected void beforeExecute(final Thread thread, final Runnable runnable) {
         // Ensure classloader is correct
         thread.setContextClassLoader(NarThreadContextClassLoader.getInstance());
+        if (runnable instanceof RunnableScheduledFuture<?>) {
+            TaskTimer.setRunQueueWaitNanos(-((RunnableScheduledFuture<?>) runnable).getDelay(TimeUnit.NANOSECONDS));
+        } else {
+            TaskTimer.setRunQueueWaitNanos(0L);
+        }
         super.beforeExecute(thread, runnable);
     }
 
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Gives a task that is run by a {@link FlowEngine} or a
+ * {@link WorkStealingFlowEngine} access to timing information about the
+ * current run: how long the task waited for a thread after it was due to run,
+ * and how much CPU time the current thread has used.
+ */
+public final class TaskTimer {
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
+
+    private static final ThreadLocal<long[]> runQueueWaitNanos = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private TaskTimer() {
+    }
+
+    /**
+     * @return the number of nanoseconds that the task currently being run by
+     * this thread waited for a thread after it was due to run, or 0 if the
+     * task was not run by an engine that tracks this
+     */
+    public static long getRunQueueWaitNanos() {
+        return runQueueWaitNanos.get()[0];
+    }
+
+    static void setRunQueueWaitNanos(final long nanos) {
+        runQueueWaitNanos.get()[0] = Math.max(0L, nanos);
+    }
+
+    /**
+     * @return the CPU time used by the current thread, in nanoseconds, or 0 if
+     * the JVM does not support or has disabled measuring thread CPU time. Only
+     * the difference between two values returned to the same thread is
+     * meaningful.
+     */
+    public static long getCurrentThreadCpuNanos() {
+        if (!cpuTimeSupported) {
+            return 0L;
+        }
+
+        final long cpuNanos = threadMXBean.getCurrentThreadCpuTime();
+        return cpuNanos < 0L ? 0L : cpuNanos;
+    }
+}
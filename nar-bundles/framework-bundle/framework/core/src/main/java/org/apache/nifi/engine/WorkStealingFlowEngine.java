@@ -0,0 +1,753 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.nifi.nar.NarThreadContextClassLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An alternative to the {@link FlowEngine} for running Timer-Driven and
+ * CRON-Driven components. Rather than one queue that every thread takes its
+ * next task from, each thread has its own deque of tasks that are ready to
+ * run. A thread takes tasks from the head of its own deque and, when that is
+ * empty, steals from the tail of another thread's deque.
+ *
+ * <p>
+ * Tasks that implement {@link FairShareTask} are charged for the time that
+ * they run, divided by the weight of their share. When a thread takes a task
+ * whose share has been charged more than {@link #FAIRNESS_SLICE_NANOS} beyond
+ * the least-charged share that has tasks waiting or running, the task is moved
+ * to the back of the deque, up to {@link #MAX_DEFERRALS} times in a row. This
+ * keeps a slow component with many concurrent tasks from taking all of the
+ * threads from the others. A share that becomes busy again after being idle
+ * starts at the least charge, so it cannot save up time while idle.
+ * </p>
+ *
+ * <p>
+ * Delayed and periodic tasks are held by a single timer thread until they are
+ * due, unless the delay is shorter than {@link #DIRECT_DISPATCH_NANOS}, in
+ * which case they are put straight onto a deque. Once the engine is shut down,
+ * delayed and periodic tasks are not run again, but tasks that are already
+ * waiting for a thread are run.
+ * </p>
+ */
+public final class WorkStealingFlowEngine extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkStealingFlowEngine.class);
+
+    static final long FAIRNESS_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(20L);
+    static final int MAX_DEFERRALS = 4;
+    static final long DIRECT_DISPATCH_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+    private static final long SHARE_UPDATE_MILLIS = 10L;
+    private static final long SHARE_EXPIRATION_NANOS = TimeUnit.MINUTES.toNanos(1L);
+
+    private final String threadNamePrefix;
+    private final AtomicInteger threadIndex = new AtomicInteger(0);
+    private final FlowEngine timer;
+
+    private final Object lifecycleMonitor = new Object();
+    private final List<Worker> workerList = new ArrayList<>(); // guarded by lifecycleMonitor
+    private volatile Worker[] workers = new Worker[0];
+    private volatile int corePoolSize;
+    private volatile boolean shutdown = false;
+    private volatile boolean stopped = false;
+
+    private final ConcurrentLinkedQueue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger dispatchIndex = new AtomicInteger(0);
+
+    private final ConcurrentMap<String, FairShare> shares = new ConcurrentHashMap<>();
+    private volatile long minVirtualRuntime = 0L;
+
+    private final AtomicInteger activeCount = new AtomicInteger(0);
+    private final AtomicLong completedTaskCount = new AtomicLong(0L);
+    private final AtomicLong stealCount = new AtomicLong(0L);
+    private final AtomicLong deferralCount = new AtomicLong(0L);
+
+    /**
+     * Creates a new instance of WorkStealingFlowEngine
+     *
+     * @param corePoolSize the maximum number of threads available to tasks
+     * running in the engine.
+     * @param threadNamePrefix
+     */
+    public WorkStealingFlowEngine(final int corePoolSize, final String threadNamePrefix) {
+        if (corePoolSize < 1) {
+            throw new IllegalArgumentException("Core Pool Size must be at least 1");
+        }
+
+        this.threadNamePrefix = threadNamePrefix;
+        this.timer = new FlowEngine(1, threadNamePrefix + " Timer");
+        this.timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        // cancelled delayed tasks are removed at once rather than left in the timer's queue until they are due
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                updateShares();
+            }
+        }, SHARE_UPDATE_MILLIS, SHARE_UPDATE_MILLIS, TimeUnit.MILLISECONDS);
+
+        setCorePoolSize(corePoolSize);
+    }
+
+    /**
+     * Sets the number of threads that run tasks. If the number is smaller than
+     * the current number of threads, threads are stopped as they become idle.
+     *
+     * @param corePoolSize the new number of threads
+     */
+    public void setCorePoolSize(final int corePoolSize) {
+        if (corePoolSize < 1) {
+            throw new IllegalArgumentException("Core Pool Size must be at least 1");
+        }
+
+        synchronized (lifecycleMonitor) {
+            if (shutdown) {
+                return;
+            }
+
+            this.corePoolSize = corePoolSize;
+            while (workerList.size() < corePoolSize) {
+                final Worker worker = new Worker(threadNamePrefix + " Thread-" + threadIndex.incrementAndGet());
+                workerList.add(worker);
+                workers = workerList.toArray(new Worker[workerList.size()]);
+                worker.start();
+            }
+        }
+    }
+
+    public int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    /**
+     * @return the number of threads that are currently running a task
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * @return the number of tasks that have been run
+     */
+    public long getCompletedTaskCount() {
+        return completedTaskCount.get();
+    }
+
+    /**
+     * @return the number of tasks that are ready to run but waiting for a
+     * thread
+     */
+    public int getQueuedTaskCount() {
+        int count = 0;
+        for (final Worker worker : workers) {
+            count += worker.deque.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of tasks that a thread took from another thread's
+     * deque
+     */
+    public long getStealCount() {
+        return stealCount.get();
+    }
+
+    /**
+     * @return the number of times that a task was moved to the back of a
+     * deque because its share had used more than its fair share of time
+     */
+    public long getDeferralCount() {
+        return deferralCount.get();
+    }
+
+    /**
+     * @param key the key of a share
+     * @return the time, in nanoseconds, that has been charged to the share
+     * with the given key, divided by the share's weight, or -1 if there is no
+     * such share
+     */
+    public long getVirtualRuntime(final String key) {
+        final FairShare share = shares.get(key);
+        return share == null ? -1L : share.virtualRuntime.get();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+
+        final FairShareTask fairShareTask = command instanceof FairShareTask ? (FairShareTask) command : null;
+        if (!dispatch(command, fairShareTask, System.nanoTime())) {
+            throw new RejectedExecutionException("Engine has been shut down");
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+        final ScheduledTask<Void> task = new ScheduledTask<>(command, null, triggerTime(delay, unit), 0L);
+        schedule(task);
+        return task;
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+        final ScheduledTask<V> task = new ScheduledTask<>(callable, triggerTime(delay, unit));
+        schedule(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(final Runnable command, final long initialDelay, final long period, final TimeUnit unit) {
+        if (period <= 0L) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+
+        final ScheduledTask<Void> task = new ScheduledTask<>(command, null, triggerTime(initialDelay, unit), unit.toNanos(period));
+        schedule(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command, final long initialDelay, final long delay, final TimeUnit unit) {
+        if (delay <= 0L) {
+            throw new IllegalArgumentException("Delay must be positive");
+        }
+
+        final ScheduledTask<Void> task = new ScheduledTask<>(command, null, triggerTime(initialDelay, unit), -unit.toNanos(delay));
+        schedule(task);
+        return task;
+    }
+
+    private long triggerTime(final long delay, final TimeUnit unit) {
+        return System.nanoTime() + Math.max(0L, unit.toNanos(delay));
+    }
+
+    private void schedule(final ScheduledTask<?> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Engine has been shut down");
+        }
+        reschedule(task);
+    }
+
+    /**
+     * Hands the given task to the timer, or straight to a thread if it is
+     * already due. If the engine has been shut down, the task is cancelled.
+     */
+    private void reschedule(final ScheduledTask<?> task) {
+        final long delayNanos = task.getDelay(TimeUnit.NANOSECONDS);
+        if (delayNanos < DIRECT_DISPATCH_NANOS) {
+            if (!dispatch(task, task.fairShareTask, Math.min(System.nanoTime(), task.triggerNanos))) {
+                task.cancel(false);
+            }
+            return;
+        }
+
+        try {
+            task.timerFuture = timer.schedule(task.dispatcher, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (final RejectedExecutionException ree) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Puts the given runnable on the deque of the calling thread, if that is
+     * one of this engine's threads, or else of the next thread in turn, and
+     * wakes an idle thread to run or steal it.
+     *
+     * @return false if the engine has been shut down
+     */
+    private boolean dispatch(final Runnable runnable, final FairShareTask fairShareTask, final long readyNanos) {
+        if (shutdown) {
+            return false;
+        }
+
+        final Thread currentThread = Thread.currentThread();
+        final Worker target;
+        if (currentThread instanceof Worker && ((Worker) currentThread).getEngine() == this && !((Worker) currentThread).retired) {
+            target = (Worker) currentThread;
+        } else {
+            final Worker[] currentWorkers = workers;
+            if (currentWorkers.length == 0) {
+                return false;
+            }
+            target = currentWorkers[(dispatchIndex.getAndIncrement() & Integer.MAX_VALUE) % currentWorkers.length];
+        }
+
+        final QueuedTask queuedTask = new QueuedTask(runnable, getShare(fairShareTask), readyNanos);
+        target.deque.offerLast(queuedTask);
+
+        // if the thread retired while we were adding the task, it may never see the task, so place it elsewhere.
+        if (target.retired && target.deque.removeFirstOccurrence(queuedTask)) {
+            requeue(queuedTask);
+        }
+
+        final Worker idleWorker = idleWorkers.poll();
+        if (idleWorker != null) {
+            LockSupport.unpark(idleWorker);
+        }
+        return true;
+    }
+
+    private void requeue(final QueuedTask queuedTask) {
+        final Worker[] currentWorkers = workers;
+        if (currentWorkers.length == 0) {
+            // only happens once the engine has been shut down and all threads have finished
+            queuedTask.share.complete(0L);
+            return;
+        }
+
+        currentWorkers[ThreadLocalRandom.current().nextInt(currentWorkers.length)].deque.offerLast(queuedTask);
+        final Worker idleWorker = idleWorkers.poll();
+        if (idleWorker != null) {
+            LockSupport.unpark(idleWorker);
+        }
+    }
+
+    private FairShare getShare(final FairShareTask fairShareTask) {
+        if (fairShareTask == null) {
+            return FairShare.UNSHARED;
+        }
+
+        final String key = fairShareTask.getFairShareKey();
+        FairShare share = shares.get(key);
+        if (share == null) {
+            final FairShare newShare = new FairShare(minVirtualRuntime);
+            share = shares.putIfAbsent(key, newShare);
+            if (share == null) {
+                share = newShare;
+            }
+        }
+
+        share.weight = Math.max(1, fairShareTask.getFairShareWeight());
+        if (share.outstanding.getAndIncrement() == 0) {
+            // the share was idle; do not allow it to make up for the time that it did not use.
+            final long min = minVirtualRuntime;
+            long current;
+            do {
+                current = share.virtualRuntime.get();
+            } while (current < min && !share.virtualRuntime.compareAndSet(current, min));
+        }
+
+        return share;
+    }
+
+    /**
+     * Recalculates the least virtual runtime of all shares that have tasks
+     * waiting or running and forgets shares that have been idle for a while.
+     */
+    private void updateShares() {
+        final long now = System.nanoTime();
+        long min = Long.MAX_VALUE;
+        for (final Map.Entry<String, FairShare> entry : shares.entrySet()) {
+            final FairShare share = entry.getValue();
+            if (share.outstanding.get() > 0) {
+                min = Math.min(min, share.virtualRuntime.get());
+            } else if (now - share.lastActiveNanos > SHARE_EXPIRATION_NANOS) {
+                shares.remove(entry.getKey(), share);
+            }
+        }
+
+        if (min != Long.MAX_VALUE && min > minVirtualRuntime) {
+            minVirtualRuntime = min;
+        }
+    }
+
+    private boolean isEligible(final QueuedTask queuedTask) {
+        final FairShare share = queuedTask.share;
+        return share == FairShare.UNSHARED || share.virtualRuntime.get() <= minVirtualRuntime + FAIRNESS_SLICE_NANOS;
+    }
+
+    private void runTask(final Worker worker, final QueuedTask queuedTask) {
+        if (!stopped) {
+            // clear any interrupt left over from a previous task
+            Thread.interrupted();
+        }
+
+        final long startNanos = System.nanoTime();
+        TaskTimer.setRunQueueWaitNanos(startNanos - queuedTask.readyNanos);
+        worker.setContextClassLoader(NarThreadContextClassLoader.getInstance());
+        activeCount.incrementAndGet();
+        try {
+            queuedTask.runnable.run();
+        } catch (final Throwable t) {
+            logger.error("A flow controller task execution stopped abnormally", t);
+        } finally {
+            activeCount.decrementAndGet();
+            TaskTimer.setRunQueueWaitNanos(0L);
+            queuedTask.share.complete(System.nanoTime() - startNanos);
+            completedTaskCount.incrementAndGet();
+        }
+
+        if (queuedTask.runnable instanceof FutureTask<?>) {
+            final FutureTask<?> task = (FutureTask<?>) queuedTask.runnable;
+            if (task.isDone() && !task.isCancelled()) {
+                try {
+                    task.get(); //to raise any exceptions that might have occurred.
+                } catch (final CancellationException ce) {
+                    logger.debug("A flow controller execution task '{}' has been cancelled.", task);
+                } catch (final InterruptedException ie) {
+                    logger.debug("A flow controller execution task has been interrupted.", ie);
+                } catch (final ExecutionException ee) {
+                    logger.error("A flow controller task execution stopped abnormally", ee);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (lifecycleMonitor) {
+            shutdown = true;
+        }
+
+        timer.shutdown();
+        for (final Worker worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        synchronized (lifecycleMonitor) {
+            shutdown = true;
+            stopped = true;
+        }
+
+        timer.shutdownNow();
+        final List<Runnable> neverRun = new ArrayList<>();
+        for (final Worker worker : workers) {
+            QueuedTask queuedTask;
+            while ((queuedTask = worker.deque.pollFirst()) != null) {
+                queuedTask.share.complete(0L);
+                neverRun.add(queuedTask.runnable);
+            }
+            worker.interrupt();
+        }
+        return neverRun;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        if (!shutdown || !timer.isTerminated()) {
+            return false;
+        }
+
+        synchronized (lifecycleMonitor) {
+            return workerList.isEmpty();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lifecycleMonitor) {
+            while (!workerList.isEmpty()) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(lifecycleMonitor, remaining);
+            }
+        }
+
+        return timer.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private void removeWorker(final Worker worker) {
+        synchronized (lifecycleMonitor) {
+            if (workerList.remove(worker)) {
+                workers = workerList.toArray(new Worker[workerList.size()]);
+                lifecycleMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stops the given worker if there are more workers than the core pool
+     * size and the engine has not been shut down.
+     */
+    private boolean retireIfUnneeded(final Worker worker) {
+        synchronized (lifecycleMonitor) {
+            if (shutdown || workerList.size() <= corePoolSize) {
+                return false;
+            }
+
+            worker.retired = true;
+            removeWorker(worker);
+        }
+
+        QueuedTask queuedTask;
+        while ((queuedTask = worker.deque.pollFirst()) != null) {
+            requeue(queuedTask);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkStealingFlowEngine[" + threadNamePrefix + ", threads=" + workers.length + ", active=" + activeCount.get() + "]";
+    }
+
+    /**
+     * The time that all tasks of a component have been charged for, divided by
+     * the weight of the component.
+     */
+    private static class FairShare {
+
+        private static final FairShare UNSHARED = new FairShare(0L);
+
+        private final AtomicLong virtualRuntime;
+        private final AtomicInteger outstanding = new AtomicInteger(0);
+        private volatile int weight = 1;
+        private volatile long lastActiveNanos = System.nanoTime();
+
+        private FairShare(final long virtualRuntime) {
+            this.virtualRuntime = new AtomicLong(virtualRuntime);
+        }
+
+        private void complete(final long runNanos) {
+            if (this == UNSHARED) {
+                return;
+            }
+
+            virtualRuntime.addAndGet(runNanos / weight);
+            lastActiveNanos = System.nanoTime();
+            outstanding.decrementAndGet();
+        }
+    }
+
+    private static class QueuedTask {
+
+        private final Runnable runnable;
+        private final FairShare share;
+        private final long readyNanos;
+
+        private QueuedTask(final Runnable runnable, final FairShare share, final long readyNanos) {
+            this.runnable = runnable;
+            this.share = share;
+            this.readyNanos = readyNanos;
+        }
+    }
+
+    private class Worker extends Thread {
+
+        private final ConcurrentLinkedDeque<QueuedTask> deque = new ConcurrentLinkedDeque<>();
+        private volatile boolean retired = false;
+
+        private Worker(final String name) {
+            super(name);
+        }
+
+        private WorkStealingFlowEngine getEngine() {
+            return WorkStealingFlowEngine.this;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    QueuedTask queuedTask = nextTask();
+                    if (queuedTask != null) {
+                        runTask(this, queuedTask);
+                        continue;
+                    }
+
+                    if (shutdown || retireIfUnneeded(this)) {
+                        return;
+                    }
+
+                    // register as idle before checking once more, so that a task dispatched in between wakes us.
+                    idleWorkers.offer(this);
+                    queuedTask = nextTask();
+                    if (queuedTask == null && !shutdown) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    idleWorkers.remove(this);
+
+                    if (queuedTask != null) {
+                        runTask(this, queuedTask);
+                    }
+                }
+            } finally {
+                removeWorker(this);
+            }
+        }
+
+        private QueuedTask nextTask() {
+            for (int deferrals = 0;; deferrals++) {
+                final QueuedTask queuedTask = deque.pollFirst();
+                if (queuedTask == null) {
+                    break;
+                }
+
+                if (deferrals >= MAX_DEFERRALS || isEligible(queuedTask)) {
+                    return queuedTask;
+                }
+
+                deque.offerLast(queuedTask);
+                deferralCount.incrementAndGet();
+            }
+
+            return steal();
+        }
+
+        private QueuedTask steal() {
+            final Worker[] currentWorkers = workers;
+            if (currentWorkers.length < 2) {
+                return null;
+            }
+
+            final int start = ThreadLocalRandom.current().nextInt(currentWorkers.length);
+            for (int i = 0; i < currentWorkers.length; i++) {
+                final Worker victim = currentWorkers[(start + i) % currentWorkers.length];
+                if (victim == this) {
+                    continue;
+                }
+
+                final QueuedTask queuedTask = victim.deque.pollLast();
+                if (queuedTask != null) {
+                    stealCount.incrementAndGet();
+                    return queuedTask;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * A delayed or periodic task. A periodic task puts itself back on the
+     * timer each time that it finishes running.
+     */
+    private class ScheduledTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        private final FairShareTask fairShareTask;
+        // positive for a fixed rate, negative for a fixed delay, 0 for a task that runs once
+        private final long period;
+        private volatile long triggerNanos;
+        private volatile Future<?> timerFuture;
+
+        private final Runnable dispatcher = new Runnable() {
+            @Override
+            public void run() {
+                if (!dispatch(ScheduledTask.this, fairShareTask, triggerNanos)) {
+                    cancel(false);
+                }
+            }
+        };
+
+        private ScheduledTask(final Runnable runnable, final V result, final long triggerNanos, final long period) {
+            super(runnable, result);
+            this.fairShareTask = runnable instanceof FairShareTask ? (FairShareTask) runnable : null;
+            this.triggerNanos = triggerNanos;
+            this.period = period;
+        }
+
+        private ScheduledTask(final Callable<V> callable, final long triggerNanos) {
+            super(callable);
+            this.fairShareTask = callable instanceof FairShareTask ? (FairShareTask) callable : null;
+            this.triggerNanos = triggerNanos;
+            this.period = 0L;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0L;
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(triggerNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+
+            final long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0L ? -1 : (diff > 0L ? 1 : 0);
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+                return;
+            }
+
+            if (!runAndReset()) {
+                return;
+            }
+
+            if (period > 0L) {
+                triggerNanos += period;
+            } else {
+                triggerNanos = System.nanoTime() - period;
+            }
+
+            if (!isCancelled()) {
+                reschedule(this);
+            }
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            final Future<?> future = timerFuture;
+            if (cancelled && future != null) {
+                future.cancel(false);
+            }
+            return cancelled;
+        }
+    }
+}
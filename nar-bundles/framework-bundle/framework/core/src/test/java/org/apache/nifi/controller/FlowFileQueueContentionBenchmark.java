@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.StandardFlowFileRecord;
+import org.apache.nifi.processor.QueueSize;
+import org.apache.nifi.scheduling.SchedulingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link StandardFlowFileQueue} with the
+ * {@link ConcurrentFlowFileQueue} when many threads use a single unprioritized
+ * connection at once. Each operation puts a FlowFile to the queue, polls a
+ * FlowFile from it and acknowledges the polled FlowFile, which is what a
+ * Processor task does for a connection that it both feeds and consumes. The
+ * size of the queue is also read, as the framework does when it decides
+ * whether a Processor has work to do.
+ *
+ * The number of threads can be changed with the <code>-t</code> option of
+ * the JMH runner.
+ *
+ * This is not run as part of the build. Build the benchmark harness with
+ * <code>mvn clean test-compile -Pbenchmark</code> and then run
+ * {@link #main(String[])} with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Threads(16)
+@Fork(1)
+public class FlowFileQueueContentionBenchmark {
+
+    private static final int INITIAL_QUEUE_SIZE = 1000;
+    private static final int SWAP_THRESHOLD = 20000;
+
+    @Param({"standard", "concurrent"})
+    private String queueType;
+
+    private FlowFileQueue queue;
+    private FlowFileRecord[] flowFiles;
+
+    @Setup
+    public void setup() {
+        // proxies rather than mocks, as mocks capture a stack trace on each invocation, which would dominate the measurement
+        final Connectable connectable = (Connectable) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connectable.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("getSchedulingStrategy")) {
+                            return SchedulingStrategy.TIMER_DRIVEN;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("getSource") || method.getName().equals("getDestination")) {
+                            return connectable;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        final ProcessScheduler scheduler = (ProcessScheduler) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ProcessScheduler.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        return null;
+                    }
+                });
+
+        if (queueType.equals("standard")) {
+            queue = new StandardFlowFileQueue("benchmark", connection, scheduler, SWAP_THRESHOLD);
+        } else {
+            queue = new ConcurrentFlowFileQueue("benchmark", connection, scheduler, SWAP_THRESHOLD);
+        }
+
+        final long now = System.currentTimeMillis();
+        flowFiles = new FlowFileRecord[1024];
+        for (int i = 0; i < flowFiles.length; i++) {
+            flowFiles[i] = new StandardFlowFileRecord.Builder().id(i).entryDate(now).size(1024L).build();
+        }
+
+        for (int i = 0; i < INITIAL_QUEUE_SIZE; i++) {
+            queue.put(flowFiles[i % flowFiles.length]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private final Set<FlowFileRecord> expired = new HashSet<>();
+        private int index = 0;
+    }
+
+    @Benchmark
+    public FlowFileRecord putPollAcknowledge(final ThreadState state) {
+        final FlowFileRecord toPut = flowFiles[state.index++ & (flowFiles.length - 1)];
+        queue.put(toPut);
+
+        final FlowFileRecord polled = queue.poll(state.expired);
+        if (polled != null) {
+            queue.acknowledge(polled);
+        }
+        return polled;
+    }
+
+    @Benchmark
+    public QueueSize readSizes() {
+        queue.isActiveQueueEmpty();
+        return queue.getActiveQueueSize();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FlowFileQueueContentionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
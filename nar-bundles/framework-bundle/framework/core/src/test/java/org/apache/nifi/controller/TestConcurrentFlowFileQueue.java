@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.StandardFlowFileRecord;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.FlowFilePrioritizer;
+import org.apache.nifi.processor.FlowFileFilter;
+import org.apache.nifi.processor.QueueSize;
+import org.apache.nifi.scheduling.SchedulingStrategy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestConcurrentFlowFileQueue {
+
+    private final AtomicLong idGenerator = new AtomicLong(0L);
+    private ConcurrentFlowFileQueue queue;
+
+    @Before
+    public void setup() {
+        final Connectable connectable = Mockito.mock(Connectable.class);
+        Mockito.when(connectable.getSchedulingStrategy()).thenReturn(SchedulingStrategy.TIMER_DRIVEN);
+
+        final Connection connection = Mockito.mock(Connection.class);
+        Mockito.when(connection.getSource()).thenReturn(connectable);
+        Mockito.when(connection.getDestination()).thenReturn(connectable);
+
+        queue = new ConcurrentFlowFileQueue("1", connection, Mockito.mock(ProcessScheduler.class), 100);
+    }
+
+    private FlowFileRecord createFlowFile(final long size) {
+        return new StandardFlowFileRecord.Builder().id(idGenerator.getAndIncrement()).entryDate(System.currentTimeMillis()).size(size).build();
+    }
+
+    private void assertQueueSize(final int count, final long bytes, final QueueSize queueSize) {
+        assertEquals(count, queueSize.getObjectCount());
+        assertEquals(bytes, queueSize.getByteCount());
+    }
+
+    @Test
+    public void testFirstInFirstOut() {
+        final List<FlowFileRecord> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final FlowFileRecord flowFile = createFlowFile(10L);
+            flowFiles.add(flowFile);
+            queue.put(flowFile);
+        }
+
+        assertQueueSize(10, 100L, queue.size());
+        assertQueueSize(10, 100L, queue.getActiveQueueSize());
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        assertEquals(flowFiles.get(0), queue.poll(expired));
+        assertEquals(flowFiles.subList(1, 5), queue.poll(4, expired));
+        assertTrue(expired.isEmpty());
+
+        assertQueueSize(10, 100L, queue.size());
+        assertQueueSize(5, 50L, queue.getActiveQueueSize());
+        assertEquals(10, queue.unswappedSize());
+
+        queue.acknowledge(flowFiles.subList(0, 5));
+        assertQueueSize(5, 50L, queue.size());
+        assertFalse(queue.isEmpty());
+    }
+
+    @Test
+    public void testPenalizedFlowFilesSetAside() {
+        final FlowFileRecord penalized = new StandardFlowFileRecord.Builder().id(idGenerator.getAndIncrement()).entryDate(System.currentTimeMillis())
+                .penaltyExpirationTime(System.currentTimeMillis() + 60000L).build();
+        final FlowFileRecord unpenalized = createFlowFile(0L);
+
+        queue.put(penalized);
+        queue.put(unpenalized);
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        assertEquals(unpenalized, queue.poll(expired));
+        assertNull(queue.poll(expired));
+        assertEquals(1, queue.getActiveQueueSize().getObjectCount());
+        assertFalse(queue.isActiveQueueEmpty());
+    }
+
+    @Test
+    public void testPollWithFilterPreservesOrder() {
+        final List<FlowFileRecord> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final FlowFileRecord flowFile = createFlowFile(i);
+            flowFiles.add(flowFile);
+            queue.put(flowFile);
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> selected = queue.poll(new FlowFileFilter() {
+            @Override
+            public FlowFileFilterResult filter(final FlowFile flowFile) {
+                return flowFile.getSize() % 2 == 0 ? FlowFileFilterResult.ACCEPT_AND_CONTINUE : FlowFileFilterResult.REJECT_AND_CONTINUE;
+            }
+        }, expired);
+
+        assertEquals(5, selected.size());
+        for (final FlowFileRecord flowFile : selected) {
+            assertEquals(0L, flowFile.getSize() % 2);
+        }
+
+        final List<FlowFileRecord> remaining = queue.poll(10, expired);
+        assertEquals(5, remaining.size());
+        for (int i = 0; i < remaining.size(); i++) {
+            assertEquals(flowFiles.get(i * 2 + 1), remaining.get(i));
+        }
+    }
+
+    @Test
+    public void testPollDuringFilterPollGetsOldestUnselected() {
+        final List<FlowFileRecord> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final FlowFileRecord flowFile = createFlowFile(i);
+            flowFiles.add(flowFile);
+            queue.put(flowFile);
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polledDuringFilter = new ArrayList<>();
+        final List<FlowFileRecord> selected = queue.poll(new FlowFileFilter() {
+            @Override
+            public FlowFileFilterResult filter(final FlowFile flowFile) {
+                if (flowFile.getSize() == 5L) {
+                    // an ordinary poll made while the filter runs must see the FlowFiles that the filter has not taken
+                    polledDuringFilter.add(queue.poll(expired));
+                }
+                return flowFile.getSize() % 2 == 0 ? FlowFileFilterResult.ACCEPT_AND_CONTINUE : FlowFileFilterResult.REJECT_AND_CONTINUE;
+            }
+        }, expired);
+
+        assertEquals(Collections.singletonList(flowFiles.get(1)), polledDuringFilter);
+        assertEquals(5, selected.size());
+        assertEquals(Arrays.asList(flowFiles.get(3), flowFiles.get(5), flowFiles.get(7), flowFiles.get(9)), queue.poll(10, expired));
+    }
+
+    @Test
+    public void testFilterPollsAndPollsNeverShareFlowFiles() throws Exception {
+        final int count = 20000;
+        for (int i = 0; i < count; i++) {
+            queue.put(createFlowFile(1L));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<List<FlowFileRecord>>> consumers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final boolean useFilter = i % 2 == 0;
+                consumers.add(executor.submit(new Callable<List<FlowFileRecord>>() {
+                    @Override
+                    public List<FlowFileRecord> call() {
+                        final Set<FlowFileRecord> expired = new HashSet<>();
+                        final List<FlowFileRecord> polled = new ArrayList<>();
+                        while (true) {
+                            final List<FlowFileRecord> batch;
+                            if (useFilter) {
+                                batch = queue.poll(new FlowFileFilter() {
+                                    private int accepted = 0;
+
+                                    @Override
+                                    public FlowFileFilterResult filter(final FlowFile flowFile) {
+                                        return ++accepted < 10 ? FlowFileFilterResult.ACCEPT_AND_CONTINUE : FlowFileFilterResult.ACCEPT_AND_TERMINATE;
+                                    }
+                                }, expired);
+                            } else {
+                                batch = queue.poll(10, expired);
+                            }
+
+                            // a filter poll may find nothing left to take when the other threads claim its FlowFiles first
+                            if (batch.isEmpty() && queue.isActiveQueueEmpty() && queue.getSwapRecordCount() == 0) {
+                                return polled;
+                            }
+                            polled.addAll(batch);
+                        }
+                    }
+                }));
+            }
+
+            final Set<FlowFileRecord> unique = new HashSet<>();
+            int total = 0;
+            for (final Future<List<FlowFileRecord>> future : consumers) {
+                final List<FlowFileRecord> polled = future.get();
+                total += polled.size();
+                unique.addAll(polled);
+            }
+
+            assertEquals(count, total);
+            assertEquals(count, unique.size());
+            assertQueueSize(0, 0L, queue.getActiveQueueSize());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSwapping() {
+        final List<FlowFileRecord> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            final FlowFileRecord flowFile = createFlowFile(1L);
+            flowFiles.add(flowFile);
+            queue.put(flowFile);
+        }
+
+        assertEquals(100, queue.getActiveQueueSize().getObjectCount());
+        assertEquals(50, queue.getSwapRecordCount());
+        assertEquals(50, queue.getSwapQueueSize());
+        assertQueueSize(150, 150L, queue.size());
+
+        // not enough on the swap queue to be swapped out, so the FlowFiles are migrated as the queue drains
+        assertNull(queue.pollSwappableRecords());
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polled = new ArrayList<>();
+        while (true) {
+            final List<FlowFileRecord> batch = queue.poll(40, expired);
+            if (batch.isEmpty()) {
+                break;
+            }
+            polled.addAll(batch);
+        }
+
+        assertEquals(flowFiles, polled);
+        assertEquals(0, queue.getSwapRecordCount());
+        assertTrue(queue.isActiveQueueEmpty());
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        queue.setFlowFileExpiration("1 ms");
+        queue.put(new StandardFlowFileRecord.Builder().id(idGenerator.getAndIncrement()).entryDate(System.currentTimeMillis() - 1000L).size(10L).build());
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        assertNull(queue.poll(expired));
+        assertEquals(1, expired.size());
+        assertTrue(queue.isEmpty());
+        assertEquals(0L, queue.contentSize());
+    }
+
+    @Test
+    public void testBackPressure() {
+        queue.setBackPressureObjectThreshold(2L);
+        queue.put(createFlowFile(1L));
+        assertFalse(queue.isFull());
+        queue.put(createFlowFile(1L));
+        assertTrue(queue.isFull());
+
+        final FlowFileRecord polled = queue.poll(new HashSet<FlowFileRecord>());
+        assertTrue(queue.isFull());
+        queue.acknowledge(polled);
+        assertFalse(queue.isFull());
+    }
+
+    @Test
+    public void testPrioritizersKeptButNotUsed() {
+        final FlowFilePrioritizer prioritizer = Mockito.mock(FlowFilePrioritizer.class);
+        queue.setPriorities(Collections.singletonList(prioritizer));
+        assertEquals(Collections.singletonList(prioritizer), queue.getPriorities());
+
+        final FlowFileRecord first = createFlowFile(0L);
+        final FlowFileRecord second = createFlowFile(0L);
+        queue.put(first);
+        queue.put(second);
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        assertEquals(first, queue.poll(expired));
+        assertEquals(second, queue.poll(expired));
+        Mockito.verifyZeroInteractions(prioritizer);
+
+        queue.setPriorities(null);
+        assertTrue(queue.getPriorities().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        final int threads = 4;
+        final int perThread = 5000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads * 2);
+        try {
+            final List<Future<Integer>> consumers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < perThread; j++) {
+                            queue.put(createFlowFile(1L));
+                        }
+                    }
+                });
+
+                consumers.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        final Set<FlowFileRecord> expired = new HashSet<>();
+                        int polled = 0;
+                        while (polled < perThread) {
+                            final FlowFileRecord flowFile = queue.poll(expired);
+                            if (flowFile == null) {
+                                Thread.yield();
+                                continue;
+                            }
+                            queue.acknowledge(flowFile);
+                            polled++;
+                        }
+                        return polled;
+                    }
+                }));
+            }
+
+            int total = 0;
+            for (final Future<Integer> future : consumers) {
+                total += future.get();
+            }
+
+            assertEquals(threads * perThread, total);
+            assertTrue(queue.isEmpty());
+            assertQueueSize(0, 0L, queue.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -97,6 +97,11 @@ public class TestFileSystemSwapManager {
         public void drainDestructableClaims(Collection<ContentClaim> destination, int maxElements, long timeout, TimeUnit unit) {
         }
 
+        @Override
+        public int getDestructableClaimCount() {
+            return 0;
+        }
+
         @Override
         public void purge() {
         }
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.StandardContentClaimManager;
+import org.apache.nifi.util.NiFiProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the time taken to export the content of a single large FlowFile
+ * from the FileSystemRepository, either by copying it through an OutputStream
+ * or by transferring it to a WritableByteChannel. The destination is a file
+ * or a socket on the loopback interface whose peer discards what it reads.
+ * Throughput in MB/s is sizeMegabytes divided by the reported seconds per
+ * operation.
+ *
+ * This is not run as part of the build. Build the benchmark harness with
+ * <code>mvn clean test-compile -Pbenchmark</code> and then run
+ * {@link #main(String[])} with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ContentExportBenchmark {
+
+    @Param({"1024"})
+    private int sizeMegabytes;
+
+    @Param({"file", "socket"})
+    private String destination;
+
+    private FileSystemRepository repository;
+    private ContentClaim claim;
+    private long size;
+    private File exportFile;
+
+    private ServerSocketChannel serverChannel;
+    private SocketChannel socketChannel;
+    private Thread drainThread;
+
+    @Setup
+    public void setup() throws IOException {
+        System.setProperty(NiFiProperties.PROPERTIES_FILE_PATH, "src/test/resources/nifi.properties");
+        repository = new FileSystemRepository();
+        repository.initialize(new StandardContentClaimManager());
+        repository.purge();
+
+        final byte[] buffer = new byte[1024 * 1024];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (byte) i;
+        }
+
+        claim = repository.create(false);
+        try (final OutputStream out = repository.write(claim)) {
+            for (int i = 0; i < sizeMegabytes; i++) {
+                out.write(buffer);
+            }
+        }
+        size = repository.size(claim);
+
+        exportFile = new File("target/ContentExportBenchmark.export");
+        if ("socket".equals(destination)) {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            socketChannel = SocketChannel.open(serverChannel.getLocalAddress());
+            final SocketChannel peer = serverChannel.accept();
+
+            drainThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final ByteBuffer discard = ByteBuffer.allocateDirect(1024 * 1024);
+                    try {
+                        while (peer.read(discard) >= 0) {
+                            discard.clear();
+                        }
+                    } catch (final IOException e) {
+                        // the benchmark has finished and closed the socket
+                    }
+                }
+            }, "ContentExportBenchmark Drain Thread");
+            drainThread.setDaemon(true);
+            drainThread.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        if (socketChannel != null) {
+            socketChannel.close();
+            serverChannel.close();
+            drainThread.join(TimeUnit.SECONDS.toMillis(5L));
+        }
+        repository.purge();
+        exportFile.delete();
+    }
+
+    @Benchmark
+    public long exportToStream() throws IOException {
+        if (socketChannel != null) {
+            return repository.exportTo(claim, socketChannel.socket().getOutputStream(), 0L, size);
+        }
+        try (final OutputStream out = new FileOutputStream(exportFile)) {
+            return repository.exportTo(claim, out, 0L, size);
+        }
+    }
+
+    @Benchmark
+    public long exportToChannel() throws IOException {
+        if (socketChannel != null) {
+            return export(socketChannel);
+        }
+        try (final FileChannel out = FileChannel.open(exportFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return export(out);
+        }
+    }
+
+    private long export(final WritableByteChannel channel) throws IOException {
+        long transferred = 0L;
+        while (transferred < size) {
+            transferred += repository.exportTo(claim, channel, transferred, size - transferred);
+        }
+        return transferred;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ContentExportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
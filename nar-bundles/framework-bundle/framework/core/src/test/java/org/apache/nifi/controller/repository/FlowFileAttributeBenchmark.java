@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of updating a single attribute of a FlowFile that has the
+ * given number of attributes, as StandardProcessSession.putAttribute does, and
+ * compares it with copying the attributes into a new HashMap, which is what
+ * each update cost before FlowFile attributes were kept in an
+ * {@link AttributeMap}.
+ *
+ * When the benchmark is set up, it also prints an estimate of the heap that
+ * is retained per queued FlowFile after each FlowFile has passed through the
+ * given number of attribute-updating Processors, with the session keeping
+ * the original version of each FlowFile as it does until commit.
+ *
+ * This is not run as part of the build. Build the benchmark harness with
+ * <code>mvn clean test-compile -Pbenchmark</code> and then run
+ * {@link #main(String[])} with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class FlowFileAttributeBenchmark {
+
+    private static final int HEAP_FLOWFILES = 20000;
+    private static final int PROCESSORS_IN_SERIES = 5;
+
+    @Param({"10", "40"})
+    private int numAttributes;
+
+    private FlowFileRecord flowFile;
+    private Map<String, String> hashMapAttributes;
+    private int counter = 0;
+
+    @Setup
+    public void setup() {
+        flowFile = createFlowFile(0);
+        hashMapAttributes = new HashMap<>(flowFile.getAttributes());
+
+        System.out.println();
+        System.out.println(numAttributes + " attributes, updated by " + PROCESSORS_IN_SERIES + " Processors in series: "
+                + estimateRetainedBytes(false) + " bytes per FlowFile with AttributeMap; "
+                + estimateRetainedBytes(true) + " bytes per FlowFile with HashMap copies");
+    }
+
+    private FlowFileRecord createFlowFile(final int id) {
+        final StandardFlowFileRecord.Builder builder = new StandardFlowFileRecord.Builder().id(id);
+        builder.addAttribute(CoreAttributes.UUID.key(), "6d9b0c1e-7f0e-4b8a-9d6c-" + String.format("%012d", id));
+        builder.addAttribute(CoreAttributes.FILENAME.key(), "file-" + id + ".txt");
+        builder.addAttribute(CoreAttributes.PATH.key(), "./");
+        for (int i = 3; i < numAttributes; i++) {
+            builder.addAttribute("attribute.name." + i, "value-" + id + "-" + i);
+        }
+        return builder.build();
+    }
+
+    private long estimateRetainedBytes(final boolean copyToHashMap) {
+        final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        final Object[] retained = new Object[HEAP_FLOWFILES * 2];
+        System.gc();
+        final long before = memoryBean.getHeapMemoryUsage().getUsed();
+
+        for (int i = 0; i < HEAP_FLOWFILES; i++) {
+            final FlowFileRecord original = createFlowFile(i);
+            Object current = copyToHashMap ? new HashMap<>(original.getAttributes()) : original;
+            for (int p = 0; p < PROCESSORS_IN_SERIES; p++) {
+                if (copyToHashMap) {
+                    @SuppressWarnings("unchecked")
+                    final Map<String, String> copy = new HashMap<>((Map<String, String>) current);
+                    copy.put("processor." + p, "updated");
+                    current = copy;
+                } else {
+                    current = new StandardFlowFileRecord.Builder().fromFlowFile((FlowFileRecord) current).addAttribute("processor." + p, "updated").build();
+                }
+            }
+            retained[2 * i] = copyToHashMap ? new HashMap<>(original.getAttributes()) : original;
+            retained[2 * i + 1] = current;
+        }
+
+        System.gc();
+        final long after = memoryBean.getHeapMemoryUsage().getUsed();
+        if (retained[retained.length - 1] == null) {
+            throw new IllegalStateException(); // keep the FlowFiles reachable until the heap has been measured
+        }
+        return (after - before) / HEAP_FLOWFILES;
+    }
+
+    @Benchmark
+    public FlowFileRecord putAttribute() {
+        return new StandardFlowFileRecord.Builder().fromFlowFile(flowFile).addAttribute("attribute.name.3", "updated-" + (counter++ & 1023)).build();
+    }
+
+    @Benchmark
+    public Map<String, String> copyHashMap() {
+        final Map<String, String> copy = new HashMap<>(hashMapAttributes);
+        copy.put("attribute.name.3", "updated-" + (counter++ & 1023));
+        return copy;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FlowFileAttributeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
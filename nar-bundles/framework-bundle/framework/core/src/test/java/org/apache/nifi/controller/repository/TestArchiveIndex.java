@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.nifi.controller.repository.ArchiveIndex.ArchivedFile;
+import org.junit.Test;
+
+public class TestArchiveIndex {
+
+    @Test
+    public void testFilesAreOrderedByAge() {
+        final ArchiveIndex index = new ArchiveIndex(Paths.get("target/container"));
+        index.add("1", "3000-1", 10L, 3000L);
+        index.add("2", "1000-2", 20L, 1000L);
+        index.add("3", "2000-3", 30L, 2000L);
+        index.add("4", "1000-4", 40L, 1000L);
+
+        assertEquals(4, index.getFileCount());
+        assertEquals(100L, index.getTotalBytes());
+        assertEquals(1000L, index.getOldestTimestamp());
+
+        assertEquals("1000-2", index.pollOldest().getName());
+        assertEquals("1000-4", index.pollOldest().getName());
+        assertEquals("2000-3", index.pollOldest().getName());
+        assertEquals("3000-1", index.pollOldest().getName());
+        assertNull(index.pollOldest());
+        assertEquals(0L, index.getTotalBytes());
+        assertEquals(-1L, index.getOldestTimestamp());
+    }
+
+    @Test
+    public void testRemoveAndReplace() {
+        final ArchiveIndex index = new ArchiveIndex(Paths.get("target/container"));
+        index.add("1", "1000-1", 10L, 1000L);
+        index.add("1", "2000-2", 20L, 2000L);
+
+        // adding the same file again replaces it
+        index.add("1", "1000-1", 15L, 1000L);
+        assertEquals(2, index.getFileCount());
+        assertEquals(35L, index.getTotalBytes());
+
+        assertTrue(index.remove("1", "1000-1"));
+        assertFalse(index.remove("1", "1000-1"));
+        assertFalse(index.remove("2", "2000-2"));
+        assertEquals(1, index.getFileCount());
+        assertEquals(20L, index.getTotalBytes());
+
+        final ArchivedFile oldest = index.peekOldest();
+        assertEquals(2000L, oldest.getTimestamp());
+        final Path expectedPath = Paths.get("target/container", "1", FileSystemRepository.ARCHIVE_DIR_NAME, "2000-2");
+        assertEquals(expectedPath, index.getPath(oldest));
+    }
+
+    @Test
+    public void testWriteAndRestore() throws IOException {
+        final Path containerPath = Paths.get("target/archive-index");
+        Files.createDirectories(containerPath);
+        final Path indexFile = containerPath.resolve(FileSystemRepository.ARCHIVE_INDEX_FILENAME);
+        Files.deleteIfExists(indexFile);
+
+        final ArchiveIndex index = new ArchiveIndex(containerPath);
+        assertFalse(index.restore(indexFile));
+
+        index.add("1", "2000-1", 10L, 2000L);
+        index.add("2", "1000-2", 20L, 1000L);
+        index.write(indexFile);
+
+        final ArchiveIndex restored = new ArchiveIndex(containerPath);
+        restored.add("3", "500-3", 30L, 500L);
+        assertTrue(restored.restore(indexFile));
+        assertFalse(restored.isComplete());
+        assertEquals(2, restored.getFileCount());
+        assertEquals(30L, restored.getTotalBytes());
+        assertEquals("1000-2", restored.pollOldest().getName());
+        assertEquals("2000-1", restored.pollOldest().getName());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.junit.Test;
+
+public class TestAttributeMap {
+
+    @Test
+    public void testPlusAndMinus() {
+        final AttributeMap empty = AttributeMap.EMPTY;
+        final AttributeMap one = empty.plus("a", "1");
+        final AttributeMap two = one.plus("b", "2");
+
+        assertTrue(empty.isEmpty());
+        assertEquals(1, one.size());
+        assertEquals(2, two.size());
+        assertEquals("1", two.get("a"));
+        assertEquals("2", two.get("b"));
+        assertNull(one.get("b"));
+
+        final AttributeMap replaced = two.plus("a", "3");
+        assertEquals(2, replaced.size());
+        assertEquals("3", replaced.get("a"));
+        assertEquals("1", two.get("a"));
+
+        assertSame(two, two.plus("a", "1"));
+        assertSame(two, two.minus("c"));
+        assertEquals(one, two.minus("b"));
+        assertSame(AttributeMap.EMPTY, one.minus("a"));
+    }
+
+    @Test
+    public void testCollidingHashCodes() {
+        // "Aa" and "BB" have the same hash code, as do all strings built by concatenating them
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            final StringBuilder sb = new StringBuilder();
+            for (int bit = 0; bit < 4; bit++) {
+                sb.append((i & (1 << bit)) == 0 ? "Aa" : "BB");
+            }
+            keys.add(sb.toString());
+        }
+
+        AttributeMap map = AttributeMap.EMPTY.plus("other", "value");
+        for (final String key : keys) {
+            map = map.plus(key, key.toLowerCase());
+        }
+        assertEquals(keys.size() + 1, map.size());
+        for (final String key : keys) {
+            assertEquals(key.toLowerCase(), map.get(key));
+        }
+
+        for (final String key : keys) {
+            map = map.minus(key);
+            assertNull(map.get(key));
+        }
+        assertEquals(1, map.size());
+        assertEquals("value", map.get("other"));
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        final Random random = new Random(23L);
+        final Map<String, String> expected = new HashMap<>();
+        AttributeMap map = AttributeMap.EMPTY;
+
+        for (int i = 0; i < 20000; i++) {
+            final String key = "key" + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                final String value = "value" + i;
+                expected.put(key, value);
+                map = map.plus(key, value);
+            }
+
+            if (i % 1000 == 0) {
+                assertEquals(expected, map);
+                assertEquals(map, expected);
+                assertEquals(expected.hashCode(), map.hashCode());
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, new HashMap<>(map));
+    }
+
+    @Test
+    public void testCoreAttributeKeysAreInterned() {
+        final String key = new String(CoreAttributes.FILENAME.key());
+        assertSame(CoreAttributes.FILENAME.key(), AttributeMap.internKey(key));
+
+        final String other = new String("not.a.core.attribute");
+        assertSame(AttributeMap.internKey(other), AttributeMap.internKey(new String("not.a.core.attribute")));
+    }
+
+    @Test
+    public void testValuesAreDeduplicated() {
+        final FlowFileRecord first = new StandardFlowFileRecord.Builder()
+                .addAttribute(CoreAttributes.UUID.key(), new String("0b5a4c0e-7f59-4cf3-9c5e-0d6a1b2c3d4e"))
+                .addAttribute("mime.type", new String("application/json"))
+                .build();
+        final FlowFileRecord second = new StandardFlowFileRecord.Builder()
+                .addAttribute(CoreAttributes.UUID.key(), new String("0b5a4c0e-7f59-4cf3-9c5e-0d6a1b2c3d4e"))
+                .addAttribute("mime.type", new String("application/json"))
+                .build();
+
+        assertSame(first.getAttribute("mime.type"), second.getAttribute("mime.type"));
+        // UUIDs are unique, so they are never worth keeping in the table
+        assertFalse(first.getAttribute(CoreAttributes.UUID.key()) == second.getAttribute(CoreAttributes.UUID.key()));
+
+        final StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longValue.append('x');
+        }
+        assertFalse(AttributeMap.internValue("a", longValue.toString()) == AttributeMap.internValue("a", longValue.toString()));
+    }
+
+    @Test
+    public void testEstimatedHeapSize() {
+        final StandardFlowFileRecord.Builder builder = new StandardFlowFileRecord.Builder()
+                .addAttribute(CoreAttributes.UUID.key(), "0b5a4c0e-7f59-4cf3-9c5e-0d6a1b2c3d4e")
+                .lineageIdentifiers(Collections.singleton("0b5a4c0e-7f59-4cf3-9c5e-0d6a1b2c3d4e"));
+        final StandardFlowFileRecord small = (StandardFlowFileRecord) builder.build();
+        final StandardFlowFileRecord large = (StandardFlowFileRecord) builder.addAttribute("description", UUID.randomUUID().toString() + UUID.randomUUID()).build();
+
+        assertEquals(0L, AttributeMap.EMPTY.estimateHeapBytes());
+        assertTrue(small.getEstimatedHeapSize() > 0L);
+        // the long value is not deduplicated, so it and its node entry are counted
+        assertTrue(large.getEstimatedHeapSize() > small.getEstimatedHeapSize() + 2 * 72);
+
+        final FlowFileRecord child = new StandardFlowFileRecord.Builder().fromFlowFile(large).build();
+        assertSame(large.getLineageIdentifiers(), child.getLineageIdentifiers());
+    }
+
+    @Test
+    public void testBuilderSharesAttributes() {
+        final FlowFileRecord original = new StandardFlowFileRecord.Builder()
+                .addAttribute(new String(CoreAttributes.FILENAME.key()), "file.txt")
+                .addAttribute("a", "1")
+                .build();
+        final FlowFileRecord copy = new StandardFlowFileRecord.Builder().fromFlowFile(original).build();
+        assertSame(original.getAttributes(), copy.getAttributes());
+
+        final FlowFileRecord updated = new StandardFlowFileRecord.Builder().fromFlowFile(original).addAttribute("a", "2").removeAttributes("b").build();
+        assertEquals("1", original.getAttribute("a"));
+        assertEquals("2", updated.getAttribute("a"));
+        assertEquals("file.txt", updated.getAttribute(CoreAttributes.FILENAME.key()));
+
+        for (final String key : updated.getAttributes().keySet()) {
+            if (key.equals(CoreAttributes.FILENAME.key())) {
+                assertSame(CoreAttributes.FILENAME.key(), key);
+            }
+        }
+
+        try {
+            updated.getAttributes().put("c", "3");
+            fail("Attributes should not be modifiable");
+        } catch (final UnsupportedOperationException expected) {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.nifi.controller.repository.FileChannelCache.CachedChannel;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestFileChannelCache {
+
+    private Path directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Paths.get("target/channel-cache");
+        Files.createDirectories(directory);
+    }
+
+    @Test
+    public void testChannelReusedUntilInvalidated() throws IOException {
+        final Path path = Files.write(directory.resolve("reused"), "0123456789".getBytes());
+        final ContentClaim claim = Mockito.mock(ContentClaim.class);
+        final FileChannelCache cache = new FileChannelCache(2);
+
+        final CachedChannel first = cache.acquire(claim, path);
+        first.close();
+        final CachedChannel second = cache.acquire(claim, path);
+        assertSame(first, second);
+        assertEquals(1L, cache.getHitCount());
+
+        cache.invalidate(claim);
+        assertEquals(0, cache.size());
+
+        // the reader still holds the channel after it is invalidated
+        assertEquals(10L, second.getChannel().size());
+        second.close();
+    }
+
+    @Test
+    public void testChannelNotCachedWhenInvalidatedWhileOpening() throws Exception {
+        final FileChannelCache cache = new FileChannelCache(16);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 500; i++) {
+                final Path path = Files.write(directory.resolve("raced-" + i), "0123456789".getBytes());
+                final ContentClaim claim = Mockito.mock(ContentClaim.class);
+                final CountDownLatch start = new CountDownLatch(1);
+
+                final Future<Void> reader = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        try (final CachedChannel channel = cache.acquire(claim, path)) {
+                            channel.getChannel().size();
+                        } catch (final NoSuchFileException nsfe) {
+                            // the file was deleted before it was opened
+                        }
+                        return null;
+                    }
+                });
+
+                final Future<Void> remover = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        cache.invalidate(claim);
+                        Files.delete(path);
+                        return null;
+                    }
+                });
+
+                start.countDown();
+                reader.get();
+                remover.get();
+
+                // whichever way the race went, no channel may be left cached for the deleted file
+                assertEquals(0, cache.size());
+            }
+        } finally {
+            executor.shutdownNow();
+            cache.clear();
+        }
+    }
+}
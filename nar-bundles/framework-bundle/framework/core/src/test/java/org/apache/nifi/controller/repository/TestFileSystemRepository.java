@@ -22,16 +22,22 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
@@ -204,6 +210,105 @@ public class TestFileSystemRepository {
         assertTrue(Arrays.equals(doubleExpected, Files.readAllBytes(outPath)));
     }
 
+    @Test
+    public void testExportRegionToFile() throws IOException {
+        final ContentClaim claim = repository.create(true);
+        try (final OutputStream out = repository.write(claim)) {
+            out.write("0123456789".getBytes());
+        }
+
+        final Path outPath = new File("target/testExportRegionToFile").toPath();
+        Files.write(outPath, "content that is longer than the region".getBytes());
+
+        assertEquals(4L, repository.exportTo(claim, outPath, false, 3L, 4L));
+        assertEquals("3456", new String(Files.readAllBytes(outPath)));
+
+        // a length that runs past the end of the claim is truncated
+        assertEquals(2L, repository.exportTo(claim, outPath, true, 8L, 100L));
+        assertEquals("345689", new String(Files.readAllBytes(outPath)));
+    }
+
+    @Test
+    public void testExportToChannel() throws IOException {
+        final byte[] content = new byte[1024 * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        final ContentClaim claim = repository.create(true);
+        try (final OutputStream out = repository.write(claim)) {
+            out.write(content);
+        }
+
+        final Path outPath = new File("target/testExportToChannel").toPath();
+        try (final FileChannel channel = FileChannel.open(outPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            assertEquals(content.length - 100, repository.exportTo(claim, channel, 100L, content.length));
+        }
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 100, content.length), Files.readAllBytes(outPath)));
+
+        // a non-blocking destination accepts only what it has room for, and the caller continues from there
+        final Pipe pipe = Pipe.open();
+        try {
+            pipe.sink().configureBlocking(false);
+            pipe.source().configureBlocking(false);
+
+            final ByteArrayOutputStream received = new ByteArrayOutputStream();
+            final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+            long offset = 0L;
+            boolean partial = false;
+            while (offset < content.length) {
+                final long transferred = repository.exportTo(claim, pipe.sink(), offset, content.length - offset);
+                offset += transferred;
+                partial = partial || offset < content.length;
+
+                int len;
+                while ((len = pipe.source().read(readBuffer)) > 0) {
+                    received.write(readBuffer.array(), 0, len);
+                    readBuffer.clear();
+                }
+            }
+
+            assertTrue(partial);
+            assertTrue(Arrays.equals(content, received.toByteArray()));
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    @Test
+    public void testCloneSharesContentUntilWritten() throws IOException {
+        final ContentClaim original = repository.create(true);
+        try (final OutputStream out = repository.write(original)) {
+            out.write("original".getBytes());
+        }
+
+        final ContentClaim clone = repository.clone(original, false);
+        assertFalse(original.equals(clone));
+        assertEquals(1, repository.getClaimantCount(clone));
+        assertTrue(Files.isSameFile(getPath(original), getPath(clone)));
+        assertEquals("original", readContent(clone));
+
+        // writing to the clone must not change the original
+        try (final OutputStream out = repository.write(clone)) {
+            out.write("changed".getBytes());
+        }
+        assertFalse(Files.isSameFile(getPath(original), getPath(clone)));
+        assertEquals("original", readContent(original));
+        assertEquals("changed", readContent(clone));
+
+        // nor must appending to the original change a clone
+        final ContentClaim secondClone = repository.clone(original, false);
+        repository.importFrom(new ByteArrayInputStream(" appended".getBytes()), original, true);
+        assertEquals("original appended", readContent(original));
+        assertEquals("original", readContent(secondClone));
+
+        // and removing the original leaves the clone's content in place
+        final ContentClaim thirdClone = repository.clone(original, false);
+        repository.remove(original);
+        assertEquals("original appended", readContent(thirdClone));
+    }
+
     @Test
     public void testSize() throws IOException {
         final ContentClaim claim = repository.create(true);
@@ -301,6 +406,224 @@ public class TestFileSystemRepository {
         testMerge(null, null, null);
     }
 
+    @Test
+    public void testReadAtOffset() throws IOException {
+        testReadAtOffset(repository);
+    }
+
+    @Test
+    public void testReadAtOffsetWithChannelReads() throws IOException {
+        final FileSystemRepository channelRepository = createChannelReadRepository();
+        testReadAtOffset(channelRepository);
+        assertTrue(channelRepository.getChannelCacheHitCount() > 0L);
+    }
+
+    @Test
+    public void testRemoveClaimWithCachedChannel() throws IOException {
+        final FileSystemRepository channelRepository = createChannelReadRepository();
+        final ContentClaim claim = channelRepository.create(true);
+        try (final OutputStream out = channelRepository.write(claim)) {
+            out.write("0123456789".getBytes());
+        }
+
+        try (final InputStream in = channelRepository.read(claim, 5)) {
+            assertEquals("56789", new String(readFully(in, 10)));
+        }
+
+        final Path claimPath = getPath(claim);
+        assertTrue(Files.exists(claimPath));
+        channelRepository.decrementClaimantCount(claim);
+        assertTrue(channelRepository.remove(claim));
+        assertFalse(Files.exists(claimPath));
+    }
+
+    @Test
+    public void testReadBufferMapsLargeRegions() throws IOException {
+        final FileSystemRepository channelRepository = createChannelReadRepository();
+        final byte[] content = new byte[FileSystemRepository.MAPPED_READ_THRESHOLD * 2];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        final ContentClaim claim = channelRepository.create(true);
+        try (final OutputStream out = channelRepository.write(claim)) {
+            out.write(content);
+        }
+
+        final int offset = 1000;
+        final ByteBuffer buffer = channelRepository.readBuffer(claim, offset, FileSystemRepository.MAPPED_READ_THRESHOLD);
+        assertTrue(buffer.isDirect());
+        assertEquals(FileSystemRepository.MAPPED_READ_THRESHOLD, buffer.remaining());
+        for (int i = 0; i < buffer.remaining(); i++) {
+            assertEquals(content[offset + i], buffer.get(i));
+        }
+
+        // a region that runs past the end of the claim is truncated
+        final ByteBuffer tail = channelRepository.readBuffer(claim, content.length - 10, 100);
+        assertEquals(10, tail.remaining());
+        assertEquals(content[content.length - 1], tail.get(9));
+    }
+
+    private void testReadAtOffset(final FileSystemRepository repo) throws IOException {
+        final ContentClaim claim = repo.create(true);
+        try (final OutputStream out = repo.write(claim)) {
+            out.write("0123456789".getBytes());
+        }
+
+        // streams at different offsets of the same claim must not interfere with one another
+        try (final InputStream first = repo.read(claim, 2);
+                final InputStream second = repo.read(claim, 7)) {
+            assertEquals('2', first.read());
+            assertEquals("789", new String(readFully(second, 10)));
+            assertEquals("3456789", new String(readFully(first, 10)));
+        }
+
+        try (final InputStream in = repo.read(claim, 10)) {
+            assertEquals(-1, in.read());
+        }
+
+        try (final InputStream in = repo.read(claim, 11)) {
+            fail("Expected EOFException when reading beyond the end of the claim");
+        } catch (final EOFException expected) {
+        }
+
+        final ByteBuffer buffer = repo.readBuffer(claim, 3, 4);
+        assertTrue(buffer.isReadOnly());
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertEquals("3456", new String(bytes));
+    }
+
+    @Test
+    public void testWritesAreMeteredPerContainer() throws IOException {
+        final ContentClaim claim = repository.create(true);
+        final ContainerMetrics metrics = repository.getContainerMetrics().get(claim.getContainer());
+        final long bytesBefore = metrics.getBytesWritten();
+        final long writesBefore = metrics.getWriteCount();
+
+        final OutputStream out = repository.write(claim);
+        for (final byte b : "0123456789".getBytes()) {
+            out.write(b);
+        }
+        assertEquals(1, metrics.getActiveWrites());
+        out.close();
+        out.close();
+        assertEquals(0, metrics.getActiveWrites());
+
+        repository.importFrom(new ByteArrayInputStream("abcde".getBytes()), claim, true);
+        assertEquals(bytesBefore + 15L, metrics.getBytesWritten());
+        assertEquals(0, metrics.getActiveWrites());
+
+        // each stream is recorded once, when it is closed, however many writes were made to it
+        assertEquals(writesBefore + 2L, metrics.getWriteCount());
+    }
+
+    @Test
+    public void testExpiredArchiveIsDestroyed() throws IOException, InterruptedException {
+        // archived content left over from a previous run must be indexed when the repository starts
+        final Path archiveDir = Paths.get("target/content_repository", "1", FileSystemRepository.ARCHIVE_DIR_NAME);
+        Files.createDirectories(archiveDir);
+        final Path leftOver = archiveDir.resolve("1000-1");
+        Files.write(leftOver, "hello".getBytes());
+
+        final NiFiProperties properties = NiFiProperties.getInstance();
+        properties.setProperty(NiFiProperties.CONTENT_ARCHIVE_ENABLED, "true");
+        properties.setProperty(NiFiProperties.CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE, "99%");
+        properties.setProperty(NiFiProperties.CONTENT_ARCHIVE_MAX_RETENTION_PERIOD, "1 sec");
+        properties.setProperty(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_FREQUENCY, "100 millis");
+        final FileSystemRepository archivingRepository;
+        try {
+            archivingRepository = new FileSystemRepository();
+        } finally {
+            properties.remove(NiFiProperties.CONTENT_ARCHIVE_ENABLED);
+            properties.remove(NiFiProperties.CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE);
+            properties.remove(NiFiProperties.CONTENT_ARCHIVE_MAX_RETENTION_PERIOD);
+            properties.remove(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_FREQUENCY);
+        }
+
+        final StandardContentClaimManager claimManager = new StandardContentClaimManager();
+        archivingRepository.initialize(claimManager);
+
+        final ContentClaim claim = archivingRepository.create(true);
+        try (final OutputStream out = archivingRepository.write(claim)) {
+            out.write("0123456789".getBytes());
+        }
+        final Path claimPath = getPath(claim);
+        final ContainerMetrics metrics = archivingRepository.getContainerMetrics().get(claim.getContainer());
+
+        claimManager.decrementClaimantCount(claim);
+        claimManager.markDestructable(claim);
+
+        // the claim is archived and then destroyed once it is older than the retention period
+        for (int i = 0; i < 100 && (Files.exists(leftOver) || Files.exists(claimPath) || metrics.getArchiveFilesDestroyed() < 2L); i++) {
+            Thread.sleep(100L);
+        }
+
+        assertFalse(Files.exists(leftOver));
+        assertFalse(Files.exists(claimPath));
+        assertFalse(Files.exists(FileSystemRepository.getArchivePath(claimPath)));
+        assertEquals(2L, metrics.getArchiveFilesDestroyed());
+    }
+
+    @Test
+    public void testArchiveIndexIsSavedOnShutdown() throws IOException, InterruptedException {
+        final Path archiveDir = Paths.get("target/content_repository", "1", FileSystemRepository.ARCHIVE_DIR_NAME);
+        Files.createDirectories(archiveDir);
+        Files.write(archiveDir.resolve(System.currentTimeMillis() + "-1"), "hello".getBytes());
+
+        // the first repository has to scan the archive
+        final FileSystemRepository firstRepository = createArchivingRepository();
+        final String containerName = firstRepository.getContainerNames().iterator().next();
+        for (int i = 0; i < 50 && !firstRepository.isArchiveIndexed(containerName); i++) {
+            Thread.sleep(100L);
+        }
+        assertTrue(firstRepository.isArchiveIndexed(containerName));
+
+        final Path indexFile = Paths.get("target/content_repository", FileSystemRepository.ARCHIVE_INDEX_FILENAME);
+        firstRepository.shutdown();
+        assertTrue(Files.exists(indexFile));
+
+        // the second restores the index instead, so it doesn't see a file that was archived while it was shut down
+        Files.write(archiveDir.resolve(System.currentTimeMillis() + "-2"), "hello".getBytes());
+        final FileSystemRepository secondRepository = createArchivingRepository();
+        assertFalse(Files.exists(indexFile));
+        assertTrue(secondRepository.isArchiveIndexed(containerName));
+        final ContainerMetrics secondMetrics = secondRepository.getContainerMetrics().get(containerName);
+        for (int i = 0; i < 50 && secondMetrics.getArchivedFileCount() == 0; i++) {
+            Thread.sleep(100L);
+        }
+        assertEquals(1, secondMetrics.getArchivedFileCount());
+        secondRepository.shutdown();
+    }
+
+    private FileSystemRepository createArchivingRepository() throws IOException {
+        final NiFiProperties properties = NiFiProperties.getInstance();
+        properties.setProperty(NiFiProperties.CONTENT_ARCHIVE_ENABLED, "true");
+        properties.setProperty(NiFiProperties.CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE, "99%");
+        properties.setProperty(NiFiProperties.CONTENT_ARCHIVE_MAX_RETENTION_PERIOD, "12 hours");
+        try {
+            final FileSystemRepository archivingRepository = new FileSystemRepository();
+            archivingRepository.initialize(new StandardContentClaimManager());
+            return archivingRepository;
+        } finally {
+            properties.remove(NiFiProperties.CONTENT_ARCHIVE_ENABLED);
+            properties.remove(NiFiProperties.CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE);
+            properties.remove(NiFiProperties.CONTENT_ARCHIVE_MAX_RETENTION_PERIOD);
+        }
+    }
+
+    private FileSystemRepository createChannelReadRepository() throws IOException {
+        final NiFiProperties properties = NiFiProperties.getInstance();
+        properties.setProperty(NiFiProperties.CONTENT_REPOSITORY_READ_MODE, FileSystemRepository.READ_MODE_CHANNEL);
+        try {
+            final FileSystemRepository channelRepository = new FileSystemRepository();
+            channelRepository.initialize(new StandardContentClaimManager());
+            return channelRepository;
+        } finally {
+            properties.remove(NiFiProperties.CONTENT_REPOSITORY_READ_MODE);
+        }
+    }
+
     private void testMerge(final String header, final String footer, final String demarcator) throws IOException {
         final int count = 4;
         final String content = "The quick brown fox jumps over the lazy dog";
@@ -339,6 +662,12 @@ public class TestFileSystemRepository {
         assertTrue(Arrays.equals(expected, actual));
     }
 
+    private String readContent(final ContentClaim claim) throws IOException {
+        try (final InputStream in = repository.read(claim)) {
+            return new String(readFully(in, 100));
+        }
+    }
+
     private byte[] readFully(final InputStream inStream, final int size) throws IOException {
         final ByteArrayOutputStream baos = new ByteArrayOutputStream(size);
         int len;
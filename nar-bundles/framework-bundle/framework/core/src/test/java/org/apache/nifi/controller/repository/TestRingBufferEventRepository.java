@@ -99,6 +99,16 @@ public class TestRingBufferEventRepository {
                 return 234782;
             }
 
+            @Override
+            public long getRunQueueWaitNanoseconds() {
+                return 1000L;
+            }
+
+            @Override
+            public long getCpuNanoseconds() {
+                return 200000L;
+            }
+
             @Override
             public int getInvocations() {
                 return 1;
@@ -29,6 +29,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -54,6 +56,7 @@ import org.apache.nifi.controller.repository.claim.ContentClaimManager;
 import org.apache.nifi.controller.repository.claim.StandardContentClaimManager;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.groups.ProcessGroup;
+import org.apache.nifi.io.StreamUtils;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.processor.exception.MissingFlowFileException;
 import org.apache.nifi.processor.exception.ProcessException;
@@ -967,6 +970,11 @@ public class TestStandardProcessSession {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public long exportTo(ContentClaim claim, WritableByteChannel destination, long offset, long length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
         @Override
         public long size(ContentClaim claim) throws IOException {
             return Files.size(getPath(claim));
@@ -985,6 +993,20 @@ public class TestStandardProcessSession {
             }
         }
 
+        @Override
+        public InputStream read(final ContentClaim claim, final long offset) throws IOException {
+            final InputStream in = read(claim);
+            StreamUtils.skip(in, offset);
+            return in;
+        }
+
+        @Override
+        public ByteBuffer readBuffer(final ContentClaim claim, final long offset, final int length) throws IOException {
+            final byte[] content = Files.readAllBytes(getPath(claim));
+            final int start = (int) Math.min(offset, content.length);
+            return ByteBuffer.wrap(content, start, Math.min(length, content.length - start)).slice().asReadOnlyBuffer();
+        }
+
         @Override
         public OutputStream write(ContentClaim claim) throws IOException {
             final Path path = getPath(claim);
@@ -1005,6 +1027,10 @@ public class TestStandardProcessSession {
         public void cleanup() {
         }
 
+        @Override
+        public void shutdown() {
+        }
+
         @Override
         public boolean isAccessible(ContentClaim contentClaim) throws IOException {
             return true;
@@ -180,4 +180,58 @@ public class TestVolatileContentRepository {
 
         assertEquals(-1, in.read());
     }
+
+    @Test
+    public void testOffHeapReadWriteAndRedirect() throws IOException {
+        System.setProperty(NiFiProperties.PROPERTIES_FILE_PATH, "src/test/resources/conf/nifi.properties");
+        final NiFiProperties props = NiFiProperties.getInstance();
+        props.setProperty(VolatileContentRepository.MAX_SIZE_PROPERTY, "1 MB");
+        props.setProperty(VolatileContentRepository.OFF_HEAP_PROPERTY, "true");
+
+        try {
+            final VolatileContentRepository contentRepo = new VolatileContentRepository();
+            contentRepo.initialize(claimManager);
+
+            // spans several blocks and ends part way through one
+            final byte[] data = new byte[100 * 1024 + 7];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (i % 251);
+            }
+
+            final ContentClaim claim = contentRepo.create(true);
+            try (final OutputStream out = contentRepo.write(claim)) {
+                out.write(data, 0, 10);
+                out.write(data, 10, data.length - 10);
+            }
+            assertEquals(data.length, contentRepo.size(claim));
+
+            final ByteArrayOutputStream readBack = new ByteArrayOutputStream();
+            try (final InputStream in = contentRepo.read(claim)) {
+                final byte[] buffer = new byte[1000];
+                int len;
+                while ((len = in.read(buffer)) > 0) {
+                    readBack.write(buffer, 0, len);
+                }
+            }
+            Assert.assertArrayEquals(data, readBack.toByteArray());
+
+            // fill the rest of the repository so that the next write overflows to the backup repository
+            final ContentRepository mockRepo = Mockito.mock(ContentRepository.class);
+            contentRepo.setBackupRepository(mockRepo);
+            Mockito.when(mockRepo.create(Matchers.anyBoolean())).thenReturn(claimManager.newContentClaim("container", "section", "1000", true));
+            final ByteArrayOutputStream overflowStream = new ByteArrayOutputStream();
+            Mockito.when(mockRepo.write(Matchers.any(ContentClaim.class))).thenReturn(overflowStream);
+
+            final ContentClaim overflowClaim = contentRepo.create(true);
+            final OutputStream out = contentRepo.write(overflowClaim);
+            for (int i = 0; i < 11; i++) {
+                out.write(data);
+            }
+            assertEquals(11 * data.length, overflowStream.size());
+            final byte[] overflowed = overflowStream.toByteArray();
+            Assert.assertArrayEquals(data, Arrays.copyOfRange(overflowed, 10 * data.length, 11 * data.length));
+        } finally {
+            props.remove(VolatileContentRepository.OFF_HEAP_PROPERTY);
+        }
+    }
 }
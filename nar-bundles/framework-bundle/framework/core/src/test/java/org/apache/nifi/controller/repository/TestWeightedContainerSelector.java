@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestWeightedContainerSelector {
+
+    private static final long CAPACITY = 1000L;
+
+    private ContainerMetrics createMetrics(final String name, final long latencyNanos, final long usableSpace) {
+        final ContainerMetrics metrics = new ContainerMetrics(name);
+        metrics.recordWrite(100L, latencyNanos);
+        metrics.update(usableSpace, CAPACITY);
+        return metrics;
+    }
+
+    private int[] countSelections(final List<ContainerMetrics> candidates, final int iterations) {
+        final WeightedContainerSelector selector = new WeightedContainerSelector();
+        final Random random = new Random(42L);
+        final int[] counts = new int[candidates.size()];
+        for (int i = 0; i < iterations; i++) {
+            counts[candidates.indexOf(selector.select(candidates, random))]++;
+        }
+        return counts;
+    }
+
+    @Test
+    public void testSlowContainerIsSelectedLess() {
+        final ContainerMetrics fast = createMetrics("fast", 1000L, CAPACITY);
+        final ContainerMetrics slow = createMetrics("slow", 10000L, CAPACITY);
+
+        final int[] counts = countSelections(Arrays.asList(fast, slow), 10000);
+        assertTrue(counts[0] > 8 * counts[1]);
+        assertTrue(counts[1] > 0);
+    }
+
+    @Test
+    public void testLatencyIsPerByte() {
+        final ContainerMetrics metrics = new ContainerMetrics("a");
+        metrics.recordWrite(1000L, 2000L);
+        metrics.recordWrite(10L, 20L);
+        metrics.recordWrite(0L, 0L);
+        metrics.update(CAPACITY, CAPACITY);
+        assertEquals(2D, metrics.getWriteNanosPerByte(), 0.0001D);
+    }
+
+    @Test
+    public void testLargeWritesAreNotMistakenForSlowOnes() {
+        final ContainerMetrics large = new ContainerMetrics("large");
+        large.recordWrite(1000000L, 1000000L);
+        large.update(CAPACITY, CAPACITY);
+        final ContainerMetrics small = new ContainerMetrics("small");
+        small.recordWrite(100L, 100L);
+        small.update(CAPACITY, CAPACITY);
+
+        final int[] counts = countSelections(Arrays.asList(large, small), 10000);
+        assertTrue(counts[0] > 4000);
+        assertTrue(counts[1] > 4000);
+    }
+
+    @Test
+    public void testBusyContainerIsSelectedLess() {
+        final ContainerMetrics idle = createMetrics("idle", 1000L, CAPACITY);
+        final ContainerMetrics busy = createMetrics("busy", 1000L, CAPACITY);
+        for (int i = 0; i < 4; i++) {
+            busy.writeStarted();
+        }
+
+        final int[] counts = countSelections(Arrays.asList(idle, busy), 10000);
+        assertTrue(counts[0] > 4 * counts[1]);
+        assertTrue(counts[1] > 0);
+    }
+
+    @Test
+    public void testFullContainerIsNeverSelected() {
+        final ContainerMetrics empty = createMetrics("empty", 1000L, CAPACITY);
+        final ContainerMetrics half = createMetrics("half", 1000L, CAPACITY / 2);
+        final ContainerMetrics full = createMetrics("full", 1000L, 0L);
+
+        final int[] counts = countSelections(Arrays.asList(empty, half, full), 10000);
+        assertEquals(0, counts[2]);
+        assertTrue(counts[0] > counts[1]);
+        assertTrue(counts[1] > 0);
+    }
+
+    @Test
+    public void testUnmeasuredContainersAreSelected() {
+        final List<ContainerMetrics> candidates = Arrays.asList(new ContainerMetrics("a"), new ContainerMetrics("b"));
+        final int[] counts = countSelections(candidates, 1000);
+        assertTrue(counts[0] > 0);
+        assertTrue(counts[1] > 0);
+    }
+
+    @Test
+    public void testRoundRobin() {
+        final ContainerMetrics a = new ContainerMetrics("a");
+        final ContainerMetrics b = new ContainerMetrics("b");
+        final List<ContainerMetrics> candidates = Arrays.asList(a, b);
+        final RoundRobinContainerSelector selector = new RoundRobinContainerSelector();
+        assertSame(a, selector.select(candidates, 0L));
+        assertSame(b, selector.select(candidates, 1L));
+        assertSame(a, selector.select(candidates, 2L));
+    }
+}
@@ -20,27 +20,41 @@ import org.apache.nifi.controller.repository.WriteAheadFlowFileRepository;
 import org.apache.nifi.controller.repository.StandardRepositoryRecord;
 import org.apache.nifi.controller.repository.StandardFlowFileRecord;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.nifi.connectable.Connection;
 import org.apache.nifi.controller.FlowFileQueue;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
 import org.apache.nifi.controller.repository.claim.StandardContentClaimManager;
 import org.apache.nifi.file.FileUtils;
+import org.apache.nifi.flowfile.FlowFile;
 
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.wali.MinimalLockingWriteAheadLog;
+import org.wali.SerDe;
+import org.wali.UpdateType;
 
 public class TestWriteAheadFlowFileRepository {
 
@@ -132,4 +146,363 @@ public class TestWriteAheadFlowFileRepository {
         repo2.close();
     }
 
+    @Test
+    public void testRestartWithAttributeChangesAcrossCheckpoint() throws IOException {
+        System.setProperty("nifi.properties.file.path", "src/test/resources/nifi.properties");
+        final Path path = Paths.get("target/test-repo");
+        if (Files.exists(path)) {
+            FileUtils.deleteFile(path.toFile(), true);
+        }
+
+        final WriteAheadFlowFileRepository repo = new WriteAheadFlowFileRepository();
+        repo.initialize(new StandardContentClaimManager());
+
+        final FlowFileQueue queue = Mockito.mock(FlowFileQueue.class);
+        when(queue.getIdentifier()).thenReturn("1234");
+        final List<FlowFileRecord> flowFileCollection = new ArrayList<>();
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                flowFileCollection.add((FlowFileRecord) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(queue).put(any(FlowFileRecord.class));
+
+        final List<FlowFileQueue> queueList = new ArrayList<>();
+        final QueueProvider queueProvider = new QueueProvider() {
+            @Override
+            public Collection<FlowFileQueue> getAllQueues() {
+                return queueList;
+            }
+        };
+        repo.loadFlowFiles(queueProvider, 0L);
+        queueList.add(queue);
+
+        // create several FlowFiles that share attribute names, so that the names are written to the dictionary once
+        final List<RepositoryRecord> records = new ArrayList<>();
+        final List<FlowFileRecord> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final FlowFileRecord flowFile = new StandardFlowFileRecord.Builder()
+                    .id(i)
+                    .entryDate(System.currentTimeMillis())
+                    .addAttribute("filename", "file-" + i)
+                    .addAttribute("path", "/")
+                    .addAttribute("toRemove", "value")
+                    .size(i * 1000L)
+                    .build();
+            flowFiles.add(flowFile);
+
+            final StandardRepositoryRecord record = new StandardRepositoryRecord(null);
+            record.setWorking(flowFile);
+            record.setDestination(queue);
+            records.add(record);
+        }
+        repo.updateRepository(records);
+        repo.checkpoint();
+
+        // after the checkpoint, modify, add, and remove attributes so that only the changes are written to the journal
+        records.clear();
+        for (final FlowFileRecord flowFile : flowFiles) {
+            final Map<String, String> updated = new HashMap<>();
+            updated.put("path", "/updated");
+            updated.put("added", String.valueOf(flowFile.getId()));
+
+            final Set<String> removed = new HashSet<>();
+            removed.add("toRemove");
+
+            final FlowFileRecord updatedFlowFile = new StandardFlowFileRecord.Builder()
+                    .fromFlowFile(flowFile)
+                    .addAttributes(updated)
+                    .removeAttributes(removed)
+                    .build();
+
+            final Map<String, String> changes = new HashMap<>(updated);
+            changes.put("toRemove", null);
+
+            final StandardRepositoryRecord record = new StandardRepositoryRecord(queue, flowFile);
+            record.setWorking(updatedFlowFile, changes);
+            record.setDestination(queue);
+            records.add(record);
+        }
+        repo.updateRepository(records);
+        repo.close();
+
+        final WriteAheadFlowFileRepository repo2 = new WriteAheadFlowFileRepository();
+        repo2.initialize(new StandardContentClaimManager());
+        repo2.loadFlowFiles(queueProvider, 0L);
+
+        assertEquals(5, flowFileCollection.size());
+        for (final FlowFileRecord flowFile : flowFileCollection) {
+            final long id = flowFile.getId();
+            assertEquals("file-" + id, flowFile.getAttribute("filename"));
+            assertEquals("/updated", flowFile.getAttribute("path"));
+            assertEquals(String.valueOf(id), flowFile.getAttribute("added"));
+            assertNull(flowFile.getAttribute("toRemove"));
+            assertEquals(id * 1000L, flowFile.getSize());
+        }
+
+        repo2.close();
+    }
+
+    @Test
+    public void testRecoverVersion6SnapshotAndJournal() throws IOException {
+        final Path path = Paths.get("target/test-repo-v6");
+        if (Files.exists(path)) {
+            FileUtils.deleteFile(path.toFile(), true);
+        }
+
+        final StandardContentClaimManager claimManager = new StandardContentClaimManager();
+        final FlowFileQueue queue1 = Mockito.mock(FlowFileQueue.class);
+        when(queue1.getIdentifier()).thenReturn("1234");
+        final FlowFileQueue queue2 = Mockito.mock(FlowFileQueue.class);
+        when(queue2.getIdentifier()).thenReturn("5678");
+
+        // write a snapshot and a journal in the format that was used before the compact encoding
+        final MinimalLockingWriteAheadLog<RepositoryRecord> v6Wal = new MinimalLockingWriteAheadLog<>(path, 1,
+                new Version6RecordSerde(new WriteAheadFlowFileRepository.WriteAheadRecordSerde(claimManager)), null);
+        v6Wal.recoverRecords();
+
+        final ContentClaim claim = claimManager.newContentClaim("container1", "section1", "claim1", false);
+        final long entryDate = System.currentTimeMillis();
+        final List<RepositoryRecord> records = new ArrayList<>();
+        final FlowFileRecord flowFile1 = createFlowFile(1L, 100L, entryDate, claim, 0L, "filename", "file-1", "path", "/");
+        final FlowFileRecord flowFile2 = createFlowFile(2L, 200L, entryDate, claim, 100L, "filename", "file-2");
+        final FlowFileRecord flowFile3 = createFlowFile(3L, 300L, entryDate, null, 0L, "filename", "file-3");
+        final FlowFileRecord flowFile4 = createFlowFile(4L, 400L, entryDate, null, 0L, "filename", "file-4");
+        records.add(createRecord(flowFile1, queue1));
+        records.add(createRecord(flowFile2, queue1));
+        records.add(createRecord(flowFile3, queue1));
+        records.add(createRecord(flowFile4, queue2));
+        v6Wal.update(records, false);
+
+        final FlowFileRecord swappedOut = createFlowFile(5L, 500L, entryDate, null, 0L, "filename", "file-5");
+        records.clear();
+        records.add(createRecord(swappedOut, queue2));
+        v6Wal.update(records, false);
+        v6Wal.update(Collections.<RepositoryRecord>singleton(new StandardRepositoryRecord(queue2, swappedOut, "swap-file-1")), false);
+        v6Wal.checkpoint();
+
+        // after the snapshot, change attributes of one FlowFile and the size of another, delete a third, swap in the
+        // FlowFile that was swapped out before the snapshot, and swap out another
+        records.clear();
+        final FlowFileRecord updated1 = new StandardFlowFileRecord.Builder().fromFlowFile(flowFile1).addAttribute("path", "/updated").build();
+        final StandardRepositoryRecord update1 = new StandardRepositoryRecord(queue1, flowFile1);
+        update1.setWorking(updated1, "path", "/updated");
+        update1.setDestination(queue1);
+        records.add(update1);
+
+        final FlowFileRecord updated2 = new StandardFlowFileRecord.Builder().fromFlowFile(flowFile2).size(250L).build();
+        final StandardRepositoryRecord update2 = new StandardRepositoryRecord(queue1, flowFile2);
+        update2.setWorking(updated2);
+        update2.setDestination(queue1);
+        records.add(update2);
+
+        final StandardRepositoryRecord delete3 = new StandardRepositoryRecord(queue1, flowFile3);
+        delete3.markForDelete();
+        records.add(delete3);
+
+        final StandardRepositoryRecord swapIn5 = new StandardRepositoryRecord(queue2, swappedOut);
+        swapIn5.setSwapLocation("swap-file-1");
+        swapIn5.setDestination(queue2);
+        records.add(swapIn5);
+        v6Wal.update(records, false);
+
+        v6Wal.update(Collections.<RepositoryRecord>singleton(new StandardRepositoryRecord(queue2, flowFile4, "swap-file-2")), false);
+        v6Wal.shutdown();
+
+        // recover with the current serde
+        final WriteAheadFlowFileRepository.WriteAheadRecordSerde serde = new WriteAheadFlowFileRepository.WriteAheadRecordSerde(claimManager);
+        final Map<String, FlowFileQueue> queueMap = new HashMap<>();
+        queueMap.put("1234", queue1);
+        queueMap.put("5678", queue2);
+        serde.setQueueMap(queueMap);
+
+        final MinimalLockingWriteAheadLog<RepositoryRecord> wal = new MinimalLockingWriteAheadLog<>(path, 1, serde, null);
+        final Map<Long, RepositoryRecord> recovered = new HashMap<>();
+        for (final RepositoryRecord record : wal.recoverRecords()) {
+            recovered.put(record.getCurrent().getId(), record);
+        }
+        assertEquals(Collections.singleton("swap-file-2"), wal.getRecoveredSwapLocations());
+        wal.shutdown();
+
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 5L)), recovered.keySet());
+
+        final RepositoryRecord recovered1 = recovered.get(1L);
+        assertEquals(queue1, recovered1.getOriginalQueue());
+        assertEquals("file-1", recovered1.getCurrent().getAttribute("filename"));
+        assertEquals("/updated", recovered1.getCurrent().getAttribute("path"));
+        assertEquals(100L, recovered1.getCurrent().getSize());
+        assertEquals(entryDate, recovered1.getCurrent().getEntryDate());
+        assertEquals(claim, recovered1.getCurrentClaim());
+        assertEquals(0L, recovered1.getCurrentClaimOffset());
+
+        final RepositoryRecord recovered2 = recovered.get(2L);
+        assertEquals(queue1, recovered2.getOriginalQueue());
+        assertEquals("file-2", recovered2.getCurrent().getAttribute("filename"));
+        assertEquals(250L, recovered2.getCurrent().getSize());
+        assertEquals(claim, recovered2.getCurrentClaim());
+        assertEquals(100L, recovered2.getCurrentClaimOffset());
+
+        final RepositoryRecord recovered5 = recovered.get(5L);
+        assertEquals(queue2, recovered5.getOriginalQueue());
+        assertEquals("file-5", recovered5.getCurrent().getAttribute("filename"));
+        assertEquals(500L, recovered5.getCurrent().getSize());
+        assertEquals("swap-file-1", recovered5.getSwapLocation());
+    }
+
+    private FlowFileRecord createFlowFile(final long id, final long size, final long entryDate, final ContentClaim claim, final long claimOffset, final String... attributes) {
+        final StandardFlowFileRecord.Builder builder = new StandardFlowFileRecord.Builder()
+                .id(id)
+                .size(size)
+                .entryDate(entryDate)
+                .lineageStartDate(entryDate)
+                .lineageIdentifiers(Collections.singleton("lineage-" + id))
+                .contentClaim(claim)
+                .contentClaimOffset(claimOffset);
+        for (int i = 0; i < attributes.length; i += 2) {
+            builder.addAttribute(attributes[i], attributes[i + 1]);
+        }
+        return builder.build();
+    }
+
+    private RepositoryRecord createRecord(final FlowFileRecord flowFile, final FlowFileQueue queue) {
+        final StandardRepositoryRecord record = new StandardRepositoryRecord(null);
+        record.setWorking(flowFile);
+        record.setDestination(queue);
+        return record;
+    }
+
+    /**
+     * Writes records in version 6 of the encoding, which was used before the
+     * compact encoding was introduced, and delegates everything else to the
+     * current serde.
+     */
+    private static class Version6RecordSerde implements SerDe<RepositoryRecord> {
+
+        private final WriteAheadFlowFileRepository.WriteAheadRecordSerde delegate;
+
+        public Version6RecordSerde(final WriteAheadFlowFileRepository.WriteAheadRecordSerde delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void serializeEdit(final RepositoryRecord previousRecordState, final RepositoryRecord record, final DataOutputStream out) throws IOException {
+            serializeEdit(record, out, false);
+        }
+
+        @Override
+        public void serializeRecord(final RepositoryRecord record, final DataOutputStream out) throws IOException {
+            serializeEdit(record, out, true);
+        }
+
+        private void serializeEdit(final RepositoryRecord record, final DataOutputStream out, final boolean forceAttributesWritten) throws IOException {
+            final UpdateType updateType = getUpdateType(record);
+            if (updateType == UpdateType.DELETE) {
+                out.write(WriteAheadFlowFileRepository.WriteAheadRecordSerde.ACTION_DELETE);
+                out.writeLong((Long) getRecordIdentifier(record));
+                serializeContentClaim(record.getCurrentClaim(), record.getCurrentClaimOffset(), out);
+                return;
+            }
+
+            final FlowFileQueue associatedQueue = record.getDestination() == null ? record.getOriginalQueue() : record.getDestination();
+            if (updateType == UpdateType.SWAP_OUT) {
+                out.write(WriteAheadFlowFileRepository.WriteAheadRecordSerde.ACTION_SWAPPED_OUT);
+                out.writeLong((Long) getRecordIdentifier(record));
+                out.writeUTF(associatedQueue.getIdentifier());
+                out.writeUTF(getLocation(record));
+                return;
+            }
+
+            switch (updateType) {
+                case UPDATE:
+                    out.write(WriteAheadFlowFileRepository.WriteAheadRecordSerde.ACTION_UPDATE);
+                    break;
+                case CREATE:
+                    out.write(WriteAheadFlowFileRepository.WriteAheadRecordSerde.ACTION_CREATE);
+                    break;
+                case SWAP_IN:
+                    out.write(WriteAheadFlowFileRepository.WriteAheadRecordSerde.ACTION_SWAPPED_IN);
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+
+            final FlowFile flowFile = record.getCurrent();
+            out.writeLong(flowFile.getId());
+            out.writeLong(flowFile.getEntryDate());
+            out.writeInt(flowFile.getLineageIdentifiers().size());
+            for (final String lineageId : flowFile.getLineageIdentifiers()) {
+                out.writeUTF(lineageId);
+            }
+            out.writeLong(flowFile.getLineageStartDate());
+            out.writeLong(flowFile.getLastQueueDate() == null ? System.currentTimeMillis() : flowFile.getLastQueueDate());
+            out.writeLong(flowFile.getSize());
+            writeString(associatedQueue.getIdentifier(), out);
+            serializeContentClaim(record.getCurrentClaim(), record.getCurrentClaimOffset(), out);
+
+            if (forceAttributesWritten || record.isAttributesChanged() || updateType == UpdateType.CREATE || updateType == UpdateType.SWAP_IN) {
+                out.write(1);
+                out.writeInt(flowFile.getAttributes().size());
+                for (final Map.Entry<String, String> entry : flowFile.getAttributes().entrySet()) {
+                    writeString(entry.getKey(), out);
+                    writeString(entry.getValue(), out);
+                }
+            } else {
+                out.write(0);
+            }
+
+            if (updateType == UpdateType.SWAP_IN) {
+                out.writeUTF(record.getSwapLocation());
+            }
+        }
+
+        private void serializeContentClaim(final ContentClaim claim, final long offset, final DataOutputStream out) throws IOException {
+            if (claim == null) {
+                out.write(0);
+            } else {
+                out.write(1);
+                writeString(claim.getId(), out);
+                writeString(claim.getContainer(), out);
+                writeString(claim.getSection(), out);
+                out.writeLong(offset);
+                out.writeBoolean(claim.isLossTolerant());
+            }
+        }
+
+        private void writeString(final String toWrite, final DataOutputStream out) throws IOException {
+            final byte[] bytes = toWrite.getBytes("UTF-8");
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public RepositoryRecord deserializeEdit(final DataInputStream in, final Map<Object, RepositoryRecord> currentRecordStates, final int version) throws IOException {
+            return delegate.deserializeEdit(in, currentRecordStates, version);
+        }
+
+        @Override
+        public RepositoryRecord deserializeRecord(final DataInputStream in, final int version) throws IOException {
+            return delegate.deserializeRecord(in, version);
+        }
+
+        @Override
+        public Object getRecordIdentifier(final RepositoryRecord record) {
+            return delegate.getRecordIdentifier(record);
+        }
+
+        @Override
+        public UpdateType getUpdateType(final RepositoryRecord record) {
+            return delegate.getUpdateType(record);
+        }
+
+        @Override
+        public String getLocation(final RepositoryRecord record) {
+            return delegate.getLocation(record);
+        }
+
+        @Override
+        public int getVersion() {
+            return 6;
+        }
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.controller.FlowFileQueue;
+import org.apache.nifi.controller.repository.WriteAheadFlowFileRepository.WriteAheadRecordSerde;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.StandardContentClaimManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of writing a journal of FlowFile Repository edits and of
+ * recovering FlowFiles from that journal. Each FlowFile is created with the
+ * given number of attributes and then updated once, changing a single
+ * attribute, which is the typical pattern for a FlowFile that passes through a
+ * Processor such as UpdateAttribute. The number of bytes written per edit is
+ * printed when the benchmark is set up.
+ *
+ * This is not run as part of the build. Build the benchmark harness with
+ * <code>mvn clean test-compile -Pbenchmark</code> and then run
+ * {@link #main(String[])} with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class WriteAheadRecordSerdeBenchmark {
+
+    private static final int NUM_FLOWFILES = 1000;
+    private static final String QUEUE_ID = "4a2b3c4d-0000-1111-2222-333344445555";
+
+    @Param({"5", "20", "50"})
+    private int numAttributes;
+
+    private WriteAheadRecordSerde serde;
+    private List<RepositoryRecord> previousStates;
+    private List<RepositoryRecord> edits;
+    private byte[] journal;
+
+    @Setup
+    public void setup() throws IOException {
+        // a proxy rather than a mock, as mocks capture a stack trace on each invocation, which would dominate the measurement
+        final FlowFileQueue queue = (FlowFileQueue) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{FlowFileQueue.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("getIdentifier")) {
+                            return QUEUE_ID;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        final StandardContentClaimManager claimManager = new StandardContentClaimManager();
+        serde = new WriteAheadRecordSerde(claimManager);
+        serde.setQueueMap(Collections.singletonMap(QUEUE_ID, queue));
+
+        previousStates = new ArrayList<>(NUM_FLOWFILES * 2);
+        edits = new ArrayList<>(NUM_FLOWFILES * 2);
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < NUM_FLOWFILES; i++) {
+            final Map<String, String> attributes = new HashMap<>();
+            for (int j = 0; j < numAttributes; j++) {
+                attributes.put("attribute.name." + j, "value-" + i + "-" + j);
+            }
+
+            final ContentClaim claim = claimManager.newContentClaim("default", String.valueOf(i % 1024), String.valueOf(now + i), false);
+            final FlowFileRecord created = new StandardFlowFileRecord.Builder()
+                    .id(i)
+                    .entryDate(now + i)
+                    .lineageStartDate(now + i)
+                    .lastQueueDate(now + i)
+                    .addAttributes(attributes)
+                    .contentClaim(claim)
+                    .contentClaimOffset(i * 4096L)
+                    .size(4096L)
+                    .build();
+
+            final StandardRepositoryRecord createRecord = new StandardRepositoryRecord(null);
+            createRecord.setWorking(created);
+            createRecord.setDestination(queue);
+            previousStates.add(null);
+            edits.add(createRecord);
+
+            final FlowFileRecord updated = new StandardFlowFileRecord.Builder()
+                    .fromFlowFile(created)
+                    .addAttribute("attribute.name.0", "updated-" + i)
+                    .lastQueueDate(now + i + 1000L)
+                    .build();
+
+            final StandardRepositoryRecord updateRecord = new StandardRepositoryRecord(queue, created);
+            updateRecord.setWorking(updated, "attribute.name.0", "updated-" + i);
+            updateRecord.setDestination(queue);
+            previousStates.add(createRecord);
+            edits.add(updateRecord);
+        }
+
+        journal = writeJournal();
+        System.out.println();
+        System.out.println("Serialization version " + serde.getVersion() + " with " + numAttributes + " attributes: "
+                + journal.length / edits.size() + " bytes per edit");
+    }
+
+    private byte[] writeJournal() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(edits.size() * 64);
+        final DataOutputStream out = new DataOutputStream(baos);
+        for (int i = 0; i < edits.size(); i++) {
+            serde.serializeEdit(previousStates.get(i), edits.get(i), out);
+        }
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writeJournal();
+    }
+
+    @Benchmark
+    public Map<Object, RepositoryRecord> recover() throws IOException {
+        final Map<Object, RepositoryRecord> recordMap = new HashMap<>(NUM_FLOWFILES);
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(journal));
+        for (int i = 0; i < edits.size(); i++) {
+            final RepositoryRecord record = serde.deserializeEdit(in, recordMap, serde.getVersion());
+            recordMap.put(serde.getRecordIdentifier(record), record);
+        }
+        return recordMap;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WriteAheadRecordSerdeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository.claim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestStandardContentClaimManager {
+
+    @Test
+    public void testCountIsSharedByEqualClaims() {
+        final StandardContentClaimManager manager = new StandardContentClaimManager();
+        final ContentClaim first = manager.newContentClaim("container", "section", "1", false);
+        final ContentClaim second = new StandardContentClaim("container", "section", "1", false);
+
+        assertEquals(1, manager.incrementClaimantCount(first, true));
+        assertEquals(2, manager.incrementClaimantCount(second));
+        assertEquals(2, manager.getClaimantCount(second));
+        assertSame(first, manager.newContentClaim("container", "section", "1", false));
+        assertEquals(1, manager.getClaimedCount());
+
+        assertEquals(1, manager.decrementClaimantCount(second));
+        assertEquals(0, manager.decrementClaimantCount(first));
+        assertEquals(-1, manager.decrementClaimantCount(first));
+        assertEquals(0, manager.getClaimedCount());
+    }
+
+    @Test
+    public void testReclaimedClaimIsNotDrained() {
+        final StandardContentClaimManager manager = new StandardContentClaimManager();
+        final ContentClaim reclaimed = manager.newContentClaim("container", "section", "1", false);
+        final ContentClaim destructable = manager.newContentClaim("container", "section", "2", false);
+
+        manager.markDestructable(reclaimed);
+        manager.markDestructable(destructable);
+        manager.markDestructable(destructable);
+        assertEquals(2, manager.getDestructableClaimCount());
+
+        manager.incrementClaimantCount(reclaimed);
+        assertEquals(1, manager.getDestructableClaimCount());
+
+        final List<ContentClaim> drained = new ArrayList<>();
+        manager.drainDestructableClaims(drained, 10, 10, TimeUnit.MILLISECONDS);
+        assertEquals(1, drained.size());
+        assertSame(destructable, drained.get(0));
+        assertEquals(0, manager.getDestructableClaimCount());
+
+        drained.clear();
+        manager.drainDestructableClaims(drained, 10);
+        assertTrue(drained.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        final StandardContentClaimManager manager = new StandardContentClaimManager();
+        final ContentClaim claim = manager.newContentClaim("container", "section", "1", false);
+        manager.incrementClaimantCount(claim, true);
+
+        final int threadCount = 4;
+        final int iterations = 100000;
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            final boolean useCopy = (i % 2 == 0);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final ContentClaim reference = useCopy ? new StandardContentClaim("container", "section", "1", false) : claim;
+                    for (int j = 0; j < iterations; j++) {
+                        manager.incrementClaimantCount(reference);
+                        manager.decrementClaimantCount(reference);
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertEquals(1, manager.getClaimantCount(claim));
+        assertEquals(0, manager.decrementClaimantCount(claim));
+        assertEquals(0, manager.getClaimedCount());
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.connectable.ConnectableType;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.FlowController;
+import org.apache.nifi.controller.FlowFileQueue;
+import org.apache.nifi.controller.ProcessorNode;
+import org.apache.nifi.controller.repository.FlowFileEventRepository;
+import org.apache.nifi.controller.repository.ProcessContext;
+import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.processor.ProcessSessionFactory;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.processor.StandardProcessContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestWorkAwareSchedulingAgent {
+
+    private FlowEngine flowEngine;
+    private ProcessorNode procNode;
+    private ProcessContextFactory contextFactory;
+    private ScheduleState scheduleState;
+    private final AtomicBoolean flowFilesQueued = new AtomicBoolean(false);
+    private final AtomicInteger invocations = new AtomicInteger(0);
+
+    @Before
+    public void setup() throws Exception {
+        flowEngine = new FlowEngine(2, "Test");
+
+        final FlowFileQueue queue = Mockito.mock(FlowFileQueue.class);
+        Mockito.when(queue.isActiveQueueEmpty()).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) {
+                return !flowFilesQueued.get();
+            }
+        });
+
+        final Connection connection = Mockito.mock(Connection.class);
+        Mockito.when(connection.getFlowFileQueue()).thenReturn(queue);
+
+        procNode = Mockito.mock(ProcessorNode.class);
+        Mockito.when(procNode.getConnectableType()).thenReturn(ConnectableType.PROCESSOR);
+        Mockito.when(procNode.getMaxConcurrentTasks()).thenReturn(1);
+        Mockito.when(procNode.getRelationships()).thenReturn(Collections.<Relationship>emptySet());
+        Mockito.when(procNode.getProperties()).thenReturn(Collections.<PropertyDescriptor, String>emptyMap());
+        Mockito.when(procNode.hasIncomingConnection()).thenReturn(true);
+        Mockito.when(procNode.getIncomingConnections()).thenReturn(Collections.singletonList(connection));
+        Mockito.when(procNode.getSchedulingPeriod(TimeUnit.NANOSECONDS)).thenReturn(0L);
+        Mockito.doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) {
+                invocations.incrementAndGet();
+                flowFilesQueued.set(false);
+                return null;
+            }
+        }).when(procNode).onTrigger(Mockito.any(StandardProcessContext.class), Mockito.any(ProcessSessionFactory.class));
+
+        final ProcessContext processContext = Mockito.mock(ProcessContext.class);
+        Mockito.when(processContext.getFlowFileEventRepository()).thenReturn(Mockito.mock(FlowFileEventRepository.class));
+        contextFactory = Mockito.mock(ProcessContextFactory.class);
+        Mockito.when(contextFactory.newProcessContext(Mockito.eq(procNode), Mockito.any(AtomicLong.class))).thenReturn(processContext);
+
+        scheduleState = new ScheduleState();
+        scheduleState.setScheduled(true);
+    }
+
+    @After
+    public void cleanup() {
+        flowEngine.shutdownNow();
+    }
+
+    private static boolean waitUntil(final Condition condition) throws InterruptedException {
+        final long stopTime = System.currentTimeMillis() + 10000L;
+        while (System.currentTimeMillis() < stopTime) {
+            if (condition.isMet()) {
+                return true;
+            }
+            Thread.sleep(5L);
+        }
+        return condition.isMet();
+    }
+
+    private static interface Condition {
+
+        boolean isMet();
+    }
+
+    @Test
+    public void testIdleProcessorParkedUntilEvent() throws InterruptedException {
+        final WorkAwareSchedulingAgent agent = new WorkAwareSchedulingAgent(Mockito.mock(FlowController.class), flowEngine, contextFactory, null, 1L, TimeUnit.HOURS);
+        agent.schedule(procNode, scheduleState);
+
+        assertTrue(waitUntil(new Condition() {
+            @Override
+            public boolean isMet() {
+                return agent.getParkCount() == 1L;
+            }
+        }));
+        assertEquals(0, invocations.get());
+
+        flowFilesQueued.set(true);
+        agent.onEvent(procNode);
+
+        assertTrue(waitUntil(new Condition() {
+            @Override
+            public boolean isMet() {
+                return agent.getParkCount() == 2L;
+            }
+        }));
+        assertEquals(1, invocations.get());
+        assertEquals(1L, agent.getWakeupCount());
+        assertEquals(1L, agent.getWakeLatencyHistogram().getCount());
+        assertEquals(0L, agent.getParkTimeoutCount());
+
+        agent.unschedule(procNode, scheduleState);
+        flowFilesQueued.set(true);
+        agent.onEvent(procNode);
+        Thread.sleep(50L);
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void testWakeCancelsParkTimeout() throws InterruptedException {
+        final WorkAwareSchedulingAgent agent = new WorkAwareSchedulingAgent(Mockito.mock(FlowController.class), flowEngine, contextFactory, null, 1L, TimeUnit.HOURS);
+        agent.schedule(procNode, scheduleState);
+
+        for (int i = 1; i <= 50; i++) {
+            final long parkCount = i;
+            assertTrue(waitUntil(new Condition() {
+                @Override
+                public boolean isMet() {
+                    return agent.getParkCount() == parkCount;
+                }
+            }));
+
+            flowFilesQueued.set(true);
+            agent.onEvent(procNode);
+        }
+
+        assertTrue(waitUntil(new Condition() {
+            @Override
+            public boolean isMet() {
+                return agent.getParkCount() == 51L;
+            }
+        }));
+        assertEquals(50L, agent.getWakeupCount());
+
+        // only the metrics logger and the timeout of the current park are left waiting in the engine
+        assertTrue(flowEngine.getQueue().size() <= 2);
+
+        agent.unschedule(procNode, scheduleState);
+        assertTrue(waitUntil(new Condition() {
+            @Override
+            public boolean isMet() {
+                return flowEngine.getQueue().size() <= 1;
+            }
+        }));
+    }
+
+    @Test
+    public void testParkedProcessorChecksAgainAfterMaxParkDuration() throws InterruptedException {
+        final WorkAwareSchedulingAgent agent = new WorkAwareSchedulingAgent(Mockito.mock(FlowController.class), flowEngine, contextFactory, null, 10L, TimeUnit.MILLISECONDS);
+        agent.schedule(procNode, scheduleState);
+
+        assertTrue(waitUntil(new Condition() {
+            @Override
+            public boolean isMet() {
+                return agent.getParkTimeoutCount() >= 2L;
+            }
+        }));
+        assertEquals(0, invocations.get());
+        assertTrue(agent.getIdleChecksAvoided() > 0L);
+
+        // data that arrives without a signal is found when the park times out
+        flowFilesQueued.set(true);
+        assertTrue(waitUntil(new Condition() {
+            @Override
+            public boolean isMet() {
+                return invocations.get() == 1;
+            }
+        }));
+
+        agent.unschedule(procNode, scheduleState);
+    }
+}
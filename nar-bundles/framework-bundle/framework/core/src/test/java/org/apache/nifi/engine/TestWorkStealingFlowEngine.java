@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestWorkStealingFlowEngine {
+
+    private WorkStealingFlowEngine engine;
+
+    @After
+    public void shutdown() throws InterruptedException {
+        if (engine != null) {
+            engine.shutdownNow();
+            engine.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSubmitAndScheduleWithDelay() throws Exception {
+        engine = new WorkStealingFlowEngine(2, "Test");
+
+        final Future<String> future = engine.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return "hello";
+            }
+        });
+        assertEquals("hello", future.get());
+
+        final long start = System.nanoTime();
+        final ScheduledFuture<Long> delayed = engine.schedule(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return System.nanoTime();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        assertTrue(delayed.get() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test(timeout = 10000)
+    public void testFixedDelayTaskRunsUntilCancelled() throws Exception {
+        engine = new WorkStealingFlowEngine(2, "Test");
+
+        final AtomicInteger runs = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(5);
+        final ScheduledFuture<?> future = engine.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                latch.countDown();
+            }
+        }, 0L, 1L, TimeUnit.MILLISECONDS);
+
+        latch.await();
+        assertTrue(future.cancel(false));
+        Thread.sleep(20L);
+        final int runsAfterCancel = runs.get();
+        Thread.sleep(50L);
+        assertEquals(runsAfterCancel, runs.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testRunQueueWaitIsRecorded() throws Exception {
+        engine = new WorkStealingFlowEngine(1, "Test");
+
+        final CountDownLatch blocking = new CountDownLatch(1);
+        engine.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocking.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        final Future<Long> waitNanos = engine.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return TaskTimer.getRunQueueWaitNanos();
+            }
+        });
+
+        Thread.sleep(50L);
+        blocking.countDown();
+        assertTrue(waitNanos.get() >= TimeUnit.MILLISECONDS.toNanos(40L));
+    }
+
+    @Test(timeout = 20000)
+    public void testSlowShareDoesNotStarveOthers() throws Exception {
+        engine = new WorkStealingFlowEngine(1, "Test");
+
+        // four concurrent tasks of a slow component against a single task of a fast one. Run in
+        // turn, the fast component would get about 1/40th of the thread's time.
+        for (int i = 0; i < 4; i++) {
+            engine.scheduleWithFixedDelay(new SleepingTask("slow", 1, 10L), 0L, 1L, TimeUnit.NANOSECONDS);
+        }
+        engine.scheduleWithFixedDelay(new SleepingTask("fast", 1, 1L), 0L, 1L, TimeUnit.NANOSECONDS);
+
+        Thread.sleep(1000L);
+
+        final long slowRuntime = engine.getVirtualRuntime("slow");
+        final long fastRuntime = engine.getVirtualRuntime("fast");
+        assertTrue(slowRuntime > 0L);
+        assertTrue("fast component only got " + fastRuntime + " nanos vs " + slowRuntime, fastRuntime * 4 > slowRuntime);
+        assertTrue(engine.getDeferralCount() > 0L);
+    }
+
+    @Test(timeout = 10000)
+    public void testIncreaseCorePoolSize() throws Exception {
+        engine = new WorkStealingFlowEngine(1, "Test");
+        engine.setCorePoolSize(3);
+        assertEquals(3, engine.getCorePoolSize());
+
+        final CountDownLatch allRunning = new CountDownLatch(3);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            engine.execute(new Runnable() {
+                @Override
+                public void run() {
+                    allRunning.countDown();
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        assertTrue(allRunning.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdown() throws Exception {
+        engine = new WorkStealingFlowEngine(2, "Test");
+
+        final AtomicLong runs = new AtomicLong(0L);
+        engine.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 0L, 5L, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(20L);
+        engine.shutdown();
+        assertTrue(engine.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(engine.isTerminated());
+
+        final long runsAfterShutdown = runs.get();
+        Thread.sleep(20L);
+        assertEquals(runsAfterShutdown, runs.get());
+
+        try {
+            engine.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            fail("Expected task to be rejected");
+        } catch (final RejectedExecutionException expected) {
+        }
+    }
+
+    private static class SleepingTask implements Runnable, FairShareTask {
+
+        private final String key;
+        private final int weight;
+        private final long sleepMillis;
+
+        public SleepingTask(final String key, final int weight, final long sleepMillis) {
+            this.key = key;
+            this.weight = weight;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public String getFairShareKey() {
+            return key;
+        }
+
+        @Override
+        public int getFairShareWeight() {
+            return weight;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -34,6 +34,7 @@ import org.apache.nifi.processor.io.OutputStreamCallback;
 import org.apache.nifi.remote.StandardVersionNegotiator;
 import org.apache.nifi.remote.VersionNegotiator;
 import org.apache.nifi.remote.exception.ProtocolException;
+import org.apache.nifi.remote.io.socket.ContentTransferOutputStream;
 
 public class StandardFlowFileCodec implements FlowFileCodec {
 	public static final int MAX_NUM_ATTRIBUTES = 25000;
@@ -59,6 +60,12 @@ public class StandardFlowFileCodec implements FlowFileCodec {
         
         out.writeLong(flowFile.getSize());
         
+        if ( encodedOut instanceof ContentTransferOutputStream ) {
+            // hand the content straight to the socket rather than copying it through the stream
+            ((ContentTransferOutputStream) encodedOut).transferContent(flowFile, session);
+            return flowFile;
+        }
+        
         session.read(flowFile, new InputStreamCallback() {
             @Override
             public void process(final InputStream in) throws IOException {
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.remote.io.socket;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+import org.apache.nifi.controller.repository.ChannelTransferSession;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.io.StreamUtils;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.io.InputStreamCallback;
+import org.apache.nifi.remote.protocol.CommunicationsSession;
+
+/**
+ * An OutputStream that is used when sending FlowFiles to a peer over a plain
+ * (non-SSL, uncompressed) SocketChannel. Bytes that are written to the stream
+ * go to the wrapped stream as usual, but FlowFile content can instead be sent
+ * with {@link #transferContent(FlowFile, ProcessSession)}, which hands it from
+ * the Content Repository to the socket without copying it through the JVM.
+ *
+ * The Site-to-Site protocol checksums everything that is sent. The content is
+ * sent in chunks of {@link #CHUNK_SIZE} bytes, and each chunk is checksummed
+ * through a memory-mapped view just before it is handed to the socket, so the
+ * chunk is still in the page cache when it is sent and the content is read
+ * from disk only once. The checksum API takes byte arrays, so the bytes are
+ * still copied onto the heap for the checksum, but only through a small
+ * reused buffer.
+ */
+public class ContentTransferOutputStream extends FilterOutputStream {
+
+    // small enough that a chunk stays in the page cache between being checksummed and being sent
+    static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int CHECKSUM_BUFFER_SIZE = 65536;
+
+    private final Checksum checksum;
+    private final SocketChannelOutput channelOutput;
+    private byte[] checksumBuffer;
+
+    /**
+     * @param out the stream that all bytes other than FlowFile content are
+     * written to. This stream must update the given checksum itself.
+     * @param checksum the checksum to update with FlowFile content
+     * @param channelOutput the output of the socket that the content is sent
+     * to
+     */
+    public ContentTransferOutputStream(final OutputStream out, final Checksum checksum, final SocketChannelOutput channelOutput) {
+        super(out);
+        this.checksum = checksum;
+        this.channelOutput = channelOutput;
+    }
+
+    /**
+     * Wraps the given stream so that FlowFile content can be sent directly to
+     * the socket, if the given session communicates over a plain SocketChannel
+     *
+     * @param out the stream that FlowFiles are encoded to, which updates the
+     * given checksum
+     * @param checksum the checksum of the transaction
+     * @param commsSession the session that the FlowFiles are sent over
+     * @return a ContentTransferOutputStream if the session communicates over a
+     * plain SocketChannel, otherwise the given stream
+     */
+    public static OutputStream wrap(final OutputStream out, final Checksum checksum, final CommunicationsSession commsSession) {
+        if (commsSession instanceof SocketChannelCommunicationsSession) {
+            return new ContentTransferOutputStream(out, checksum, ((SocketChannelCommunicationsSession) commsSession).getOutput());
+        }
+        return out;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    /**
+     * Sends the content of the given FlowFile to the socket, updating the
+     * checksum as it goes. If the session cannot hand content to a channel,
+     * the content is written to the wrapped stream instead.
+     *
+     * @param flowFile the FlowFile whose content should be sent
+     * @param session the session that owns the FlowFile
+     * @return the number of bytes sent
+     * @throws IOException if unable to send the content
+     */
+    public long transferContent(final FlowFile flowFile, final ProcessSession session) throws IOException {
+        if (!(session instanceof ChannelTransferSession)) {
+            session.read(flowFile, new InputStreamCallback() {
+                @Override
+                public void process(final InputStream in) throws IOException {
+                    StreamUtils.copy(in, out);
+                }
+            });
+            return flowFile.getSize();
+        }
+
+        final ChannelTransferSession channelSession = (ChannelTransferSession) session;
+        if (checksumBuffer == null) {
+            checksumBuffer = new byte[CHECKSUM_BUFFER_SIZE];
+        }
+
+        out.flush();
+        final long size = flowFile.getSize();
+        long position = 0L;
+        while (position < size) {
+            final int chunkLength = (int) Math.min(CHUNK_SIZE, size - position);
+            final ByteBuffer chunk = channelSession.readBuffer(flowFile, position, chunkLength);
+            if (chunk.remaining() != chunkLength) {
+                throw new IOException("Could only read " + chunk.remaining() + " of the " + chunkLength + " bytes at offset " + position + " of " + flowFile);
+            }
+
+            while (chunk.hasRemaining()) {
+                final int len = Math.min(checksumBuffer.length, chunk.remaining());
+                chunk.get(checksumBuffer, 0, len);
+                checksum.update(checksumBuffer, 0, len);
+            }
+
+            position += channelOutput.transferFrom(flowFile, channelSession, position, chunkLength);
+        }
+
+        return position;
+    }
+}
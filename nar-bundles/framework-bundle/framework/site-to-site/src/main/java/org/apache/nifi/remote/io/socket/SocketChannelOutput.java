@@ -18,20 +18,35 @@ package org.apache.nifi.remote.io.socket;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.nifi.controller.repository.ChannelTransferSession;
+import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.io.BufferedOutputStream;
 import org.apache.nifi.io.ByteCountingOutputStream;
+import org.apache.nifi.remote.exception.TransmissionDisabledException;
 import org.apache.nifi.remote.io.InterruptableOutputStream;
 import org.apache.nifi.remote.protocol.CommunicationsOutput;
 
 public class SocketChannelOutput implements CommunicationsOutput {
+    // content transfers fill the socket's send buffer on nearly every call, so poll more often than SocketChannelOutputStream does
+    private static final long CHANNEL_FULL_WAIT_NANOS = TimeUnit.NANOSECONDS.convert(1, TimeUnit.MILLISECONDS);
+
+    private final SocketChannel socketChannel;
     private final SocketChannelOutputStream socketOutStream;
     private final ByteCountingOutputStream countingOut;
     private final OutputStream bufferedOut;
     private final InterruptableOutputStream interruptableOut;
+    private final AtomicLong bytesTransferred = new AtomicLong(0L);
+    private volatile int timeout = 30000;
+    private volatile boolean interrupted = false;
     
     public SocketChannelOutput(final SocketChannel socketChannel) throws IOException {
+        this.socketChannel = socketChannel;
         socketOutStream = new SocketChannelOutputStream(socketChannel);
         countingOut = new ByteCountingOutputStream(socketOutStream);
         bufferedOut = new BufferedOutputStream(countingOut);
@@ -45,14 +60,65 @@ public class SocketChannelOutput implements CommunicationsOutput {
     
     public void setTimeout(final int timeout) {
         socketOutStream.setTimeout(timeout);
+        this.timeout = timeout;
     }
     
+    /**
+     * Sends a region of the content of the given FlowFile directly from the
+     * Content Repository to the socket, so that the content is not copied
+     * through the JVM. Anything that has been written to the OutputStream is
+     * flushed first so that the content follows it on the wire.
+     *
+     * @param flowFile the FlowFile whose content should be sent
+     * @param session the session that owns the FlowFile
+     * @param offset the number of bytes into the FlowFile's content at which
+     * to begin
+     * @param length the number of bytes to send
+     * @return the number of bytes sent
+     * @throws IOException if unable to write to the socket, or if the peer
+     * does not accept any data within the communications timeout
+     */
+    public long transferFrom(final FlowFile flowFile, final ChannelTransferSession session, final long offset, final long length) throws IOException {
+        interruptableOut.flush();
+
+        final long end = offset + length;
+        final long timeoutNanos = TimeUnit.NANOSECONDS.convert(timeout, TimeUnit.MILLISECONDS);
+        long maxTime = System.nanoTime() + timeoutNanos;
+        long position = offset;
+        while (position < end) {
+            if (interrupted) {
+                throw new TransmissionDisabledException();
+            }
+
+            final long transferred = session.exportTo(flowFile, socketChannel, position, end - position);
+            if (transferred == 0L) {
+                if (System.nanoTime() > maxTime) {
+                    throw new SocketTimeoutException("Timed out writing to socket");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(CHANNEL_FULL_WAIT_NANOS);
+                } catch (final InterruptedException e) {
+                    socketChannel.close();
+                    Thread.currentThread().interrupt(); // set the interrupt status
+                    throw new ClosedByInterruptException(); // simulate an interrupted blocked write operation
+                }
+            } else {
+                position += transferred;
+                bytesTransferred.addAndGet(transferred);
+                maxTime = System.nanoTime() + timeoutNanos;
+            }
+        }
+
+        return position - offset;
+    }
+
     @Override
     public long getBytesWritten() {
-        return countingOut.getBytesWritten();
+        return countingOut.getBytesWritten() + bytesTransferred.get();
     }
     
     public void interrupt() {
         interruptableOut.interrupt();
+        interrupted = true;
     }
 }
@@ -48,6 +48,7 @@ import org.apache.nifi.remote.exception.HandshakeException;
 import org.apache.nifi.remote.exception.ProtocolException;
 import org.apache.nifi.remote.io.CompressionInputStream;
 import org.apache.nifi.remote.io.CompressionOutputStream;
+import org.apache.nifi.remote.io.socket.ContentTransferOutputStream;
 import org.apache.nifi.remote.protocol.ClientProtocol;
 import org.apache.nifi.remote.protocol.CommunicationsSession;
 import org.apache.nifi.remote.protocol.RequestType;
@@ -389,7 +390,7 @@ public class SocketClientProtocol implements ClientProtocol {
             final CheckedOutputStream checkedOutStream = new CheckedOutputStream(flowFileOutputStream, crc);
             
             final long startNanos = System.nanoTime();
-            flowFile = codec.encode(flowFile, session, checkedOutStream);
+            flowFile = codec.encode(flowFile, session, useCompression ? checkedOutStream : ContentTransferOutputStream.wrap(checkedOutStream, crc, commsSession));
             final long transferNanos = System.nanoTime() - startNanos;
             final long transferMillis = TimeUnit.MILLISECONDS.convert(transferNanos, TimeUnit.NANOSECONDS);
             
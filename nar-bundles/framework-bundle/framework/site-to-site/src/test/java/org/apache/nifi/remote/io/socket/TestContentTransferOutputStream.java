@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.remote.io.socket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.nifi.controller.repository.ChannelTransferSession;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.io.InputStreamCallback;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestContentTransferOutputStream {
+
+    private static byte[] createContent(final int size) {
+        final byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        return content;
+    }
+
+    private static long crc(final byte[] content) {
+        final CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return crc.getValue();
+    }
+
+    private static FlowFile createFlowFile(final byte[] content) {
+        final FlowFile flowFile = Mockito.mock(FlowFile.class);
+        Mockito.when(flowFile.getSize()).thenReturn((long) content.length);
+        return flowFile;
+    }
+
+    @Test
+    public void testContentSentInChunksAndChecksummed() throws Exception {
+        final byte[] content = createContent(ContentTransferOutputStream.CHUNK_SIZE * 2 + 12345);
+        final FlowFile flowFile = createFlowFile(content);
+
+        final ChannelTransferSession session = Mockito.mock(ChannelTransferSession.class);
+        Mockito.when(session.readBuffer(Mockito.eq(flowFile), Mockito.anyLong(), Mockito.anyInt())).thenAnswer(new Answer<ByteBuffer>() {
+            @Override
+            public ByteBuffer answer(final InvocationOnMock invocation) {
+                final int offset = ((Long) invocation.getArguments()[1]).intValue();
+                final int length = (Integer) invocation.getArguments()[2];
+                return ByteBuffer.wrap(content, offset, Math.min(length, content.length - offset)).slice().asReadOnlyBuffer();
+            }
+        });
+        Mockito.when(session.exportTo(Mockito.eq(flowFile), Mockito.any(WritableByteChannel.class), Mockito.anyLong(), Mockito.anyLong())).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(final InvocationOnMock invocation) throws IOException {
+                final WritableByteChannel destination = (WritableByteChannel) invocation.getArguments()[1];
+                final int offset = ((Long) invocation.getArguments()[2]).intValue();
+                final int length = ((Long) invocation.getArguments()[3]).intValue();
+                return (long) destination.write(ByteBuffer.wrap(content, offset, length));
+            }
+        });
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (final ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("localhost", 0));
+            final Future<byte[]> received = executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    try (final SocketChannel accepted = server.accept()) {
+                        final ByteBuffer buffer = ByteBuffer.allocate(content.length + 1);
+                        while (accepted.read(buffer) >= 0) {
+                            // read until the sender closes the connection
+                        }
+                        return Arrays.copyOf(buffer.array(), buffer.position());
+                    }
+                }
+            });
+
+            final CRC32 checksum = new CRC32();
+            try (final SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+                client.configureBlocking(false);
+                final SocketChannelOutput channelOutput = new SocketChannelOutput(client);
+                final ByteArrayOutputStream unused = new ByteArrayOutputStream();
+                final ContentTransferOutputStream out = new ContentTransferOutputStream(new CheckedOutputStream(unused, checksum), checksum, channelOutput);
+
+                assertEquals(content.length, out.transferContent(flowFile, session));
+                assertEquals(0, unused.size());
+            }
+
+            assertEquals(crc(content), checksum.getValue());
+            assertArrayEquals(content, received.get());
+            Mockito.verify(session, Mockito.times(3)).readBuffer(Mockito.eq(flowFile), Mockito.anyLong(), Mockito.anyInt());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testContentStreamedWhenSessionCannotTransfer() throws IOException {
+        final byte[] content = createContent(100000);
+        final FlowFile flowFile = createFlowFile(content);
+
+        final ProcessSession session = Mockito.mock(ProcessSession.class);
+        Mockito.doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws IOException {
+                ((InputStreamCallback) invocation.getArguments()[1]).process(new ByteArrayInputStream(content));
+                return null;
+            }
+        }).when(session).read(Mockito.eq(flowFile), Mockito.any(InputStreamCallback.class));
+
+        final CRC32 checksum = new CRC32();
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        final ContentTransferOutputStream out = new ContentTransferOutputStream(new CheckedOutputStream(sent, checksum), checksum, null);
+
+        assertEquals(content.length, out.transferContent(flowFile, session));
+        assertArrayEquals(content, sent.toByteArray());
+        assertEquals(crc(content), checksum.getValue());
+    }
+}
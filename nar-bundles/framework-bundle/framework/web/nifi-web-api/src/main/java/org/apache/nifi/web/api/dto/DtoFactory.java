@@ -1419,6 +1419,11 @@ public final class DtoFactory {
         dto.setFreeNonHeap(FormatUtils.formatDataSize(sysDiagnostics.getFreeNonHeap()));
         dto.setNonHeapUtilization(FormatUtils.formatUtilization(sysDiagnostics.getNonHeapUtilization()));
 
+        // queued flow files
+        dto.setActiveQueuedFlowFiles(sysDiagnostics.getActiveQueuedFlowFiles());
+        dto.setBytesPerQueuedFlowFile(FormatUtils.formatDataSize(sysDiagnostics.getBytesPerQueuedFlowFile()));
+        dto.setClaimsPendingDestruction(sysDiagnostics.getClaimsPendingDestruction());
+
         // flow file disk usage
         final SystemDiagnosticsDTO.StorageUsageDTO flowFileRepositoryStorageUsageDto = createStorageUsageDTO(null, sysDiagnostics.getFlowFileRepositoryStorageUsage());
         dto.setFlowFileRepositoryStorageUsage(flowFileRepositoryStorageUsageDto);
@@ -1457,6 +1462,11 @@ public final class DtoFactory {
         dto.setTotalSpaceBytes(storageUsage.getTotalSpace());
         dto.setUsedSpaceBytes(storageUsage.getUsedSpace());
         dto.setUtilization(FormatUtils.formatUtilization(storageUsage.getDiskUtilization()));
+        dto.setWriteThroughput(FormatUtils.formatDataSize(storageUsage.getWriteBytesPerSecond()) + "/sec");
+        dto.setWriteNanosPerByte(storageUsage.getWriteNanosPerByte());
+        dto.setArchivedFileCount(storageUsage.getArchivedFileCount());
+        dto.setArchivedSize(FormatUtils.formatDataSize(storageUsage.getArchivedBytes()));
+        dto.setArchiveCleanupRate(FormatUtils.formatCount(storageUsage.getArchiveFilesDestroyedPerSecond()) + " files/sec");
         return dto;
     }
 
@@ -28,6 +28,7 @@ import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.connectable.ConnectableType;
 import org.apache.nifi.connectable.Connection;
 import org.apache.nifi.connectable.Position;
+import org.apache.nifi.controller.ConcurrentFlowFileQueue;
 import org.apache.nifi.controller.FlowController;
 import org.apache.nifi.controller.ProcessorNode;
 import org.apache.nifi.controller.exception.ValidationException;
@@ -319,8 +320,10 @@ public class StandardConnectionDAO extends ComponentDAO implements ConnectionDAO
             relationships.addAll(connectionDTO.getSelectedRelationships());
         }
 
-        // create the connection
-        final Connection connection = flowController.createConnection(connectionDTO.getId(), connectionDTO.getName(), source, destination, relationships);
+        // create the connection, which is only given a First-In-First-Out queue if it is not prioritized
+        final List<String> prioritizers = connectionDTO.getPrioritizers();
+        final boolean prioritized = isNotNull(prioritizers) && !prioritizers.isEmpty();
+        final Connection connection = flowController.createConnection(connectionDTO.getId(), connectionDTO.getName(), source, destination, relationships, prioritized);
 
         // configure the connection
         configureConnection(connection, connectionDTO);
@@ -361,6 +364,13 @@ public class StandardConnectionDAO extends ComponentDAO implements ConnectionDAO
             // validate the incoming request
             final List<String> validationErrors = validateProposedConfiguration(connection.getProcessGroup().getIdentifier(), connectionDTO);
 
+            // a First-In-First-Out queue cannot be prioritized
+            final List<String> prioritizers = connectionDTO.getPrioritizers();
+            if (isNotNull(prioritizers) && !prioritizers.isEmpty() && connection.getFlowFileQueue() instanceof ConcurrentFlowFileQueue) {
+                validationErrors.add("Prioritizers cannot be configured for this connection because it is listed in the "
+                        + "nifi.queue.concurrent.connections property and so uses a First-In-First-Out queue.");
+            }
+
             // ensure there was no validation errors
             if (!validationErrors.isEmpty()) {
                 throw new ValidationException(validationErrors);
@@ -34,6 +34,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.nifi.provenance.lucene.LuceneUtil;
 import org.apache.nifi.provenance.serialization.RecordReader;
 import org.apache.nifi.provenance.serialization.RecordReaders;
 
@@ -54,6 +55,9 @@ public class IndexConfiguration {
 
     private Long maxIndexedId = null;
     private Long minIndexedId = null;
+    // newest event added to each index since startup, and newest event in each index's last commit before startup
+    private final Map<File, Long> newestEventTimes = new HashMap<>();
+    private final Map<File, Long> committedNewestEventTimes = new HashMap<>();
 
     public IndexConfiguration(final RepositoryConfiguration repoConfig) {
         this.repoConfig = repoConfig;
@@ -103,6 +107,9 @@ public class IndexConfiguration {
     public void removeIndexDirectory(final File indexDirectory) {
         lock.lock();
         try {
+            newestEventTimes.remove(indexDirectory);
+            committedNewestEventTimes.remove(indexDirectory);
+
             final Set<File> keysToRemove = new HashSet<>();
             for (final Map.Entry<File, List<File>> entry : indexDirectoryMap.entrySet()) {
                 final List<File> list = entry.getValue();
@@ -122,12 +129,29 @@ public class IndexConfiguration {
     }
 
     public File getWritableIndexDirectory(final File provenanceLogFile) {
+        return getWritableIndexDirectory(provenanceLogFile.getParentFile(), provenanceLogFile, null);
+    }
+
+    /**
+     * Returns the index directory to which events should be written if they
+     * are being indexed as they are written, rather than when a Provenance
+     * Event file is rolled over
+     *
+     * @param storageDirectory the storage directory whose index is desired
+     * @param eventTime the time of the event about to be indexed, used to name
+     * a new index if one has to be created
+     * @return
+     */
+    public File getWritableIndexDirectory(final File storageDirectory, final long eventTime) {
+        return getWritableIndexDirectory(storageDirectory, null, eventTime);
+    }
+
+    private File getWritableIndexDirectory(final File storageDirectory, final File provenanceLogFile, final Long eventTime) {
         lock.lock();
         try {
-            final File storageDirectory = provenanceLogFile.getParentFile();
             List<File> indexDirectories = this.indexDirectoryMap.get(storageDirectory);
             if (indexDirectories == null) {
-                final File newDir = addNewIndex(storageDirectory, provenanceLogFile);
+                final File newDir = addNewIndex(storageDirectory, provenanceLogFile, eventTime);
                 indexDirectories = new ArrayList<>();
                 indexDirectories.add(newDir);
                 indexDirectoryMap.put(storageDirectory, indexDirectories);
@@ -135,7 +159,7 @@ public class IndexConfiguration {
             }
 
             if (indexDirectories.isEmpty()) {
-                final File newDir = addNewIndex(storageDirectory, provenanceLogFile);
+                final File newDir = addNewIndex(storageDirectory, provenanceLogFile, eventTime);
                 indexDirectories.add(newDir);
                 return newDir;
             }
@@ -143,7 +167,7 @@ public class IndexConfiguration {
             final File lastDir = indexDirectories.get(indexDirectories.size() - 1);
             final long size = getSize(lastDir);
             if (size > repoConfig.getDesiredIndexSize()) {
-                final File newDir = addNewIndex(storageDirectory, provenanceLogFile);
+                final File newDir = addNewIndex(storageDirectory, provenanceLogFile, eventTime);
                 indexDirectories.add(newDir);
                 return newDir;
             } else {
@@ -154,12 +178,12 @@ public class IndexConfiguration {
         }
     }
 
-    private File addNewIndex(final File storageDirectory, final File provenanceLogFile) {
+    private File addNewIndex(final File storageDirectory, final File provenanceLogFile, final Long eventTime) {
         // Build the event time of the first record into the index's filename so that we can determine
         // which index files to look at when we perform a search. We use the timestamp of the first record
         // in the Provenance Log file, rather than the current time, because we may perform the Indexing
         // retroactively.
-        Long firstEntryTime = getFirstEntryTime(provenanceLogFile);
+        Long firstEntryTime = (provenanceLogFile == null) ? eventTime : getFirstEntryTime(provenanceLogFile);
         if (firstEntryTime == null) {
             firstEntryTime = System.currentTimeMillis();
         }
@@ -179,7 +203,12 @@ public class IndexConfiguration {
         }
     }
 
-    private long getIndexStartTime(final File indexDir) {
+    /**
+     * @param indexDir
+     * @return the time at which the given index was created, which no event
+     * in it precedes, or -1 if the directory is not an index directory
+     */
+    public long getIndexStartTime(final File indexDir) {
         if (indexDir == null) {
             return -1L;
         }
@@ -352,6 +381,70 @@ public class IndexConfiguration {
         }
     }
 
+    /**
+     * Records that an event with the given time is about to be added to the
+     * given index. Must be called before the event is added, so that no search
+     * can see the event before its time is known.
+     *
+     * @param indexDirectory
+     * @param eventTime
+     * @return the time of the newest event that is known to be in the index
+     */
+    public long updateNewestEventTime(final File indexDirectory, final long eventTime) {
+        lock.lock();
+        try {
+            final Long existing = newestEventTimes.get(indexDirectory);
+            final long newest = (existing == null) ? eventTime : Math.max(existing, eventTime);
+            newestEventTimes.put(indexDirectory, newest);
+            return newest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param indexDirectory
+     * @return the time of the newest event in the given index, or
+     * <code>null</code> if the index has no events. If the index was written
+     * before the time of its newest event was recorded, or that time cannot be
+     * read, {@link Long#MAX_VALUE} is returned, as the index may hold events
+     * from any time.
+     */
+    public Long getNewestEventTime(final File indexDirectory) {
+        lock.lock();
+        try {
+            Long committed = committedNewestEventTimes.get(indexDirectory);
+            if (committed == null) {
+                committed = getCommittedNewestEventTime(indexDirectory);
+                committedNewestEventTimes.put(indexDirectory, committed);
+            }
+
+            final Long added = newestEventTimes.get(indexDirectory);
+            if (added == null) {
+                return committed == Long.MIN_VALUE ? null : committed;
+            }
+            return Math.max(added, committed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Long.MIN_VALUE if nothing was committed to the index before it was first looked at
+    private long getCommittedNewestEventTime(final File indexDirectory) {
+        try {
+            final Map<String, String> commitData = LuceneUtil.getCommitData(indexDirectory);
+            if (commitData == null) {
+                return Long.MIN_VALUE;
+            }
+
+            final String value = commitData.get(LuceneUtil.NEWEST_EVENT_TIME_KEY);
+            return (value == null) ? Long.MAX_VALUE : Long.parseLong(value);
+        } catch (final IOException | NumberFormatException e) {
+            logger.warn("Unable to determine the time of the newest event in Provenance Index {} due to {}", indexDirectory, e.toString());
+            return Long.MAX_VALUE;
+        }
+    }
+
     public void setMaxIdIndexed(final long id) {
         lock.lock();
         try {
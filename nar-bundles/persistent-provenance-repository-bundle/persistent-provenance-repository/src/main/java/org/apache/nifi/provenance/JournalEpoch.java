@@ -0,0 +1,496 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.nifi.io.ByteArrayOutputStream;
+import org.apache.nifi.io.DataOutputStream;
+import org.apache.nifi.provenance.lucene.RealTimeIndexer;
+import org.apache.nifi.provenance.lucene.RealTimeIndexer.PendingEvent;
+import org.apache.nifi.provenance.serialization.RecordWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The set of journals to which Provenance Events are written between two
+ * rollovers.
+ *
+ * Threads registering events never write to a journal themselves. Each
+ * serializes its events and appends them to the lock-free buffer of one
+ * journal, and a dedicated thread for that journal assigns the events their
+ * IDs and writes them out in batches. Because only that thread assigns IDs to
+ * a journal's events, every journal is in order of event ID, as merging the
+ * journals requires.
+ *
+ * At rollover, the repository replaces the current epoch with a new one and
+ * then retires the old one. Retiring waits only until no thread is part way
+ * through appending to the old epoch; threads that find it retired append to
+ * its replacement instead. Once the old journals have been written out, the
+ * new epoch is activated: it names its journals after the next event ID and
+ * starts writing whatever has been appended to it in the meantime.
+ */
+class JournalEpoch {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalEpoch.class);
+
+    static final int MAX_BUFFERED_EVENTS = 10000;
+    private static final int MAX_BATCH_EVENTS = 1000;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+
+    private static final ThreadLocal<ByteArrayOutputStream> serializationBuffer = new ThreadLocal<ByteArrayOutputStream>() {
+        @Override
+        protected ByteArrayOutputStream initialValue() {
+            return new ByteArrayOutputStream(4096);
+        }
+    };
+
+    /**
+     * Notified by the journals' threads of conditions that the repository
+     * must act upon. Must not block, and must not roll the repository over on
+     * the calling thread, as rollover waits for that thread to finish.
+     */
+    interface Listener {
+
+        void onRolloverNeeded();
+
+        void onWriteFailure(File journalFile, IOException ioe);
+    }
+
+    private final RepositoryConfiguration configuration;
+    private final AtomicLong idGenerator;
+    private final RealTimeIndexer realTimeIndexer;
+    private final Listener listener;
+    private final Journal[] journals;
+    private final AtomicBoolean rolloverRequested = new AtomicBoolean(false);
+
+    private volatile boolean retired = false;
+    private volatile boolean draining = false;
+
+    JournalEpoch(final RepositoryConfiguration configuration, final AtomicLong idGenerator, final RealTimeIndexer realTimeIndexer, final Listener listener) {
+        this.configuration = configuration;
+        this.idGenerator = idGenerator;
+        this.realTimeIndexer = realTimeIndexer;
+        this.listener = listener;
+
+        journals = new Journal[configuration.getJournalCount()];
+        for (int i = 0; i < journals.length; i++) {
+            journals[i] = new Journal(i);
+        }
+    }
+
+    /**
+     * Serializes the given events so that they can be appended to a journal
+     *
+     * @param records
+     * @param awaitWrite whether the caller will wait for the events to be
+     * written via {@link Entry#awaitWritten()}
+     * @return
+     * @throws IOException
+     */
+    static Entry serialize(final Iterable<ProvenanceEventRecord> records, final boolean awaitWrite) throws IOException {
+        final ByteArrayOutputStream baos = serializationBuffer.get();
+        baos.reset();
+        final DataOutputStream out = new DataOutputStream(baos);
+
+        final List<ProvenanceEventRecord> recordList = new ArrayList<>();
+        final List<Integer> ends = new ArrayList<>();
+        for (final ProvenanceEventRecord record : records) {
+            StandardRecordWriter.writeRecordFields(out, record);
+            recordList.add(record);
+            ends.add(baos.size());
+        }
+
+        final int[] endOffsets = new int[ends.size()];
+        for (int i = 0; i < endOffsets.length; i++) {
+            endOffsets[i] = ends.get(i);
+        }
+
+        return new Entry(recordList, baos.toByteArray(), endOffsets, awaitWrite);
+    }
+
+    /**
+     * Creates this epoch's journal files, named after the next event ID, and
+     * starts writing the events that have been appended so far
+     *
+     * @throws IOException if unable to create the journals. Events appended to
+     * this epoch will then be discarded.
+     */
+    void activate() throws IOException {
+        final RecordWriter[] writers;
+        try {
+            writers = PersistentProvenanceRepository.createWriters(configuration, idGenerator.get());
+        } catch (final IOException ioe) {
+            for (final Journal journal : journals) {
+                journal.failed = true;
+            }
+            throw ioe;
+        }
+
+        for (int i = 0; i < journals.length; i++) {
+            journals[i].start(writers[i]);
+        }
+    }
+
+    /**
+     * Appends the given events to the journal for the given slot, waiting if
+     * too many events are already waiting to be written to it
+     *
+     * @param slot identifies the appending thread, so that each thread always
+     * uses the same journal
+     * @param entry
+     * @return <code>false</code> if this epoch has been retired, in which case
+     * the events must be appended to its replacement
+     */
+    boolean append(final int slot, final Entry entry) {
+        return journals[slot % journals.length].append(entry);
+    }
+
+    /**
+     * Prevents any more events from being appended, waits for everything
+     * appended so far to be written, and closes the journals. Must not be
+     * called until this epoch has been replaced, as threads that find it
+     * retired try again with the current epoch.
+     *
+     * @return the journal files
+     * @throws IOException if unable to close a journal
+     */
+    List<File> retire() throws IOException {
+        retired = true;
+
+        // Wait for any thread that is part way through appending. Both sides of this handshake are volatile: a thread
+        // that increments its count after we look will see that this epoch is retired.
+        for (final Journal journal : journals) {
+            while (journal.activeAppends.get() > 0) {
+                Thread.yield();
+            }
+        }
+
+        draining = true;
+        for (final Journal journal : journals) {
+            journal.wake();
+        }
+
+        final List<File> journalFiles = new ArrayList<>(journals.length);
+        IOException failure = null;
+        for (final Journal journal : journals) {
+            try {
+                final File journalFile = journal.finish();
+                if (journalFile != null) {
+                    journalFiles.add(journalFile);
+                }
+            } catch (final IOException ioe) {
+                failure = ioe;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        return journalFiles;
+    }
+
+    /**
+     * @return the number of events appended to this epoch
+     */
+    long getEventsAppended() {
+        long total = 0L;
+        for (final Journal journal : journals) {
+            total += journal.eventsAppended.get();
+        }
+        return total;
+    }
+
+    /**
+     * @return the approximate number of bytes that the events appended to
+     * this epoch occupy in the journals
+     */
+    long getBytesAppended() {
+        long total = 0L;
+        for (final Journal journal : journals) {
+            total += journal.bytesAppended.get();
+        }
+        return total;
+    }
+
+    private void checkCapacity() {
+        if (getBytesAppended() >= configuration.getMaxEventFileCapacity() && rolloverRequested.compareAndSet(false, true)) {
+            listener.onRolloverNeeded();
+        }
+    }
+
+    /**
+     * The serialized events from one call to register events, which are
+     * written to the same journal with consecutive IDs
+     */
+    static class Entry {
+
+        private final List<ProvenanceEventRecord> records;
+        private final byte[] serialized;
+        private final int[] endOffsets;
+        private final CountDownLatch written;
+
+        private Entry(final List<ProvenanceEventRecord> records, final byte[] serialized, final int[] endOffsets, final boolean awaitWrite) {
+            this.records = records;
+            this.serialized = serialized;
+            this.endOffsets = endOffsets;
+            this.written = awaitWrite ? new CountDownLatch(1) : null;
+        }
+
+        int getEventCount() {
+            return endOffsets.length;
+        }
+
+        /**
+         * Waits until the events have been written to the journal and, if the
+         * repository always syncs, synced to disk, or have been discarded
+         * because they could not be
+         */
+        void awaitWritten() {
+            if (written == null) {
+                return;
+            }
+
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    written.await();
+                    break;
+                } catch (final InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void markWritten() {
+            if (written != null) {
+                written.countDown();
+            }
+        }
+    }
+
+    private class Journal implements Runnable {
+
+        private final int index;
+        private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger activeAppends = new AtomicInteger(0);
+        private final AtomicInteger bufferedEvents = new AtomicInteger(0);
+        private final AtomicLong eventsAppended = new AtomicLong(0L);
+        private final AtomicLong bytesAppended = new AtomicLong(0L);
+
+        private volatile Thread writerThread;
+        private volatile boolean waiting = false;
+        private volatile boolean failed = false;
+        private RecordWriter writer;
+
+        public Journal(final int index) {
+            this.index = index;
+        }
+
+        public boolean append(final Entry entry) {
+            activeAppends.incrementAndGet();
+            try {
+                if (retired) {
+                    return false;
+                }
+
+                // if the journal cannot be written, the events are discarded until the repository rolls over
+                if (failed) {
+                    entry.markWritten();
+                    return true;
+                }
+
+                while (bufferedEvents.get() >= MAX_BUFFERED_EVENTS) {
+                    if (retired) {
+                        return false;
+                    }
+                    if (failed) {
+                        entry.markWritten();
+                        return true;
+                    }
+                    LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                }
+
+                bufferedEvents.addAndGet(entry.getEventCount());
+                eventsAppended.addAndGet(entry.getEventCount());
+                bytesAppended.addAndGet(entry.serialized.length + 8L * entry.getEventCount());
+                queue.offer(entry);
+                if (waiting) {
+                    wake();
+                }
+
+                return true;
+            } finally {
+                activeAppends.decrementAndGet();
+            }
+        }
+
+        public void start(final RecordWriter writer) {
+            this.writer = writer;
+
+            final Thread thread = new Thread(this, "Provenance Journal Writer " + index);
+            thread.setDaemon(true);
+            writerThread = thread;
+            thread.start();
+        }
+
+        public void wake() {
+            final Thread thread = writerThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            final List<Entry> batch = new ArrayList<>();
+            while (true) {
+                Entry entry = queue.poll();
+                if (entry == null) {
+                    if (draining) {
+                        // nothing can be appended once we are draining, so if the queue is empty now, we are done
+                        if (queue.isEmpty()) {
+                            break;
+                        }
+                        continue;
+                    }
+
+                    waiting = true;
+                    if (queue.isEmpty() && !draining) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    waiting = false;
+                    continue;
+                }
+
+                int eventCount = 0;
+                do {
+                    batch.add(entry);
+                    eventCount += entry.getEventCount();
+                } while (eventCount < MAX_BATCH_EVENTS && (entry = queue.poll()) != null);
+
+                write(batch, eventCount);
+                batch.clear();
+                checkCapacity();
+            }
+        }
+
+        private void write(final List<Entry> batch, final int eventCount) {
+            if (failed) {
+                complete(batch, eventCount);
+                return;
+            }
+
+            // reserve the IDs with the indexer before assigning them, so that it does not consider them indexed before
+            // they have been queued for indexing
+            final long reservation = (realTimeIndexer == null) ? -1L : realTimeIndexer.reserve(idGenerator.get());
+            try {
+                long eventId = idGenerator.getAndAdd(eventCount);
+                final List<PendingEvent> toIndex = (realTimeIndexer == null) ? null : new ArrayList<PendingEvent>(eventCount);
+                for (final Entry entry : batch) {
+                    int start = 0;
+                    for (int i = 0; i < entry.endOffsets.length; i++) {
+                        writer.writeSerializedRecord(eventId, entry.serialized, start, entry.endOffsets[i] - start);
+                        if (toIndex != null) {
+                            toIndex.add(new PendingEvent(entry.records.get(i), eventId, writer.getFile()));
+                        }
+
+                        start = entry.endOffsets[i];
+                        eventId++;
+                    }
+                }
+
+                writer.flush();
+                if (configuration.isAlwaysSync()) {
+                    writer.sync();
+                }
+
+                if (toIndex != null) {
+                    realTimeIndexer.index(toIndex);
+                }
+            } catch (final IOException ioe) {
+                failed = true;
+                listener.onWriteFailure(writer.getFile(), ioe);
+            } finally {
+                if (reservation > -1L) {
+                    realTimeIndexer.release(reservation);
+                }
+                complete(batch, eventCount);
+            }
+        }
+
+        // releases the entries' room in the buffer and anyone waiting for them to be written
+        private void complete(final List<Entry> batch, final int eventCount) {
+            bufferedEvents.addAndGet(-eventCount);
+            for (final Entry entry : batch) {
+                entry.markWritten();
+            }
+        }
+
+        /**
+         * Waits for the writer thread to write everything out and closes the
+         * journal. If the journal was never started, the events appended to
+         * it are discarded.
+         */
+        public File finish() throws IOException {
+            final Thread thread = writerThread;
+            if (thread == null) {
+                Entry entry;
+                while ((entry = queue.poll()) != null) {
+                    entry.markWritten();
+                }
+                if (writer != null) {
+                    writer.close();
+                }
+                return null;
+            }
+
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (final InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            logger.debug("Finished writing {} events to {}", writer.getRecordsWritten(), writer.getFile());
+            writer.close();
+            return writer.getFile();
+        }
+    }
+}
@@ -46,6 +46,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -54,8 +55,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
 import org.apache.nifi.events.EventReporter;
@@ -67,10 +67,13 @@ import org.apache.nifi.provenance.lineage.Lineage;
 import org.apache.nifi.provenance.lineage.LineageComputationType;
 import org.apache.nifi.provenance.lucene.DeleteIndexAction;
 import org.apache.nifi.provenance.lucene.FieldNames;
+import org.apache.nifi.provenance.lucene.IndexManager;
 import org.apache.nifi.provenance.lucene.IndexSearch;
 import org.apache.nifi.provenance.lucene.IndexingAction;
 import org.apache.nifi.provenance.lucene.LineageQuery;
 import org.apache.nifi.provenance.lucene.LuceneUtil;
+import org.apache.nifi.provenance.lucene.QueryMetrics;
+import org.apache.nifi.provenance.lucene.RealTimeIndexer;
 import org.apache.nifi.provenance.rollover.CompressionAction;
 import org.apache.nifi.provenance.rollover.RolloverAction;
 import org.apache.nifi.provenance.search.Query;
@@ -119,12 +122,17 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
 
     private volatile boolean closed = false;
 
-    // the following are all protected by the lock
-    private final ReadWriteLock rwLock = new ReentrantReadWriteLock(true);
-    private final Lock writeLock = rwLock.writeLock();
-    private final Lock readLock = rwLock.readLock();
+    // serializes rollover, expiration and close. Threads registering events never obtain it.
+    private final Lock writeLock = new ReentrantLock(true);
 
-    private RecordWriter[] writers; // guarded by readLock/writeLock
+    private volatile JournalEpoch journalEpoch; // replaced only while holding writeLock
+    private final AtomicInteger journalSlotCounter = new AtomicInteger(0);
+    private final ThreadLocal<Integer> journalSlot = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return journalSlotCounter.getAndIncrement();
+        }
+    };
 
     private final AtomicLong streamStartTime = new AtomicLong(System.currentTimeMillis());
     private final RepositoryConfiguration configuration;
@@ -139,13 +147,13 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
     private final List<ExpirationAction> expirationActions = new ArrayList<>();
 
     private final IndexingAction indexingAction;
+    private final RealTimeIndexer realTimeIndexer;
+    private final IndexManager indexManager = new IndexManager();
+    private final QueryMetrics queryMetrics = new QueryMetrics();
     private final ConcurrentMap<String, AsyncQuerySubmission> querySubmissionMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, AsyncLineageSubmission> lineageSubmissionMap = new ConcurrentHashMap<>();
 
-    private final AtomicLong writerIndex = new AtomicLong(0L);
     private final AtomicLong storageDirectoryIndex = new AtomicLong(0L);
-    private final AtomicLong bytesWrittenSinceRollover = new AtomicLong(0L);
-    private final AtomicInteger recordsWrittenSinceRollover = new AtomicInteger(0);
     private final AtomicInteger rolloverCompletions = new AtomicInteger(0);
     private final AtomicBoolean initialized = new AtomicBoolean(false);
 
@@ -185,13 +193,21 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         final List<SearchableField> fields = configuration.getSearchableFields();
         if (fields != null && !fields.isEmpty()) {
             indexingAction = new IndexingAction(this, indexConfig);
-            rolloverActions.add(indexingAction);
+
+            // when events are indexed as they are written, there is nothing left to index at rollover
+            if (configuration.isRealTimeIndexing()) {
+                realTimeIndexer = new RealTimeIndexer(this, indexConfig, indexingAction);
+            } else {
+                realTimeIndexer = null;
+                rolloverActions.add(indexingAction);
+            }
         } else {
             indexingAction = null;
+            realTimeIndexer = null;
         }
 
         if (configuration.isCompressOnRollover()) {
-            rolloverActions.add(new CompressionAction());
+            rolloverActions.add(new CompressionAction(configuration.getCompressionBlockSize()));
         }
 
         scheduledExecService = Executors.newScheduledThreadPool(3);
@@ -216,7 +232,9 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         recover();
 
         if (configuration.isAllowRollover()) {
-            writers = createWriters(configuration, idGenerator.get());
+            final JournalEpoch epoch = createJournalEpoch();
+            epoch.activate();
+            journalEpoch = epoch;
         }
 
         if (configuration.isAllowRollover()) {
@@ -278,8 +296,11 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         final String rolloverTime = properties.getProperty(NiFiProperties.PROVENANCE_ROLLOVER_TIME, "5 mins");
         final String rolloverSize = properties.getProperty(NiFiProperties.PROVENANCE_ROLLOVER_SIZE, "100 MB");
         final String shardSize = properties.getProperty(NiFiProperties.PROVENANCE_INDEX_SHARD_SIZE, "500 MB");
+        final String compressionBlockSize = properties.getProperty(NiFiProperties.PROVENANCE_COMPRESSION_BLOCK_SIZE, "1 MB");
         final int queryThreads = properties.getIntegerProperty(NiFiProperties.PROVENANCE_QUERY_THREAD_POOL_SIZE, 2);
         final int journalCount = properties.getIntegerProperty(NiFiProperties.PROVENANCE_JOURNAL_COUNT, 16);
+        final boolean realTimeIndexing = Boolean.parseBoolean(properties.getProperty(NiFiProperties.PROVENANCE_REALTIME_INDEXING, "false"));
+        final int realTimeIndexQueueSize = properties.getIntegerProperty(NiFiProperties.PROVENANCE_REALTIME_INDEX_QUEUE_SIZE, 10000);
 
         final long storageMillis = FormatUtils.getTimeDuration(storageTime, TimeUnit.MILLISECONDS);
         final long maxStorageBytes = DataUnit.parseDataSize(storageSize, DataUnit.B).longValue();
@@ -305,6 +326,7 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             config.addStorageDirectory(path.toFile());
         }
         config.setCompressOnRollover(compressOnRollover);
+        config.setCompressionBlockSize(DataUnit.parseDataSize(compressionBlockSize, DataUnit.B).longValue());
         config.setSearchableFields(searchableFields);
         config.setSearchableAttributes(searchableAttributes);
         config.setMaxEventFileCapacity(rolloverBytes);
@@ -313,6 +335,8 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         config.setMaxStorageCapacity(maxStorageBytes);
         config.setQueryThreadPoolSize(queryThreads);
         config.setJournalCount(journalCount);
+        config.setRealTimeIndexing(realTimeIndexing);
+        config.setRealTimeIndexQueueSize(realTimeIndexQueueSize);
 
         if (shardSize != null) {
             config.setDesiredIndexSize(DataUnit.parseDataSize(shardSize, DataUnit.B).longValue());
@@ -365,6 +389,8 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
 
         for (final Path path : paths) {
             try (RecordReader reader = RecordReaders.newRecordReader(path.toFile(), getAllLogFiles())) {
+                reader.skipToEvent(firstRecordId);
+
                 StandardProvenanceEventRecord record;
                 while (records.size() < maxRecords && ((record = reader.nextRecord()) != null)) {
                     if (record.getEventId() >= firstRecordId) {
@@ -485,17 +511,17 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
                 maxIdFile = file;
             }
 
-            if (firstId > maxIndexedId && indexingAction != null && indexingAction.hasBeenPerformed(file)) {
+            if (firstId > maxIndexedId && isIndexed(file)) {
                 maxIndexedId = firstId - 1;
             }
 
-            if (firstId < minIndexedId && indexingAction != null && indexingAction.hasBeenPerformed(file)) {
+            if (firstId < minIndexedId && isIndexed(file)) {
                 minIndexedId = firstId;
             }
         }
 
         if (maxIdFile != null) {
-            final boolean lastFileIndexed = indexingAction == null ? false : indexingAction.hasBeenPerformed(maxIdFile);
+            final boolean lastFileIndexed = isIndexed(maxIdFile);
 
             // Determine the max ID in the last file.
             try (final RecordReader reader = RecordReaders.newRecordReader(maxIdFile, getAllLogFiles())) {
@@ -632,9 +658,27 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         };
         rolloverExecutor.submit(retroactiveRollover);
 
+        if (realTimeIndexer != null) {
+            realTimeIndexer.start(sortedPathMap);
+        }
+
         recoveryFinished.set(true);
     }
 
+    /**
+     * Indicates whether or not the events in the given file are in the index.
+     * When indexing in real time, events are indexed before they are merged
+     * into a file; any that were not are indexed by the
+     * {@link RealTimeIndexer} when it starts.
+     */
+    private boolean isIndexed(final File file) {
+        if (indexingAction == null) {
+            return false;
+        }
+
+        return realTimeIndexer != null || indexingAction.hasBeenPerformed(file);
+    }
+
     @Override
     public void close() throws IOException {
         writeLock.lock();
@@ -646,9 +690,16 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             rolloverExecutor.shutdownNow();
             queryExecService.shutdownNow();
 
-            for (final RecordWriter writer : writers) {
-                writer.close();
+            // write out everything that has been registered; the journals are merged when the repository is next started
+            final JournalEpoch epoch = journalEpoch;
+            if (epoch != null) {
+                epoch.retire();
+            }
+
+            if (realTimeIndexer != null) {
+                realTimeIndexer.close();
             }
+            indexManager.close();
         } finally {
             writeLock.unlock();
         }
@@ -659,102 +710,97 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
     }
 
     private void persistRecord(final Iterable<ProvenanceEventRecord> records) {
-        final long totalJournalSize;
-        readLock.lock();
+        if (repoDirty.get()) {
+            logger.debug("Cannot persist provenance record because there was an IOException last time a record persistence was attempted. Will not attempt to persist more records until the repo has been rolled over.");
+            return;
+        }
+
+        final JournalEpoch.Entry entry;
         try {
-            if (repoDirty.get()) {
-                logger.debug("Cannot persist provenance record because there was an IOException last time a record persistence was attempted. Will not attempt to persist more records until the repo has been rolled over.");
+            entry = JournalEpoch.serialize(records, alwaysSync);
+        } catch (final IOException ioe) {
+            logger.error("Failed to persist Provenance Event due to {}", ioe.toString());
+            logger.error("", ioe);
+            eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to persist Provenance Event due to " + ioe.toString());
+            return;
+        }
+
+        if (entry.getEventCount() == 0) {
+            return;
+        }
+
+        // Each thread always appends to the same journal. If the epoch is retired while we are appending, a rollover has
+        // replaced it, so we append to the new one instead.
+        final int slot = journalSlot.get();
+        while (true) {
+            final JournalEpoch epoch = this.journalEpoch;
+            if (epoch == null) {
                 return;
             }
 
-            final RecordWriter[] recordWriters = this.writers;
-            long bytesWritten = 0L;
+            if (epoch.append(slot, entry)) {
+                break;
+            }
 
-            // obtain a lock on one of the RecordWriter's so that no other thread is able to write to this writer until we're finished.
-            // Although the writer itself is thread-safe, we need to generate an event id and then write the event
-            // atomically, so we need to do this with a lock.
-            boolean locked = false;
-            RecordWriter writer;
-            do {
-                final long idx = writerIndex.getAndIncrement();
-                writer = recordWriters[(int) (idx % recordWriters.length)];
-                locked = writer.tryLock();
-            } while (!locked);
+            if (epoch == this.journalEpoch) {
+                logger.debug("Cannot persist provenance record because the repository has been closed");
+                return;
+            }
+        }
 
-            try {
-                try {
-                    for (final ProvenanceEventRecord nextRecord : records) {
-                        final long eventId = idGenerator.getAndIncrement();
-                        bytesWritten += writer.writeRecord(nextRecord, eventId);
-                        logger.trace("Wrote record with ID {} to {}", eventId, writer);
-                    }
+        if (alwaysSync) {
+            entry.awaitWritten();
+        }
+    }
 
-                    if (alwaysSync) {
-                        writer.sync();
-                    }
+    private JournalEpoch createJournalEpoch() {
+        return new JournalEpoch(configuration, idGenerator, realTimeIndexer, new JournalEpoch.Listener() {
+            @Override
+            public void onRolloverNeeded() {
+                submitRollover(false);
+            }
 
-                    totalJournalSize = bytesWrittenSinceRollover.addAndGet(bytesWritten);
-                    recordsWrittenSinceRollover.getAndIncrement();
-                } catch (final IOException ioe) {
-                    // We need to set the repoDirty flag before we release the lock for this journal.
-                    // Otherwise, another thread may write to this journal -- this is a problem because
-                    // the journal contains part of our record but not all of it. Writing to the end of this
-                    // journal will result in corruption!
-                    repoDirty.set(true);
-                    streamStartTime.set(0L);    // force rollover to happen soon.
-                    throw ioe;
-                } finally {
-                    writer.unlock();
-                }
-            } catch (final IOException ioe) {
-                logger.error("Failed to persist Provenance Event due to {}. Will not attempt to write to the Provenance Repository again until the repository has rolled over.", ioe.toString());
+            @Override
+            public void onWriteFailure(final File journalFile, final IOException ioe) {
+                // The journal may now contain part of a record, so nothing more can be written to it. Events are discarded
+                // until the repository has rolled over.
+                repoDirty.set(true);
+                streamStartTime.set(0L);    // force rollover to happen soon.
+
+                logger.error("Failed to persist Provenance Event to {} due to {}. Will not attempt to write to the Provenance Repository again until the repository has rolled over.", journalFile, ioe.toString());
                 logger.error("", ioe);
                 eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to persist Provenance Event due to " + ioe.toString() + ". Will not attempt to write to the Provenance Repository again until the repository has rolled over");
 
-                // Switch from readLock to writeLock so that we can perform rollover
-                readLock.unlock();
-                try {
-                    writeLock.lock();
-                    try {
-                        logger.debug("Obtained write lock to rollover due to IOException on write");
-                        rollover(true);
-                    } finally {
-                        writeLock.unlock();
-                    }
-                } catch (final Exception e) {
-                    logger.error("Failed to Rollover Provenance Event Repository file due to {}", e.toString());
-                    logger.error("", e);
-                    eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to Rollover Provenance Event Repository file due to " + e.toString());
-                } finally {
-                    readLock.lock();
-                }
-
-                return;
+                submitRollover(true);
             }
-        } finally {
-            readLock.unlock();
-        }
-
-        // If the total number of bytes written to the Journals is >= configured max, we need to roll over
-        if (totalJournalSize >= configuration.getMaxEventFileCapacity()) {
-            writeLock.lock();
-            try {
-                logger.debug("Obtained write lock to perform rollover based on file size");
+        });
+    }
 
-                // now that we've obtained the lock, we need to verify that we still need to do the rollover, as
-                // another thread may have just done it.
-                if (bytesWrittenSinceRollover.get() >= configuration.getMaxEventFileCapacity()) {
+    // rolls over in the background, as the journal threads that ask for a rollover must not wait for it
+    private void submitRollover(final boolean force) {
+        try {
+            scheduledExecService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    writeLock.lock();
                     try {
-                        rollover(false);
-                    } catch (IOException e) {
+                        logger.debug("Obtained write lock to perform rollover requested by journal writer");
+
+                        // verify that we still need to do the rollover, as it may have just been done
+                        if (force || needToRollover()) {
+                            rollover(force);
+                        }
+                    } catch (final Exception e) {
                         logger.error("Failed to Rollover Provenance Event Repository file due to {}", e.toString());
                         logger.error("", e);
                         eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to Rollover Provenance Event Repository file due to " + e.toString());
+                    } finally {
+                        writeLock.unlock();
                     }
                 }
-            } finally {
-                writeLock.unlock();
-            }
+            });
+        } catch (final RejectedExecutionException ree) {
+            logger.debug("Will not roll over Provenance Repository because it has been closed");
         }
     }
 
@@ -954,26 +1000,46 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             return;
         }
 
+        // a rollover requested by a journal writer may still be waiting for the lock when the repository is closed; it
+        // must not open new journals
+        if (closed) {
+            return;
+        }
+
         // If this is the first time we're creating the out stream, or if we
         // have written something to the stream, then roll over
-        if (recordsWrittenSinceRollover.get() > 0L || repoDirty.get() || force) {
-            final List<File> journalsToMerge = new ArrayList<>();
-            for (final RecordWriter writer : writers) {
-                final File writerFile = writer.getFile();
-                journalsToMerge.add(writerFile);
-                writer.close();
+        final JournalEpoch epoch = journalEpoch;
+        if (epoch.getEventsAppended() > 0L || repoDirty.get() || force) {
+            // Swap in a new set of journals, so that threads registering events can carry on while the old journals are
+            // written out. The new journals are not created until then, as they are named after the next event ID.
+            final JournalEpoch nextEpoch = createJournalEpoch();
+            journalEpoch = nextEpoch;
+
+            final List<File> journalsToMerge;
+            try {
+                journalsToMerge = epoch.retire();
+            } finally {
+                try {
+                    nextEpoch.activate();
+                } catch (final IOException ioe) {
+                    repoDirty.set(true);
+                    throw ioe;
+                }
             }
-
-            writers = createWriters(configuration, idGenerator.get());
             streamStartTime.set(System.currentTimeMillis());
-            recordsWrittenSinceRollover.getAndSet(0);
+
+            if (journalsToMerge.isEmpty()) {
+                // the old journals could never be created, so there is nothing to merge
+                repoDirty.set(false);
+                return;
+            }
 
             final long storageDirIdx = storageDirectoryIndex.getAndIncrement();
             final List<File> storageDirs = configuration.getStorageDirectories();
             final File storageDir = storageDirs.get((int) (storageDirIdx % storageDirs.size()));
 
             final List<RolloverAction> actions = rolloverActions;
-            final int recordsWritten = recordsWrittenSinceRollover.getAndSet(0);
+            final long recordsWritten = epoch.getEventsAppended();
             final Runnable rolloverRunnable = new Runnable() {
                 @Override
                 public void run() {
@@ -1050,7 +1116,6 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             rolloverExecutor.submit(rolloverRunnable);
 
             streamStartTime.set(System.currentTimeMillis());
-            bytesWrittenSinceRollover.set(0);
         }
     }
 
@@ -1353,18 +1418,26 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
             return result;
         }
 
-        final AtomicInteger retrievalCount = new AtomicInteger(0);
-        final List<File> indexDirectories = indexConfig.getIndexDirectories(
+        final List<File> indexDirectories = new ArrayList<>(indexConfig.getIndexDirectories(
                 query.getStartDate() == null ? null : query.getStartDate().getTime(),
-                query.getEndDate() == null ? null : query.getEndDate().getTime());
+                query.getEndDate() == null ? null : query.getEndDate().getTime()));
         final AsyncQuerySubmission result = new AsyncQuerySubmission(query, indexDirectories.size());
         querySubmissionMap.put(query.getIdentifier(), result);
 
         if (indexDirectories.isEmpty()) {
             result.getResult().update(Collections.<ProvenanceEventRecord>emptyList(), 0L);
         } else {
+            // Search the newest indexes first. Once they have supplied as many events as the query allows, older
+            // indexes cannot contribute anything and are skipped.
+            Collections.sort(indexDirectories, new Comparator<File>() {
+                @Override
+                public int compare(final File o1, final File o2) {
+                    return Long.compare(indexConfig.getIndexStartTime(o2), indexConfig.getIndexStartTime(o1));
+                }
+            });
+
             for (final File indexDir : indexDirectories) {
-                queryExecService.submit(new QueryRunnable(query, result, indexDir, retrievalCount));
+                queryExecService.submit(new QueryRunnable(query, result, indexDir));
             }
         }
 
@@ -1674,7 +1747,8 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
     }
 
     private boolean needToRollover() {
-        final long writtenSinceRollover = bytesWrittenSinceRollover.get();
+        final JournalEpoch epoch = journalEpoch;
+        final long writtenSinceRollover = (epoch == null) ? 0L : epoch.getBytesAppended();
 
         if (writtenSinceRollover >= maxPartitionBytes) {
             return true;
@@ -1687,6 +1761,39 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         return false;
     }
 
+    /**
+     * @return the manager of the Index Searchers that are shared by all
+     * queries against this repository
+     */
+    public IndexManager getIndexManager() {
+        return indexManager;
+    }
+
+    /**
+     * @return the latency of queries and lineage computations performed
+     * against this repository
+     */
+    public QueryMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+
+    /**
+     * @param timeUnit
+     * @return how long the oldest event that has not yet been indexed has been
+     * waiting to be indexed. Always 0 unless real-time indexing is enabled
+     */
+    public long getIndexingLag(final TimeUnit timeUnit) {
+        return realTimeIndexer == null ? 0L : realTimeIndexer.getIndexingLag(timeUnit);
+    }
+
+    /**
+     * @return the number of events that have been registered but not yet
+     * indexed. Always 0 unless real-time indexing is enabled
+     */
+    public int getEventsAwaitingIndexing() {
+        return realTimeIndexer == null ? 0 : realTimeIndexer.getEventsAwaitingIndexing();
+    }
+
     public Collection<Path> getAllLogFiles() {
         final SortedMap<Long, Path> map = idToPathMap.get();
         return (map == null) ? new ArrayList<Path>() : map.values();
@@ -1765,25 +1872,41 @@ public class PersistentProvenanceRepository implements ProvenanceEventRepository
         private final Query query;
         private final AsyncQuerySubmission submission;
         private final File indexDir;
-        private final AtomicInteger retrievalCount;
 
-        public QueryRunnable(final Query query, final AsyncQuerySubmission submission, final File indexDir, final AtomicInteger retrievalCount) {
+        public QueryRunnable(final Query query, final AsyncQuerySubmission submission, final File indexDir) {
             this.query = query;
             this.submission = submission;
             this.indexDir = indexDir;
-            this.retrievalCount = retrievalCount;
         }
 
         @Override
         public void run() {
+            final StandardQueryResult combinedResult = submission.getResult();
+            if (submission.isCanceled()) {
+                combinedResult.skip();
+                return;
+            }
+
+            // If the result is already full of events newer than the newest event in this index, this index has nothing to add.
+            final Long oldestEventTime = combinedResult.getOldestEventTime();
+            final Long newestIndexedTime = (oldestEventTime == null) ? null : indexConfig.getNewestEventTime(indexDir);
+            if (oldestEventTime != null && (newestIndexedTime == null || newestIndexedTime < oldestEventTime)) {
+                logger.debug("Skipping search of Index {} for Query[{}] because the query already has {} newer results", indexDir, query, query.getMaxResults());
+                combinedResult.skip();
+                return;
+            }
+
             try {
                 final IndexSearch search = new IndexSearch(PersistentProvenanceRepository.this, indexDir);
-                final StandardQueryResult queryResult = search.search(query, retrievalCount);
-                submission.getResult().update(queryResult.getMatchingEvents(), queryResult.getTotalHitCount());
+                final StandardQueryResult queryResult = search.search(query, new AtomicInteger(0), combinedResult);
+                combinedResult.addPhaseTimes(queryResult.getIndexSearchTime(TimeUnit.NANOSECONDS), queryResult.getRecordRetrievalTime(TimeUnit.NANOSECONDS));
+                combinedResult.update(queryResult.getMatchingEvents(), queryResult.getTotalHitCount());
                 if (queryResult.isFinished()) {
-                    logger.info("Successfully executed Query[{}] against Index {}; Search took {} milliseconds; Total Hits = {}",
-                            query, indexDir, queryResult.getQueryTime(), queryResult.getTotalHitCount());
+                    logger.info("Successfully executed Query[{}] against Index {}; Search took {} milliseconds ({} searching the index, {} retrieving events); Total Hits = {}",
+                            query, indexDir, queryResult.getQueryTime(), queryResult.getIndexSearchTime(TimeUnit.MILLISECONDS),
+                            queryResult.getRecordRetrievalTime(TimeUnit.MILLISECONDS), queryResult.getTotalHitCount());
                 }
+                logger.debug("Provenance query latency: {}", queryMetrics);
             } catch (final Throwable t) {
                 logger.error("Failed to query provenance repository due to {}", t.toString());
                 if (logger.isDebugEnabled()) {
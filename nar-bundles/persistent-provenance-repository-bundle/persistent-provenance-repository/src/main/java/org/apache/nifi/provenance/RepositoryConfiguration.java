@@ -37,6 +37,9 @@ public class RepositoryConfiguration {
     private List<SearchableField> searchableFields = new ArrayList<>();
     private List<SearchableField> searchableAttributes = new ArrayList<>();
     private boolean compress = true;
+    private long compressionBlockSize = 1024L * 1024L;   // 1 MB
+    private boolean realTimeIndexing = false;
+    private int realTimeIndexQueueSize = 10000;
     private boolean alwaysSync = false;
     private int queryThreadPoolSize = 1;
     private boolean allowRollover = true;
@@ -200,6 +203,72 @@ public class RepositoryConfiguration {
         this.compress = compress;
     }
 
+    /**
+     * Indicates approximately how many bytes of uncompressed event data are
+     * written to each independently readable block when an event file is
+     * compressed
+     *
+     * @return
+     */
+    public long getCompressionBlockSize() {
+        return compressionBlockSize;
+    }
+
+    /**
+     * Specifies approximately how many bytes of uncompressed event data to
+     * write to each independently readable block when compressing event
+     * files. Smaller blocks make random access to events faster at the cost of
+     * a slightly worse compression ratio
+     *
+     * @param compressionBlockSize
+     */
+    public void setCompressionBlockSize(final long compressionBlockSize) {
+        this.compressionBlockSize = compressionBlockSize;
+    }
+
+    /**
+     * Indicates whether events are indexed as they are written to the
+     * journals, rather than when the journals are merged at rollover
+     *
+     * @return
+     */
+    public boolean isRealTimeIndexing() {
+        return realTimeIndexing;
+    }
+
+    /**
+     * Specifies whether events should be indexed as they are written, making
+     * them searchable almost immediately instead of only after the event file
+     * rolls over
+     *
+     * @param realTimeIndexing
+     */
+    public void setRealTimeIndexing(final boolean realTimeIndexing) {
+        this.realTimeIndexing = realTimeIndexing;
+    }
+
+    /**
+     * @return the maximum number of events that may be waiting to be indexed
+     * when real-time indexing is enabled
+     */
+    public int getRealTimeIndexQueueSize() {
+        return realTimeIndexQueueSize;
+    }
+
+    /**
+     * Specifies how many events may be waiting to be indexed when real-time
+     * indexing is enabled. Once this many events are waiting, registering
+     * further events blocks until the indexer catches up
+     *
+     * @param realTimeIndexQueueSize
+     */
+    public void setRealTimeIndexQueueSize(final int realTimeIndexQueueSize) {
+        if (realTimeIndexQueueSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.realTimeIndexQueueSize = realTimeIndexQueueSize;
+    }
+
     public int getQueryThreadPoolSize() {
         return queryThreadPoolSize;
     }
@@ -17,6 +17,7 @@
 package org.apache.nifi.provenance;
 
 import java.io.DataInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
@@ -25,19 +26,42 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.nifi.io.BufferedInputStream;
 import org.apache.nifi.io.ByteCountingInputStream;
+import org.apache.nifi.io.NonCloseableInputStream;
 import org.apache.nifi.io.StreamUtils;
+import org.apache.nifi.provenance.serialization.BlockIndex;
 import org.apache.nifi.provenance.serialization.RecordReader;
 
 public class StandardRecordReader implements RecordReader {
 
-    private final DataInputStream dis;
-    private final ByteCountingInputStream byteCountingIn;
+    private DataInputStream dis;
+    private ByteCountingInputStream byteCountingIn;
+    private long streamOffset = 0L;
     private final String filename;
     private final int serializationVersion;
+    private final FileInputStream blockFileIn;
+    private final BlockIndex blockIndex;
 
     public StandardRecordReader(final InputStream in, final int serializationVersion, final String filename) {
+        this(in, serializationVersion, filename, null, null);
+    }
+
+    /**
+     * Creates a reader for a block-compressed file. The given InputStream must
+     * read from the given FileInputStream without being able to close it, so
+     * that the reader can reposition the file and begin decompressing at any
+     * block in the given BlockIndex.
+     *
+     * @param in
+     * @param serializationVersion
+     * @param filename
+     * @param blockFileIn
+     * @param blockIndex
+     */
+    public StandardRecordReader(final InputStream in, final int serializationVersion, final String filename, final FileInputStream blockFileIn, final BlockIndex blockIndex) {
         if (serializationVersion < 1 || serializationVersion > 7) {
             throw new IllegalArgumentException("Unable to deserialize record because the version is " + serializationVersion + " and supported versions are 1-6");
         }
@@ -46,10 +70,25 @@ public class StandardRecordReader implements RecordReader {
         this.dis = new DataInputStream(byteCountingIn);
         this.serializationVersion = serializationVersion;
         this.filename = filename;
+        this.blockFileIn = blockFileIn;
+        this.blockIndex = blockIndex;
+    }
+
+    private long getPosition() {
+        return streamOffset + byteCountingIn.getBytesConsumed();
+    }
+
+    private void seekToBlock(final int block) throws IOException {
+        dis.close();
+
+        blockFileIn.getChannel().position(blockIndex.getFileOffset(block));
+        byteCountingIn = new ByteCountingInputStream(new BufferedInputStream(new GZIPInputStream(new NonCloseableInputStream(blockFileIn))));
+        dis = new DataInputStream(byteCountingIn);
+        streamOffset = blockIndex.getOffset(block);
     }
 
     private StandardProvenanceEventRecord readPreVersion6Record() throws IOException {
-        final long startOffset = byteCountingIn.getBytesConsumed();
+        final long startOffset = getPosition();
 
         if (!isData(byteCountingIn)) {
             return null;
@@ -135,7 +174,7 @@ public class StandardRecordReader implements RecordReader {
             return readPreVersion6Record();
         }
 
-        final long startOffset = byteCountingIn.getBytesConsumed();
+        final long startOffset = getPosition();
 
         if (!isData(byteCountingIn)) {
             return null;
@@ -281,17 +320,23 @@ public class StandardRecordReader implements RecordReader {
 
     @Override
     public void close() throws IOException {
-        dis.close();
+        try {
+            dis.close();
+        } finally {
+            if (blockFileIn != null) {
+                blockFileIn.close();
+            }
+        }
     }
 
     @Override
     public void skip(final long bytesToSkip) throws IOException {
-        StreamUtils.skip(dis, bytesToSkip);
+        skipTo(getPosition() + bytesToSkip);
     }
 
     @Override
     public void skipTo(final long position) throws IOException {
-        final long currentPosition = byteCountingIn.getBytesConsumed();
+        final long currentPosition = getPosition();
         if (currentPosition == position) {
             return;
         }
@@ -299,7 +344,27 @@ public class StandardRecordReader implements RecordReader {
             throw new IOException("Cannot skip to byte offset " + position + " in stream because already at byte offset " + currentPosition);
         }
 
-        final long toSkip = position - currentPosition;
+        // if the position is in a later block, start decompressing there rather than inflating everything in between
+        if (blockIndex != null) {
+            final int block = blockIndex.getBlockForOffset(position);
+            if (block >= 0 && blockIndex.getOffset(block) > currentPosition) {
+                seekToBlock(block);
+            }
+        }
+
+        final long toSkip = position - getPosition();
         StreamUtils.skip(dis, toSkip);
     }
+
+    @Override
+    public void skipToEvent(final long eventId) throws IOException {
+        if (blockIndex == null) {
+            return;
+        }
+
+        final int block = blockIndex.getBlockForEventId(eventId);
+        if (block >= 0 && blockIndex.getOffset(block) > getPosition()) {
+            seekToBlock(block);
+        }
+    }
 }
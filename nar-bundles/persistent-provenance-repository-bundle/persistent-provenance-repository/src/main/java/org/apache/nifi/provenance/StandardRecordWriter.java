@@ -78,10 +78,42 @@ public class StandardRecordWriter implements RecordWriter {
 
     @Override
     public synchronized long writeRecord(final ProvenanceEventRecord record, long recordIdentifier) throws IOException {
-        final ProvenanceEventType recordType = record.getEventType();
         final long startBytes = byteCountingOut.getBytesWritten();
 
         out.writeLong(recordIdentifier);
+        writeRecordFields(out, record);
+
+        out.flush();
+        recordCount++;
+        return byteCountingOut.getBytesWritten() - startBytes;
+    }
+
+    @Override
+    public synchronized long writeSerializedRecord(final long recordIdentifier, final byte[] serializedFields, final int offset, final int length) throws IOException {
+        out.writeLong(recordIdentifier);
+        out.write(serializedFields, offset, length);
+        recordCount++;
+        return 8L + length;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Writes everything about the given record except its identifier, which
+     * precedes it in the stream. Records may be serialized this way by any
+     * thread and then written via
+     * {@link #writeSerializedRecord(long, byte[], int, int)}
+     *
+     * @param out
+     * @param record
+     * @throws IOException
+     */
+    static void writeRecordFields(final DataOutputStream out, final ProvenanceEventRecord record) throws IOException {
+        final ProvenanceEventType recordType = record.getEventType();
+
         out.writeUTF(record.getEventType().name());
         out.writeLong(record.getEventTime());
         out.writeLong(record.getFlowFileEntryDate());
@@ -164,13 +196,9 @@ public class StandardRecordWriter implements RecordWriter {
         } else if (recordType == ProvenanceEventType.ROUTE) {
             writeNullableString(out, record.getRelationship());
         }
-
-        out.flush();
-        recordCount++;
-        return byteCountingOut.getBytesWritten() - startBytes;
     }
 
-    private void writeNullableString(final DataOutputStream out, final String toWrite) throws IOException {
+    private static void writeNullableString(final DataOutputStream out, final String toWrite) throws IOException {
         if (toWrite == null) {
             out.writeBoolean(false);
         } else {
@@ -179,7 +207,7 @@ public class StandardRecordWriter implements RecordWriter {
         }
     }
 
-    private void writeLongNullableString(final DataOutputStream out, final String toWrite) throws IOException {
+    private static void writeLongNullableString(final DataOutputStream out, final String toWrite) throws IOException {
         if (toWrite == null) {
             out.writeBoolean(false);
         } else {
@@ -188,7 +216,7 @@ public class StandardRecordWriter implements RecordWriter {
         }
     }
 
-    private void writeLongString(final DataOutputStream out, final String value) throws IOException {
+    private static void writeLongString(final DataOutputStream out, final String value) throws IOException {
         final byte[] bytes = value.getBytes("UTF-8");
         out.writeInt(bytes.length);
         out.write(bytes);
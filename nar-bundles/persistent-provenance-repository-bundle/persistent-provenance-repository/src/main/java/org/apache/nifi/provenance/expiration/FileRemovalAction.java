@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.IOException;
 
 import org.apache.nifi.provenance.lucene.DeleteIndexAction;
+import org.apache.nifi.provenance.serialization.BlockIndex;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +34,7 @@ public class FileRemovalAction implements ExpirationAction {
         boolean removed = false;
         for (int i = 0; i < 10 && !removed; i++) {
             if ((removed = expiredFile.delete())) {
+                removeBlockIndex(expiredFile);
                 logger.info("Removed expired Provenance Event file {}", expiredFile);
                 return null;
             }
@@ -42,6 +44,13 @@ public class FileRemovalAction implements ExpirationAction {
         return expiredFile;
     }
 
+    private void removeBlockIndex(final File expiredFile) {
+        final File indexFile = BlockIndex.getIndexFile(expiredFile);
+        if (indexFile.exists() && !indexFile.delete()) {
+            logger.warn("Failed to remove Block Index {} for expired Provenance Event file {}", indexFile, expiredFile);
+        }
+    }
+
     @Override
     public boolean hasBeenPerformed(final File expiredFile) throws IOException {
         return !expiredFile.exists();
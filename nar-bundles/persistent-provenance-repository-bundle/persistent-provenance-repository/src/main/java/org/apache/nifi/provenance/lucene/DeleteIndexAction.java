@@ -28,13 +28,8 @@ import org.apache.nifi.provenance.expiration.ExpirationAction;
 import org.apache.nifi.provenance.serialization.RecordReader;
 import org.apache.nifi.provenance.serialization.RecordReaders;
 
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,31 +67,33 @@ public class DeleteIndexAction implements ExpirationAction {
             return expiredFile;
         }
 
-        // remove the records from the index
-        final List<File> indexDirs = indexConfiguration.getIndexDirectories(expiredFile);
+        // remove the records from the index. Events that were indexed as they were written may be in the index of any
+        // storage directory, not only the one holding the expired file.
+        final List<File> indexDirs = repository.getConfiguration().isRealTimeIndexing()
+                ? indexConfiguration.getIndexDirectories() : indexConfiguration.getIndexDirectories(expiredFile);
+        final IndexManager indexManager = repository.getIndexManager();
         for (final File indexingDirectory : indexDirs) {
-            try (final Directory directory = FSDirectory.open(indexingDirectory);
-                    final Analyzer analyzer = new StandardAnalyzer(LuceneUtil.LUCENE_VERSION)) {
-                IndexWriterConfig config = new IndexWriterConfig(LuceneUtil.LUCENE_VERSION, analyzer);
-                config.setWriteLockTimeout(300000L);
-
-                Term term = new Term(FieldNames.STORAGE_FILENAME, LuceneUtil.substringBefore(expiredFile.getName(), "."));
-
-                boolean deleteDir = false;
-                try (final IndexWriter indexWriter = new IndexWriter(directory, config)) {
-                    indexWriter.deleteDocuments(term);
-                    indexWriter.commit();
-                    final int docsLeft = indexWriter.numDocs();
-                    deleteDir = (docsLeft <= 0);
-                    logger.debug("After expiring {}, there are {} docs left for index {}", expiredFile, docsLeft, indexingDirectory);
-                }
+            final Term term = new Term(FieldNames.STORAGE_FILENAME, LuceneUtil.substringBefore(expiredFile.getName(), "."));
 
-                // we've confirmed that all documents have been removed. Delete the index directory.
-                if (deleteDir) {
-                    indexConfiguration.removeIndexDirectory(indexingDirectory);
-                    deleteDirectory(indexingDirectory);
-                    logger.info("Removed empty index directory {}", indexingDirectory);
-                }
+            boolean deleteDir = false;
+            final IndexWriter indexWriter = indexManager.borrowIndexWriter(indexingDirectory);
+            try {
+                indexWriter.deleteDocuments(term);
+                indexWriter.commit();
+                indexManager.refresh(indexingDirectory);
+                final int docsLeft = indexWriter.numDocs();
+                deleteDir = (docsLeft <= 0);
+                logger.debug("After expiring {}, there are {} docs left for index {}", expiredFile, docsLeft, indexingDirectory);
+            } finally {
+                indexManager.returnIndexWriter(indexingDirectory, indexWriter);
+            }
+
+            // we've confirmed that all documents have been removed. Delete the index directory, unless
+            // it is still being written to.
+            if (deleteDir && indexManager.removeIndex(indexingDirectory)) {
+                indexConfiguration.removeIndexDirectory(indexingDirectory);
+                deleteDirectory(indexingDirectory);
+                logger.info("Removed empty index directory {}", indexingDirectory);
             }
         }
 
@@ -16,16 +16,23 @@
  */
 package org.apache.nifi.provenance.lucene;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.nifi.provenance.ProvenanceEventRecord;
@@ -40,7 +47,10 @@ import org.apache.lucene.search.TopDocs;
 
 public class DocsReader {
 
+    private final List<File> storageDirectories;
+
     public DocsReader(final List<File> storageDirectories) {
+        this.storageDirectories = storageDirectories;
     }
 
     public Set<ProvenanceEventRecord> read(final TopDocs topDocs, final IndexReader indexReader, final Collection<Path> allProvenanceLogFiles, final AtomicInteger retrievalCount, final int maxResults) throws IOException {
@@ -59,7 +69,25 @@ public class DocsReader {
         return read(docs, allProvenanceLogFiles, retrievalCount, maxResults);
     }
 
-    public Set<ProvenanceEventRecord> read(final List<Document> docs, final Collection<Path> allProvenanceLogFiles, final AtomicInteger retrievalCount, final int maxResults) throws IOException {
+    public Set<ProvenanceEventRecord> read(final List<Document> allDocs, final Collection<Path> allProvenanceLogFiles, final AtomicInteger retrievalCount, final int maxResults) throws IOException {
+        // Events that were indexed in real time, before they were merged into a Provenance Event File, have no byte offset
+        // and are located by ID instead.
+        final List<Document> docs = new ArrayList<>(allDocs.size());
+        final Map<String, SortedSet<Long>> eventIdsByFilename = new TreeMap<>();
+        for (final Document d : allDocs) {
+            if (d.getField(FieldNames.STORAGE_FILE_OFFSET) == null) {
+                final String storageFilename = d.getField(FieldNames.STORAGE_FILENAME).stringValue();
+                SortedSet<Long> eventIds = eventIdsByFilename.get(storageFilename);
+                if (eventIds == null) {
+                    eventIds = new TreeSet<>();
+                    eventIdsByFilename.put(storageFilename, eventIds);
+                }
+                eventIds.add(d.getField(FieldNames.EVENT_ID).numericValue().longValue());
+            } else {
+                docs.add(d);
+            }
+        }
+
         LuceneUtil.sortDocsForRetrieval(docs);
 
         RecordReader reader = null;
@@ -127,7 +155,115 @@ public class DocsReader {
             }
         }
 
+        for (final Map.Entry<String, SortedSet<Long>> entry : eventIdsByFilename.entrySet()) {
+            if (retrievalCount.get() >= maxResults) {
+                break;
+            }
+
+            readByEventId(entry.getKey(), entry.getValue(), allProvenanceLogFiles, matchingRecords, retrievalCount, maxResults);
+        }
+
         return matchingRecords;
     }
 
+    private void readByEventId(final String storageFilename, final SortedSet<Long> eventIds, final Collection<Path> allProvenanceLogFiles,
+            final Set<ProvenanceEventRecord> matchingRecords, final AtomicInteger retrievalCount, final int maxResults) throws IOException {
+
+        // The events may have been merged into their Provenance Event File by now, or may still be in the journals
+        List<File> files = getEventFiles(storageFilename, allProvenanceLogFiles);
+        final boolean journals = files.isEmpty();
+        if (journals) {
+            files = getJournalFiles(storageFilename);
+        }
+
+        final Set<Long> remaining = new TreeSet<>(eventIds);
+        try {
+            readEvents(files, journals ? Collections.<Path>emptyList() : allProvenanceLogFiles, remaining, matchingRecords, retrievalCount, maxResults);
+        } catch (final FileNotFoundException fnfe) {
+            if (!journals) {
+                throw fnfe;
+            }
+
+            // the journals were merged and removed while we were reading them
+            readEvents(getEventFiles(storageFilename, allProvenanceLogFiles), allProvenanceLogFiles, remaining, matchingRecords, retrievalCount, maxResults);
+        }
+
+        if (!remaining.isEmpty() && retrievalCount.get() < maxResults) {
+            throw new FileNotFoundException("Could not find Provenance Events " + remaining + " with basename " + storageFilename + " in the Provenance Repository");
+        }
+    }
+
+    private void readEvents(final List<File> files, final Collection<Path> allProvenanceLogFiles, final Set<Long> eventIds,
+            final Set<ProvenanceEventRecord> matchingRecords, final AtomicInteger retrievalCount, final int maxResults) throws IOException {
+        for (final File file : files) {
+            if (eventIds.isEmpty() || retrievalCount.get() >= maxResults) {
+                return;
+            }
+
+            final long minId = Collections.min(eventIds);
+            final long maxId = Collections.max(eventIds);
+            try (final RecordReader reader = RecordReaders.newRecordReader(file, allProvenanceLogFiles)) {
+                reader.skipToEvent(minId);
+
+                StandardProvenanceEventRecord record;
+                while ((record = reader.nextRecord()) != null) {
+                    // journals are each in order of event ID, but only hold some of the events
+                    if (record.getEventId() > maxId) {
+                        break;
+                    }
+
+                    if (eventIds.remove(record.getEventId())) {
+                        matchingRecords.add(record);
+                        if (retrievalCount.incrementAndGet() >= maxResults || eventIds.isEmpty()) {
+                            return;
+                        }
+                    }
+                }
+            } catch (final EOFException eof) {
+                // the journal is still being written to; everything before this point has been read
+            }
+        }
+    }
+
+    private List<File> getEventFiles(final String storageFilename, final Collection<Path> allProvenanceLogFiles) {
+        final List<File> files = LuceneUtil.getProvenanceLogFiles(storageFilename, allProvenanceLogFiles);
+        if (!files.isEmpty()) {
+            return files;
+        }
+
+        // the file may have been merged since the query started
+        for (final File storageDirectory : storageDirectories) {
+            final File[] matching = storageDirectory.listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(final File dir, final String name) {
+                    return name.startsWith(storageFilename + ".") && !name.endsWith(".part");
+                }
+            });
+
+            if (matching != null) {
+                files.addAll(Arrays.asList(matching));
+            }
+        }
+
+        return files;
+    }
+
+    private List<File> getJournalFiles(final String storageFilename) {
+        final List<File> files = new ArrayList<>();
+        for (final File storageDirectory : storageDirectories) {
+            final File[] matching = new File(storageDirectory, "journals").listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(final File dir, final String name) {
+                    return name.startsWith(storageFilename + ".journal.");
+                }
+            });
+
+            if (matching != null) {
+                files.addAll(Arrays.asList(matching));
+            }
+        }
+
+        return files;
+    }
+
 }
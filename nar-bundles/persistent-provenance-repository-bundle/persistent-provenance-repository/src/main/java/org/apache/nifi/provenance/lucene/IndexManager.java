@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.lucene;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a Lucene IndexSearcher open for each index directory so that queries
+ * and lineage computations do not have to open the index every time, and
+ * shares a single IndexWriter per index directory among everything that
+ * updates the index. Searchers and writers are reference counted, so any
+ * number of threads may use the same one at once; each searcher obtained from
+ * {@link #borrowIndexSearcher(File)} must be given back via
+ * {@link #returnIndexSearcher(IndexSearcher)}, and each writer obtained from
+ * {@link #borrowIndexWriter(File)} must be given back via
+ * {@link #returnIndexWriter(File, IndexWriter)}. A writer is closed when the
+ * last thread using it gives it back. While a writer is open, searchers for
+ * its index are near-real-time: they see documents that the writer has added
+ * but not yet committed.
+ *
+ * Whenever documents are added to or removed from an index,
+ * {@link #refresh(File)} must be called so that subsequent searches see the
+ * changes, and {@link #removeIndex(File)} must be called before an index
+ * directory is deleted.
+ */
+public class IndexManager implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexManager.class);
+
+    private final Map<File, ManagedIndex> indexes = new HashMap<>();
+    private boolean closed = false;
+
+    public IndexSearcher borrowIndexSearcher(final File indexDirectory) throws IOException {
+        final File absoluteDirectory = indexDirectory.getAbsoluteFile();
+
+        while (true) {
+            final ManagedIndex index;
+            final SearcherManager searcherManager;
+            synchronized (this) {
+                index = getManagedIndex(absoluteDirectory);
+                searcherManager = index.getSearcherManager();
+            }
+
+            try {
+                if (index.stale.getAndSet(false)) {
+                    try {
+                        searcherManager.maybeRefreshBlocking();
+                    } catch (final IOException ioe) {
+                        index.stale.set(true);
+                        throw ioe;
+                    }
+                }
+
+                return searcherManager.acquire();
+            } catch (final AlreadyClosedException ace) {
+                // the searcher was replaced or the index was removed after we obtained it. Try again, which will
+                // either use the new searcher or fail because the index no longer exists.
+                logger.debug("Searcher for {} was closed while being borrowed; will try again", absoluteDirectory);
+            }
+        }
+    }
+
+    public void returnIndexSearcher(final IndexSearcher searcher) {
+        try {
+            // equivalent to SearcherManager.release() but works even if the manager has since been closed
+            searcher.getIndexReader().decRef();
+        } catch (final IOException ioe) {
+            logger.warn("Failed to release Index Searcher {} due to {}", searcher, ioe.toString());
+        }
+    }
+
+    public IndexWriter borrowIndexWriter(final File indexDirectory) throws IOException {
+        final File absoluteDirectory = indexDirectory.getAbsoluteFile();
+
+        synchronized (this) {
+            final ManagedIndex index = getManagedIndex(absoluteDirectory);
+            if (index.writer == null) {
+                final Analyzer analyzer = new StandardAnalyzer(LuceneUtil.LUCENE_VERSION);
+                final IndexWriterConfig config = new IndexWriterConfig(LuceneUtil.LUCENE_VERSION, analyzer);
+                config.setWriteLockTimeout(300000L);
+
+                try {
+                    index.writer = new IndexWriter(index.directory, config);
+                } catch (final IOException ioe) {
+                    analyzer.close();
+                    throw ioe;
+                }
+                index.analyzer = analyzer;
+
+                // searches from now on should see what the writer has added, even before it commits
+                index.closeSearcherManager();
+                logger.debug("Opened Index Writer for {}", absoluteDirectory);
+            }
+
+            index.writerCount++;
+            return index.writer;
+        }
+    }
+
+    public void returnIndexWriter(final File indexDirectory, final IndexWriter writer) {
+        final File absoluteDirectory = indexDirectory.getAbsoluteFile();
+
+        synchronized (this) {
+            final ManagedIndex index = indexes.get(absoluteDirectory);
+            if (index == null || index.writer != writer) {
+                logger.warn("Index Writer returned for {} is not managed; closing it", absoluteDirectory);
+                closeWriter(absoluteDirectory, writer, null);
+                return;
+            }
+
+            if (--index.writerCount > 0) {
+                return;
+            }
+
+            index.closeSearcherManager();
+            closeWriter(absoluteDirectory, index.writer, index.analyzer);
+            index.writer = null;
+            index.analyzer = null;
+        }
+    }
+
+    /**
+     * Indicates that the given index has changed, so the next search against
+     * it should use a new searcher
+     *
+     * @param indexDirectory
+     */
+    public void refresh(final File indexDirectory) {
+        final ManagedIndex index;
+        synchronized (this) {
+            index = indexes.get(indexDirectory.getAbsoluteFile());
+        }
+
+        if (index != null) {
+            index.stale.set(true);
+        }
+    }
+
+    /**
+     * Closes the searcher for the given index, if one is open. Searches that
+     * are using the searcher are allowed to finish. If a writer is currently
+     * borrowed for the index, the index is still in use and is not removed.
+     *
+     * @param indexDirectory
+     * @return <code>true</code> if the index was removed, <code>false</code>
+     * if it is still being written to
+     */
+    public boolean removeIndex(final File indexDirectory) {
+        final File absoluteDirectory = indexDirectory.getAbsoluteFile();
+
+        final ManagedIndex index;
+        synchronized (this) {
+            index = indexes.get(absoluteDirectory);
+            if (index != null && index.writerCount > 0) {
+                return false;
+            }
+
+            indexes.remove(absoluteDirectory);
+        }
+
+        if (index != null) {
+            index.close();
+            logger.debug("Closed Index Searcher for {}", indexDirectory);
+        }
+
+        return true;
+    }
+
+    public synchronized int getOpenIndexCount() {
+        return indexes.size();
+    }
+
+    @Override
+    public void close() {
+        final List<ManagedIndex> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(indexes.values());
+            indexes.clear();
+        }
+
+        for (final ManagedIndex index : toClose) {
+            if (index.writer != null) {
+                closeWriter(index.directoryFile, index.writer, index.analyzer);
+            }
+            index.close();
+        }
+    }
+
+    private static void closeWriter(final File indexDirectory, final IndexWriter writer, final Analyzer analyzer) {
+        try {
+            writer.close();
+            logger.debug("Closed Index Writer for {}", indexDirectory);
+        } catch (final IOException ioe) {
+            logger.warn("Failed to close Index Writer for {} due to {}", indexDirectory, ioe.toString());
+        } finally {
+            if (analyzer != null) {
+                analyzer.close();
+            }
+        }
+    }
+
+    // must be called while synchronized on this
+    private ManagedIndex getManagedIndex(final File indexDirectory) throws IOException {
+        if (closed) {
+            throw new IOException("Cannot access index " + indexDirectory + " because the Index Manager has been closed");
+        }
+
+        ManagedIndex index = indexes.get(indexDirectory);
+        if (index == null) {
+            index = new ManagedIndex(indexDirectory, FSDirectory.open(indexDirectory));
+            indexes.put(indexDirectory, index);
+        }
+
+        return index;
+    }
+
+    private static class ManagedIndex {
+
+        private final File directoryFile;
+        private final Directory directory;
+        private final AtomicBoolean stale = new AtomicBoolean(false);
+        private SearcherManager searcherManager;
+        private IndexWriter writer;
+        private Analyzer analyzer;
+        private int writerCount = 0;
+
+        public ManagedIndex(final File directoryFile, final Directory directory) {
+            this.directoryFile = directoryFile;
+            this.directory = directory;
+        }
+
+        // must be called while synchronized on the IndexManager
+        public SearcherManager getSearcherManager() throws IOException {
+            if (searcherManager == null) {
+                searcherManager = (writer == null) ? new SearcherManager(directory, null) : new SearcherManager(writer, true, null);
+                stale.set(false);
+                logger.debug("Opened Index Searcher for {}", directoryFile);
+            }
+
+            return searcherManager;
+        }
+
+        public void closeSearcherManager() {
+            if (searcherManager == null) {
+                return;
+            }
+
+            try {
+                searcherManager.close();
+            } catch (final IOException ioe) {
+                logger.warn("Failed to close Index Searcher for {} due to {}", directoryFile, ioe.toString());
+            }
+            searcherManager = null;
+        }
+
+        public void close() {
+            closeSearcherManager();
+
+            try {
+                directory.close();
+            } catch (final IOException ioe) {
+                logger.warn("Failed to close Index Directory {} due to {}", directoryFile, ioe.toString());
+            }
+        }
+    }
+}
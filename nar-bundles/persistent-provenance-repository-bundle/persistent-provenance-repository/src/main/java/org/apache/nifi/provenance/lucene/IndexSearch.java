@@ -18,24 +18,32 @@ package org.apache.nifi.provenance.lucene;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.nifi.provenance.PersistentProvenanceRepository;
 import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.SearchableFields;
 import org.apache.nifi.provenance.StandardQueryResult;
 
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexNotFoundException;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.FSDirectory;
 
 public class IndexSearch {
 
+    private static final Sort NEWEST_FIRST = new Sort(new SortField(SearchableFields.EventTime.getSearchableFieldName(), SortField.Type.LONG, true));
+
     private final PersistentProvenanceRepository repository;
     private final File indexDirectory;
 
@@ -45,6 +53,23 @@ public class IndexSearch {
     }
 
     public StandardQueryResult search(final org.apache.nifi.provenance.search.Query provenanceQuery, final AtomicInteger retrievedCount) throws IOException {
+        return search(provenanceQuery, retrievedCount, null);
+    }
+
+    /**
+     * Searches the index for the newest events that match the given query
+     *
+     * @param provenanceQuery the query
+     * @param retrievedCount the number of events retrieved so far
+     * @param combinedResult the result into which the results of this search
+     * will be merged, or <code>null</code>. If it already holds as many events
+     * as the query allows, hits that are older than all of them are not
+     * retrieved
+     * @return
+     * @throws IOException
+     */
+    public StandardQueryResult search(final org.apache.nifi.provenance.search.Query provenanceQuery, final AtomicInteger retrievedCount,
+            final StandardQueryResult combinedResult) throws IOException {
         if (!indexDirectory.exists() && !indexDirectory.mkdirs()) {
             throw new IOException("Unable to create Indexing Directory " + indexDirectory);
         }
@@ -55,22 +80,38 @@ public class IndexSearch {
         final StandardQueryResult sqr = new StandardQueryResult(provenanceQuery, 1);
         final Set<ProvenanceEventRecord> matchingRecords;
 
-        try (final DirectoryReader directoryReader = DirectoryReader.open(FSDirectory.open(indexDirectory))) {
-            final IndexSearcher searcher = new IndexSearcher(directoryReader);
+        final long start = System.nanoTime();
+        long retrievalStart = -1L;
+        IndexSearcher searcher = null;
+        try {
+            searcher = repository.getIndexManager().borrowIndexSearcher(indexDirectory);
 
             if (provenanceQuery.getEndDate() == null) {
                 provenanceQuery.setEndDate(new Date());
             }
             final Query luceneQuery = LuceneUtil.convertQuery(provenanceQuery);
 
-            TopDocs topDocs = searcher.search(luceneQuery, provenanceQuery.getMaxResults());
+            final TopDocs topDocs = searcher.search(luceneQuery, provenanceQuery.getMaxResults(), NEWEST_FIRST);
             if (topDocs.totalHits == 0) {
                 sqr.update(Collections.<ProvenanceEventRecord>emptyList(), 0);
                 return sqr;
             }
 
+            retrievalStart = System.nanoTime();
+            final Long oldestEventTime = (combinedResult == null) ? null : combinedResult.getOldestEventTime();
+            final List<Document> docs = new ArrayList<>(topDocs.scoreDocs.length);
+            for (final ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                // hits are newest first, so once one is too old to make it into the result, so are the rest
+                final Long eventTime = (Long) ((FieldDoc) scoreDoc).fields[0];
+                if (oldestEventTime != null && eventTime != null && eventTime < oldestEventTime) {
+                    break;
+                }
+
+                docs.add(searcher.doc(scoreDoc.doc));
+            }
+
             final DocsReader docsReader = new DocsReader(repository.getConfiguration().getStorageDirectories());
-            matchingRecords = docsReader.read(topDocs, directoryReader, repository.getAllLogFiles(), retrievedCount, provenanceQuery.getMaxResults());
+            matchingRecords = docsReader.read(docs, repository.getAllLogFiles(), retrievedCount, provenanceQuery.getMaxResults());
 
             sqr.update(matchingRecords, topDocs.totalHits);
             return sqr;
@@ -78,6 +119,18 @@ public class IndexSearch {
             // nothing has been indexed yet.
             sqr.update(Collections.<ProvenanceEventRecord>emptyList(), 0);
             return sqr;
+        } finally {
+            if (searcher != null) {
+                repository.getIndexManager().returnIndexSearcher(searcher);
+            }
+
+            final long end = System.nanoTime();
+            if (retrievalStart < 0L) {
+                sqr.addPhaseTimes(end - start, 0L);
+            } else {
+                sqr.addPhaseTimes(retrievalStart - start, end - retrievalStart);
+            }
+            repository.getQueryMetrics().recordQuery(end - start);
         }
     }
 
@@ -27,6 +27,7 @@ import java.util.Set;
 import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.provenance.IndexConfiguration;
 import org.apache.nifi.provenance.PersistentProvenanceRepository;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
 import org.apache.nifi.provenance.ProvenanceEventType;
 import org.apache.nifi.provenance.SearchableFields;
 import org.apache.nifi.provenance.StandardProvenanceEventRecord;
@@ -35,16 +36,11 @@ import org.apache.nifi.provenance.search.SearchableField;
 import org.apache.nifi.provenance.serialization.RecordReader;
 import org.apache.nifi.provenance.serialization.RecordReaders;
 
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.LongField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,115 +68,141 @@ public class IndexingAction implements RolloverAction {
         doc.add(new StringField(field.getSearchableFieldName(), value.toLowerCase(), store));
     }
 
+    /**
+     * Creates the Lucene Document for the given event, or returns
+     * <code>null</code> if none of the event's fields are searchable. If the
+     * byte offset of the event is not known, because the event has not yet
+     * been merged into its Provenance Event file, <code>storageOffset</code>
+     * should be <code>null</code>; the event is then retrieved by its ID.
+     *
+     * @param record the event
+     * @param eventId the ID of the event
+     * @param storageFilename the basename of the file that holds the event
+     * @param storageOffset the byte offset of the event in the file, or
+     * <code>null</code>
+     * @return
+     */
+    public Document createDocument(final ProvenanceEventRecord record, final long eventId, final String storageFilename, final Long storageOffset) {
+        final Map<String, String> attributes = record.getAttributes();
+
+        final Document doc = new Document();
+        addField(doc, SearchableFields.FlowFileUUID, record.getFlowFileUuid(), Store.NO);
+        addField(doc, SearchableFields.Filename, attributes.get(CoreAttributes.FILENAME.key()), Store.NO);
+        addField(doc, SearchableFields.ComponentID, record.getComponentId(), Store.NO);
+        addField(doc, SearchableFields.AlternateIdentifierURI, record.getAlternateIdentifierUri(), Store.NO);
+        addField(doc, SearchableFields.EventType, record.getEventType().name(), Store.NO);
+        addField(doc, SearchableFields.Relationship, record.getRelationship(), Store.NO);
+        addField(doc, SearchableFields.Details, record.getDetails(), Store.NO);
+        addField(doc, SearchableFields.ContentClaimSection, record.getContentClaimSection(), Store.NO);
+        addField(doc, SearchableFields.ContentClaimContainer, record.getContentClaimContainer(), Store.NO);
+        addField(doc, SearchableFields.ContentClaimIdentifier, record.getContentClaimIdentifier(), Store.NO);
+        addField(doc, SearchableFields.SourceQueueIdentifier, record.getSourceQueueIdentifier(), Store.NO);
+
+        if (nonAttributeSearchableFields.contains(SearchableFields.TransitURI)) {
+            addField(doc, SearchableFields.TransitURI, record.getTransitUri(), Store.NO);
+        }
+
+        for (final SearchableField searchableField : attributeSearchableFields) {
+            addField(doc, searchableField, attributes.get(searchableField.getSearchableFieldName()), Store.NO);
+        }
+
+        // Index the fields that we always index (unless there's nothing else to index at all)
+        if (doc.getFields().isEmpty()) {
+            return null;
+        }
+
+        doc.add(new LongField(SearchableFields.LineageStartDate.getSearchableFieldName(), record.getLineageStartDate(), Store.NO));
+        doc.add(new LongField(SearchableFields.EventTime.getSearchableFieldName(), record.getEventTime(), Store.NO));
+        doc.add(new LongField(SearchableFields.FileSize.getSearchableFieldName(), record.getFileSize(), Store.NO));
+        doc.add(new StringField(FieldNames.STORAGE_FILENAME, storageFilename, Store.YES));
+        doc.add(new LongField(FieldNames.EVENT_ID, eventId, Store.YES));
+        if (storageOffset != null) {
+            doc.add(new LongField(FieldNames.STORAGE_FILE_OFFSET, storageOffset, Store.YES));
+        }
+
+        for (final String lineageIdentifier : record.getLineageIdentifiers()) {
+            addField(doc, SearchableFields.LineageIdentifier, lineageIdentifier, Store.NO);
+        }
+
+        // If it's event is a FORK, or JOIN, add the FlowFileUUID for all child/parent UUIDs.
+        if (record.getEventType() == ProvenanceEventType.FORK || record.getEventType() == ProvenanceEventType.CLONE || record.getEventType() == ProvenanceEventType.REPLAY) {
+            for (final String uuid : record.getChildUuids()) {
+                if (!uuid.equals(record.getFlowFileUuid())) {
+                    addField(doc, SearchableFields.FlowFileUUID, uuid, Store.NO);
+                }
+            }
+        } else if (record.getEventType() == ProvenanceEventType.JOIN) {
+            for (final String uuid : record.getParentUuids()) {
+                if (!uuid.equals(record.getFlowFileUuid())) {
+                    addField(doc, SearchableFields.FlowFileUUID, uuid, Store.NO);
+                }
+            }
+        } else if (record.getEventType() == ProvenanceEventType.RECEIVE && record.getSourceSystemFlowFileIdentifier() != null) {
+            // If we get a receive with a Source System FlowFile Identifier, we add another Document that shows the UUID
+            // that the Source System uses to refer to the data.
+            final String sourceIdentifier = record.getSourceSystemFlowFileIdentifier();
+            final String sourceFlowFileUUID;
+            final int lastColon = sourceIdentifier.lastIndexOf(":");
+            if (lastColon > -1 && lastColon < sourceIdentifier.length() - 2) {
+                sourceFlowFileUUID = sourceIdentifier.substring(lastColon + 1);
+            } else {
+                sourceFlowFileUUID = null;
+            }
+
+            if (sourceFlowFileUUID != null) {
+                addField(doc, SearchableFields.FlowFileUUID, sourceFlowFileUUID, Store.NO);
+            }
+        }
+
+        return doc;
+    }
+
     @Override
-    @SuppressWarnings("deprecation")
     public File execute(final File fileRolledOver) throws IOException {
         final File indexingDirectory = indexConfiguration.getWritableIndexDirectory(fileRolledOver);
+        final IndexManager indexManager = repository.getIndexManager();
         int indexCount = 0;
         long maxId = -1L;
 
-        try (final Directory directory = FSDirectory.open(indexingDirectory);
-                final Analyzer analyzer = new StandardAnalyzer(LuceneUtil.LUCENE_VERSION)) {
-
-            final IndexWriterConfig config = new IndexWriterConfig(LuceneUtil.LUCENE_VERSION, analyzer);
-            config.setWriteLockTimeout(300000L);
-
-            try (final IndexWriter indexWriter = new IndexWriter(directory, config);
-                    final RecordReader reader = RecordReaders.newRecordReader(fileRolledOver, repository.getAllLogFiles())) {
-                StandardProvenanceEventRecord record;
-                while (true) {
-                    try {
-                        record = reader.nextRecord();
-                    } catch (final EOFException eof) {
-                        // system was restarted while writing to the log file. Nothing we can do here, so ignore this record.
-                        // On system restart, the FlowFiles should be back in their "original" queues, so the events will be re-created
-                        // when the data is re-processed
-                        break;
-                    }
-
-                    if (record == null) {
-                        break;
-                    }
-
-                    maxId = record.getEventId();
-
-                    final Map<String, String> attributes = record.getAttributes();
-
-                    final Document doc = new Document();
-                    addField(doc, SearchableFields.FlowFileUUID, record.getFlowFileUuid(), Store.NO);
-                    addField(doc, SearchableFields.Filename, attributes.get(CoreAttributes.FILENAME.key()), Store.NO);
-                    addField(doc, SearchableFields.ComponentID, record.getComponentId(), Store.NO);
-                    addField(doc, SearchableFields.AlternateIdentifierURI, record.getAlternateIdentifierUri(), Store.NO);
-                    addField(doc, SearchableFields.EventType, record.getEventType().name(), Store.NO);
-                    addField(doc, SearchableFields.Relationship, record.getRelationship(), Store.NO);
-                    addField(doc, SearchableFields.Details, record.getDetails(), Store.NO);
-                    addField(doc, SearchableFields.ContentClaimSection, record.getContentClaimSection(), Store.NO);
-                    addField(doc, SearchableFields.ContentClaimContainer, record.getContentClaimContainer(), Store.NO);
-                    addField(doc, SearchableFields.ContentClaimIdentifier, record.getContentClaimIdentifier(), Store.NO);
-                    addField(doc, SearchableFields.SourceQueueIdentifier, record.getSourceQueueIdentifier(), Store.NO);
-
-                    if (nonAttributeSearchableFields.contains(SearchableFields.TransitURI)) {
-                        addField(doc, SearchableFields.TransitURI, record.getTransitUri(), Store.NO);
-                    }
-
-                    for (final SearchableField searchableField : attributeSearchableFields) {
-                        addField(doc, searchableField, attributes.get(searchableField.getSearchableFieldName()), Store.NO);
-                    }
-
-                    final String storageFilename = LuceneUtil.substringBefore(record.getStorageFilename(), ".");
-
-                    // Index the fields that we always index (unless there's nothing else to index at all)
-                    if (!doc.getFields().isEmpty()) {
-                        doc.add(new LongField(SearchableFields.LineageStartDate.getSearchableFieldName(), record.getLineageStartDate(), Store.NO));
-                        doc.add(new LongField(SearchableFields.EventTime.getSearchableFieldName(), record.getEventTime(), Store.NO));
-                        doc.add(new LongField(SearchableFields.FileSize.getSearchableFieldName(), record.getFileSize(), Store.NO));
-                        doc.add(new StringField(FieldNames.STORAGE_FILENAME, storageFilename, Store.YES));
-                        doc.add(new LongField(FieldNames.STORAGE_FILE_OFFSET, record.getStorageByteOffset(), Store.YES));
-
-                        for (final String lineageIdentifier : record.getLineageIdentifiers()) {
-                            addField(doc, SearchableFields.LineageIdentifier, lineageIdentifier, Store.NO);
-                        }
-
-                        // If it's event is a FORK, or JOIN, add the FlowFileUUID for all child/parent UUIDs.
-                        if (record.getEventType() == ProvenanceEventType.FORK || record.getEventType() == ProvenanceEventType.CLONE || record.getEventType() == ProvenanceEventType.REPLAY) {
-                            for (final String uuid : record.getChildUuids()) {
-                                if (!uuid.equals(record.getFlowFileUuid())) {
-                                    addField(doc, SearchableFields.FlowFileUUID, uuid, Store.NO);
-                                }
-                            }
-                        } else if (record.getEventType() == ProvenanceEventType.JOIN) {
-                            for (final String uuid : record.getParentUuids()) {
-                                if (!uuid.equals(record.getFlowFileUuid())) {
-                                    addField(doc, SearchableFields.FlowFileUUID, uuid, Store.NO);
-                                }
-                            }
-                        } else if (record.getEventType() == ProvenanceEventType.RECEIVE && record.getSourceSystemFlowFileIdentifier() != null) {
-                            // If we get a receive with a Source System FlowFile Identifier, we add another Document that shows the UUID
-                            // that the Source System uses to refer to the data.
-                            final String sourceIdentifier = record.getSourceSystemFlowFileIdentifier();
-                            final String sourceFlowFileUUID;
-                            final int lastColon = sourceIdentifier.lastIndexOf(":");
-                            if (lastColon > -1 && lastColon < sourceIdentifier.length() - 2) {
-                                sourceFlowFileUUID = sourceIdentifier.substring(lastColon + 1);
-                            } else {
-                                sourceFlowFileUUID = null;
-                            }
-
-                            if (sourceFlowFileUUID != null) {
-                                addField(doc, SearchableFields.FlowFileUUID, sourceFlowFileUUID, Store.NO);
-                            }
-                        }
-
-                        indexWriter.addDocument(doc);
-                        indexCount++;
-                    }
+        final IndexWriter indexWriter = indexManager.borrowIndexWriter(indexingDirectory);
+        try (final RecordReader reader = RecordReaders.newRecordReader(fileRolledOver, repository.getAllLogFiles())) {
+            StandardProvenanceEventRecord record;
+            while (true) {
+                try {
+                    record = reader.nextRecord();
+                } catch (final EOFException eof) {
+                    // system was restarted while writing to the log file. Nothing we can do here, so ignore this record.
+                    // On system restart, the FlowFiles should be back in their "original" queues, so the events will be re-created
+                    // when the data is re-processed
+                    break;
+                }
+
+                if (record == null) {
+                    break;
                 }
 
-                indexWriter.commit();
-            } catch (final EOFException eof) {
-                // nothing in the file. Move on.
+                maxId = record.getEventId();
+
+                final String storageFilename = LuceneUtil.substringBefore(record.getStorageFilename(), ".");
+                final Document doc = createDocument(record, record.getEventId(), storageFilename, record.getStorageByteOffset());
+                if (doc != null) {
+                    indexConfiguration.updateNewestEventTime(indexingDirectory, record.getEventTime());
+                    indexWriter.addDocument(doc);
+                    indexCount++;
+                }
             }
+
+            final Long newestEventTime = indexConfiguration.getNewestEventTime(indexingDirectory);
+            if (newestEventTime != null) {
+                LuceneUtil.putCommitData(indexWriter, LuceneUtil.NEWEST_EVENT_TIME_KEY, String.valueOf(newestEventTime));
+            }
+            indexWriter.commit();
+            indexManager.refresh(indexingDirectory);
+        } catch (final EOFException eof) {
+            // nothing in the file. Move on.
         } finally {
+            indexManager.returnIndexWriter(indexingDirectory, indexWriter);
+
             if (maxId >= -1) {
                 indexConfiguration.setMaxIdIndexed(maxId);
             }
@@ -29,16 +29,12 @@ import org.apache.nifi.provenance.PersistentProvenanceRepository;
 import org.apache.nifi.provenance.ProvenanceEventRecord;
 import org.apache.nifi.provenance.SearchableFields;
 
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,11 +53,9 @@ public class LineageQuery {
             throw new IllegalArgumentException("Must specify either Lineage Identifier or FlowFile UUIDs to compute lineage");
         }
 
-        try (final Directory fsDir = FSDirectory.open(indexDirectory);
-                final IndexReader indexReader = DirectoryReader.open(fsDir)) {
-
-            final IndexSearcher searcher = new IndexSearcher(indexReader);
-
+        final long start = System.nanoTime();
+        final IndexSearcher searcher = repo.getIndexManager().borrowIndexSearcher(indexDirectory);
+        try {
             // Create a query for all Events related to the FlowFiles of interest. We do this by adding all ID's as
             // "SHOULD" clauses and then setting the minimum required to 1.
             final BooleanQuery flowFileIdQuery;
@@ -97,11 +91,14 @@ public class LineageQuery {
             final long searchEnd = System.nanoTime();
 
             final DocsReader docsReader = new DocsReader(repo.getConfiguration().getStorageDirectories());
-            final Set<ProvenanceEventRecord> recs = docsReader.read(uuidQueryTopDocs, indexReader, repo.getAllLogFiles(), new AtomicInteger(0), Integer.MAX_VALUE);
+            final Set<ProvenanceEventRecord> recs = docsReader.read(uuidQueryTopDocs, searcher.getIndexReader(), repo.getAllLogFiles(), new AtomicInteger(0), Integer.MAX_VALUE);
             final long readDocsEnd = System.nanoTime();
             logger.debug("Finished Lineage Query; Lucene search took {} millis, reading records took {} millis", TimeUnit.NANOSECONDS.toMillis(searchEnd - searchStart), TimeUnit.NANOSECONDS.toMillis(readDocsEnd - searchEnd));
 
             return recs;
+        } finally {
+            repo.getIndexManager().returnIndexSearcher(searcher);
+            repo.getQueryMetrics().recordLineageComputation(System.nanoTime() - start);
         }
     }
 
@@ -17,18 +17,26 @@
 package org.apache.nifi.provenance.lucene;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.provenance.SearchableFields;
 import org.apache.nifi.provenance.search.SearchTerm;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexNotFoundException;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
@@ -37,12 +45,20 @@ import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
 
 public class LuceneUtil {
 
     public static final Version LUCENE_VERSION = Version.LUCENE_43;
 
+    /**
+     * Key of the commit data entry that holds the time of the newest event in
+     * the index
+     */
+    public static final String NEWEST_EVENT_TIME_KEY = "newestEventTime";
+
     public static String substringBefore(final String value, final String searchValue) {
         final int index = value.indexOf(searchValue);
         return (index < 0) ? value : value.substring(0, index);
@@ -132,10 +148,52 @@ public class LuceneUtil {
                     return filenameComp;
                 }
 
-                final long offset1 = o1.getField(FieldNames.STORAGE_FILE_OFFSET).numericValue().longValue();
-                final long offset2 = o2.getField(FieldNames.STORAGE_FILE_OFFSET).numericValue().longValue();
-                return Long.compare(offset1, offset2);
+                // events indexed before they were merged into their file have no offset, but are stored in order of ID
+                final IndexableField offset1 = o1.getField(FieldNames.STORAGE_FILE_OFFSET);
+                final IndexableField offset2 = o2.getField(FieldNames.STORAGE_FILE_OFFSET);
+                if (offset1 == null || offset2 == null) {
+                    final long eventId1 = o1.getField(FieldNames.EVENT_ID).numericValue().longValue();
+                    final long eventId2 = o2.getField(FieldNames.EVENT_ID).numericValue().longValue();
+                    return Long.compare(eventId1, eventId2);
+                }
+
+                return Long.compare(offset1.numericValue().longValue(), offset2.numericValue().longValue());
             }
         });
     }
+
+    /**
+     * Adds the given entry to the commit data that the writer will record with
+     * its next commit, keeping any other entries
+     *
+     * @param writer
+     * @param key
+     * @param value
+     */
+    public static void putCommitData(final IndexWriter writer, final String key, final String value) {
+        synchronized (writer) {
+            final Map<String, String> commitData = new HashMap<>(writer.getCommitData());
+            commitData.put(key, value);
+            writer.setCommitData(commitData);
+        }
+    }
+
+    /**
+     * @param indexDirectory
+     * @return the commit data of the most recent commit to the given index, or
+     * <code>null</code> if nothing has been committed to it
+     * @throws IOException
+     */
+    public static Map<String, String> getCommitData(final File indexDirectory) throws IOException {
+        if (!indexDirectory.exists()) {
+            return null;
+        }
+
+        try (final Directory directory = FSDirectory.open(indexDirectory)) {
+            final List<IndexCommit> commits = DirectoryReader.listCommits(directory);
+            return commits.get(commits.size() - 1).getUserData();
+        } catch (final IndexNotFoundException infe) {
+            return null;
+        }
+    }
 }
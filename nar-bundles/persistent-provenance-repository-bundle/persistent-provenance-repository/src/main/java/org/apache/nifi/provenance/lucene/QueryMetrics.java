@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.lucene;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how long searches of the Provenance indices take. Query times cover a
+ * search of a single index, including retrieval of the matching events, and
+ * lineage times cover a single lineage computation.
+ */
+public class QueryMetrics {
+
+    private final Latency queries = new Latency();
+    private final Latency lineageComputations = new Latency();
+
+    public void recordQuery(final long nanos) {
+        queries.record(nanos);
+    }
+
+    public void recordLineageComputation(final long nanos) {
+        lineageComputations.record(nanos);
+    }
+
+    public long getQueryCount() {
+        return queries.count.get();
+    }
+
+    public long getAverageQueryTime(final TimeUnit timeUnit) {
+        return queries.getAverage(timeUnit);
+    }
+
+    public long getMaxQueryTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(queries.maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getLineageComputationCount() {
+        return lineageComputations.count.get();
+    }
+
+    public long getAverageLineageComputationTime(final TimeUnit timeUnit) {
+        return lineageComputations.getAverage(timeUnit);
+    }
+
+    public long getMaxLineageComputationTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(lineageComputations.maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "QueryMetrics[queries=" + getQueryCount() + ", avgQueryMillis=" + getAverageQueryTime(TimeUnit.MILLISECONDS)
+                + ", maxQueryMillis=" + getMaxQueryTime(TimeUnit.MILLISECONDS) + ", lineageComputations=" + getLineageComputationCount()
+                + ", avgLineageMillis=" + getAverageLineageComputationTime(TimeUnit.MILLISECONDS)
+                + ", maxLineageMillis=" + getMaxLineageComputationTime(TimeUnit.MILLISECONDS) + "]";
+    }
+
+    private static class Latency {
+
+        private final AtomicLong count = new AtomicLong(0L);
+        private final AtomicLong totalNanos = new AtomicLong(0L);
+        private final AtomicLong maxNanos = new AtomicLong(0L);
+
+        public void record(final long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        public long getAverage(final TimeUnit timeUnit) {
+            final long numRecorded = count.get();
+            if (numRecorded == 0L) {
+                return 0L;
+            }
+
+            return timeUnit.convert(totalNanos.get() / numRecorded, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,551 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.lucene;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.provenance.IndexConfiguration;
+import org.apache.nifi.provenance.PersistentProvenanceRepository;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.serialization.RecordReaders;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Indexes Provenance Events as they are written to the journals, rather than
+ * when the journals are merged and rolled over, so that events become
+ * searchable within moments of being registered.
+ *
+ * Events are handed to a bounded queue and indexed in batches by a single
+ * background thread into a long-lived IndexWriter for each storage
+ * directory's current index. Searches see the new documents through
+ * near-real-time readers (see {@link IndexManager}). If the queue fills up,
+ * the threads registering events block until there is room again, so that
+ * indexing cannot fall arbitrarily far behind.
+ *
+ * Because the events have not yet been merged into their Provenance Event
+ * file, the documents record the event's ID instead of its byte offset, and
+ * the event is located by ID when it is retrieved. The writers are committed
+ * periodically, and each commit records the highest event ID below which every
+ * event is known to be in the index; on restart, any later events are indexed
+ * again from the Provenance Event files.
+ */
+public class RealTimeIndexer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RealTimeIndexer.class);
+
+    static final String COMMITTED_EVENT_ID_KEY = "committedEventId";
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final long COMMIT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5L);
+
+    private final PersistentProvenanceRepository repository;
+    private final IndexConfiguration indexConfiguration;
+    private final IndexingAction indexingAction;
+    private final BlockingQueue<PendingEvent> queue;
+    private final Thread indexingThread;
+
+    // ID lower bounds of events that are being written to the journals but have not yet been queued
+    private final ConcurrentMap<Long, Long> reservations = new ConcurrentHashMap<>();
+    private final AtomicLong reservationCounter = new AtomicLong(0L);
+
+    // only accessed by the indexing thread
+    private final Map<File, File> writableIndexDirectories = new HashMap<>();
+    private final Map<File, IndexWriter> writers = new HashMap<>();
+    private SortedMap<Long, Path> recoveryFiles;
+    private long maxIndexedId = -1L;
+    // lowest ID of an event that could not be indexed; nothing at or above it is committed, so it is indexed again on restart
+    private long lowestUnindexedId = Long.MAX_VALUE;
+
+    private final AtomicLong eventsIndexed = new AtomicLong(0L);
+    private final AtomicLong backpressureNanos = new AtomicLong(0L);
+    private volatile int inFlightCount = 0;
+    private volatile long inFlightSinceNanos = 0L;
+    private volatile boolean stopped = false;
+
+    public RealTimeIndexer(final PersistentProvenanceRepository repository, final IndexConfiguration indexConfiguration, final IndexingAction indexingAction) {
+        this.repository = repository;
+        this.indexConfiguration = indexConfiguration;
+        this.indexingAction = indexingAction;
+        this.queue = new LinkedBlockingQueue<>(repository.getConfiguration().getRealTimeIndexQueueSize());
+
+        indexingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                indexEvents();
+            }
+        }, "Provenance Repository Real-Time Indexer");
+        indexingThread.setDaemon(true);
+    }
+
+    /**
+     * Starts indexing events, first indexing any events in the given
+     * Provenance Event files that were not committed to the index before the
+     * repository was last shut down
+     *
+     * @param logFiles the repository's Provenance Event files, keyed by the ID
+     * of the first event in each
+     */
+    public void start(final SortedMap<Long, Path> logFiles) {
+        recoveryFiles = logFiles;
+        indexingThread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(final Thread t, final Throwable e) {
+                logger.error("Real-time indexing of Provenance Events failed due to {}", e.toString());
+                logger.error("", e);
+            }
+        });
+
+        indexingThread.start();
+    }
+
+    /**
+     * Must be called before IDs are assigned to events that will be passed to
+     * {@link #index(List)}, with the next ID that will be assigned. The
+     * returned reservation must be released via {@link #release(long)} once
+     * the events have been passed to {@link #index(List)}, or once it is
+     * known that they will not be.
+     *
+     * @param nextEventId
+     * @return
+     */
+    public long reserve(final long nextEventId) {
+        final long reservation = reservationCounter.getAndIncrement();
+        reservations.put(reservation, nextEventId);
+        return reservation;
+    }
+
+    public void release(final long reservation) {
+        reservations.remove(reservation);
+    }
+
+    /**
+     * Queues the given events to be indexed, blocking while the queue is full
+     *
+     * @param events
+     */
+    public void index(final List<PendingEvent> events) {
+        for (final PendingEvent event : events) {
+            if (queue.offer(event)) {
+                continue;
+            }
+
+            final long start = System.nanoTime();
+            try {
+                while (!queue.offer(event, 100L, TimeUnit.MILLISECONDS)) {
+                    if (stopped) {
+                        return;
+                    }
+                }
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                backpressureNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * @return the number of events that have been registered but not yet
+     * indexed
+     */
+    public int getEventsAwaitingIndexing() {
+        return queue.size() + inFlightCount;
+    }
+
+    /**
+     * @param timeUnit
+     * @return how long the oldest event that has not yet been indexed has been
+     * waiting, or 0 if all events have been indexed
+     */
+    public long getIndexingLag(final TimeUnit timeUnit) {
+        long oldest = inFlightSinceNanos;
+        if (inFlightCount == 0) {
+            final PendingEvent next = queue.peek();
+            if (next == null) {
+                return 0L;
+            }
+            oldest = next.getCreationNanos();
+        }
+
+        return timeUnit.convert(Math.max(0L, System.nanoTime() - oldest), TimeUnit.NANOSECONDS);
+    }
+
+    public long getEventsIndexed() {
+        return eventsIndexed.get();
+    }
+
+    /**
+     * @param timeUnit
+     * @return the total amount of time that threads registering events have
+     * spent waiting for room in the indexing queue
+     */
+    public long getBackpressureTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(backpressureNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() {
+        stopped = true;
+
+        try {
+            indexingThread.join(TimeUnit.SECONDS.toMillis(30L));
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (indexingThread.isAlive()) {
+            logger.warn("Real-time indexer did not finish indexing queued Provenance Events within 30 seconds; "
+                    + "the remaining events will be indexed when the repository is restarted");
+            indexingThread.interrupt();
+        }
+    }
+
+    private void indexEvents() {
+        try {
+            recover(recoveryFiles);
+        } catch (final IOException ioe) {
+            // events are recovered in order of ID, so the first one that was not indexed is the one after the last that was
+            lowestUnindexedId = Math.min(lowestUnindexedId, maxIndexedId + 1);
+            logger.error("Failed to index Provenance Events that were not indexed before the repository was shut down due to {}; "
+                    + "they will be indexed when the repository is restarted", ioe.toString());
+            logger.error("", ioe);
+        }
+
+        long lastCommit = System.nanoTime();
+        final List<PendingEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            while (true) {
+                final PendingEvent first;
+                try {
+                    first = queue.poll(100L, TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException ie) {
+                    break;
+                }
+
+                if (first == null) {
+                    if (stopped) {
+                        break;
+                    }
+                } else {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    inFlightSinceNanos = first.getCreationNanos();
+                    inFlightCount = batch.size();
+
+                    indexBatch(batch);
+
+                    batch.clear();
+                    inFlightCount = 0;
+                }
+
+                if (System.nanoTime() - lastCommit >= COMMIT_INTERVAL_NANOS) {
+                    commit();
+                    lastCommit = System.nanoTime();
+                }
+            }
+        } finally {
+            commit();
+            for (final File indexDirectory : new ArrayList<>(writers.keySet())) {
+                releaseWriter(indexDirectory);
+            }
+        }
+    }
+
+    private void indexBatch(final List<PendingEvent> batch) {
+        // the writable index for a storage directory changes only when the index grows too large, so check once per batch
+        writableIndexDirectories.clear();
+        final Set<File> updatedIndexes = new HashSet<>();
+
+        int indexed = 0;
+        int processed = 0;
+        try {
+            for (final PendingEvent event : batch) {
+                final ProvenanceEventRecord record = event.getRecord();
+                final File indexDirectory = getWritableIndexDirectory(event.getStorageDirectory(), record.getEventTime());
+                final IndexWriter writer = getWriter(indexDirectory);
+
+                final Document document = indexingAction.createDocument(record, event.getEventId(), event.getStorageFilename(), null);
+                if (document != null) {
+                    indexConfiguration.updateNewestEventTime(indexDirectory, record.getEventTime());
+                    writer.addDocument(document);
+                    updatedIndexes.add(indexDirectory);
+                    indexed++;
+                }
+
+                maxIndexedId = Math.max(maxIndexedId, event.getEventId());
+                processed++;
+            }
+        } catch (final IOException ioe) {
+            // The batch is not in order of ID, as it is fed by several journals. Nothing is committed from the lowest ID
+            // that was not indexed onward, so that these events are indexed again when the repository is restarted.
+            for (final PendingEvent event : batch.subList(processed, batch.size())) {
+                lowestUnindexedId = Math.min(lowestUnindexedId, event.getEventId());
+            }
+
+            logger.error("Failed to index {} Provenance Events due to {}; these events will not be searchable until the repository is restarted",
+                    batch.size() - processed, ioe.toString());
+            logger.error("", ioe);
+        }
+
+        for (final File indexDirectory : updatedIndexes) {
+            repository.getIndexManager().refresh(indexDirectory);
+        }
+
+        if (maxIndexedId > -1L) {
+            indexConfiguration.setMaxIdIndexed(maxIndexedId);
+        }
+        eventsIndexed.addAndGet(indexed);
+    }
+
+    private File getWritableIndexDirectory(final File storageDirectory, final long eventTime) {
+        File indexDirectory = writableIndexDirectories.get(storageDirectory);
+        if (indexDirectory == null) {
+            indexDirectory = indexConfiguration.getWritableIndexDirectory(storageDirectory, eventTime);
+            writableIndexDirectories.put(storageDirectory, indexDirectory);
+
+            // if this storage directory has moved on to a new index, we are done with the old one
+            for (final File previous : new ArrayList<>(writers.keySet())) {
+                if (previous.getParentFile().equals(storageDirectory) && !previous.equals(indexDirectory)) {
+                    releaseWriter(previous);
+                }
+            }
+        }
+
+        return indexDirectory;
+    }
+
+    private IndexWriter getWriter(final File indexDirectory) throws IOException {
+        IndexWriter writer = writers.get(indexDirectory);
+        if (writer == null) {
+            writer = repository.getIndexManager().borrowIndexWriter(indexDirectory);
+            writers.put(indexDirectory, writer);
+        }
+
+        return writer;
+    }
+
+    private void releaseWriter(final File indexDirectory) {
+        final IndexWriter writer = writers.remove(indexDirectory);
+        if (writer == null) {
+            return;
+        }
+
+        setCommitData(indexDirectory, writer, getCommittableEventId());
+        repository.getIndexManager().returnIndexWriter(indexDirectory, writer);
+    }
+
+    private void commit() {
+        if (writers.isEmpty()) {
+            return;
+        }
+
+        final long committableEventId = getCommittableEventId();
+        for (final Map.Entry<File, IndexWriter> entry : writers.entrySet()) {
+            try {
+                final IndexWriter writer = entry.getValue();
+                setCommitData(entry.getKey(), writer, committableEventId);
+                writer.commit();
+            } catch (final IOException ioe) {
+                logger.error("Failed to commit Provenance Index {} due to {}", entry.getKey(), ioe.toString());
+                logger.error("", ioe);
+            }
+        }
+    }
+
+    private void setCommitData(final File indexDirectory, final IndexWriter writer, final long committableEventId) {
+        LuceneUtil.putCommitData(writer, COMMITTED_EVENT_ID_KEY, String.valueOf(committableEventId));
+
+        final Long newestEventTime = indexConfiguration.getNewestEventTime(indexDirectory);
+        if (newestEventTime != null) {
+            LuceneUtil.putCommitData(writer, LuceneUtil.NEWEST_EVENT_TIME_KEY, String.valueOf(newestEventTime));
+        }
+    }
+
+    /**
+     * Determines the highest event ID for which this event and all before it
+     * have been given to an IndexWriter. Must be called from the indexing
+     * thread, between batches. The reservations are read before the queue so
+     * that an event that is queued and released while we look is still seen.
+     */
+    private long getCommittableEventId() {
+        long committable = Math.min(maxIndexedId, lowestUnindexedId - 1);
+        for (final Long nextId : reservations.values()) {
+            committable = Math.min(committable, nextId - 1);
+        }
+
+        for (final PendingEvent event : queue) {
+            committable = Math.min(committable, event.getEventId() - 1);
+        }
+
+        return committable;
+    }
+
+    private long getCommittedEventId() {
+        long committed = -1L;
+        for (final File indexDirectory : indexConfiguration.getIndexDirectories()) {
+            try {
+                final Map<String, String> commitData = LuceneUtil.getCommitData(indexDirectory);
+                final String value = (commitData == null) ? null : commitData.get(COMMITTED_EVENT_ID_KEY);
+                if (value != null) {
+                    committed = Math.max(committed, Long.parseLong(value));
+                }
+            } catch (final IOException | NumberFormatException e) {
+                logger.warn("Unable to determine which events have been committed to Provenance Index {} due to {}", indexDirectory, e.toString());
+            }
+        }
+
+        return committed;
+    }
+
+    /**
+     * Indexes the events in the given files that are newer than the last
+     * event committed to the index, replacing any documents for them that were
+     * added but not accounted for by the commit. Files that were indexed when
+     * they were rolled over, before real-time indexing was enabled, are
+     * skipped.
+     */
+    private void recover(final SortedMap<Long, Path> logFiles) throws IOException {
+        if (logFiles == null || logFiles.isEmpty()) {
+            return;
+        }
+
+        final long committed = getCommittedEventId();
+        maxIndexedId = committed;
+
+        final List<Long> firstIds = new ArrayList<>(logFiles.keySet());
+        final Set<File> purgedIndexes = new HashSet<>();
+        long recovered = 0L;
+        for (int i = 0; i < firstIds.size(); i++) {
+            final File file = logFiles.get(firstIds.get(i)).toFile();
+            if (file.getName().contains(".indexed.")) {
+                continue;
+            }
+
+            // every event in this file precedes the first event of the next file
+            if (i < firstIds.size() - 1 && firstIds.get(i + 1) <= committed + 1) {
+                continue;
+            }
+
+            final String storageFilename = LuceneUtil.substringBefore(file.getName(), ".");
+            final File indexDirectory = indexConfiguration.getWritableIndexDirectory(file);
+            final IndexWriter writer = getWriter(indexDirectory);
+
+            // the index may already hold some of the later events, as they were indexed but never committed
+            if (purgedIndexes.add(indexDirectory)) {
+                writer.deleteDocuments(NumericRangeQuery.newLongRange(FieldNames.EVENT_ID, committed + 1, null, true, true));
+            }
+
+            try (final RecordReader reader = RecordReaders.newRecordReader(file, logFiles.values())) {
+                reader.skipToEvent(committed + 1);
+
+                StandardProvenanceEventRecord record;
+                while ((record = reader.nextRecord()) != null) {
+                    if (record.getEventId() <= committed) {
+                        continue;
+                    }
+
+                    final Document document = indexingAction.createDocument(record, record.getEventId(), storageFilename, record.getStorageByteOffset());
+                    if (document != null) {
+                        indexConfiguration.updateNewestEventTime(indexDirectory, record.getEventTime());
+                        writer.addDocument(document);
+                    }
+                    maxIndexedId = Math.max(maxIndexedId, record.getEventId());
+                    recovered++;
+                }
+            } catch (final EOFException eof) {
+                // the last record was not completely written out, so it is discarded.
+            }
+
+            repository.getIndexManager().refresh(indexDirectory);
+        }
+
+        if (recovered > 0L) {
+            indexConfiguration.setMaxIdIndexed(maxIndexedId);
+            commit();
+            logger.info("Indexed {} Provenance Events that had not been indexed before the repository was shut down", recovered);
+        }
+    }
+
+    /**
+     * An event that has been written to a journal and is waiting to be
+     * indexed
+     */
+    public static class PendingEvent {
+
+        private final ProvenanceEventRecord record;
+        private final long eventId;
+        private final File storageDirectory;
+        private final String storageFilename;
+        private final long creationNanos = System.nanoTime();
+
+        /**
+         * @param record the event
+         * @param eventId the ID assigned to the event
+         * @param journalFile the journal to which the event was written
+         */
+        public PendingEvent(final ProvenanceEventRecord record, final long eventId, final File journalFile) {
+            this.record = record;
+            this.eventId = eventId;
+            this.storageDirectory = journalFile.getParentFile().getParentFile();
+            this.storageFilename = LuceneUtil.substringBefore(journalFile.getName(), ".");
+        }
+
+        public ProvenanceEventRecord getRecord() {
+            return record;
+        }
+
+        public long getEventId() {
+            return eventId;
+        }
+
+        public File getStorageDirectory() {
+            return storageDirectory;
+        }
+
+        public String getStorageFilename() {
+            return storageFilename;
+        }
+
+        long getCreationNanos() {
+            return creationNanos;
+        }
+    }
+}
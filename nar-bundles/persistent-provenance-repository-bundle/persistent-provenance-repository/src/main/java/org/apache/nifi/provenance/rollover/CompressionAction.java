@@ -16,38 +16,109 @@
  */
 package org.apache.nifi.provenance.rollover;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
 
+import org.apache.nifi.io.BufferedInputStream;
+import org.apache.nifi.io.ByteCountingOutputStream;
 import org.apache.nifi.io.GZIPOutputStream;
+import org.apache.nifi.io.NonCloseableOutputStream;
 import org.apache.nifi.io.StreamUtils;
-import org.apache.nifi.provenance.lucene.IndexingAction;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.serialization.BlockIndex;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.serialization.RecordReaders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Compresses a Provenance Event file into independent blocks of roughly
+ * <code>blockSize</code> uncompressed bytes. Each block is written as its own
+ * GZIP member, so the result is still an ordinary GZIP file, and a
+ * {@link BlockIndex} is written alongside it so that readers can seek directly
+ * to the block that holds a given event.
+ */
 public class CompressionAction implements RolloverAction {
 
-    private static final Logger logger = LoggerFactory.getLogger(IndexingAction.class);
+    private static final Logger logger = LoggerFactory.getLogger(CompressionAction.class);
+
+    private final long blockSize;
+
+    public CompressionAction(final long blockSize) {
+        this.blockSize = blockSize;
+    }
 
     @Override
     public File execute(final File fileRolledOver) throws IOException {
         final File gzFile = new File(fileRolledOver.getParent(), fileRolledOver.getName() + ".gz");
-        try (final FileInputStream in = new FileInputStream(fileRolledOver);
-                final OutputStream fos = new FileOutputStream(gzFile);
-                final GZIPOutputStream gzipOut = new GZIPOutputStream(fos, 1)) {
-            StreamUtils.copy(in, gzipOut);
-            in.getFD().sync();
+        final BlockIndex.Writer indexWriter = new BlockIndex.Writer();
+
+        try (final RecordReader reader = RecordReaders.newRecordReader(fileRolledOver, null);
+                final InputStream fis = new FileInputStream(fileRolledOver);
+                final DataInputStream rawIn = new DataInputStream(new BufferedInputStream(fis));
+                final FileOutputStream fos = new FileOutputStream(gzFile);
+                final ByteCountingOutputStream countingOut = new ByteCountingOutputStream(new BufferedOutputStream(fos))) {
+
+            // The header is written as a block of its own so that every other block begins with an event
+            final String repoClassName = rawIn.readUTF();
+            final int serializationVersion = rawIn.readInt();
+            GZIPOutputStream blockOut = new GZIPOutputStream(new NonCloseableOutputStream(countingOut), 1);
+            final DataOutputStream headerOut = new DataOutputStream(blockOut);
+            headerOut.writeUTF(repoClassName);
+            headerOut.writeInt(serializationVersion);
+            headerOut.flush();
+            blockOut.close();
+            blockOut = null;
+
+            long bytesCopied = 0L;
+            long blockStart = 0L;
+            try {
+                StandardProvenanceEventRecord record;
+                while ((record = reader.nextRecord()) != null) {
+                    final long recordOffset = record.getStorageByteOffset();
+                    if (blockOut != null) {
+                        StreamUtils.copy(rawIn, blockOut, recordOffset - bytesCopied);
+                    }
+                    bytesCopied = recordOffset;
+
+                    if (blockOut == null || recordOffset - blockStart >= blockSize) {
+                        if (blockOut != null) {
+                            blockOut.close();
+                        }
+
+                        indexWriter.addBlock(record.getEventId(), recordOffset, countingOut.getBytesWritten());
+                        blockOut = new GZIPOutputStream(new NonCloseableOutputStream(countingOut), 1);
+                        blockStart = recordOffset;
+                    }
+                }
+
+                if (blockOut != null) {
+                    StreamUtils.copy(rawIn, blockOut);
+                }
+            } finally {
+                if (blockOut != null) {
+                    blockOut.close();
+                }
+            }
+
+            countingOut.flush();
+            fos.getFD().sync();
         }
 
+        indexWriter.write(gzFile);
+
         boolean deleted = false;
         for (int i = 0; i < 10 && !deleted; i++) {
             deleted = fileRolledOver.delete();
         }
 
-        logger.info("Finished compressing Provenance Log File {}", fileRolledOver);
+        logger.info("Finished compressing Provenance Log File {} into {} blocks", fileRolledOver, indexWriter.getBlockCount());
         return gzFile;
     }
 
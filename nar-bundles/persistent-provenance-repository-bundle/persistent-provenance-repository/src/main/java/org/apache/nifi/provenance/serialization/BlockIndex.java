@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.serialization;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.nifi.io.BufferedInputStream;
+import org.apache.nifi.provenance.lucene.LuceneUtil;
+
+/**
+ * The table of contents for a Provenance Event file that has been compressed
+ * in independent blocks. Each block is a complete GZIP member, so a reader can
+ * begin decompressing at the start of any block. For every block the index
+ * records the ID of the first event in the block, the offset of that event in
+ * the uncompressed stream of records (the same offset that is stored in the
+ * Lucene index) and the offset of the block in the compressed file.
+ *
+ * The index for a file lives in a <code>toc</code> directory alongside the
+ * file, so that it is never mistaken for an event file.
+ */
+public class BlockIndex {
+
+    public static final String DIRECTORY_NAME = "toc";
+    public static final String FILE_EXTENSION = ".toc";
+    private static final int SERIALIZATION_VERSION = 1;
+
+    private final long[] firstEventIds;
+    private final long[] offsets;
+    private final long[] fileOffsets;
+
+    private BlockIndex(final long[] firstEventIds, final long[] offsets, final long[] fileOffsets) {
+        this.firstEventIds = firstEventIds;
+        this.offsets = offsets;
+        this.fileOffsets = fileOffsets;
+    }
+
+    /**
+     * Returns the file that holds the Block Index for the given Provenance
+     * Event file
+     *
+     * @param eventFile
+     * @return
+     */
+    public static File getIndexFile(final File eventFile) {
+        final File tocDir = new File(eventFile.getParentFile(), DIRECTORY_NAME);
+        return new File(tocDir, LuceneUtil.substringBefore(eventFile.getName(), ".") + FILE_EXTENSION);
+    }
+
+    /**
+     * Reads the Block Index for the given Provenance Event file. If the file
+     * has no index, or the index cannot be read, returns <code>null</code>, in
+     * which case the event file must be read sequentially.
+     *
+     * @param eventFile
+     * @return
+     */
+    public static BlockIndex read(final File eventFile) {
+        final File indexFile = getIndexFile(eventFile);
+        try (final InputStream fis = new FileInputStream(indexFile);
+                final DataInputStream dis = new DataInputStream(new BufferedInputStream(fis))) {
+            final int version = dis.readInt();
+            if (version != SERIALIZATION_VERSION) {
+                return null;
+            }
+
+            final List<long[]> entries = new ArrayList<>();
+            while (true) {
+                final long firstEventId;
+                try {
+                    firstEventId = dis.readLong();
+                } catch (final EOFException eof) {
+                    break;
+                }
+
+                entries.add(new long[]{firstEventId, dis.readLong(), dis.readLong()});
+            }
+
+            if (entries.isEmpty()) {
+                return null;
+            }
+
+            final long[] firstEventIds = new long[entries.size()];
+            final long[] offsets = new long[entries.size()];
+            final long[] fileOffsets = new long[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                final long[] entry = entries.get(i);
+                firstEventIds[i] = entry[0];
+                offsets[i] = entry[1];
+                fileOffsets[i] = entry[2];
+            }
+
+            return new BlockIndex(firstEventIds, offsets, fileOffsets);
+        } catch (final IOException ioe) {
+            // a missing or corrupt index is not fatal; the file can still be read from the beginning
+            return null;
+        }
+    }
+
+    public int getBlockCount() {
+        return firstEventIds.length;
+    }
+
+    public long getFirstEventId(final int blockIndex) {
+        return firstEventIds[blockIndex];
+    }
+
+    /**
+     * @param blockIndex
+     * @return the offset of the first event in the given block, relative to the
+     * uncompressed stream of records that follows the file's header
+     */
+    public long getOffset(final int blockIndex) {
+        return offsets[blockIndex];
+    }
+
+    /**
+     * @param blockIndex
+     * @return the offset in the compressed file at which the given block begins
+     */
+    public long getFileOffset(final int blockIndex) {
+        return fileOffsets[blockIndex];
+    }
+
+    /**
+     * Returns the block that contains the given offset in the uncompressed
+     * stream of records, or -1 if the offset precedes the first block
+     *
+     * @param offset
+     * @return
+     */
+    public int getBlockForOffset(final long offset) {
+        return floor(offsets, offset);
+    }
+
+    /**
+     * Returns the block that would contain the event with the given ID, or -1
+     * if the ID precedes the first event in the file
+     *
+     * @param eventId
+     * @return
+     */
+    public int getBlockForEventId(final long eventId) {
+        return floor(firstEventIds, eventId);
+    }
+
+    private static int floor(final long[] values, final long value) {
+        int low = 0;
+        int high = values.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (values[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return high;
+    }
+
+    /**
+     * Builds the Block Index for a Provenance Event file as the file is
+     * compressed
+     */
+    public static class Writer {
+
+        private final List<long[]> entries = new ArrayList<>();
+
+        public void addBlock(final long firstEventId, final long offset, final long fileOffset) {
+            entries.add(new long[]{firstEventId, offset, fileOffset});
+        }
+
+        public int getBlockCount() {
+            return entries.size();
+        }
+
+        /**
+         * Writes the index for the given Provenance Event file, replacing any
+         * index that already exists for it
+         *
+         * @param eventFile
+         * @throws IOException
+         */
+        public void write(final File eventFile) throws IOException {
+            final File indexFile = getIndexFile(eventFile);
+            final File tocDir = indexFile.getParentFile();
+            if (!tocDir.exists() && !tocDir.mkdirs() && !tocDir.exists()) {
+                throw new IOException("Unable to create directory " + tocDir);
+            }
+
+            final File partialFile = new File(tocDir, indexFile.getName() + ".partial");
+            try (final FileOutputStream fos = new FileOutputStream(partialFile);
+                    final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos))) {
+                dos.writeInt(SERIALIZATION_VERSION);
+                for (final long[] entry : entries) {
+                    dos.writeLong(entry[0]);
+                    dos.writeLong(entry[1]);
+                    dos.writeLong(entry[2]);
+                }
+                dos.flush();
+                fos.getFD().sync();
+            }
+
+            Files.move(partialFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -28,4 +28,15 @@ public interface RecordReader extends Closeable {
     void skip(long bytesToSkip) throws IOException;
 
     void skipTo(long position) throws IOException;
+
+    /**
+     * Skips ahead toward the event with the given ID, if the underlying file
+     * allows it, so that the next call to {@link #nextRecord()} returns either
+     * the event with that ID or an event that precedes it in the file. Does
+     * nothing if the reader cannot seek.
+     *
+     * @param eventId
+     * @throws IOException
+     */
+    void skipToEvent(long eventId) throws IOException;
 }
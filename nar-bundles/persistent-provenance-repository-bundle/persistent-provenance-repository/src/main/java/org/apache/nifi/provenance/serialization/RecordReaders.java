@@ -27,6 +27,7 @@ import java.util.Collection;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.nifi.io.BufferedInputStream;
+import org.apache.nifi.io.NonCloseableInputStream;
 import org.apache.nifi.provenance.StandardRecordReader;
 import org.apache.nifi.provenance.lucene.LuceneUtil;
 
@@ -51,10 +52,17 @@ public class RecordReaders {
             throw new FileNotFoundException(file.toString());
         }
 
-        final InputStream fis = new FileInputStream(file);
+        final FileInputStream fis = new FileInputStream(file);
         final InputStream readableStream;
+        BlockIndex blockIndex = null;
         if (file.getName().endsWith(".gz")) {
-            readableStream = new BufferedInputStream(new GZIPInputStream(fis));
+            blockIndex = BlockIndex.read(file);
+            if (blockIndex == null) {
+                readableStream = new BufferedInputStream(new GZIPInputStream(fis));
+            } else {
+                // the reader owns the FileInputStream so that it can seek between blocks
+                readableStream = new BufferedInputStream(new GZIPInputStream(new NonCloseableInputStream(fis)));
+            }
         } else {
             readableStream = new BufferedInputStream(fis);
         }
@@ -64,7 +72,10 @@ public class RecordReaders {
         final String repoClassName = dis.readUTF();
         final int serializationVersion = dis.readInt();
 
-        return new StandardRecordReader(dis, serializationVersion, file.getName());
+        if (blockIndex == null) {
+            return new StandardRecordReader(dis, serializationVersion, file.getName());
+        }
+        return new StandardRecordReader(dis, serializationVersion, file.getName(), fis, blockIndex);
     }
 
 }
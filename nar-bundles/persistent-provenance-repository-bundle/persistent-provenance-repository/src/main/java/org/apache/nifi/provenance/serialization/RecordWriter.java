@@ -41,6 +41,29 @@ public interface RecordWriter extends Closeable {
      */
     long writeRecord(ProvenanceEventRecord record, long recordIdentifier) throws IOException;
 
+    /**
+     * Writes out a record whose fields have already been serialized. Unlike
+     * {@link #writeRecord(ProvenanceEventRecord, long)}, the record is not
+     * flushed to the underlying stream; call {@link #flush()} once a batch of
+     * records has been written
+     *
+     * @param recordIdentifier
+     * @param serializedFields the record's fields, serialized in the same
+     * format as {@link #writeRecord(ProvenanceEventRecord, long)} writes them
+     * @param offset
+     * @param length
+     * @return the number of bytes written for the record
+     * @throws IOException
+     */
+    long writeSerializedRecord(long recordIdentifier, byte[] serializedFields, int offset, int length) throws IOException;
+
+    /**
+     * Flushes any buffered records to the underlying stream
+     *
+     * @throws IOException
+     */
+    void flush() throws IOException;
+
     /**
      * Returns the number of Records that have been written to this RecordWriter
      *
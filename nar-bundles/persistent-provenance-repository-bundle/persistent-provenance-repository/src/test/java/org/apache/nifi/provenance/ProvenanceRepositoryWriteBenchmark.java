@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.reporting.Severity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how many Provenance Events per second the
+ * {@link PersistentProvenanceRepository} can register as the number of
+ * threads registering events grows. Each operation registers a single event,
+ * which is what the framework does for most Processor sessions. The events are
+ * not indexed, so that the measurement covers only writing the journals, but
+ * the repository does roll over as it normally would.
+ *
+ * {@link #main(String[])} runs the benchmark with 1, 2, 4, 8, 16 and 32
+ * threads. The number of threads can also be changed with the
+ * <code>-t</code> option of the JMH runner.
+ *
+ * This is not run as part of the build. Build the benchmark harness with
+ * <code>mvn clean test-compile -Pbenchmark</code> and then run
+ * {@link #main(String[])} with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Threads(16)
+@Fork(1)
+public class ProvenanceRepositoryWriteBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    private File storageDirectory;
+    private PersistentProvenanceRepository repo;
+    private ProvenanceEventRecord event;
+
+    @Setup
+    public void setup() throws IOException {
+        storageDirectory = new File("target/benchmark/" + UUID.randomUUID().toString());
+
+        final RepositoryConfiguration config = new RepositoryConfiguration();
+        config.addStorageDirectory(storageDirectory);
+        config.setCompressOnRollover(false);
+        config.setMaxEventFileCapacity(100L * 1024L * 1024L);
+        config.setMaxEventFileLife(30L, TimeUnit.SECONDS);
+        config.setJournalCount(16);
+
+        repo = new PersistentProvenanceRepository(config);
+        repo.initialize(new EventReporter() {
+            @Override
+            public void reportEvent(final Severity severity, final String category, final String message) {
+                System.out.println(severity + " : " + category + " : " + message);
+            }
+        });
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("abc", "xyz");
+        attributes.put("xyz", "abc");
+
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://benchmark");
+        builder.setFlowFileUUID(UUID.randomUUID().toString());
+        builder.setAttributes(attributes, attributes);
+        builder.setCurrentContentClaim("container", "section", "identifier", 0L, 3000L);
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+        event = builder.build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        repo.close();
+
+        Files.walkFileTree(storageDirectory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Benchmark
+    public void registerEvent() {
+        repo.registerEvent(event);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        for (final int threadCount : THREAD_COUNTS) {
+            new Runner(new OptionsBuilder()
+                    .include(ProvenanceRepositoryWriteBenchmark.class.getSimpleName())
+                    .threads(threadCount)
+                    .build()).run();
+        }
+    }
+}
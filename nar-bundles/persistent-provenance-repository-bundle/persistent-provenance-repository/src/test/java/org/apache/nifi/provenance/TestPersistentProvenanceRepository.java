@@ -27,6 +27,7 @@ import org.apache.nifi.provenance.ProvenanceEventRecord;
 import org.apache.nifi.provenance.ProvenanceEventBuilder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -55,6 +56,7 @@ import org.apache.nifi.provenance.search.QueryResult;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchTerms;
 import org.apache.nifi.provenance.search.SearchableField;
+import org.apache.nifi.provenance.serialization.BlockIndex;
 import org.apache.nifi.provenance.serialization.RecordReader;
 import org.apache.nifi.provenance.serialization.RecordReaders;
 import org.apache.nifi.reporting.Severity;
@@ -423,6 +425,231 @@ public class TestPersistentProvenanceRepository {
         assertTrue(compressedLogFile.exists());
     }
 
+    @Test
+    public void testCompressedEventsAreReadByBlock() throws IOException, InterruptedException, ParseException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(500, TimeUnit.MILLISECONDS);
+        config.setCompressOnRollover(true);
+        config.setCompressionBlockSize(1024L);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+        repo = new PersistentProvenanceRepository(config);
+        repo.initialize(getEventReporter());
+
+        final String uuid = "00000000-0000-0000-0000-000000000000";
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("abc", "xyz");
+        attributes.put("xyz", "abc");
+        attributes.put("filename", "file-" + uuid);
+        attributes.put("uuid", uuid);
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+
+        for (int i = 0; i < 100; i++) {
+            attributes.put("uuid", String.format("00000000-0000-0000-0000-%012d", i));
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            repo.registerEvent(builder.build());
+        }
+
+        repo.waitForRollover();
+        final File storageDir = config.getStorageDirectories().get(0);
+        final File compressedLogFile = new File(storageDir, "0.indexed.prov.gz");
+        assertTrue(compressedLogFile.exists());
+
+        final BlockIndex blockIndex = BlockIndex.read(compressedLogFile);
+        assertNotNull(blockIndex);
+        assertTrue(blockIndex.getBlockCount() > 1);
+        assertEquals(0L, blockIndex.getFirstEventId(0));
+
+        for (long id = 0; id < 100; id++) {
+            final ProvenanceEventRecord event = repo.getEvent(id);
+            assertNotNull(event);
+            assertEquals(id, event.getEventId());
+        }
+
+        final List<ProvenanceEventRecord> events = repo.getEvents(57L, 10);
+        assertEquals(10, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(57L + i, events.get(i).getEventId());
+        }
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        query.setMaxResults(1000);
+
+        final QueryResult result = repo.queryEvents(query);
+        assertEquals(100, result.getMatchingEvents().size());
+    }
+
+    @Test
+    public void testSharedSearcherSeesNewlyIndexedEvents() throws IOException, InterruptedException, ParseException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(500, TimeUnit.MILLISECONDS);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+        repo = new PersistentProvenanceRepository(config);
+        repo.initialize(getEventReporter());
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "file-1");
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+
+        for (int i = 0; i < 10; i++) {
+            attributes.put("uuid", String.format("00000000-0000-0000-0000-%012d", i));
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            repo.registerEvent(builder.build());
+        }
+        repo.waitForRollover();
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        query.setMaxResults(100);
+        assertEquals(10, repo.queryEvents(query).getMatchingEvents().size());
+        assertEquals(1, repo.getIndexManager().getOpenIndexCount());
+
+        for (int i = 10; i < 20; i++) {
+            attributes.put("uuid", String.format("00000000-0000-0000-0000-%012d", i));
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            repo.registerEvent(builder.build());
+        }
+        repo.waitForRollover();
+
+        final Query secondQuery = new Query(UUID.randomUUID().toString());
+        secondQuery.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        secondQuery.setMaxResults(100);
+        assertEquals(20, repo.queryEvents(secondQuery).getMatchingEvents().size());
+        assertEquals(1, repo.getIndexManager().getOpenIndexCount());
+        assertEquals(2L, repo.getQueryMetrics().getQueryCount());
+    }
+
+    @Test
+    public void testQueryReturnsNewestEventsAndSkipsOlderIndexes() throws IOException, InterruptedException, ParseException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(500, TimeUnit.MILLISECONDS);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+        config.setDesiredIndexSize(1L);     // a new index for every event file
+        repo = new PersistentProvenanceRepository(config);
+        repo.initialize(getEventReporter());
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "file-1");
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+
+        // the batches are only a millisecond apart, which the modification times of the index directories cannot tell apart
+        final long firstEventTime = System.currentTimeMillis();
+        long newestEventTime = 0L;
+        for (int batch = 0; batch < 3; batch++) {
+            newestEventTime = firstEventTime + batch;
+            builder.setEventTime(newestEventTime);
+
+            for (int i = 0; i < 10; i++) {
+                attributes.put("uuid", String.format("00000000-0000-0000-0000-%012d", batch * 10 + i));
+                builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+                repo.registerEvent(builder.build());
+            }
+            repo.waitForRollover();
+        }
+
+        assertNewestEventsFoundAndOlderIndexesSkipped(newestEventTime);
+
+        // after a restart, the time of the newest event in each index is read from the index
+        repo.close();
+        repo = new PersistentProvenanceRepository(config);
+        repo.initialize(getEventReporter());
+        assertNewestEventsFoundAndOlderIndexesSkipped(newestEventTime);
+    }
+
+    private void assertNewestEventsFoundAndOlderIndexesSkipped(final long newestEventTime) throws InterruptedException {
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        query.setMaxResults(10);
+
+        final AsyncQuerySubmission submission = (AsyncQuerySubmission) repo.submitQuery(query);
+        while (!submission.getResult().isFinished()) {
+            Thread.sleep(100L);
+        }
+
+        final StandardQueryResult result = submission.getResult();
+        assertNull(result.getError());
+        assertEquals(10, result.getMatchingEvents().size());
+        for (final ProvenanceEventRecord match : result.getMatchingEvents()) {
+            assertEquals(newestEventTime, match.getEventTime());
+        }
+
+        // the query uses a single thread, so once the newest index has supplied 10 events the other two are skipped
+        assertEquals(2, result.getSkippedStepCount());
+        assertTrue(result.getIndexSearchTime(TimeUnit.NANOSECONDS) > 0L);
+        assertTrue(result.getRecordRetrievalTime(TimeUnit.NANOSECONDS) > 0L);
+    }
+
+    @Test
+    public void testRealTimeIndexingBeforeAndAfterRestart() throws IOException, InterruptedException, ParseException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+        config.setRealTimeIndexing(true);
+        repo = new PersistentProvenanceRepository(config);
+        repo.initialize(getEventReporter());
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "file-1");
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+
+        for (int i = 0; i < 10; i++) {
+            attributes.put("uuid", String.format("00000000-0000-0000-0000-%012d", i));
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            repo.registerEvent(builder.build());
+        }
+
+        // the events have not been rolled over, so they are still in the journals
+        int hits = 0;
+        for (int i = 0; i < 100 && hits < 10; i++) {
+            final Query query = new Query(UUID.randomUUID().toString());
+            query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+            query.setMaxResults(100);
+            hits = repo.queryEvents(query).getMatchingEvents().size();
+            if (hits < 10) {
+                Thread.sleep(100L);
+            }
+        }
+        assertEquals(10, hits);
+        assertEquals(0, repo.getEventsAwaitingIndexing());
+        assertEquals(0L, repo.getIndexingLag(TimeUnit.MILLISECONDS));
+
+        // on restart the journals are merged; the events must now be found in the merged file
+        repo.close();
+        repo = new PersistentProvenanceRepository(config);
+        repo.initialize(getEventReporter());
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        query.setMaxResults(100);
+        final List<ProvenanceEventRecord> matches = repo.queryEvents(query).getMatchingEvents();
+        assertEquals(10, matches.size());
+        for (final ProvenanceEventRecord match : matches) {
+            assertTrue(match.getEventId() < 10L);
+        }
+    }
+
     @Test
     public void testIndexAndCompressOnRolloverAndSubsequentSearch() throws IOException, InterruptedException, ParseException {
         final RepositoryConfiguration config = createConfiguration();
@@ -1077,6 +1304,56 @@ public class TestPersistentProvenanceRepository {
         }
     }
 
+    @Test
+    public void testConcurrentWritersAcrossRollovers() throws IOException, InterruptedException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileCapacity(64L * 1024L);   // roll over many times while events are being registered
+        config.setMaxEventFileLife(1, TimeUnit.SECONDS);
+        repo = new PersistentProvenanceRepository(config);
+        repo.initialize(getEventReporter());
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", "12345678-0000-0000-0000-012345678912");
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.fromFlowFile(createFlowFile(3L, 3000L, attributes));
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+        final ProvenanceEventRecord record = builder.build();
+
+        final int numThreads = 16;
+        final int eventsPerThread = 500;
+        final ExecutorService exec = Executors.newFixedThreadPool(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            exec.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventsPerThread; j++) {
+                        repo.registerEvent(record);
+                    }
+                }
+            });
+        }
+        exec.shutdown();
+        assertTrue(exec.awaitTermination(30, TimeUnit.SECONDS));
+
+        // every event must be written exactly once, with IDs that leave no gaps, once the last journals roll over
+        final int expected = numThreads * eventsPerThread;
+        List<ProvenanceEventRecord> events = repo.getEvents(0L, expected + 1);
+        for (int i = 0; i < 300 && events.size() < expected; i++) {
+            Thread.sleep(100L);
+            events = repo.getEvents(0L, expected + 1);
+        }
+
+        assertEquals(expected, events.size());
+        for (int i = 0; i < expected; i++) {
+            assertEquals((long) i, events.get(i).getEventId());
+        }
+    }
+
     @Test
     public void testMergeJournals() throws IOException, InterruptedException {
         final RepositoryConfiguration config = createConfiguration();
@@ -19,6 +19,8 @@ package org.apache.nifi.controller.repository;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Set;
@@ -128,7 +130,9 @@ public interface ContentRepository {
 
     /**
      * Clones the content for the given content claim and returns content claim
-     * of the new object
+     * of the new object. Implementations may let the new claim share the
+     * storage of the original, provided that writing to either claim
+     * afterward does not change the content of the other.
      *
      * @param original
      * @param lossTolerant
@@ -255,6 +259,28 @@ public interface ContentRepository {
      */
     long exportTo(ContentClaim claim, OutputStream destination, long offset, long length) throws IOException;
 
+    /**
+     * Transfers a subset of the content of the given claim, starting at offset
+     * and copying up to length bytes, to the given channel. Repositories that
+     * are backed by files should hand the transfer to the operating system so
+     * that the content is not copied through the JVM heap.
+     *
+     * If the destination is in blocking mode, all length bytes are written
+     * before this method returns. A non-blocking destination, such as a
+     * SocketChannel whose send buffer is full, may accept fewer bytes; the
+     * caller is then expected to call this method again with the offset
+     * advanced by the number of bytes returned.
+     *
+     * @return the number of bytes transferred
+     * @param claim
+     * @param destination where to export data
+     * @param offset the offset into the claim at which the transfer should
+     * begin
+     * @param length the maximum number of bytes to transfer
+     * @throws IOException if an IO error occurs.
+     */
+    long exportTo(ContentClaim claim, WritableByteChannel destination, long offset, long length) throws IOException;
+
     /**
      * @param claim
      * @return size in bytes of content for given claim
@@ -271,6 +297,38 @@ public interface ContentRepository {
      */
     InputStream read(ContentClaim claim) throws IOException;
 
+    /**
+     * Provides access to the input stream for the given claim, positioned at
+     * the given offset. Repositories that can read from an arbitrary position
+     * without reading or skipping the preceding content should do so.
+     *
+     * @param claim
+     * @param offset the number of bytes into the claim at which the stream
+     * should begin
+     * @return InputStream over the content of the given claim, starting at the
+     * given offset
+     * @throws IOException
+     * @throws java.io.EOFException if the claim is shorter than the offset
+     */
+    InputStream read(ContentClaim claim, long offset) throws IOException;
+
+    /**
+     * Reads a region of the content of the given claim into a read-only
+     * ByteBuffer, for callers that can consume the content without copying it
+     * through a stream. Depending on the repository, the buffer may be backed
+     * by memory that is mapped directly to the content.
+     *
+     * @param claim
+     * @param offset the number of bytes into the claim at which the region
+     * begins
+     * @param length the maximum number of bytes to read
+     * @return a read-only buffer whose position is 0 and whose limit is the
+     * number of bytes read, which is less than the given length only if the
+     * end of the claim is reached
+     * @throws IOException
+     */
+    ByteBuffer readBuffer(ContentClaim claim, long offset, int length) throws IOException;
+
     /**
      * Obtains an OutputStream to the content for the given claim.
      *
@@ -293,6 +351,14 @@ public interface ContentRepository {
      */
     void cleanup();
 
+    /**
+     * Shuts down the repository, stopping any background tasks and saving any
+     * state that allows the repository to start more quickly next time. No
+     * content should be written to the repository after it has been shut
+     * down.
+     */
+    void shutdown();
+
     /**
      * Returns a boolean indicating whether or not the content specified by the
      * given claim can be read, regardless of whether the content has been
@@ -135,6 +135,12 @@ public interface ContentClaimManager {
      */
     void drainDestructableClaims(Collection<ContentClaim> destination, int maxElements, long timeout, TimeUnit unit);
 
+    /**
+     * @return the number of Content Claims that have been marked destructable
+     * and have not yet been drained for destruction
+     */
+    int getDestructableClaimCount();
+
     /**
      * Clears the manager's memory of any and all ContentClaims that it knows
      * about
@@ -420,6 +420,8 @@ public class ProcessGroupStatus implements Cloneable {
             merged.setOutputBytes(merged.getOutputBytes() + statusToMerge.getOutputBytes());
             merged.setOutputCount(merged.getOutputCount() + statusToMerge.getOutputCount());
             merged.setProcessingNanos(merged.getProcessingNanos() + statusToMerge.getProcessingNanos());
+            merged.setRunQueueWaitNanos(merged.getRunQueueWaitNanos() + statusToMerge.getRunQueueWaitNanos());
+            merged.setCpuNanos(merged.getCpuNanos() + statusToMerge.getCpuNanos());
 
             // if the status to merge is invalid allow it to take precedence. whether the
             // processor run status is disabled/stopped/running is part of the flow configuration
@@ -36,6 +36,8 @@ public class ProcessorStatus implements Cloneable {
     private long bytesWritten;
     private int invocations;
     private long processingNanos;
+    private long runQueueWaitNanos;
+    private long cpuNanos;
     private int flowFilesRemoved;
     private long averageLineageDuration;
     private int activeThreadCount;
@@ -148,6 +150,30 @@ public class ProcessorStatus implements Cloneable {
         this.processingNanos = processingNanos;
     }
 
+    /**
+     * @return the number of nanoseconds that this Processor's tasks spent
+     * waiting for a thread after they were due to run
+     */
+    public long getRunQueueWaitNanos() {
+        return runQueueWaitNanos;
+    }
+
+    public void setRunQueueWaitNanos(final long runQueueWaitNanos) {
+        this.runQueueWaitNanos = runQueueWaitNanos;
+    }
+
+    /**
+     * @return the number of nanoseconds of CPU time used by this Processor's
+     * tasks
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public void setCpuNanos(final long cpuNanos) {
+        this.cpuNanos = cpuNanos;
+    }
+
     public long getAverageLineageDuration(final TimeUnit timeUnit) {
         return TimeUnit.MILLISECONDS.convert(averageLineageDuration, timeUnit);
     }
@@ -231,6 +257,8 @@ public class ProcessorStatus implements Cloneable {
         clonedObj.outputBytes = outputBytes;
         clonedObj.outputCount = outputCount;
         clonedObj.processingNanos = processingNanos;
+        clonedObj.runQueueWaitNanos = runQueueWaitNanos;
+        clonedObj.cpuNanos = cpuNanos;
         clonedObj.averageLineageDuration = averageLineageDuration;
         clonedObj.flowFilesRemoved = flowFilesRemoved;
         clonedObj.runStatus = runStatus;